@@ -0,0 +1,52 @@
+package com.data.assistant.common;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * 异步响应工具类
+ * 把 CompletableFuture 转为 DeferredResult：等待期间不占用请求线程，
+ * 请求超时或客户端断开时取消底层任务（Spring 直接处理 CompletableFuture 返回值时不会取消）。
+ */
+public class AsyncResults {
+
+    private AsyncResults() {
+    }
+
+    public static <T> DeferredResult<T> of(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.onTimeout(() -> future.cancel(true));
+        result.onError(error -> future.cancel(true));
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 转换结果后返回；失败时使用 onError 的结果。取消时取消的是原始任务
+     */
+    public static <S, T> DeferredResult<T> of(CompletableFuture<S> future, Function<S, T> mapper,
+                                              Function<Throwable, T> onError) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.onTimeout(() -> future.cancel(true));
+        result.onError(error -> future.cancel(true));
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(mapper.apply(value));
+            } else {
+                result.setResult(onError.apply(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error));
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package com.data.assistant.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * SSE 流式输出工具类
+ *
+ * 事件格式：
+ *   token  {"text": "..."}   生成过程中的文本片段，按到达顺序输出
+ *   done   {...}             完成，内容由调用方决定
+ *   error  {"message": "..."} 失败（之前可能已输出部分 token）
+ *
+ * 客户端断开、请求超时时取消生成任务；发送 token 失败时向生成方抛出异常以尽快停止生成。
+ */
+public class SseStreams {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseStreams.class);
+
+    private SseStreams() {
+    }
+
+    /**
+     * @param task 接收 token 回调、返回生成任务
+     * @param done 把生成结果转换为 done 事件的数据
+     */
+    public static <T> SseEmitter stream(Function<Consumer<String>, CompletableFuture<T>> task, Function<T, Object> done) {
+        SseEmitter emitter = new SseEmitter();
+        CompletableFuture<T> future;
+        try {
+            future = task.apply(token -> send(emitter, "token", Map.of("text", token)));
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> generation = future;
+        emitter.onTimeout(() -> generation.cancel(true));
+        emitter.onError(error -> generation.cancel(true));
+        emitter.onCompletion(() -> generation.cancel(true));
+
+        generation.whenComplete((result, error) -> {
+            try {
+                if (error == null) {
+                    send(emitter, "done", done.apply(result));
+                    emitter.complete();
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof CancellationException || cause instanceof UncheckedIOException) {
+                    // 客户端已断开或请求已结束
+                    emitter.complete();
+                    return;
+                }
+                logger.error("SSE stream failed", cause);
+                send(emitter, "error", Map.of("message", cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+                emitter.complete();
+            } catch (UncheckedIOException e) {
+                logger.debug("SSE client disconnected: {}", e.getMessage());
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+}
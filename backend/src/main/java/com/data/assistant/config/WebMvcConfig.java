@@ -0,0 +1,58 @@
+package com.data.assistant.config;
+
+import com.data.assistant.service.DataSourceContextHolder;
+import com.data.assistant.service.QueryContextHolder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web MVC 配置
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new DataSourceContextInterceptor()).addPathPatterns("/api/**");
+    }
+
+    /**
+     * 数据源上下文拦截器
+     * 容器线程会被复用，请求开始和结束时都清理数据源选择，防止泄漏到下一个请求。
+     * 同时设置查询上下文：用户取自请求头 X-User-Id（没有时使用客户端地址），
+     * 客户端可以用请求头 X-Query-Id 指定查询ID，以便在响应返回前取消查询。
+     */
+    static class DataSourceContextInterceptor implements AsyncHandlerInterceptor {
+
+        static final String USER_HEADER = "X-User-Id";
+        static final String QUERY_ID_HEADER = "X-Query-Id";
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            DataSourceContextHolder.clear();
+            String user = request.getHeader(USER_HEADER);
+            QueryContextHolder.set(new QueryContextHolder.Context(
+                user != null && !user.isBlank() ? user : request.getRemoteAddr(),
+                request.getHeader(QUERY_ID_HEADER)));
+            return true;
+        }
+
+        @Override
+        public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                   Object handler) {
+            DataSourceContextHolder.clear();
+            QueryContextHolder.clear();
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                    Object handler, Exception ex) {
+            DataSourceContextHolder.clear();
+            QueryContextHolder.clear();
+        }
+    }
+}
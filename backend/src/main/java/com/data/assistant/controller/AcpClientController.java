@@ -1,10 +1,14 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.common.SseStreams;
 import com.data.assistant.model.QueryRequest;
 import com.data.assistant.model.QueryResponse;
 import com.data.assistant.service.AcpClientService;
+import com.data.assistant.service.ai.AIExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * ACP Client SDK 控制器
@@ -18,6 +22,9 @@ public class AcpClientController {
     @Autowired
     private AcpClientService acpClientService;
 
+    @Autowired
+    private AIExecutor aiExecutor;
+
     /**
      * 发送提示词到 ACP 代理
      */
@@ -26,4 +33,14 @@ public class AcpClientController {
         String result = acpClientService.sendPrompt(request.getNaturalLanguageQuery());
         return new QueryResponse(true, result);
     }
+
+    /**
+     * 发送提示词到 ACP 代理（SSE 流式输出消息块）
+     */
+    @PostMapping(value = "/query/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter queryStream(@RequestBody QueryRequest request) {
+        return SseStreams.stream(
+                onToken -> aiExecutor.submit("acp", () -> acpClientService.sendPrompt(request.getNaturalLanguageQuery(), onToken)),
+                result -> new QueryResponse(true, result));
+    }
 }
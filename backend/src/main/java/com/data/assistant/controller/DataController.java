@@ -37,8 +37,9 @@ public class DataController {
      * 获取表结构
      */
     @GetMapping("/schema/{tableName}")
-    public ResponseEntity<?> getTableSchema(@PathVariable String tableName) {
-        Map<String, Object> schema = dataQueryService.getTableSchema(tableName);
+    public ResponseEntity<?> getTableSchema(@PathVariable String tableName,
+                                            @RequestParam(required = false) Long dataSourceId) {
+        Map<String, Object> schema = dataQueryService.getTableSchema(dataSourceId, tableName);
         return ResponseEntity.ok(Map.of(
             "success", true,
             "data", schema
@@ -64,8 +65,9 @@ public class DataController {
      * 获取样本数据
      */
     @GetMapping("/sample/{tableName}")
-    public ResponseEntity<?> getSampleData(@PathVariable String tableName, @RequestParam(defaultValue = "5") int limit) {
-        List<Map<String, Object>> sampleData = dataQueryService.getSampleData(tableName, limit);
+    public ResponseEntity<?> getSampleData(@PathVariable String tableName, @RequestParam(defaultValue = "5") int limit,
+                                           @RequestParam(required = false) Long dataSourceId) {
+        List<Map<String, Object>> sampleData = dataQueryService.getSampleData(dataSourceId, tableName, limit);
         return ResponseEntity.ok(Map.of(
             "success", true,
             "data", sampleData
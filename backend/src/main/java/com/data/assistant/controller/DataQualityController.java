@@ -3,10 +3,14 @@ package com.data.assistant.controller;
 import com.data.assistant.common.ApiResponse;
 import com.data.assistant.model.DataQualityReport;
 import com.data.assistant.service.DataQualityService;
+import com.data.assistant.service.sampling.SampleSpec;
+import com.data.assistant.service.sampling.TableSampler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/data-quality")
 @CrossOrigin(origins = "*")
@@ -15,11 +19,42 @@ public class DataQualityController {
     @Autowired
     private DataQualityService dataQualityService;
 
+    @Autowired
+    private TableSampler tableSampler;
+
+    /**
+     * mode=sampled（或指定 accuracy）时按目标精度抽样检查，大表可以在几秒内返回。
+     * 精确检查有保存的画像时只扫描水位线（watermarkColumn，不指定时自动识别）之后的新行，refresh=true 时重新扫描全表
+     */
     @GetMapping("/check/{dataSourceId}")
     public ResponseEntity<?> checkTableQuality(
             @PathVariable Long dataSourceId,
-            @RequestParam String tableName) {
-        DataQualityReport report = dataQualityService.checkTableQuality(dataSourceId, tableName);
-        return ResponseEntity.ok(ApiResponse.success(report));
+            @RequestParam String tableName,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) Double accuracy,
+            @RequestParam(required = false) String watermarkColumn,
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        try {
+            SampleSpec spec = tableSampler.spec(mode, accuracy);
+            DataQualityReport report = dataQualityService.checkTableQuality(dataSourceId, tableName, spec,
+                watermarkColumn, refresh);
+            return ResponseEntity.ok(ApiResponse.success(report));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 合并多张表已保存的画像草图（如分区表），不重新扫描
+     */
+    @GetMapping("/profile/{dataSourceId}")
+    public ResponseEntity<?> getMergedProfile(
+            @PathVariable Long dataSourceId,
+            @RequestParam List<String> tables) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(dataQualityService.getMergedProfile(dataSourceId, tables)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
     }
 }
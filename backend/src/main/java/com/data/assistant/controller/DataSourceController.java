@@ -1,7 +1,9 @@
 package com.data.assistant.controller;
 
 import com.data.assistant.model.DataSource;
+import com.data.assistant.model.SchemaCatalog;
 import com.data.assistant.service.DataSourceService;
+import com.data.assistant.service.SchemaCatalogService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +27,9 @@ public class DataSourceController {
     @Autowired
     private DataSourceService dataSourceService;
     
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
+    
     /**
      * 获取所有数据源
      */
@@ -244,4 +249,28 @@ public class DataSourceController {
             ));
         }
     }
+    
+    /**
+     * 刷新数据源的表结构缓存（外部修改了表结构后调用）
+     */
+    @PostMapping("/{id}/schema/refresh")
+    public ResponseEntity<?> refreshSchema(@PathVariable Long id) {
+        try {
+            schemaCatalogService.invalidate(id);
+            SchemaCatalog catalog = schemaCatalogService.getCatalog(id);
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                    "tableCount", catalog.getTables().size(),
+                    "version", catalog.getVersion()
+                )
+            ));
+        } catch (Exception e) {
+            logger.error("Failed to refresh schema for datasource {}", id, e);
+            return ResponseEntity.ok(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        }
+    }
 }
@@ -2,6 +2,8 @@ package com.data.assistant.controller;
 
 import com.data.assistant.common.ApiResponse;
 import com.data.assistant.service.DataStoryService;
+import com.data.assistant.service.sampling.SampleSpec;
+import com.data.assistant.service.sampling.TableSampler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,13 +18,21 @@ public class DataStoryController {
     @Autowired
     private DataStoryService dataStoryService;
 
+    @Autowired
+    private TableSampler tableSampler;
+
     @PostMapping("/generate")
     public ResponseEntity<?> generateDataStory(@RequestBody Map<String, Object> request) {
         try {
             Long dataSourceId = Long.valueOf(request.get("dataSourceId").toString());
             String tableName = (String) request.get("tableName");
+            // mode: exact / sampled，accuracy: 抽样的目标误差（如 0.01）；都不指定时优先使用数据质量检查保存的画像
+            String mode = (String) request.get("mode");
+            Object accuracy = request.get("accuracy");
+            SampleSpec spec = mode == null && accuracy == null ? null : tableSampler.spec(mode,
+                accuracy != null ? Double.valueOf(accuracy.toString()) : null);
             
-            Map<String, Object> story = dataStoryService.generateDataStory(dataSourceId, tableName);
+            Map<String, Object> story = dataStoryService.generateDataStory(dataSourceId, tableName, spec);
             return ResponseEntity.ok(ApiResponse.success(story));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("生成失败: " + e.getMessage()));
@@ -2,6 +2,11 @@ package com.data.assistant.controller;
 
 import com.data.assistant.common.ApiResponse;
 import com.data.assistant.service.FederationQueryService;
+import com.data.assistant.service.federation.AggregatePlan;
+import com.data.assistant.service.federation.HashJoinOperator;
+import com.data.assistant.service.federation.JoinSpec;
+import com.data.assistant.service.sql.SqlParser;
+import net.sf.jsqlparser.expression.Expression;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,11 +21,13 @@ public class FederationQueryController {
     @Autowired
     private FederationQueryService federationQueryService;
 
+    @Autowired
+    private SqlParser sqlParser;
+
     @PostMapping("/query")
     public ResponseEntity<?> executeFederationQuery(@RequestBody Map<String, Object> request) {
         try {
-            @SuppressWarnings("unchecked")
-            List<Long> dataSourceIds = (List<Long>) request.get("dataSourceIds");
+            List<Long> dataSourceIds = toIdList(request.get("dataSourceIds"));
             String sql = (String) request.get("sql");
             
             Map<String, Object> result = federationQueryService.executeFederationQuery(dataSourceIds, sql);
@@ -30,37 +37,100 @@ public class FederationQueryController {
         }
     }
 
+    /**
+     * 跨数据源 JOIN
+     * 请求格式：{leftDsId, leftTable, rightDsId, rightTable, joinColumn | leftKey + rightKey,
+     *           joinType: INNER|LEFT|RIGHT|FULL, leftColumns, rightColumns, leftWhere, rightWhere, maxRows}
+     */
     @PostMapping("/join")
     public ResponseEntity<?> joinAcrossDataSources(@RequestBody Map<String, Object> request) {
         try {
-            Long leftDsId = Long.valueOf(request.get("leftDsId").toString());
-            String leftTable = (String) request.get("leftTable");
-            Long rightDsId = Long.valueOf(request.get("rightDsId").toString());
-            String rightTable = (String) request.get("rightTable");
             String joinColumn = (String) request.get("joinColumn");
+            JoinSpec spec = new JoinSpec();
+            spec.setLeftDsId(Long.valueOf(request.get("leftDsId").toString()));
+            spec.setLeftTable((String) request.get("leftTable"));
+            spec.setLeftKey(request.get("leftKey") != null ? request.get("leftKey").toString() : joinColumn);
+            spec.setLeftColumns(toStringList(request.get("leftColumns")));
+            spec.setLeftWhere((String) request.get("leftWhere"));
+            spec.setRightDsId(Long.valueOf(request.get("rightDsId").toString()));
+            spec.setRightTable((String) request.get("rightTable"));
+            spec.setRightKey(request.get("rightKey") != null ? request.get("rightKey").toString() : joinColumn);
+            spec.setRightColumns(toStringList(request.get("rightColumns")));
+            spec.setRightWhere((String) request.get("rightWhere"));
+            spec.setJoinType(HashJoinOperator.JoinType.parse((String) request.get("joinType")));
+            if (request.get("maxRows") != null) {
+                spec.setMaxRows(Integer.parseInt(request.get("maxRows").toString()));
+            }
             
-            Map<String, Object> result = federationQueryService.joinAcrossDataSources(
-                leftDsId, leftTable, rightDsId, rightTable, joinColumn);
+            Map<String, Object> result = federationQueryService.joinAcrossDataSources(spec);
             return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("JOIN失败: " + e.getMessage()));
         }
     }
 
+    /**
+     * 联邦聚合
+     * 请求格式：{dataSourceIds, tableName, groupBy: [...], where,
+     *           aggregations: [{function, column, alias}]}；
+     * 兼容旧格式 {dataSourceIds, tableName, aggColumn, aggFunction}。
+     */
     @PostMapping("/aggregate")
     public ResponseEntity<?> aggregateAcrossDataSources(@RequestBody Map<String, Object> request) {
         try {
-            @SuppressWarnings("unchecked")
-            List<Long> dataSourceIds = (List<Long>) request.get("dataSourceIds");
+            List<Long> dataSourceIds = toIdList(request.get("dataSourceIds"));
             String tableName = (String) request.get("tableName");
-            String aggColumn = (String) request.get("aggColumn");
-            String aggFunction = (String) request.get("aggFunction");
             
-            List<Map<String, Object>> results = federationQueryService.aggregateAcrossDataSources(
-                dataSourceIds, tableName, aggColumn, aggFunction);
-            return ResponseEntity.ok(ApiResponse.success(results));
+            Map<String, Object> result;
+            if (request.get("aggregations") instanceof List) {
+                List<AggregatePlan.Aggregation> aggregations = new ArrayList<>();
+                for (Object item : (List<?>) request.get("aggregations")) {
+                    Map<?, ?> spec = (Map<?, ?>) item;
+                    String function = String.valueOf(spec.get("function"));
+                    String column = spec.get("column") != null ? spec.get("column").toString() : "*";
+                    String alias = spec.get("alias") != null ? spec.get("alias").toString()
+                        : function.toLowerCase() + "_" + ("*".equals(column) ? "all" : column);
+                    aggregations.add(new AggregatePlan.Aggregation(AggregatePlan.parseFunction(function), column, alias));
+                }
+                List<String> groupBy = toStringList(request.get("groupBy"));
+                // 过滤条件解析为单个条件表达式，多条语句、子查询等在这里被拒绝
+                String where = (String) request.get("where");
+                Expression condition = where != null && !where.trim().isEmpty() ? sqlParser.parseCondition(where) : null;
+                AggregatePlan plan = new AggregatePlan(tableName, groupBy, aggregations, condition);
+                result = federationQueryService.aggregateAcrossDataSources(dataSourceIds, plan);
+            } else {
+                String aggColumn = (String) request.get("aggColumn");
+                String aggFunction = (String) request.get("aggFunction");
+                result = federationQueryService.aggregateAcrossDataSources(
+                    dataSourceIds, tableName, aggColumn, aggFunction);
+            }
+            return ResponseEntity.ok(ApiResponse.success(result));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("聚合失败: " + e.getMessage()));
         }
     }
+
+    /**
+     * JSON 中的数字ID可能被解析为 Integer，统一转换为 Long
+     */
+    private List<Long> toIdList(Object value) {
+        List<Long> ids = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object id : (List<?>) value) {
+                ids.add(Long.valueOf(id.toString()));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("dataSourceIds 不能为空");
+        }
+        return ids;
+    }
+
+    private List<String> toStringList(Object value) {
+        List<String> list = new ArrayList<>();
+        if (value instanceof List) {
+            ((List<?>) value).forEach(item -> list.add(item.toString()));
+        }
+        return list;
+    }
 }
@@ -1,6 +1,16 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.service.DynamicDataSourceService;
+import com.data.assistant.service.QueryPlanService;
+import com.data.assistant.service.QueryRegistry;
+import com.data.assistant.service.QueryResultCache;
+import com.data.assistant.service.SchemaCatalogService;
+import com.data.assistant.service.SchemaRetrievalService;
+import com.data.assistant.service.SqlGuardService;
+import com.data.assistant.service.ai.AIExecutor;
 import com.data.assistant.service.ai.AIServiceFactory;
+import com.data.assistant.service.ai.NL2SQLCache;
+import com.data.assistant.service.ai.UnifiedAIService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,6 +31,36 @@ public class HealthController {
     @Autowired
     private AIServiceFactory aiServiceFactory;
 
+    @Autowired
+    private DynamicDataSourceService dynamicDataSourceService;
+
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
+
+    @Autowired
+    private SchemaRetrievalService schemaRetrievalService;
+
+    @Autowired
+    private NL2SQLCache nl2sqlCache;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryPlanService queryPlanService;
+
+    @Autowired
+    private SqlGuardService sqlGuardService;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private AIExecutor aiExecutor;
+
+    @Autowired
+    private UnifiedAIService unifiedAIService;
+
     /**
      * 心跳检测
      */
@@ -49,6 +89,26 @@ public class HealthController {
         aiStatus.put("providers", aiServiceFactory.getAvailableProviders());
         result.put("aiServices", aiStatus);
         
+        // 数据源连接池状态（后台定时检查）
+        result.put("dataSources", dynamicDataSourceService.getHealthStatus());
+        
+        // 表结构缓存命中情况
+        result.put("schemaCache", schemaCatalogService.getStats());
+        result.put("schemaRetrieval", schemaRetrievalService.getStats());
+        result.put("nl2sqlCache", nl2sqlCache.getStats());
+        result.put("queryCache", queryResultCache.getStats());
+        result.put("queryPlanCache", queryPlanService.getStats());
+        result.put("sqlGuard", sqlGuardService.getStats());
+        
+        // 执行中的查询数量、最长执行时间和已结束查询的耗时分位数
+        result.put("queries", queryRegistry.getStats());
+        
+        // AI 调用并发、排队和超时情况
+        result.put("aiExecutor", aiExecutor.getStats());
+        
+        // AI 提供商熔断、耗时分位数和对冲情况
+        result.put("aiRouting", unifiedAIService.getRoutingStats());
+        
         return result;
     }
 }
@@ -1,12 +1,12 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.common.AsyncResults;
 import com.data.assistant.model.QueryRequest;
 import com.data.assistant.model.QueryResponse;
 import com.data.assistant.service.IflowClientService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.concurrent.CompletableFuture;
+import org.springframework.web.context.request.async.DeferredResult;
 
 /**
  * iFlow Client SDK 控制器
@@ -33,9 +33,10 @@ public class IflowController {
      * 异步查询接口
      */
     @PostMapping("/query-async")
-    public CompletableFuture<QueryResponse> queryAsync(@RequestBody QueryRequest request) {
-        return iflowClientService.asyncQuery(request.getNaturalLanguageQuery())
-                .thenApply(result -> new QueryResponse(true, result));
+    public DeferredResult<QueryResponse> queryAsync(@RequestBody QueryRequest request) {
+        return AsyncResults.of(iflowClientService.asyncQuery(request.getNaturalLanguageQuery()),
+                result -> new QueryResponse(true, result),
+                e -> new QueryResponse(false, e.getMessage()));
     }
 
     /**
@@ -1,16 +1,42 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.common.AsyncResults;
+import com.data.assistant.common.SseStreams;
 import com.data.assistant.service.ai.*;
 import com.data.assistant.service.DataQueryService;
+import com.data.assistant.service.DataSourceContextHolder;
+import com.data.assistant.service.QueryContextHolder;
+import com.data.assistant.service.QueryResultCache;
+import com.data.assistant.service.SchemaCatalogService;
+import com.data.assistant.service.SchemaRetrievalService;
+import com.data.assistant.service.SqlGuardService;
+import com.data.assistant.service.SqlOptimizationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * NL2SQL 控制器
@@ -22,6 +48,13 @@ import java.util.Map;
 public class NL2SQLController {
     
     private static final Logger logger = LoggerFactory.getLogger(NL2SQLController.class);
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * 流式输出时每写出多少行刷新一次
+     */
+    private static final int STREAM_FLUSH_ROWS = 100;
     
     @Autowired
     private UnifiedAIService unifiedAIService;
@@ -29,12 +62,28 @@ public class NL2SQLController {
     @Autowired
     private DataQueryService dataQueryService;
     
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
+    
+    @Autowired
+    private SchemaRetrievalService schemaRetrievalService;
+
+    @Autowired
+    private SqlOptimizationService sqlOptimizationService;
+
+    @Autowired
+    private SqlGuardService sqlGuardService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     /**
      * 自然语言转 SQL
      */
     @PostMapping("/convert")
     public ResponseEntity<?> naturalLanguageToSQL(
-            @RequestBody NL2SQLRequest request) {
+            @RequestBody NL2SQLRequest request,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl) {
         
         try {
             logger.info("NL2SQL request: {}, datasource: {}", request.getQuery(), request.getDataSourceId());
@@ -45,21 +94,10 @@ public class NL2SQLController {
             }
             
             // 获取数据库 schema
-            String schema = getDatabaseSchema();
+            String schema = getDatabaseSchema(request.getQuery());
             
             // 构建上下文（支持多轮对话）
-            Map<String, Object> context = new HashMap<>();
-            if (request.getHistory() != null && !request.getHistory().isEmpty()) {
-                // 将历史记录列表转换为字符串格式
-                StringBuilder historyBuilder = new StringBuilder();
-                for (Map<String, Object> msg : request.getHistory()) {
-                    String role = msg.get("role") != null ? msg.get("role").toString() : "";
-                    String content = msg.get("content") != null ? msg.get("content").toString() : "";
-                    historyBuilder.append(role).append(": ").append(content).append("\n");
-                }
-                context.put("history", historyBuilder.toString());
-            }
-            context.put("dataSourceId", dataQueryService.getCurrentDataSourceId());
+            Map<String, Object> context = buildContext(request);
             
             // 调用 AI 服务
             NL2SQLResult result = unifiedAIService.naturalLanguageToSQL(
@@ -70,23 +108,46 @@ public class NL2SQLController {
             );
             
             if (result.isSuccess()) {
+                // 执行前检查：只读、行数上限、代价预算，不通过时不执行并返回原因
+                Long dataSourceId = dataQueryService.getCurrentDataSourceId();
+                SqlGuardService.Verdict verdict = sqlGuardService.check(dataSourceId, result.getSql());
+                if (!verdict.isAllowed()) {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", false);
+                    response.put("rejected", true);
+                    response.put("message", verdict.getMessage());
+                    response.put("sql", result.getSql());
+                    response.put("intent", result.getIntent());
+                    response.put("description", result.getDescription());
+                    response.put("dataSourceId", dataSourceId);
+                    response.put("guard", verdict.toMap());
+                    return ResponseEntity.ok(response);
+                }
+
                 // 执行 SQL 获取数据，并记录耗时
                 long startTime = System.currentTimeMillis();
-                List<Map<String, Object>> data = dataQueryService.executeQuery(result.getSql());
+                boolean useCache = !Boolean.TRUE.equals(request.getNoCache()) && !isNoCache(cacheControl);
+                QueryResultCache.Lookup lookup = dataQueryService.executeQueryCached(dataSourceId, verdict.getSql(),
+                    useCache, verdict.getTimeoutSeconds(), verdict.getMaxRows());
+                List<Map<String, Object>> data = lookup.getTable();
                 long executionTime = System.currentTimeMillis() - startTime;
                 
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", true);
                 response.put("sql", result.getSql());
+                response.put("executedSql", verdict.getSql());
+                response.put("guard", verdict.toMap());
                 response.put("data", data);
                 response.put("intent", result.getIntent());
                 response.put("description", result.getDescription());
                 response.put("suggestedChart", result.getSuggestedChart());
-                response.put("dataSourceId", dataQueryService.getCurrentDataSourceId());
+                response.put("dataSourceId", dataSourceId);
                 response.put("executionTime", executionTime);
                 response.put("rowCount", data != null ? data.size() : 0);
+                response.put("cacheHit", result.getCacheHit());
+                response.put("sqlAnalysis", sqlOptimizationService.analyzeSql(result.getSql(), dataSourceId));
                 
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok().headers(cacheHeaders(lookup)).body(response);
             } else {
                 return ResponseEntity.ok(Map.of(
                     "success", false,
@@ -102,98 +163,528 @@ public class NL2SQLController {
         }
     }
     
+    /**
+     * 智能查询（流式返回结果）
+     * 以 NDJSON 格式逐行输出：meta（SQL 信息）、columns、row...、end；出错时输出 error，
+     * 生成的 SQL 未通过执行前检查时输出 rejected（code、message 等）且不执行。
+     * 结果按游标分批读取，首批数据在查询完成前即可到达客户端。
+     * 等待首批数据期间定期输出 heartbeat，客户端断开时取消查询；查询被取消（见 /api/query/running）时输出 cancelled。
+     */
+    @PostMapping(value = "/query/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamQuery(@RequestBody NL2SQLRequest request) {
+        QueryContextHolder.Context requestContext = QueryContextHolder.get();
+        StreamingResponseBody body = outputStream -> {
+            HeartbeatProbe probe = new HeartbeatProbe(outputStream);
+            QueryContextHolder.set((requestContext != null ? requestContext : new QueryContextHolder.Context(null, null))
+                .withClientProbe(probe));
+            try {
+                logger.info("NL2SQL stream request: {}, datasource: {}", request.getQuery(), request.getDataSourceId());
+
+                if (request.getDataSourceId() != null) {
+                    dataQueryService.switchDataSource(request.getDataSourceId());
+                }
+                Long dataSourceId = dataQueryService.getCurrentDataSourceId();
+
+                NL2SQLResult result = unifiedAIService.naturalLanguageToSQL(
+                    request.getProvider(),
+                    request.getQuery(),
+                    getDatabaseSchema(request.getQuery()),
+                    buildContext(request)
+                );
+                if (!result.isSuccess()) {
+                    writeLine(outputStream, errorLine(result.getErrorMessage() != null
+                        ? result.getErrorMessage() : "生成 SQL 失败"));
+                    return;
+                }
+
+                SqlGuardService.Verdict verdict = sqlGuardService.check(dataSourceId, result.getSql());
+                if (!verdict.isAllowed()) {
+                    Map<String, Object> rejected = new LinkedHashMap<>();
+                    rejected.put("type", "rejected");
+                    rejected.put("sql", result.getSql());
+                    rejected.putAll(verdict.toMap());
+                    writeLine(outputStream, rejected);
+                    outputStream.flush();
+                    return;
+                }
+
+                Map<String, Object> meta = new LinkedHashMap<>();
+                meta.put("type", "meta");
+                meta.put("sql", result.getSql());
+                meta.put("executedSql", verdict.getSql());
+                meta.put("guard", verdict.toMap());
+                meta.put("intent", result.getIntent());
+                meta.put("description", result.getDescription());
+                meta.put("suggestedChart", result.getSuggestedChart());
+                meta.put("dataSourceId", dataSourceId);
+                meta.put("cacheHit", result.getCacheHit());
+                writeLine(outputStream, meta);
+                outputStream.flush();
+
+                long rowLimit = request.getMaxRows() != null ? request.getMaxRows() : 0;
+                if (verdict.getMaxRows() > 0) {
+                    rowLimit = rowLimit > 0 ? Math.min(rowLimit, verdict.getMaxRows()) : verdict.getMaxRows();
+                }
+                DataQueryService.StreamSummary summary = dataQueryService.streamQuery(dataSourceId, verdict.getSql(),
+                    rowLimit, verdict.getTimeoutSeconds(), new DataQueryService.RowStreamHandler() {
+                        private long written = 0;
+
+                        @Override
+                        public void onColumns(List<String> columns) throws IOException {
+                            probe.stop();
+                            writeLine(outputStream, Map.of("type", "columns", "columns", columns));
+                            outputStream.flush();
+                        }
+
+                        @Override
+                        public long onRow(Object[] values) throws IOException {
+                            Map<String, Object> row = new LinkedHashMap<>();
+                            row.put("type", "row");
+                            row.put("data", values);
+                            long bytes = writeLine(outputStream, row);
+                            if (++written % STREAM_FLUSH_ROWS == 0) {
+                                outputStream.flush();
+                            }
+                            return bytes;
+                        }
+                    });
+
+                Map<String, Object> end = new LinkedHashMap<>();
+                end.put("type", "end");
+                end.put("rowCount", summary.getRowCount());
+                end.put("bytes", summary.getByteCount());
+                end.put("truncated", summary.isTruncated());
+                end.put("truncateReason", summary.getTruncateReason());
+                end.put("executionTime", summary.getElapsedMillis());
+                writeLine(outputStream, end);
+                outputStream.flush();
+            } catch (UncheckedIOException e) {
+                // 客户端已断开，停止输出
+                logger.warn("NL2SQL stream aborted: {}", e.getMessage());
+            } catch (CancellationException e) {
+                // 客户端断开时这一行写不出去，由容器处理写出异常
+                logger.info("NL2SQL stream cancelled: {}", e.getMessage());
+                probe.stop();
+                writeLine(outputStream, Map.of("type", "cancelled", "message", e.getMessage()));
+                outputStream.flush();
+            } catch (Exception e) {
+                logger.error("NL2SQL stream error", e);
+                probe.stop();
+                writeLine(outputStream, errorLine("查询失败: " + e.getMessage()));
+                outputStream.flush();
+            } finally {
+                // 流式输出在异步线程中执行，结束时清理该线程上的数据源选择和查询上下文
+                DataSourceContextHolder.clear();
+                QueryContextHolder.clear();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * 自然语言转 SQL（SSE 流式输出模型生成过程）
+     * 事件：token（模型原始输出片段）、done（解析后的 SQL 结果，不执行查询）、error。
+     */
+    @PostMapping(value = "/convert/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamConvert(@RequestBody NL2SQLRequest request) {
+        logger.info("NL2SQL SSE request: {}, datasource: {}", request.getQuery(), request.getDataSourceId());
+        if (request.getDataSourceId() != null) {
+            dataQueryService.switchDataSource(request.getDataSourceId());
+        }
+        Long dataSourceId = dataQueryService.getCurrentDataSourceId();
+        String schema = getDatabaseSchema(request.getQuery());
+        Map<String, Object> context = buildContext(request);
+        return SseStreams.stream(
+            onToken -> unifiedAIService.naturalLanguageToSQLStream(
+                request.getProvider(), request.getQuery(), schema, context, onToken),
+            result -> {
+                Map<String, Object> done = new LinkedHashMap<>();
+                done.put("success", result.isSuccess());
+                if (result.isSuccess()) {
+                    done.put("sql", result.getSql());
+                    done.put("intent", result.getIntent());
+                    done.put("description", result.getDescription());
+                    done.put("suggestedChart", result.getSuggestedChart());
+                    done.put("dataSourceId", dataSourceId);
+                    done.put("cacheHit", result.getCacheHit());
+                } else {
+                    done.put("message", result.getErrorMessage());
+                }
+                return done;
+            });
+    }
+
+    /**
+     * 解释 SQL（SSE 流式输出）
+     */
+    @PostMapping(value = "/explain/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamExplain(@RequestBody Map<String, String> request) {
+        String provider = request.getOrDefault("provider", "iflow");
+        String prompt = explainPrompt(request.get("sql"));
+        return SseStreams.stream(
+            onToken -> unifiedAIService.chatStream(provider, prompt, null, onToken),
+            explanation -> Map.of("success", true, "explanation", explanation));
+    }
+
+    /**
+     * 通用对话（SSE 流式输出）
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChat(@RequestBody Map<String, String> request) {
+        String provider = request.getOrDefault("provider", "iflow");
+        String prompt = request.get("prompt");
+        return SseStreams.stream(
+            onToken -> {
+                if (prompt == null || prompt.trim().isEmpty()) {
+                    throw new IllegalArgumentException("prompt 不能为空");
+                }
+                return unifiedAIService.chatStream(provider, prompt, null, onToken);
+            },
+            response -> Map.of("success", true, "response", response));
+    }
+
+    private static String explainPrompt(String sql) {
+        return "请用中文解释以下 SQL 语句的作用：\n\n" + sql;
+    }
+
+    /**
+     * 批量自然语言转 SQL（NDJSON 流式返回）
+     * 同一数据源的多个问题共用一次构建的上下文，重复问题只生成一次，按 parallelism 并发生成。
+     * 每个问题完成时输出一行 item（index 为问题在请求中的序号，按完成顺序输出），最后输出 end；
+     * 请求本身无效时输出 error；批量中途失败、部分问题没有结果时先输出 error 再输出 end。只生成 SQL，不执行查询。
+     */
+    @PostMapping(value = "/batch", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> batchConvert(@RequestBody NL2SQLBatchRequest request) {
+        StreamingResponseBody body = outputStream -> {
+            CompletableFuture<Void> batch = null;
+            try {
+                List<String> questions = request.getQuestions();
+                logger.info("NL2SQL batch request: {} questions, datasource: {}",
+                    questions != null ? questions.size() : 0, request.getDataSourceId());
+
+                if (request.getDataSourceId() != null) {
+                    dataQueryService.switchDataSource(request.getDataSourceId());
+                }
+                Long dataSourceId = dataQueryService.getCurrentDataSourceId();
+                Map<String, Object> context = new HashMap<>();
+                addSchemaContext(context, dataSourceId, request.getNoCache());
+
+                long startTime = System.currentTimeMillis();
+                BlockingQueue<Object[]> completed = new LinkedBlockingQueue<>();
+                batch = unifiedAIService.naturalLanguageToSQLBatch(request.getProvider(), questions,
+                    question -> getDatabaseSchema(dataSourceId, question), context, request.getParallelism(),
+                    (index, result) -> completed.add(new Object[]{index, result}));
+
+                int written = 0;
+                int succeeded = 0;
+                while (written < questions.size()) {
+                    Object[] item = completed.poll(1, TimeUnit.SECONDS);
+                    if (item == null) {
+                        if (batch.isDone() && completed.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    int index = (Integer) item[0];
+                    NL2SQLResult result = (NL2SQLResult) item[1];
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("type", "item");
+                    line.put("index", index);
+                    line.put("question", questions.get(index));
+                    line.put("success", result.isSuccess());
+                    if (result.isSuccess()) {
+                        succeeded++;
+                        line.put("sql", result.getSql());
+                        line.put("intent", result.getIntent());
+                        line.put("description", result.getDescription());
+                        line.put("suggestedChart", result.getSuggestedChart());
+                        line.put("cacheHit", result.getCacheHit());
+                    } else {
+                        line.put("message", result.getErrorMessage());
+                    }
+                    writeLine(outputStream, line);
+                    outputStream.flush();
+                    written++;
+                }
+                if (written < questions.size()) {
+                    writeLine(outputStream, errorLine(batchFailure(batch, questions.size() - written)));
+                    outputStream.flush();
+                }
+
+                Map<String, Object> end = new LinkedHashMap<>();
+                end.put("type", "end");
+                end.put("total", questions.size());
+                end.put("succeeded", succeeded);
+                end.put("failed", written - succeeded);
+                end.put("dataSourceId", dataSourceId);
+                end.put("executionTime", System.currentTimeMillis() - startTime);
+                writeLine(outputStream, end);
+                outputStream.flush();
+            } catch (IllegalArgumentException e) {
+                writeLine(outputStream, errorLine(e.getMessage()));
+                outputStream.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // 客户端已断开，取消剩余问题
+                logger.warn("NL2SQL batch aborted: {}", e.getMessage());
+            } finally {
+                if (batch != null) {
+                    batch.cancel(true);
+                }
+                DataSourceContextHolder.clear();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * 查询执行期间（结果开始输出之前）由 QueryRegistry 定时调用，写出心跳行检查客户端是否仍然连接
+     * 结果开始输出后由写出行时的异常发现客户端断开，不再写心跳，避免与结果行交错。
+     */
+    private class HeartbeatProbe implements BooleanSupplier {
+        private final OutputStream outputStream;
+        private boolean stopped;
+
+        HeartbeatProbe(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public synchronized boolean getAsBoolean() {
+            if (stopped) {
+                return true;
+            }
+            try {
+                writeLine(outputStream, Map.of("type", "heartbeat"));
+                outputStream.flush();
+                return true;
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        synchronized void stop() {
+            stopped = true;
+        }
+    }
+
+    /**
+     * 批量生成提前结束（回调抛出异常、任务异常结束）时的错误信息
+     *
+     * @param missing 没有返回结果的问题数
+     */
+    private static String batchFailure(CompletableFuture<Void> batch, int missing) {
+        try {
+            batch.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            return "批量生成中断，" + missing + " 个问题没有结果: "
+                + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        }
+        return missing + " 个问题没有结果";
+    }
+
+    /**
+     * NDJSON 错误行（message 可以为 null，Map.of 不接受 null 值）
+     */
+    private static Map<String, Object> errorLine(String message) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "error");
+        line.put("message", message);
+        return line;
+    }
+
+    /**
+     * 写出一行 NDJSON，返回写出的字节数
+     */
+    private long writeLine(OutputStream outputStream, Object value) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(value);
+        outputStream.write(bytes);
+        outputStream.write('\n');
+        return bytes.length + 1L;
+    }
+
     /**
      * 智能查询（自动执行 SQL 并返回结果）
      */
     @PostMapping("/query")
-    public ResponseEntity<?> smartQuery(@RequestBody NL2SQLRequest request) {
-        return naturalLanguageToSQL(request);
+    public ResponseEntity<?> smartQuery(@RequestBody NL2SQLRequest request,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl) {
+        return naturalLanguageToSQL(request, cacheControl);
+    }
+
+    /**
+     * 请求头 Cache-Control: no-cache 表示跳过查询结果缓存
+     */
+    static boolean isNoCache(String cacheControl) {
+        return cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("no-store"));
+    }
+
+    /**
+     * 查询结果缓存状态响应头：X-Cache（HIT/MISS/BYPASS），命中时附带 X-Cache-Age（秒）
+     */
+    static HttpHeaders cacheHeaders(QueryResultCache.Lookup lookup) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Cache", lookup.getStatus().name());
+        if (lookup.getStatus() == QueryResultCache.Status.HIT) {
+            headers.set("X-Cache-Age", String.valueOf(lookup.getAgeMillis() / 1000));
+        }
+        return headers;
     }
     
     /**
      * 解释 SQL
      */
     @PostMapping("/explain")
-    public ResponseEntity<?> explainSQL(@RequestBody Map<String, String> request) {
-        try {
-            String sql = request.get("sql");
-            String provider = request.getOrDefault("provider", "iflow");
-            
-            String prompt = "请用中文解释以下 SQL 语句的作用：\n\n" + sql;
-            String explanation = unifiedAIService.chat(provider, prompt, null);
-            
-            return ResponseEntity.ok(Map.of(
+    public DeferredResult<ResponseEntity<?>> explainSQL(@RequestBody Map<String, String> request) {
+        String sql = request.get("sql");
+        String provider = request.getOrDefault("provider", "iflow");
+        
+        String prompt = explainPrompt(sql);
+        return AsyncResults.of(unifiedAIService.chatAsync(provider, prompt, null),
+            explanation -> ResponseEntity.ok(Map.of(
                 "success", true,
                 "explanation", explanation
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.ok(Map.of(
+            )),
+            e -> ResponseEntity.ok(Map.of(
                 "success", false,
                 "message", "解释失败: " + e.getMessage()
-            ));
-        }
+            )));
     }
     
     /**
      * 优化 SQL
      */
     @PostMapping("/optimize")
-    public ResponseEntity<?> optimizeSQL(@RequestBody Map<String, String> request) {
-        try {
-            String sql = request.get("sql");
-            String provider = request.getOrDefault("provider", "iflow");
-            
-            String prompt = "请优化以下 SQL 语句，提高性能和可读性，并解释优化建议：\n\n" + sql;
-            String optimization = unifiedAIService.chat(provider, prompt, null);
-            
-            return ResponseEntity.ok(Map.of(
+    public DeferredResult<ResponseEntity<?>> optimizeSQL(@RequestBody Map<String, String> request) {
+        String sql = request.get("sql");
+        String provider = request.getOrDefault("provider", "iflow");
+        
+        String prompt = "请优化以下 SQL 语句，提高性能和可读性，并解释优化建议：\n\n" + sql;
+        return AsyncResults.of(unifiedAIService.chatAsync(provider, prompt, null),
+            optimization -> ResponseEntity.ok(Map.of(
                 "success", true,
                 "optimization", optimization
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.ok(Map.of(
+            )),
+            e -> ResponseEntity.ok(Map.of(
                 "success", false,
                 "message", "优化失败: " + e.getMessage()
-            ));
-        }
+            )));
     }
     
     /**
-     * 获取数据库 schema 信息
+     * 构建 NL2SQL 上下文（支持多轮对话）
+     */
+    private Map<String, Object> buildContext(NL2SQLRequest request) {
+        Map<String, Object> context = new HashMap<>();
+        if (request.getHistory() != null && !request.getHistory().isEmpty()) {
+            // 将历史记录列表转换为字符串格式
+            StringBuilder historyBuilder = new StringBuilder();
+            for (Map<String, Object> msg : request.getHistory()) {
+                String role = msg.get("role") != null ? msg.get("role").toString() : "";
+                String content = msg.get("content") != null ? msg.get("content").toString() : "";
+                historyBuilder.append(role).append(": ").append(content).append("\n");
+            }
+            context.put("history", historyBuilder.toString());
+        }
+        addSchemaContext(context, dataQueryService.getCurrentDataSourceId(), request.getNoCache());
+        return context;
+    }
+
+    /**
+     * 上下文中与数据源相关的部分：数据源、schema 版本、是否跳过缓存
      */
-    private String getDatabaseSchema() {
+    private void addSchemaContext(Map<String, Object> context, Long dataSourceId, Boolean noCache) {
+        context.put("dataSourceId", dataSourceId);
+        // schema 版本和数据源一起作为 NL2SQL 缓存键的一部分，表结构变化后旧缓存不再命中
+        if (dataSourceId != null) {
+            try {
+                context.put("schemaVersion", schemaCatalogService.getCatalog(dataSourceId).getVersion());
+            } catch (Exception e) {
+                logger.warn("Failed to get schema version: {}", e.getMessage());
+            }
+        }
+        if (Boolean.TRUE.equals(noCache)) {
+            context.put("noCache", true);
+        }
+    }
+
+    /**
+     * 获取与问题相关的数据库 schema 信息
+     */
+    private String getDatabaseSchema(String question) {
+        return getDatabaseSchema(dataQueryService.getCurrentDataSourceId(), question);
+    }
+
+    /**
+     * 获取指定数据源中与问题相关的 schema（不依赖当前线程的数据源选择，可在 AI 执行线程上调用）
+     */
+    private String getDatabaseSchema(Long dataSourceId, String question) {
         try {
-            List<String> tables = dataQueryService.getAllTableNames();
-            StringBuilder schema = new StringBuilder();
-            
-            for (String table : tables) {
-                schema.append("表名: ").append(table).append("\n");
-                
-                // 获取表字段信息
-                try {
-                    Map<String, Object> tableSchema = dataQueryService.getTableSchema(table);
-                    List<Map<String, Object>> columns = (List<Map<String, Object>>) tableSchema.get("columns");
-                    if (columns != null && !columns.isEmpty()) {
-                        schema.append("  字段:\n");
-                        for (Map<String, Object> col : columns) {
-                            String colName = col.get("COLUMN_NAME") != null ? col.get("COLUMN_NAME").toString() : "unknown";
-                            String dataType = col.get("DATA_TYPE") != null ? col.get("DATA_TYPE").toString() : "unknown";
-                            schema.append("    - ").append(colName).append(" (").append(dataType).append(")\n");
-                        }
-                    }
-                } catch (Exception ex) {
-                    logger.warn("Failed to get schema for table: {}", table, ex);
-                }
-                schema.append("\n");
+            if (dataSourceId == null) {
+                return "";
             }
-            
-            return schema.toString();
+            // 大库只保留与问题相关的表及其连接邻居
+            return schemaRetrievalService.getPromptSchema(dataSourceId, question);
         } catch (Exception e) {
             logger.error("Failed to get schema", e);
             return "";
         }
     }
     
+    /**
+     * 批量 NL2SQL 请求
+     */
+    public static class NL2SQLBatchRequest {
+        private List<String> questions;
+        private String provider;
+        private Long dataSourceId;
+        // 同时生成的问题数，为空时使用 ai.batch.parallelism
+        private Integer parallelism;
+        private Boolean noCache;
+
+        public List<String> getQuestions() {
+            return questions;
+        }
+
+        public void setQuestions(List<String> questions) {
+            this.questions = questions;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        public void setProvider(String provider) {
+            this.provider = provider;
+        }
+
+        public Long getDataSourceId() {
+            return dataSourceId;
+        }
+
+        public void setDataSourceId(Long dataSourceId) {
+            this.dataSourceId = dataSourceId;
+        }
+
+        public Integer getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(Integer parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public Boolean getNoCache() {
+            return noCache;
+        }
+
+        public void setNoCache(Boolean noCache) {
+            this.noCache = noCache;
+        }
+    }
+
     /**
      * NL2SQL 请求
      */
@@ -202,6 +693,9 @@ public class NL2SQLController {
         private String provider;
         private List<Map<String, Object>> history;
         private Long dataSourceId;
+        private Long maxRows;
+        // 为 true 时不使用缓存的 SQL，重新调用模型生成
+        private Boolean noCache;
 
         public String getQuery() {
             return query;
@@ -234,5 +728,21 @@ public class NL2SQLController {
         public void setDataSourceId(Long dataSourceId) {
             this.dataSourceId = dataSourceId;
         }
+
+        public Long getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(Long maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public Boolean getNoCache() {
+            return noCache;
+        }
+
+        public void setNoCache(Boolean noCache) {
+            this.noCache = noCache;
+        }
     }
 }
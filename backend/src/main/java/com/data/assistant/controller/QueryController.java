@@ -1,14 +1,22 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.common.ApiResponse;
 import com.data.assistant.model.QueryRequest;
 import com.data.assistant.model.QueryResponse;
 import com.data.assistant.service.DataQueryService;
+import com.data.assistant.service.QueryRegistry;
+import com.data.assistant.service.QueryResultCache;
 import com.data.assistant.service.NaturalLanguageProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 import java.util.List;
 import java.util.Map;
 
@@ -25,8 +33,13 @@ public class QueryController {
     @Autowired
     private DataQueryService dataQueryService;
     
+    @Autowired
+    private QueryRegistry queryRegistry;
+    
     @PostMapping("/natural")
-    public QueryResponse processNaturalLanguageQuery(@RequestBody QueryRequest request) {
+    public QueryResponse processNaturalLanguageQuery(@RequestBody QueryRequest request,
+            @RequestHeader(value = HttpHeaders.CACHE_CONTROL, required = false) String cacheControl,
+            HttpServletResponse httpResponse) {
         try {
             if (request.getDataSourceId() != null) {
                 dataQueryService.switchDataSource(request.getDataSourceId());
@@ -34,7 +47,10 @@ public class QueryController {
             
             String sqlQuery = naturalLanguageProcessor.parseNaturalLanguageToSQL(request.getNaturalLanguageQuery());
             
-            List<Map<String, Object>> results = dataQueryService.executeQuery(sqlQuery);
+            QueryResultCache.Lookup lookup = dataQueryService.executeQueryCached(
+                dataQueryService.getCurrentDataSourceId(), sqlQuery, !NL2SQLController.isNoCache(cacheControl));
+            NL2SQLController.cacheHeaders(lookup).forEach((name, values) -> httpResponse.setHeader(name, values.get(0)));
+            List<Map<String, Object>> results = lookup.getTable();
             
             QueryResponse response = new QueryResponse(true, "Query processed successfully");
             response.setData(results);
@@ -95,6 +111,30 @@ public class QueryController {
         }
     }
     
+    /**
+     * 执行中的查询（查询、流式查询、报表、数据质量检查）
+     *
+     * @param user 只返回该用户的查询，为空时返回全部
+     */
+    @GetMapping("/running")
+    public ResponseEntity<?> runningQueries(@RequestParam(required = false) String user) {
+        return ResponseEntity.ok(ApiResponse.success(queryRegistry.list(user)));
+    }
+    
+    /**
+     * 取消执行中的查询
+     *
+     * @param id 查询ID，或发起请求时在 X-Query-Id 请求头中指定的ID
+     */
+    @PostMapping("/running/{id}/cancel")
+    public ResponseEntity<?> cancelQuery(@PathVariable String id) {
+        int cancelled = queryRegistry.cancel(id, "用户取消");
+        if (cancelled == 0) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error("查询不存在或已结束: " + id));
+        }
+        return ResponseEntity.ok(ApiResponse.success(Map.of("id", id, "cancelled", cancelled)));
+    }
+    
     @GetMapping("/health")
     public String healthCheck() {
         return "Data Analysis Assistant Backend is running!";
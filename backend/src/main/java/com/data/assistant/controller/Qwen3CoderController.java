@@ -1,8 +1,10 @@
 package com.data.assistant.controller;
 
+import com.data.assistant.common.AsyncResults;
 import com.data.assistant.service.Qwen3CoderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 /**
  * Qwen3-Coder 控制器
@@ -77,39 +79,39 @@ public class Qwen3CoderController {
      * 异步生成代码
      */
     @PostMapping("/generate-async")
-    public String generateCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
-        return qwen3CoderService.generateCodeWithQwen3Async(request.getDescription()).join();
+    public DeferredResult<String> generateCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
+        return AsyncResults.of(qwen3CoderService.generateCodeWithQwen3Async(request.getDescription()));
     }
     
     /**
      * 异步优化代码
      */
     @PostMapping("/optimize-async")
-    public String optimizeCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
-        return qwen3CoderService.optimizeCodeWithQwen3Async(request.getCode(), request.getRequirements()).join();
+    public DeferredResult<String> optimizeCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
+        return AsyncResults.of(qwen3CoderService.optimizeCodeWithQwen3Async(request.getCode(), request.getRequirements()));
     }
     
     /**
      * 异步分析代码
      */
     @PostMapping("/analyze-async")
-    public String analyzeCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
-        return qwen3CoderService.analyzeCodeWithQwen3Async(request.getCode()).join();
+    public DeferredResult<String> analyzeCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
+        return AsyncResults.of(qwen3CoderService.analyzeCodeWithQwen3Async(request.getCode()));
     }
     
     /**
      * 异步修复代码
      */
     @PostMapping("/fix-async")
-    public String fixCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
-        return qwen3CoderService.fixCodeWithQwen3Async(request.getCode(), request.getErrorDescription()).join();
+    public DeferredResult<String> fixCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
+        return AsyncResults.of(qwen3CoderService.fixCodeWithQwen3Async(request.getCode(), request.getErrorDescription()));
     }
     
     /**
      * 异步解释代码
      */
     @PostMapping("/explain-async")
-    public String explainCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
-        return qwen3CoderService.explainCodeWithQwen3Async(request.getCode()).join();
+    public DeferredResult<String> explainCodeAsync(@RequestBody QwenCodeController.CodeRequest request) {
+        return AsyncResults.of(qwen3CoderService.explainCodeWithQwen3Async(request.getCode()));
     }
 }
\ No newline at end of file
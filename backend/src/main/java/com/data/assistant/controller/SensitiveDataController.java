@@ -3,6 +3,8 @@ package com.data.assistant.controller;
 import com.data.assistant.common.ApiResponse;
 import com.data.assistant.model.SensitiveColumn;
 import com.data.assistant.service.SensitiveDataService;
+import com.data.assistant.service.sampling.SampleResult;
+import com.data.assistant.service.sampling.TableSampler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,13 +19,27 @@ public class SensitiveDataController {
     @Autowired
     private SensitiveDataService sensitiveDataService;
 
+    @Autowired
+    private TableSampler tableSampler;
+
     @PostMapping("/scan/{dataSourceId}")
     public ResponseEntity<?> scanTable(
             @PathVariable Long dataSourceId,
             @RequestBody Map<String, String> request) {
         String tableName = request.get("tableName");
-        sensitiveDataService.scanTable(dataSourceId, tableName);
-        return ResponseEntity.ok(ApiResponse.success());
+        // mode: exact / sampled，accuracy: 抽样的目标误差；都不指定时按默认精度抽样
+        String mode = request.get("mode");
+        String accuracy = request.get("accuracy");
+        SampleResult sample;
+        try {
+            sample = mode == null && accuracy == null
+                ? sensitiveDataService.scanTable(dataSourceId, tableName)
+                : sensitiveDataService.scanTable(dataSourceId, tableName,
+                    tableSampler.spec(mode, accuracy != null ? Double.valueOf(accuracy) : null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+        return ResponseEntity.ok(sample != null ? ApiResponse.success(sample.toMap()) : ApiResponse.success());
     }
 
     @GetMapping("/{dataSourceId}")
@@ -3,6 +3,7 @@ package com.data.assistant.controller;
 import com.data.assistant.common.ApiResponse;
 import com.data.assistant.service.SqlOptimizationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,20 +23,51 @@ public class SqlOptimizationController {
         if (sql == null || sql.isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("SQL不能为空"));
         }
-        Map<String, Object> result = sqlOptimizationService.analyzeSql(sql);
+        // 指定数据源时按其表结构检查字段类型，并结合执行计划分析（explain 为 false 时跳过）
+        Long dataSourceId;
+        try {
+            dataSourceId = parseDataSourceId(request.get("dataSourceId"));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("无效的数据源ID: " + request.get("dataSourceId")));
+        }
+        boolean withPlan = !"false".equalsIgnoreCase(request.get("explain"));
+        Map<String, Object> result = sqlOptimizationService.analyzeSql(sql, dataSourceId, withPlan);
         return ResponseEntity.ok(ApiResponse.success(result));
     }
 
+    /**
+     * 执行计划分析和索引建议，未指定数据源时使用当前数据源
+     */
+    @PostMapping("/explain")
+    public ResponseEntity<?> explainSql(@RequestBody Map<String, String> request) {
+        String sql = request.get("sql");
+        if (sql == null || sql.isEmpty()) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("SQL不能为空"));
+        }
+        try {
+            Long dataSourceId = parseDataSourceId(request.get("dataSourceId"));
+            return ResponseEntity.ok(ApiResponse.success(sqlOptimizationService.explainSql(sql, dataSourceId)));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("无效的数据源ID: " + request.get("dataSourceId")));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (DataAccessException e) {
+            return ResponseEntity.internalServerError().body(ApiResponse.error("获取执行计划失败: "
+                + e.getMostSpecificCause().getMessage()));
+        }
+    }
+
     @PostMapping("/optimize")
     public ResponseEntity<?> optimizeSql(@RequestBody Map<String, String> request) {
         String sql = request.get("sql");
         if (sql == null || sql.isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("SQL不能为空"));
         }
-        String optimized = sqlOptimizationService.optimizeSql(sql);
-        Map<String, String> result = new HashMap<>();
-        result.put("original", sql);
-        result.put("optimized", optimized);
+        Map<String, Object> result = sqlOptimizationService.rewriteSql(sql);
         return ResponseEntity.ok(ApiResponse.success(result));
     }
+
+    private static Long parseDataSourceId(String value) {
+        return value == null || value.isEmpty() ? null : Long.parseLong(value);
+    }
 }
@@ -16,12 +16,15 @@ public class DataQualityReport {
     private List<FormatIssueReport> formatIssues;
     private List<ColumnQualityResult> columnQuality;
     private List<RepairSuggestion> repairSuggestions;
+    private Map<String, Object> sampling;
+    private Map<String, Object> profiling;
 
     public static class MissingValueReport {
         private String columnName;
         private Long missingCount;
         private Double missingPercentage;
         private String severity;
+        private double[] missingPercentageInterval;
 
         public MissingValueReport(String columnName, Long missingCount, Double missingPercentage) {
             this.columnName = columnName;
@@ -38,6 +41,8 @@ public class DataQualityReport {
         public Double getMissingPercentage() { return missingPercentage; }
         public void setMissingPercentage(Double missingPercentage) { this.missingPercentage = missingPercentage; }
         public String getSeverity() { return severity; }
+        public double[] getMissingPercentageInterval() { return missingPercentageInterval; }
+        public void setMissingPercentageInterval(double[] missingPercentageInterval) { this.missingPercentageInterval = missingPercentageInterval; }
         public void setSeverity(String severity) { this.severity = severity; }
     }
 
@@ -69,6 +74,7 @@ public class DataQualityReport {
         private List<Object> sampleOutliers;
         private Double minNormal;
         private Double maxNormal;
+        private double[] outlierPercentageInterval;
 
         public OutlierReport(String columnName, Long outlierCount, Double outlierPercentage, String detectionMethod) {
             this.columnName = columnName;
@@ -93,6 +99,8 @@ public class DataQualityReport {
         public void setMinNormal(Double minNormal) { this.minNormal = minNormal; }
         public Double getMaxNormal() { return maxNormal; }
         public void setMaxNormal(Double maxNormal) { this.maxNormal = maxNormal; }
+        public double[] getOutlierPercentageInterval() { return outlierPercentageInterval; }
+        public void setOutlierPercentageInterval(double[] outlierPercentageInterval) { this.outlierPercentageInterval = outlierPercentageInterval; }
     }
 
     public static class FormatIssueReport {
@@ -100,6 +108,7 @@ public class DataQualityReport {
         private String expectedFormat;
         private Long issueCount;
         private List<String> sampleIssues;
+        private long[] issueCountInterval;
 
         public FormatIssueReport(String columnName, String expectedFormat, Long issueCount) {
             this.columnName = columnName;
@@ -117,6 +126,8 @@ public class DataQualityReport {
         public void setIssueCount(Long issueCount) { this.issueCount = issueCount; }
         public List<String> getSampleIssues() { return sampleIssues; }
         public void setSampleIssues(List<String> sampleIssues) { this.sampleIssues = sampleIssues; }
+        public long[] getIssueCountInterval() { return issueCountInterval; }
+        public void setIssueCountInterval(long[] issueCountInterval) { this.issueCountInterval = issueCountInterval; }
     }
 
     public static class ColumnQualityResult {
@@ -126,6 +137,11 @@ public class DataQualityReport {
         private Double uniqueness;
         private Double validity;
         private String grade;
+        private Long nullCount;
+        private Long blankCount;
+        private Long distinctCount;
+        private Object minValue;
+        private Object maxValue;
 
         public ColumnQualityResult(String columnName, String dataType) {
             this.columnName = columnName;
@@ -149,6 +165,16 @@ public class DataQualityReport {
         public void setValidity(Double validity) { this.validity = validity; }
         public String getGrade() { return grade; }
         public void setGrade(String grade) { this.grade = grade; }
+        public Long getNullCount() { return nullCount; }
+        public void setNullCount(Long nullCount) { this.nullCount = nullCount; }
+        public Long getBlankCount() { return blankCount; }
+        public void setBlankCount(Long blankCount) { this.blankCount = blankCount; }
+        public Long getDistinctCount() { return distinctCount; }
+        public void setDistinctCount(Long distinctCount) { this.distinctCount = distinctCount; }
+        public Object getMinValue() { return minValue; }
+        public void setMinValue(Object minValue) { this.minValue = minValue; }
+        public Object getMaxValue() { return maxValue; }
+        public void setMaxValue(Object maxValue) { this.maxValue = maxValue; }
     }
 
     public static class RepairSuggestion {
@@ -210,4 +236,8 @@ public class DataQualityReport {
     public void setColumnQuality(List<ColumnQualityResult> columnQuality) { this.columnQuality = columnQuality; }
     public List<RepairSuggestion> getRepairSuggestions() { return repairSuggestions; }
     public void setRepairSuggestions(List<RepairSuggestion> repairSuggestions) { this.repairSuggestions = repairSuggestions; }
+    public Map<String, Object> getSampling() { return sampling; }
+    public void setSampling(Map<String, Object> sampling) { this.sampling = sampling; }
+    public Map<String, Object> getProfiling() { return profiling; }
+    public void setProfiling(Map<String, Object> profiling) { this.profiling = profiling; }
 }
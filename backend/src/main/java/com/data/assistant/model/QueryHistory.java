@@ -31,6 +31,21 @@ public class QueryHistory {
     @Column(name = "created_at", nullable = false)
     private java.time.LocalDateTime createdAt;
 
+    @Column(name = "data_source_id")
+    private Long dataSourceId;
+
+    /**
+     * NL2SQL 缓存键（提供商 + 数据源 + schema 版本 + 归一化问题的哈希），仅由 NL2SQL 缓存写入
+     */
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    /**
+     * 缓存的 NL2SQL 结果（JSON）
+     */
+    @Column(name = "result_json", columnDefinition = "TEXT")
+    private String resultJson;
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -87,4 +102,28 @@ public class QueryHistory {
     public void setCreatedAt(java.time.LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
-}
\ No newline at end of file
+
+    public Long getDataSourceId() {
+        return dataSourceId;
+    }
+
+    public void setDataSourceId(Long dataSourceId) {
+        this.dataSourceId = dataSourceId;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public String getResultJson() {
+        return resultJson;
+    }
+
+    public void setResultJson(String resultJson) {
+        this.resultJson = resultJson;
+    }
+}
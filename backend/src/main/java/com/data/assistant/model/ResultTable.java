@@ -0,0 +1,728 @@
+package com.data.assistant.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * 列式查询结果
+ * 列名元数据只保存一份，每列使用类型化的向量存储（long[] / double[] / 字典编码字符串），
+ * 空值使用位图标记。同时实现 List&lt;Map&lt;String, Object&gt;&gt; 只读视图，
+ * 兼容原有按行访问的调用方；行视图按列名大小写不敏感查找。
+ * 列名重复（如 SELECT a.id, b.id，按大小写不敏感比较）时与原来的 List&lt;Map&gt; 结果（ColumnMapRowMapper）一致：只保留第一个同名列。
+ */
+@JsonSerialize(using = ResultTable.Serializer.class)
+public class ResultTable extends AbstractList<Map<String, Object>> {
+
+    private static final int INITIAL_CAPACITY = 64;
+    // 字符串列读到这么多行后，不同值占行数的比例超过 DICTIONARY_MAX_RATIO 时放弃字典编码
+    private static final int DICTIONARY_MIN_ROWS = 1024;
+    private static final double DICTIONARY_MAX_RATIO = 0.5;
+
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final Column[] columns;
+    private final int rowCount;
+
+    private ResultTable(Column[] columns, int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        List<String> names = new ArrayList<>(columns.length);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            names.add(columns[i].getName());
+            index.putIfAbsent(columns[i].getName().toLowerCase(Locale.ROOT), i);
+        }
+        this.columnNames = Collections.unmodifiableList(names);
+        this.columnIndex = index;
+    }
+
+    /**
+     * 读取整个 ResultSet 构建结果表
+     */
+    public static ResultTable from(ResultSet rs) throws SQLException {
+        Builder builder = new Builder(rs.getMetaData());
+        while (rs.next()) {
+            builder.addRow(rs);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 供 JdbcTemplate.query 使用的结果提取器
+     */
+    public static ResultSetExtractor<ResultTable> extractor() {
+        return ResultTable::from;
+    }
+
+    /**
+     * 空结果表
+     */
+    public static ResultTable empty() {
+        return new ResultTable(new Column[0], 0);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * 按列名获取列（大小写不敏感），不存在时返回 null
+     */
+    public Column getColumn(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? columns[index] : null;
+    }
+
+    /**
+     * 列名对应的下标（大小写不敏感），不存在时返回 -1
+     */
+    public int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer index = columnIndex.get(name.toLowerCase(Locale.ROOT));
+        return index != null ? index : -1;
+    }
+
+    public Object getValue(int row, int column) {
+        return columns[column].get(row);
+    }
+
+    /**
+     * 将指定列按顺序扫描为 double 数组，空值为 NaN
+     */
+    public double[] toDoubleArray(String columnName) {
+        Column column = getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("列不存在: " + columnName);
+        }
+        double[] result = new double[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            result[i] = column.getDouble(i);
+        }
+        return result;
+    }
+
+    /**
+     * 将指定列转换为字符串列表，空值为 null
+     */
+    public List<String> toStringList(String columnName) {
+        Column column = getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("列不存在: " + columnName);
+        }
+        List<String> result = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            Object value = column.get(i);
+            result.add(value != null ? value.toString() : null);
+        }
+        return result;
+    }
+
+    /**
+     * 取前 n 行组成新的结果表（共享字典，不复制列名元数据之外的字符串）
+     */
+    public ResultTable head(int n) {
+        int count = Math.min(Math.max(n, 0), rowCount);
+        if (count == rowCount) {
+            return this;
+        }
+        Column[] sliced = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            sliced[i] = columns[i].slice(count);
+        }
+        return new ResultTable(sliced, count);
+    }
+
+    /**
+     * 估算结果表占用的堆内存字节数
+     */
+    public long estimateBytes() {
+        long bytes = 64;
+        for (Column column : columns) {
+            bytes += column.estimateBytes(rowCount);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Map<String, Object> get(int row) {
+        Objects.checkIndex(row, rowCount);
+        return new RowView(row);
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * 行视图（只读）
+     */
+    private class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = key instanceof String ? indexOf((String) key) : -1;
+            return index >= 0 ? columns[index].get(row) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return columns.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int column = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < columns.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Column c = columns[column++];
+                            return new SimpleImmutableEntry<>(c.getName(), c.get(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columns.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * 列向量基类
+     */
+    public abstract static class Column {
+        private final String name;
+        private final int sqlType;
+        protected BitSet nulls;
+
+        Column(String name, int sqlType, BitSet nulls) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.nulls = nulls;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * 装箱后的值（兼容行视图），null 表示空值
+         */
+        public abstract Object get(int row);
+
+        /**
+         * 按 double 读取数值，空值或非数值返回 NaN
+         */
+        public double getDouble(int row) {
+            Object value = get(row);
+            return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+
+        abstract void read(ResultSet rs, int columnIndex, int row) throws SQLException;
+
+        abstract void ensureCapacity(int capacity);
+
+        abstract void trim(int rowCount);
+
+        abstract Column slice(int rowCount);
+
+        abstract long estimateBytes(int rowCount);
+    }
+
+    /**
+     * 整数列（long[]）
+     */
+    public static final class LongColumn extends Column {
+        private final boolean intValued;
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        LongColumn(String name, int sqlType, boolean intValued) {
+            super(name, sqlType, new BitSet());
+            this.intValued = intValued;
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            // 条件表达式两侧都是装箱数值时会拆箱提升为 long，必须分开返回
+            if (intValued) {
+                return Integer.valueOf((int) values[row]);
+            }
+            return Long.valueOf(values[row]);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return nulls.get(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            long value = rs.getLong(columnIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            } else {
+                values[row] = value;
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        @Override
+        void trim(int rowCount) {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        Column slice(int rowCount) {
+            LongColumn column = new LongColumn(getName(), getSqlType(), intValued);
+            column.values = Arrays.copyOf(values, rowCount);
+            column.nulls = nulls.get(0, rowCount);
+            return column;
+        }
+
+        @Override
+        long estimateBytes(int rowCount) {
+            return 16L + 8L * values.length + rowCount / 8;
+        }
+    }
+
+    /**
+     * 浮点列（double[]）
+     */
+    public static final class DoubleColumn extends Column {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleColumn(String name, int sqlType) {
+            super(name, sqlType, new BitSet());
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : Double.valueOf(values[row]);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return nulls.get(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            double value = rs.getDouble(columnIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            } else {
+                values[row] = value;
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        @Override
+        void trim(int rowCount) {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        Column slice(int rowCount) {
+            DoubleColumn column = new DoubleColumn(getName(), getSqlType());
+            column.values = Arrays.copyOf(values, rowCount);
+            column.nulls = nulls.get(0, rowCount);
+            return column;
+        }
+
+        @Override
+        long estimateBytes(int rowCount) {
+            return 16L + 8L * values.length + rowCount / 8;
+        }
+    }
+
+    /**
+     * 字典编码的字符串列：每行只保存字典下标，重复值共享同一个 String 实例
+     * 不同值很多（如主键、UUID、自由文本）时字典只会增加下标数组和查找表的开销，
+     * 读到 DICTIONARY_MIN_ROWS 行后不同值比例超过 DICTIONARY_MAX_RATIO 就改为直接保存 String[]。
+     */
+    public static final class StringColumn extends Column {
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> lookup = new HashMap<>();
+        // 放弃字典编码后的逐行值，字典编码时为 null
+        private String[] plain;
+
+        StringColumn(String name, int sqlType) {
+            super(name, sqlType, new BitSet());
+        }
+
+        public String getString(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return plain != null ? plain[row] : dictionary.get(codes[row]);
+        }
+
+        /**
+         * 是否使用字典编码；否时不能调用 getCode / getDictionary
+         */
+        public boolean isDictionaryEncoded() {
+            return plain == null;
+        }
+
+        public int getCode(int row) {
+            checkDictionaryEncoded();
+            return codes[row];
+        }
+
+        public List<String> getDictionary() {
+            checkDictionaryEncoded();
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        private void checkDictionaryEncoded() {
+            if (plain != null) {
+                throw new IllegalStateException("列 " + getName() + " 未使用字典编码");
+            }
+        }
+
+        @Override
+        public Object get(int row) {
+            return getString(row);
+        }
+
+        @Override
+        void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            String value = rs.getString(columnIndex);
+            if (value == null) {
+                nulls.set(row);
+                return;
+            }
+            if (plain != null) {
+                plain[row] = value;
+                return;
+            }
+            Integer code = lookup.get(value);
+            if (code == null) {
+                if (row >= DICTIONARY_MIN_ROWS && dictionary.size() > (row + 1) * DICTIONARY_MAX_RATIO) {
+                    decode(row);
+                    plain[row] = value;
+                    return;
+                }
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        /**
+         * 放弃字典编码：把前 rows 行展开为 String[]，释放下标数组、字典和查找表
+         */
+        private void decode(int rows) {
+            plain = new String[codes.length];
+            for (int i = 0; i < rows; i++) {
+                if (!nulls.get(i)) {
+                    plain[i] = dictionary.get(codes[i]);
+                }
+            }
+            codes = null;
+            dictionary = null;
+            lookup = null;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (plain != null) {
+                if (capacity > plain.length) {
+                    plain = Arrays.copyOf(plain, Math.max(capacity, plain.length * 2));
+                }
+            } else if (capacity > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(capacity, codes.length * 2));
+            }
+        }
+
+        @Override
+        void trim(int rowCount) {
+            if (plain != null) {
+                plain = Arrays.copyOf(plain, rowCount);
+                return;
+            }
+            codes = Arrays.copyOf(codes, rowCount);
+            // 构建完成后不再需要反向查找表
+            lookup = null;
+        }
+
+        @Override
+        Column slice(int rowCount) {
+            StringColumn column = new StringColumn(getName(), getSqlType());
+            if (plain != null) {
+                column.plain = Arrays.copyOf(plain, rowCount);
+                column.codes = null;
+                column.dictionary = null;
+            } else {
+                column.codes = Arrays.copyOf(codes, rowCount);
+                column.dictionary = dictionary;
+            }
+            column.lookup = null;
+            column.nulls = nulls.get(0, rowCount);
+            return column;
+        }
+
+        @Override
+        long estimateBytes(int rowCount) {
+            if (plain != null) {
+                long bytes = 16L + 8L * plain.length + rowCount / 8;
+                for (String value : plain) {
+                    if (value != null) {
+                        bytes += 40L + 2L * value.length();
+                    }
+                }
+                return bytes;
+            }
+            long bytes = 16L + 4L * codes.length + rowCount / 8;
+            for (String value : dictionary) {
+                bytes += 40L + 2L * value.length();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 通用对象列（日期、DECIMAL、布尔等保持 JDBC 原始类型）
+     */
+    public static final class ObjectColumn extends Column {
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        ObjectColumn(String name, int sqlType) {
+            super(name, sqlType, new BitSet());
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int columnIndex, int row) throws SQLException {
+            Object value = rs.getObject(columnIndex);
+            if (value == null) {
+                nulls.set(row);
+            }
+            values[row] = value;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        @Override
+        void trim(int rowCount) {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        Column slice(int rowCount) {
+            ObjectColumn column = new ObjectColumn(getName(), getSqlType());
+            column.values = Arrays.copyOf(values, rowCount);
+            column.nulls = nulls.get(0, rowCount);
+            return column;
+        }
+
+        @Override
+        long estimateBytes(int rowCount) {
+            // 引用 + 典型装箱对象/日期对象大小
+            return 16L + 40L * values.length + rowCount / 8;
+        }
+    }
+
+    /**
+     * 逐行构建结果表
+     */
+    public static class Builder {
+        private final Column[] columns;
+        // 每列读取的 ResultSet 列下标（从 1 开始），重复列名只读取第一个
+        private final int[] sourceIndexes;
+        private int rowCount = 0;
+
+        public Builder(ResultSetMetaData metaData) throws SQLException {
+            int columnCount = metaData.getColumnCount();
+            Set<String> labels = new HashSet<>();
+            List<Integer> sources = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                if (labels.add(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT))) {
+                    sources.add(i);
+                }
+            }
+            columns = new Column[sources.size()];
+            sourceIndexes = new int[sources.size()];
+            for (int i = 0; i < columns.length; i++) {
+                sourceIndexes[i] = sources.get(i);
+                columns[i] = createColumn(metaData, sourceIndexes[i]);
+            }
+        }
+
+        /**
+         * 读取 ResultSet 当前行
+         */
+        public void addRow(ResultSet rs) throws SQLException {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].ensureCapacity(rowCount + 1);
+                columns[i].read(rs, sourceIndexes[i], rowCount);
+            }
+            rowCount++;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public ResultTable build() {
+            for (Column column : columns) {
+                column.trim(rowCount);
+            }
+            return new ResultTable(columns, rowCount);
+        }
+
+        private static Column createColumn(ResultSetMetaData metaData, int index) throws SQLException {
+            String name = metaData.getColumnLabel(index);
+            int type = metaData.getColumnType(index);
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                    return new LongColumn(name, type, true);
+                case Types.INTEGER:
+                    // 无符号 INT 在 MySQL 中以 Long 返回
+                    return new LongColumn(name, type, metaData.isSigned(index));
+                case Types.BIGINT:
+                    // 无符号 BIGINT 可能超出 long 范围，保留原始对象
+                    return metaData.isSigned(index)
+                            ? new LongColumn(name, type, false)
+                            : new ObjectColumn(name, type);
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return new DoubleColumn(name, type);
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return new StringColumn(name, type);
+                default:
+                    return new ObjectColumn(name, type);
+            }
+        }
+    }
+
+    /**
+     * Jackson 序列化器：直接按列向量输出行对象数组，输出格式与 List&lt;Map&gt; 一致，
+     * 但不为每行创建 Map，数值列不装箱。
+     */
+    public static class Serializer extends StdSerializer<ResultTable> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(ResultTable.class);
+        }
+
+        @Override
+        public void serialize(ResultTable table, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(table, table.rowCount);
+            for (int row = 0; row < table.rowCount; row++) {
+                gen.writeStartObject();
+                for (Column column : table.columns) {
+                    gen.writeFieldName(column.getName());
+                    if (column.isNull(row)) {
+                        gen.writeNull();
+                    } else if (column instanceof LongColumn) {
+                        gen.writeNumber(((LongColumn) column).getLong(row));
+                    } else if (column instanceof DoubleColumn) {
+                        gen.writeNumber(column.getDouble(row));
+                    } else if (column instanceof StringColumn) {
+                        gen.writeString(((StringColumn) column).getString(row));
+                    } else {
+                        provider.defaultSerializeValue(column.get(row), gen);
+                    }
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.data.assistant.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * 数据源的表结构目录（schema 元数据快照）
+ * 加载时一次性生成提示词使用的紧凑 schema 文本和版本号（内容哈希），之后只读。
+ */
+public class SchemaCatalog {
+
+    private final Long dataSourceId;
+    private final List<TableInfo> tables;
+    private final String promptSchema;
+    private final String version;
+    private final long loadedAt;
+
+    public SchemaCatalog(Long dataSourceId, List<TableInfo> tables) {
+        this.dataSourceId = dataSourceId;
+        this.tables = Collections.unmodifiableList(new ArrayList<>(tables));
+        this.promptSchema = toPromptSchema(this.tables);
+        this.version = hash(promptSchema);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 生成提示词格式的 schema 文本（每张表两行：表名及注释、字段列表）
+     */
+    public static String toPromptSchema(List<TableInfo> tables) {
+        StringBuilder schema = new StringBuilder();
+        for (TableInfo table : tables) {
+            schema.append("表名: ").append(table.getName());
+            if (table.getComment() != null) {
+                schema.append("（").append(table.getComment()).append("）");
+            }
+            schema.append("\n  字段: ");
+            schema.append(table.getColumns().stream().map(ColumnInfo::toPromptString)
+                .collect(Collectors.joining(", ")));
+            schema.append("\n");
+        }
+        return schema.toString();
+    }
+
+    public Long getDataSourceId() {
+        return dataSourceId;
+    }
+
+    public List<TableInfo> getTables() {
+        return tables;
+    }
+
+    public List<String> getTableNames() {
+        return tables.stream().map(TableInfo::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * 按名称查找表（忽略大小写）
+     */
+    public TableInfo getTable(String name) {
+        for (TableInfo table : tables) {
+            if (table.getName().equalsIgnoreCase(name)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    public String getPromptSchema() {
+        return promptSchema;
+    }
+
+    /**
+     * schema 版本号（提示词文本的哈希），表结构变化时改变
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+
+    /**
+     * 表信息
+     */
+    public static class TableInfo {
+        private final String name;
+        private final String comment;
+        private final List<ColumnInfo> columns;
+
+        public TableInfo(String name, String comment, List<ColumnInfo> columns) {
+            this.name = name;
+            this.comment = comment != null && !comment.trim().isEmpty() ? comment.trim() : null;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getComment() {
+            return comment;
+        }
+
+        public List<ColumnInfo> getColumns() {
+            return columns;
+        }
+    }
+
+    /**
+     * 字段信息
+     */
+    public static class ColumnInfo {
+        private final String name;
+        private final String type;
+        private final boolean nullable;
+        private final boolean primaryKey;
+        private final String comment;
+
+        public ColumnInfo(String name, String type, boolean nullable, boolean primaryKey, String comment) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.primaryKey = primaryKey;
+            this.comment = comment != null && !comment.trim().isEmpty() ? comment.trim() : null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        public boolean isPrimaryKey() {
+            return primaryKey;
+        }
+
+        public String getComment() {
+            return comment;
+        }
+
+        String toPromptString() {
+            StringBuilder text = new StringBuilder(name).append(" (")
+                .append(type != null ? type.toLowerCase(Locale.ROOT) : "unknown");
+            if (primaryKey) {
+                text.append(", PK");
+            }
+            if (comment != null) {
+                text.append(", ").append(comment);
+            }
+            return text.append(")").toString();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.data.assistant.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 数据质量检查保存的列画像草图
+ *
+ * 每张表每列一条，column_name 为 "*" 的一条是整行哈希的草图（用于重复行估计）。
+ * 草图为序列化的 HyperLogLog，同精度的草图可以合并，跨分区表或多次检查之间不需要重新扫描。
+ * 每列另外保存最小 / 最大值、格式问题计数、分位数和高频值草图以及异常值统计，整行一条保存水位线，
+ * 用于增量画像（只扫描水位线之后的新行再合并）和不扫描数据生成数据故事。
+ */
+@Entity
+@Table(name = "table_profile_sketches",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"data_source_id", "table_name", "column_name"}))
+public class TableProfileSketch {
+
+    /**
+     * 整行草图使用的列名
+     */
+    public static final String ROW_COLUMN = "*";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "data_source_id", nullable = false)
+    private Long dataSourceId;
+
+    @Column(name = "table_name", nullable = false)
+    private String tableName;
+
+    @Column(name = "column_name", nullable = false)
+    private String columnName;
+
+    @Column(name = "column_position")
+    private Integer columnPosition;
+
+    @Column(name = "data_type")
+    private String dataType;
+
+    @Column(name = "row_count")
+    private Long rowCount;
+
+    @Column(name = "null_count")
+    private Long nullCount;
+
+    @Column(name = "blank_count")
+    private Long blankCount;
+
+    @Column(name = "distinct_count")
+    private Long distinctCount;
+
+    @Lob
+    @Column(name = "hll_sketch")
+    private byte[] hllSketch;
+
+    @Column(name = "min_value", columnDefinition = "TEXT")
+    private String minValue;
+
+    @Column(name = "max_value", columnDefinition = "TEXT")
+    private String maxValue;
+
+    @Column(name = "value_sum")
+    private Double valueSum;
+
+    @Column(name = "phone_violations")
+    private Long phoneViolations;
+
+    @Column(name = "email_violations")
+    private Long emailViolations;
+
+    @Column(name = "date_violations")
+    private Long dateViolations;
+
+    @Lob
+    @Column(name = "kll_sketch")
+    private byte[] kllSketch;
+
+    @Lob
+    @Column(name = "top_values")
+    private byte[] topValues;
+
+    @Column(name = "outlier_q1")
+    private Double outlierQ1;
+
+    @Column(name = "outlier_q3")
+    private Double outlierQ3;
+
+    @Column(name = "outlier_count")
+    private Long outlierCount;
+
+    @Column(name = "outlier_samples", length = 1000)
+    private String outlierSamples;
+
+    @Column(name = "watermark_column")
+    private String watermarkColumn;
+
+    @Column(name = "watermark_value", columnDefinition = "TEXT")
+    private String watermarkValue;
+
+    @Column(name = "full_refreshed_at")
+    private LocalDateTime fullRefreshedAt;
+
+    @Column(name = "profiled_at")
+    private LocalDateTime profiledAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        profiledAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getDataSourceId() { return dataSourceId; }
+    public void setDataSourceId(Long dataSourceId) { this.dataSourceId = dataSourceId; }
+
+    public String getTableName() { return tableName; }
+    public void setTableName(String tableName) { this.tableName = tableName; }
+
+    public String getColumnName() { return columnName; }
+    public void setColumnName(String columnName) { this.columnName = columnName; }
+
+    public Integer getColumnPosition() { return columnPosition; }
+    public void setColumnPosition(Integer columnPosition) { this.columnPosition = columnPosition; }
+
+    public String getDataType() { return dataType; }
+    public void setDataType(String dataType) { this.dataType = dataType; }
+
+    public Long getRowCount() { return rowCount; }
+    public void setRowCount(Long rowCount) { this.rowCount = rowCount; }
+
+    public Long getNullCount() { return nullCount; }
+    public void setNullCount(Long nullCount) { this.nullCount = nullCount; }
+
+    public Long getBlankCount() { return blankCount; }
+    public void setBlankCount(Long blankCount) { this.blankCount = blankCount; }
+
+    public Long getDistinctCount() { return distinctCount; }
+    public void setDistinctCount(Long distinctCount) { this.distinctCount = distinctCount; }
+
+    public byte[] getHllSketch() { return hllSketch; }
+    public void setHllSketch(byte[] hllSketch) { this.hllSketch = hllSketch; }
+
+    public String getMinValue() { return minValue; }
+    public void setMinValue(String minValue) { this.minValue = minValue; }
+
+    public String getMaxValue() { return maxValue; }
+    public void setMaxValue(String maxValue) { this.maxValue = maxValue; }
+
+    public Double getValueSum() { return valueSum; }
+    public void setValueSum(Double valueSum) { this.valueSum = valueSum; }
+
+    public Long getPhoneViolations() { return phoneViolations; }
+    public void setPhoneViolations(Long phoneViolations) { this.phoneViolations = phoneViolations; }
+
+    public Long getEmailViolations() { return emailViolations; }
+    public void setEmailViolations(Long emailViolations) { this.emailViolations = emailViolations; }
+
+    public Long getDateViolations() { return dateViolations; }
+    public void setDateViolations(Long dateViolations) { this.dateViolations = dateViolations; }
+
+    public byte[] getKllSketch() { return kllSketch; }
+    public void setKllSketch(byte[] kllSketch) { this.kllSketch = kllSketch; }
+
+    public byte[] getTopValues() { return topValues; }
+    public void setTopValues(byte[] topValues) { this.topValues = topValues; }
+
+    public Double getOutlierQ1() { return outlierQ1; }
+    public void setOutlierQ1(Double outlierQ1) { this.outlierQ1 = outlierQ1; }
+
+    public Double getOutlierQ3() { return outlierQ3; }
+    public void setOutlierQ3(Double outlierQ3) { this.outlierQ3 = outlierQ3; }
+
+    public Long getOutlierCount() { return outlierCount; }
+    public void setOutlierCount(Long outlierCount) { this.outlierCount = outlierCount; }
+
+    public String getOutlierSamples() { return outlierSamples; }
+    public void setOutlierSamples(String outlierSamples) { this.outlierSamples = outlierSamples; }
+
+    public String getWatermarkColumn() { return watermarkColumn; }
+    public void setWatermarkColumn(String watermarkColumn) { this.watermarkColumn = watermarkColumn; }
+
+    public String getWatermarkValue() { return watermarkValue; }
+    public void setWatermarkValue(String watermarkValue) { this.watermarkValue = watermarkValue; }
+
+    public LocalDateTime getFullRefreshedAt() { return fullRefreshedAt; }
+    public void setFullRefreshedAt(LocalDateTime fullRefreshedAt) { this.fullRefreshedAt = fullRefreshedAt; }
+
+    public LocalDateTime getProfiledAt() { return profiledAt; }
+    public void setProfiledAt(LocalDateTime profiledAt) { this.profiledAt = profiledAt; }
+}
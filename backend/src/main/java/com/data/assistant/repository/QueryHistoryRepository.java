@@ -4,7 +4,9 @@ import com.data.assistant.model.QueryHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * 查询历史仓库
@@ -31,4 +33,9 @@ public interface QueryHistoryRepository extends JpaRepository<QueryHistory, Long
      * 根据标签查找查询
      */
     List<QueryHistory> findByTagsContainingOrderByCreatedAtDesc(String tag);
+
+    /**
+     * 根据 NL2SQL 缓存键查找指定时间之后的最新记录
+     */
+    Optional<QueryHistory> findFirstByCacheKeyAndCreatedAtAfterOrderByCreatedAtDesc(String cacheKey, LocalDateTime after);
 }
\ No newline at end of file
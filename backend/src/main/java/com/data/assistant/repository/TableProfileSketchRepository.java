@@ -0,0 +1,16 @@
+package com.data.assistant.repository;
+
+import com.data.assistant.model.TableProfileSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TableProfileSketchRepository extends JpaRepository<TableProfileSketch, Long> {
+
+    List<TableProfileSketch> findByDataSourceIdAndTableName(Long dataSourceId, String tableName);
+
+    List<TableProfileSketch> findByDataSourceIdAndTableNameIn(Long dataSourceId, Collection<String> tableNames);
+}
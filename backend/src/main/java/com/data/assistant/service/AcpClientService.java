@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * ACP Client SDK 服务集成
@@ -32,10 +33,19 @@ public class AcpClientService {
      * 发送提示词并获取回复
      */
     public String sendPrompt(String prompt) {
+        return sendPrompt(prompt, chunk -> { });
+    }
+
+    /**
+     * 发送提示词，消息块到达时立即交给 onChunk，返回完整回复
+     */
+    public String sendPrompt(String prompt, Consumer<String> onChunk) {
         // Check if ACP client is enabled and qwen command is available
         if (!acpClientEnabled || !isQwenCommandAvailable()) {
             logger.warn("ACP client is disabled or qwen command is not available. Returning mock response.");
-            return handleFallbackResponse(prompt);
+            String fallback = handleFallbackResponse(prompt);
+            onChunk.accept(fallback);
+            return fallback;
         }
 
         StringBuilder responseBuilder = new StringBuilder();
@@ -60,6 +70,7 @@ public class AcpClientService {
                                 // 如果是JSON格式的消息块，可能需要进一步解析
                                 logger.debug("Received message chunk: {}", content);
                                 responseBuilder.append(content);
+                                onChunk.accept(content);
                             }
                         }
 
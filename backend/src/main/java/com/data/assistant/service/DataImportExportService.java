@@ -1,5 +1,6 @@
 package com.data.assistant.service;
 
+import com.data.assistant.model.ResultTable;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import org.apache.poi.ss.usermodel.*;
@@ -24,10 +25,17 @@ public class DataImportExportService {
     private static final Logger logger = LoggerFactory.getLogger(DataImportExportService.class);
 
     private final JdbcTemplate jdbcTemplate;
+    private final SchemaCatalogService schemaCatalogService;
+    private final QueryResultCache queryResultCache;
+    private final QueryPlanService queryPlanService;
 
     @Autowired
-    public DataImportExportService(JdbcTemplate jdbcTemplate) {
+    public DataImportExportService(JdbcTemplate jdbcTemplate, SchemaCatalogService schemaCatalogService,
+                                   QueryResultCache queryResultCache, QueryPlanService queryPlanService) {
         this.jdbcTemplate = jdbcTemplate;
+        this.schemaCatalogService = schemaCatalogService;
+        this.queryResultCache = queryResultCache;
+        this.queryPlanService = queryPlanService;
     }
 
     /**
@@ -113,7 +121,7 @@ public class DataImportExportService {
     public ByteArrayOutputStream exportToExcel(String sql, String fileName) throws Exception {
         logger.info("Exporting query results to Excel: {}", fileName);
 
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+        ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
         Workbook workbook = new XSSFWorkbook();
         Sheet sheet = workbook.createSheet("Data");
@@ -134,30 +142,28 @@ public class DataImportExportService {
         dataStyle.setBorderRight(BorderStyle.THIN);
 
         // 写入表头
+        int columnCount = results.getColumnCount();
         if (!results.isEmpty()) {
             Row headerRow = sheet.createRow(0);
-            int colIndex = 0;
-            for (String key : results.get(0).keySet()) {
-                Cell cell = headerRow.createCell(colIndex++);
-                cell.setCellValue(key);
+            for (int col = 0; col < columnCount; col++) {
+                Cell cell = headerRow.createCell(col);
+                cell.setCellValue(results.getColumnNames().get(col));
                 cell.setCellStyle(headerStyle);
             }
         }
 
-        // 写入数据
-        int rowIndex = 1;
-        for (Map<String, Object> row : results) {
-            Row dataRow = sheet.createRow(rowIndex++);
-            int colIndex = 0;
-            for (Object value : row.values()) {
-                Cell cell = dataRow.createCell(colIndex++);
-                setCellValue(cell, value);
+        // 写入数据（按列类型直接读取列向量，数值不装箱）
+        for (int row = 0; row < results.getRowCount(); row++) {
+            Row dataRow = sheet.createRow(row + 1);
+            for (int col = 0; col < columnCount; col++) {
+                Cell cell = dataRow.createCell(col);
+                setCellValue(cell, results.getColumn(col), row);
                 cell.setCellStyle(dataStyle);
             }
         }
 
         // 自动调整列宽
-        for (int i = 0; i < results.get(0).size(); i++) {
+        for (int i = 0; i < columnCount; i++) {
             sheet.autoSizeColumn(i);
         }
 
@@ -174,20 +180,23 @@ public class DataImportExportService {
     public ByteArrayOutputStream exportToCSV(String sql) throws Exception {
         logger.info("Exporting query results to CSV");
 
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+        ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         CSVWriter writer = new CSVWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
 
         if (!results.isEmpty()) {
             // 写入表头
-            writer.writeNext(results.get(0).keySet().toArray(new String[0]));
-
-            // 写入数据
-            for (Map<String, Object> row : results) {
-                String[] data = row.values().stream()
-                        .map(v -> v != null ? v.toString() : "")
-                        .toArray(String[]::new);
+            writer.writeNext(results.getColumnNames().toArray(new String[0]));
+
+            // 写入数据（复用同一个行缓冲数组）
+            int columnCount = results.getColumnCount();
+            String[] data = new String[columnCount];
+            for (int row = 0; row < results.getRowCount(); row++) {
+                for (int col = 0; col < columnCount; col++) {
+                    Object value = results.getValue(row, col);
+                    data[col] = value != null ? value.toString() : "";
+                }
                 writer.writeNext(data);
             }
         }
@@ -213,6 +222,9 @@ public class DataImportExportService {
         createSql.append(")");
         jdbcTemplate.execute(createSql.toString());
 
+        // 表结构已变化；导入使用主数据源，无法对应到具体的动态数据源，全部失效
+        schemaCatalogService.invalidateAll();
+
         // 插入数据
         if (!data.isEmpty()) {
             String insertSql = String.format("INSERT INTO %s (%s) VALUES (%s)",
@@ -227,6 +239,11 @@ public class DataImportExportService {
 
             jdbcTemplate.batchUpdate(insertSql, batchArgs);
         }
+
+        // 表数据已被覆盖，删除引用该表的查询缓存（导入期间缓存的中间结果也一并删除）
+        queryResultCache.invalidateTable(null, tableName);
+        // 数据量变化后执行计划可能不同
+        queryPlanService.invalidate(null);
     }
 
     /**
@@ -253,6 +270,21 @@ public class DataImportExportService {
         return value != null ? value.toString() : "";
     }
 
+    /**
+     * 按列向量类型设置单元格值
+     */
+    private void setCellValue(Cell cell, ResultTable.Column column, int row) {
+        if (column.isNull(row)) {
+            cell.setCellValue("");
+        } else if (column instanceof ResultTable.LongColumn) {
+            cell.setCellValue(((ResultTable.LongColumn) column).getLong(row));
+        } else if (column instanceof ResultTable.DoubleColumn) {
+            cell.setCellValue(column.getDouble(row));
+        } else {
+            setCellValue(cell, column.get(row));
+        }
+    }
+
     /**
      * 设置单元格值
      */
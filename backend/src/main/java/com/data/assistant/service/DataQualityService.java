@@ -1,69 +1,168 @@
 package com.data.assistant.service;
 
 import com.data.assistant.model.DataQualityReport;
+import com.data.assistant.model.TableProfileSketch;
 import com.data.assistant.repository.DataSourceRepository;
+import com.data.assistant.repository.TableProfileSketchRepository;
+import com.data.assistant.service.federation.FederationValues;
+import com.data.assistant.service.profile.ColumnProfile;
+import com.data.assistant.service.profile.HyperLogLog;
+import com.data.assistant.service.profile.KllSketch;
+import com.data.assistant.service.profile.RowSketch;
+import com.data.assistant.service.profile.TableProfile;
+import com.data.assistant.service.profile.TableProfileStore;
+import com.data.assistant.service.sampling.SampleResult;
+import com.data.assistant.service.sampling.SampleSpec;
+import com.data.assistant.service.sampling.TableSampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
 
 @Service
 public class DataQualityService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DataQualityService.class);
+
     @Autowired
     private DataSourceRepository dataSourceRepository;
 
+    @Autowired
+    private TableProfileSketchRepository sketchRepository;
+
     @Autowired
     private DataSource jdbcDataSource;
 
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Autowired
+    private TableSampler tableSampler;
+
+    @Autowired
+    private TableProfileStore profileStore;
+
+    @Value("${quality.profile.hll-precision:14}")
+    private int hllPrecision;
+
+    @Value("${quality.profile.exact-row-limit:1000000}")
+    private int exactRowLimit;
+
+    @Value("${quality.uniqueness.candidate-key-columns:id,uuid,guid,*_uuid,*_no,email,username}")
+    private String candidateKeyColumns;
+
+    @Value("${quality.outlier.rank-error:0.01}")
+    private double outlierRankError;
+
+    @Value("${quality.outlier.percentile-pushdown:false}")
+    private boolean percentilePushdown;
+
+    @Value("${quality.profile.top-values:64}")
+    private int topValueCounters;
+
+    @Value("${quality.incremental.watermark-columns:created_at,create_time,gmt_create,insert_time}")
+    private String watermarkCandidates;
+
+    @Value("${quality.incremental.update-time-columns:updated_at,update_time,modified_at,gmt_modified}")
+    private String updateTimeColumns;
+
+    @Value("${quality.incremental.full-refresh-days:7}")
+    private int fullRefreshDays;
+
     public DataQualityReport checkTableQuality(Long dataSourceId, String tableName) {
+        return checkTableQuality(dataSourceId, tableName, SampleSpec.exact());
+    }
+
+    /**
+     * @param spec 抽样模式只扫描样本：行数、问题个数为按样本换算的估计值，并附带 95% 置信区间；
+     *             重复数据和唯一性无法从样本可靠估计，只在精确模式下检查，抽样结果也不保存画像
+     */
+    public DataQualityReport checkTableQuality(Long dataSourceId, String tableName, SampleSpec spec) {
+        return checkTableQuality(dataSourceId, tableName, spec, null, false);
+    }
+
+    /**
+     * 精确模式下，有保存的画像且有水位线列时增量检查：只扫描水位线之后的新行，合并到保存的画像中；
+     * 否则扫描全表。检查结束后保存新的画像。
+     *
+     * @param watermarkColumn 水位线列，必须只增不改（自增主键、创建时间），为 null 时沿用上次的水位线列，
+     *                        或自动识别（自增主键、创建时间列）
+     * @param fullRefresh     为 true 时忽略保存的画像，重新扫描全表
+     */
+    public DataQualityReport checkTableQuality(Long dataSourceId, String tableName, SampleSpec spec,
+                                               String watermarkColumn, boolean fullRefresh) {
         com.data.assistant.model.DataSource dataSource = dataSourceRepository.findById(dataSourceId)
                 .orElseThrow(() -> new RuntimeException("DataSource not found"));
 
         DataQualityReport report = new DataQualityReport();
         report.setTableName(tableName);
 
-        try (Connection connection = jdbcDataSource.getConnection()) {
-            // 获取表基本信息
-            getTableBasicInfo(connection, tableName, report);
+        // 检查期间登记在 QueryRegistry 中，取消时中断正在执行的语句并跳过剩余的检查
+        try (QueryRegistry.RunningQuery query = queryRegistry.start("data-quality", dataSourceId, jdbcDataSource,
+                "数据质量检查: " + tableName)) {
+            try (Connection connection = jdbcDataSource.getConnection()) {
+                // 获取表的列信息
+                getTableColumns(connection, tableName, report);
 
-            // 检查缺失值
-            checkMissingValues(connection, tableName, report);
+                // 一次扫描（抽样、或只扫描新行）得到总行数、缺失值、格式问题、各列统计和数值列的分位数草图
+                ProfileScan scan = spec.isSampled()
+                    ? sampleTable(connection, query, tableName, spec, report)
+                    : profileTable(connection, query, dataSourceId, tableName, watermarkColumn, fullRefresh, report);
+                summarizeProfile(scan, keyColumns(connection, tableName), report);
 
-            // 检查重复数据
-            checkDuplicates(connection, tableName, report);
+                if (scan.sample.isExact()) {
+                    // 检查重复数据
+                    checkDuplicates(scan.profile, report);
+                }
 
-            // 检查异常值
-            checkOutliers(connection, tableName, report);
+                // 检查异常值
+                checkOutliers(connection, query, tableName, scan, report);
 
-            // 检查格式问题
-            checkFormatIssues(connection, tableName, report);
+                if (scan.sample.isExact()) {
+                    // 保存画像（含异常值统计），供下次增量检查和数据故事使用
+                    profileStore.save(dataSourceId, scan.profile);
+                }
 
-            // 计算综合评分
-            calculateOverallScore(report);
+                // 计算综合评分
+                calculateOverallScore(report);
 
-            // 生成修复建议
-            generateRepairSuggestions(report);
+                // 生成修复建议
+                generateRepairSuggestions(report);
 
-        } catch (SQLException e) {
-            throw new RuntimeException("Failed to check data quality", e);
+            } catch (SQLException e) {
+                query.checkCancelled();
+                throw new RuntimeException("Failed to check data quality", e);
+            }
         }
 
         return report;
     }
 
-    private void getTableBasicInfo(Connection connection, String tableName, DataQualityReport report) throws SQLException {
-        String countSql = String.format("SELECT COUNT(*) FROM %s", tableName);
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(countSql)) {
-            if (rs.next()) {
-                report.setTotalRows(rs.getLong(1));
-            }
-        }
+    /**
+     * 创建语句并登记到查询中，查询已被取消时抛出 CancellationException
+     */
+    private Statement createStatement(Connection connection, QueryRegistry.RunningQuery query) throws SQLException {
+        Statement stmt = connection.createStatement();
+        query.attach(connection, stmt);
+        return stmt;
+    }
 
+    private PreparedStatement prepareStatement(Connection connection, QueryRegistry.RunningQuery query, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql);
+        query.attach(connection, stmt);
+        return stmt;
+    }
+
+    private void getTableColumns(Connection connection, String tableName, DataQualityReport report) throws SQLException {
         DatabaseMetaData metaData = connection.getMetaData();
         try (ResultSet rs = metaData.getColumns(null, null, tableName, "%")) {
             long columnCount = 0;
@@ -77,209 +176,772 @@ public class DataQualityService {
         }
     }
 
-    private void checkMissingValues(Connection connection, String tableName, DataQualityReport report) throws SQLException {
-        long totalRows = report.getTotalRows();
+    /**
+     * 一次画像扫描的结果；抽样模式下保留样本行中数值列的值，用于统计样本中的异常值
+     */
+    private static class ProfileScan {
+        final TableProfile profile;
+        final SampleResult sample;
+        /** 数值列（numericColumns 的顺序）的值，NULL 和非数值为 NaN；最多 sampling.max-rows 行 */
+        final List<double[]> sampleRows;
+        final List<ColumnProfile> numericColumns;
+        /** 与 sampleRows 对应的抽样信息：样本行数超过上限、只保留了一部分时为其中的子样本 */
+        final SampleResult rowsSample;
+        final boolean incremental;
+
+        ProfileScan(TableProfile profile, SampleResult sample, boolean incremental) {
+            this(profile, sample, null, null, null, incremental);
+        }
 
+        ProfileScan(TableProfile profile, SampleResult sample, List<double[]> sampleRows,
+                    List<ColumnProfile> numericColumns, SampleResult rowsSample, boolean incremental) {
+            this.profile = profile;
+            this.sample = sample;
+            this.sampleRows = sampleRows;
+            this.numericColumns = numericColumns;
+            this.rowsSample = rowsSample;
+            this.incremental = incremental;
+        }
+    }
+
+    /**
+     * 按报告中的列创建画像：数值列维护分位数草图；精确模式另外维护高频值草图和整行去重计数
+     *
+     * @param rowExactLimit 整行精确去重的行数上限
+     */
+    private TableProfile newProfile(String tableName, DataQualityReport report, boolean exact, int rowExactLimit) {
+        List<ColumnProfile> profiles = new ArrayList<>();
         for (DataQualityReport.ColumnQualityResult column : report.getColumnQuality()) {
-            String columnName = column.getColumnName();
-            String sql = String.format(
-                "SELECT COUNT(*) FROM %s WHERE %s IS NULL OR %s = ''",
-                tableName, columnName, columnName
-            );
+            ColumnProfile columnProfile = new ColumnProfile(column.getColumnName(), column.getDataType(), hllPrecision);
+            if (isNumericType(column.getDataType().toUpperCase())) {
+                columnProfile.trackQuantiles(outlierRankError);
+            }
+            if (exact) {
+                columnProfile.trackTopValues(topValueCounters);
+            }
+            profiles.add(columnProfile);
+        }
+        return new TableProfile(tableName, profiles, exact ? new RowSketch(hllPrecision, rowExactLimit) : null);
+    }
 
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                if (rs.next()) {
-                    long missingCount = rs.getLong(1);
-                    double missingPercentage = totalRows > 0 ? (missingCount * 100.0 / totalRows) : 0;
+    /**
+     * 抽样扫描，样本行中数值列的值同时保留下来用于统计异常值。统计信息过期时样本（甚至全表扫描）可能远多于
+     * 预期的行数，保留的行数不超过 sampling.max-rows，超过后按蓄水池抽样等概率保留
+     */
+    private ProfileScan sampleTable(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                                    SampleSpec spec, DataQualityReport report) throws SQLException {
+        TableProfile profile = newProfile(tableName, report, false, 0);
+        List<ColumnProfile> numericColumns = new ArrayList<>();
+        List<Integer> numericIndexes = new ArrayList<>();
+        for (int i = 0; i < profile.getColumns().size(); i++) {
+            ColumnProfile column = profile.getColumns().get(i);
+            if (isNumericType(column.getDataType().toUpperCase())) {
+                numericColumns.add(column);
+                numericIndexes.add(i);
+            }
+        }
+        int capacity = tableSampler.getMaxSampleRows();
+        List<double[]> sampleRows = new ArrayList<>();
+        long[] seen = new long[1];
+        SampleResult sample;
+        if (profile.getColumns().isEmpty()) {
+            profile.setRowCount(countRows(connection, query, tableName));
+            sample = exactResult(profile);
+        } else {
+            sample = tableSampler.scan(connection, query, tableName, profile.getColumnNames(), spec, row -> {
+                profile.add(row);
+                if (numericIndexes.isEmpty()) return;
+                long index = seen[0]++;
+                long slot = index < capacity ? index : ThreadLocalRandom.current().nextLong(index + 1);
+                if (slot >= capacity) return;
+                double[] values = new double[numericIndexes.size()];
+                for (int i = 0; i < values.length; i++) {
+                    Object value = row[numericIndexes.get(i)];
+                    values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+                }
+                if (index < capacity) {
+                    sampleRows.add(values);
+                } else {
+                    sampleRows.set((int) slot, values);
+                }
+            });
+        }
+        report.setSampling(sample.toMap());
+        return new ProfileScan(profile, sample, sampleRows, numericColumns, sample.subsample(sampleRows.size()), false);
+    }
 
-                    if (missingCount > 0) {
-                        report.getMissingValues().add(
-                            new DataQualityReport.MissingValueReport(columnName, missingCount, missingPercentage)
-                        );
-                    }
+    /**
+     * 精确画像。可以增量时只扫描水位线在 (上次的最大值, 当前最大值] 之间的行，合并到保存的画像中；
+     * 否则扫描全表，有水位线列时只读取不超过当前最大值的行（及水位线为 NULL 的行），
+     * 扫描期间新写入的行留给下次增量，不会重复计入。
+     */
+    private ProfileScan profileTable(Connection connection, QueryRegistry.RunningQuery query, Long dataSourceId,
+                                     String tableName, String watermarkColumn, boolean fullRefresh,
+                                     DataQualityReport report) throws SQLException {
+        Map<String, Object> profiling = new LinkedHashMap<>();
+        report.setProfiling(profiling);
+        if (report.getColumnQuality().isEmpty()) {
+            TableProfile profile = newProfile(tableName, report, true, exactRowLimit);
+            profile.setRowCount(countRows(connection, query, tableName));
+            profiling.put("mode", "FULL");
+            profiling.put("scannedRows", profile.getRowCount());
+            return new ProfileScan(profile, exactResult(profile), false);
+        }
 
-                    column.setCompleteness(100.0 - missingPercentage);
+        TableProfile previous = fullRefresh ? null : profileStore.load(dataSourceId, tableName);
+        String watermark;
+        if (watermarkColumn != null) {
+            watermark = findColumn(report, watermarkColumn);
+        } else if (previous != null && previous.getWatermarkColumn() != null && !isUpdateTimeColumn(previous.getWatermarkColumn())) {
+            watermark = previous.getWatermarkColumn();
+        } else {
+            watermark = detectWatermark(connection, tableName, report);
+        }
+        Object high = watermark != null ? maxValue(connection, query, tableName, watermark) : null;
+        String reason = fullRefresh ? "指定了全量刷新" : fullRefreshReason(previous, report, watermark, high);
+        if (reason == null && rowsDeleted(connection, query, tableName, previous)) {
+            reason = "上次检查之后有行被删除";
+        }
+        profiling.put("watermarkColumn", watermark);
+        profiling.put("watermarkValue", high);
+
+        if (reason == null) {
+            // 新行的整行去重只需要 HyperLogLog（合并后不再精确）；异常值按上次的 Q1 / Q3 统计，合并后界限仍有效时不必重新统计
+            TableProfile delta = newProfile(tableName, report, true, 0);
+            for (int i = 0; i < delta.getColumns().size(); i++) {
+                ColumnProfile old = previous.getColumns().get(i);
+                if (old.getOutlierQ1() != null) {
+                    delta.getColumns().get(i).setOutliers(old.getOutlierQ1(), old.getOutlierQ3(), 0, Collections.emptyList());
                 }
             }
+            long scanned = tableSampler.scanWhere(connection, query, tableName, delta.getColumnNames(),
+                watermark + " > ? AND " + watermark + " <= ?", Arrays.asList(previous.getWatermarkValue(), high), delta::add);
+            previous.merge(delta);
+            previous.setWatermark(watermark, high);
+            profiling.put("mode", "INCREMENTAL");
+            profiling.put("scannedRows", scanned);
+            profiling.put("fullRefreshedAt", previous.getFullRefreshedAt());
+            return new ProfileScan(previous, exactResult(previous), true);
         }
+
+        TableProfile profile = newProfile(tableName, report, true, exactRowLimit);
+        String where = high != null ? watermark + " <= ? OR " + watermark + " IS NULL" : null;
+        List<Object> params = high != null ? Collections.singletonList(high) : Collections.emptyList();
+        long scanned = tableSampler.scanWhere(connection, query, tableName, profile.getColumnNames(), where, params, profile::add);
+        profile.setWatermark(watermark, high);
+        profile.setFullRefreshedAt(LocalDateTime.now());
+        profiling.put("mode", "FULL");
+        profiling.put("fullRefreshReason", reason);
+        profiling.put("scannedRows", scanned);
+        profiling.put("fullRefreshedAt", profile.getFullRefreshedAt());
+        return new ProfileScan(profile, exactResult(profile), false);
     }
 
-    private void checkDuplicates(Connection connection, String tableName, DataQualityReport report) throws SQLException {
-        // 获取所有列
-        List<String> columns = new ArrayList<>();
-        for (DataQualityReport.ColumnQualityResult col : report.getColumnQuality()) {
-            columns.add(col.getColumnName());
+    private static SampleResult exactResult(TableProfile profile) {
+        return new SampleResult(SampleResult.Method.FULL_SCAN, profile.getRowCount(), profile.getRowCount(), false);
+    }
+
+    /**
+     * 不能增量检查的原因，可以增量时返回 null
+     */
+    private String fullRefreshReason(TableProfile previous, DataQualityReport report, String watermark, Object high) {
+        if (previous == null) {
+            return "没有保存的画像";
+        }
+        if (watermark == null) {
+            return "没有水位线列";
+        }
+        if (isUpdateTimeColumn(watermark)) {
+            // 被修改的行会按新值再计入一次，旧值的计数和草图无法减掉
+            return "水位线列为更新时间，不能增量合并";
+        }
+        if (!watermark.equals(previous.getWatermarkColumn()) || previous.getWatermarkValue() == null) {
+            return "水位线列变化";
+        }
+        if (high == null || FederationValues.compare(high, previous.getWatermarkValue()) < 0) {
+            return "水位线回退（表可能被清空或重建）";
+        }
+        if (fullRefreshDays > 0 && previous.getFullRefreshedAt().isBefore(LocalDateTime.now().minusDays(fullRefreshDays))) {
+            return "距上次全量刷新超过 " + fullRefreshDays + " 天";
         }
+        List<DataQualityReport.ColumnQualityResult> columns = report.getColumnQuality();
+        if (previous.getColumns().size() != columns.size()) {
+            return "表结构变化";
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            DataQualityReport.ColumnQualityResult column = columns.get(i);
+            ColumnProfile old = previous.getColumns().get(i);
+            if (!column.getColumnName().equals(old.getName()) || !Objects.equals(column.getDataType(), old.getDataType())) {
+                return "表结构变化";
+            }
+            if (old.getDistinctSketch().getPrecision() != hllPrecision || old.getTopValues() == null
+                    || (isNumericType(column.getDataType().toUpperCase()) && old.getQuantiles() == null)) {
+                return "画像配置变化";
+            }
+        }
+        if (previous.getRowSketch().getHll().getPrecision() != hllPrecision) {
+            return "画像配置变化";
+        }
+        return null;
+    }
 
-        if (columns.isEmpty()) return;
+    /**
+     * 指定的水位线列（不区分大小写），不存在时抛出 IllegalArgumentException
+     */
+    private String findColumn(DataQualityReport report, String columnName) {
+        for (DataQualityReport.ColumnQualityResult column : report.getColumnQuality()) {
+            if (column.getColumnName().equalsIgnoreCase(columnName)) {
+                return column.getColumnName();
+            }
+        }
+        throw new IllegalArgumentException("水位线列不存在: " + columnName);
+    }
+
+    /**
+     * 是否为更新时间列（quality.incremental.update-time-columns），这类列不能作为增量合并的水位线
+     */
+    private boolean isUpdateTimeColumn(String columnName) {
+        for (String column : updateTimeColumns.split(",")) {
+            if (columnName.equalsIgnoreCase(column.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        String columnList = String.join(", ", columns);
-        String sql = String.format(
-            "SELECT %s, COUNT(*) as cnt FROM %s GROUP BY %s HAVING cnt > 1",
-            columnList, tableName, columnList
-        );
+    /**
+     * 上次画像包含的行（水位线不超过上次的值或为 NULL）是否变少了，即有行被删除；
+     * 删除的行无法从累计量和草图中减掉，需要全量刷新
+     */
+    private boolean rowsDeleted(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                                TableProfile previous) throws SQLException {
+        try (PreparedStatement stmt = prepareStatement(connection, query, "SELECT COUNT(*) FROM " + tableName + profileRows(previous))) {
+            bindProfileRows(stmt, 1, previous);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getLong(1) < previous.getRowCount();
+            }
+        }
+    }
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            long duplicateCount = 0;
+    /**
+     * 自动识别只增不改的水位线列：先找单列自增主键，其次按 quality.incremental.watermark-columns 的顺序
+     * 找日期时间类型的创建时间列；都没有时返回 null（每次扫描全表）。更新时间列不能作为水位线：
+     * 被修改的行会重复计入，合并后的行数和各项计数只增不减
+     */
+    private String detectWatermark(Connection connection, String tableName, DataQualityReport report) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String primaryKey = null;
+        boolean singleKey = true;
+        try (ResultSet rs = metaData.getPrimaryKeys(connection.getCatalog(), null, tableName)) {
             while (rs.next()) {
-                duplicateCount++;
+                if (primaryKey != null) {
+                    singleKey = false;
+                }
+                primaryKey = rs.getString("COLUMN_NAME");
             }
+        }
+        if (primaryKey != null && singleKey) {
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, tableName, primaryKey)) {
+                if (rs.next() && "YES".equalsIgnoreCase(rs.getString("IS_AUTOINCREMENT"))) {
+                    return primaryKey;
+                }
+            }
+        }
 
-            double duplicatePercentage = report.getTotalRows() > 0 ?
-                (duplicateCount * 100.0 / report.getTotalRows()) : 0;
-
-            if (duplicateCount > 0) {
-                report.getDuplicates().add(
-                    new DataQualityReport.DuplicateReport(duplicateCount, duplicatePercentage, columns)
-                );
+        for (String candidate : watermarkCandidates.split(",")) {
+            for (DataQualityReport.ColumnQualityResult column : report.getColumnQuality()) {
+                String type = column.getDataType() != null ? column.getDataType().toUpperCase(Locale.ROOT) : "";
+                if (column.getColumnName().equalsIgnoreCase(candidate.trim()) && (type.contains("DATE") || type.contains("TIME"))) {
+                    return column.getColumnName();
+                }
             }
         }
+        return null;
     }
 
-    private void checkOutliers(Connection connection, String tableName, DataQualityReport report) throws SQLException {
-        for (DataQualityReport.ColumnQualityResult column : report.getColumnQuality()) {
-            String columnName = column.getColumnName();
-            String dataType = column.getDataType().toUpperCase();
-
-            // 只检查数值类型
-            if (!isNumericType(dataType)) continue;
+    private Object maxValue(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                            String columnName) throws SQLException {
+        try (Statement stmt = createStatement(connection, query);
+             ResultSet rs = stmt.executeQuery("SELECT MAX(" + columnName + ") FROM " + tableName)) {
+            return rs.next() ? rs.getObject(1) : null;
+        }
+    }
 
-            // 使用 IQR 方法检测异常值
-            String sql = String.format(
-                "SELECT %s FROM %s WHERE %s IS NOT NULL",
-                columnName, tableName, columnName
-            );
+    /**
+     * 根据画像填写报告：总行数、缺失值（NULL 或空白）、手机号 / 邮箱 / 日期格式问题，
+     * 以及各列的最小 / 最大值和不同值个数估计（原来每列、每种格式检查各需要一次全表扫描）。
+     * 抽样模式下计数按样本换算为全表估计，并给出置信区间。
+     */
+    private void summarizeProfile(ProfileScan scan, Set<String> keyColumns, DataQualityReport report) {
+        TableProfile profile = scan.profile;
+        SampleResult sample = scan.sample;
+        List<ColumnProfile> profiles = profile.getColumns();
+        long sampledRows = profile.getRowCount();
+        report.setTotalRows(sample.getPopulationRows());
+        for (int i = 0; i < profiles.size(); i++) {
+            DataQualityReport.ColumnQualityResult column = report.getColumnQuality().get(i);
+            ColumnProfile columnProfile = profiles.get(i);
+            String columnName = column.getColumnName();
 
-            List<Double> values = new ArrayList<>();
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    double val = rs.getDouble(1);
-                    if (!rs.wasNull()) {
-                        values.add(val);
-                    }
+            long missingCount = columnProfile.getMissingCount();
+            double missingPercentage = sampledRows > 0 ? (missingCount * 100.0 / sampledRows) : 0;
+            if (missingCount > 0) {
+                DataQualityReport.MissingValueReport missing = new DataQualityReport.MissingValueReport(
+                    columnName, sample.scale(missingCount), missingPercentage);
+                if (!sample.isExact()) {
+                    missing.setMissingPercentageInterval(percentages(sample.proportionInterval(missingCount, sampledRows)));
                 }
+                report.getMissingValues().add(missing);
+            }
+            column.setCompleteness(100.0 - missingPercentage);
+            column.setNullCount(sample.scale(columnProfile.getNullCount()));
+            column.setBlankCount(sample.scale(columnProfile.getBlankCount()));
+            if (sample.isExact()) {
+                column.setDistinctCount(columnProfile.getDistinctEstimate());
+                if (keyColumns.contains(columnName.toLowerCase(Locale.ROOT)) || isCandidateKey(columnName)) {
+                    column.setUniqueness(uniquenessScore(columnProfile));
+                }
+            }
+            column.setMinValue(columnProfile.getMin());
+            column.setMaxValue(columnProfile.getMax());
+
+            if (columnProfile.isPhoneColumn() && columnProfile.getPhoneViolations() > 0) {
+                addFormatIssue(report, sample, columnName, "手机号格式", columnProfile.getPhoneViolations());
+            }
+            if (columnProfile.isEmailColumn() && columnProfile.getEmailViolations() > 0) {
+                addFormatIssue(report, sample, columnName, "邮箱格式", columnProfile.getEmailViolations());
             }
+            if (columnProfile.isDateColumn() && columnProfile.getDateViolations() > 0) {
+                addFormatIssue(report, sample, columnName, "合理日期范围", columnProfile.getDateViolations());
+            }
+        }
+    }
 
-            if (values.size() < 4) continue;
+    private void addFormatIssue(DataQualityReport report, SampleResult sample, String columnName,
+                                String expectedFormat, long sampleCount) {
+        DataQualityReport.FormatIssueReport issue = new DataQualityReport.FormatIssueReport(
+            columnName, expectedFormat, sample.scale(sampleCount));
+        if (!sample.isExact()) {
+            issue.setIssueCountInterval(sample.countInterval(sampleCount));
+        }
+        report.getFormatIssues().add(issue);
+    }
 
-            // 计算四分位数
-            Collections.sort(values);
-            int n = values.size();
-            double q1 = values.get(n / 4);
-            double q3 = values.get(3 * n / 4);
-            double iqr = q3 - q1;
-            double lowerBound = q1 - 1.5 * iqr;
-            double upperBound = q3 + 1.5 * iqr;
+    private static double[] percentages(double[] interval) {
+        return new double[]{interval[0] * 100, interval[1] * 100};
+    }
 
-            // 统计异常值
-            long outlierCount = 0;
-            List<Object> sampleOutliers = new ArrayList<>();
-            for (Double val : values) {
-                if (val < lowerBound || val > upperBound) {
-                    outlierCount++;
-                    if (sampleOutliers.size() < 5) {
-                        sampleOutliers.add(val);
-                    }
+    private long countRows(Connection connection, QueryRegistry.RunningQuery query, String tableName) throws SQLException {
+        try (Statement stmt = createStatement(connection, query);
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + tableName)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * 声明为唯一的列（小写）：单列主键和单列唯一索引。这些列和列名符合候选键模式的列才参与唯一性评分；
+     * 状态、类别、外键等列本来就有大量重复，唯一性保持 100（抽样模式下所有列都是 100）
+     */
+    private Set<String> keyColumns(Connection connection, String tableName) throws SQLException {
+        Set<String> keys = new HashSet<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> primaryKey = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(connection.getCatalog(), null, tableName)) {
+            while (rs.next()) {
+                primaryKey.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (primaryKey.size() == 1) {
+            keys.add(primaryKey.get(0).toLowerCase(Locale.ROOT));
+        }
+        Map<String, List<String>> uniqueIndexes = new HashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, tableName, true, true)) {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (index != null && column != null && !rs.getBoolean("NON_UNIQUE")) {
+                    uniqueIndexes.computeIfAbsent(index, k -> new ArrayList<>()).add(column);
                 }
             }
+        }
+        for (List<String> columns : uniqueIndexes.values()) {
+            if (columns.size() == 1) {
+                keys.add(columns.get(0).toLowerCase(Locale.ROOT));
+            }
+        }
+        return keys;
+    }
 
-            if (outlierCount > 0) {
-                double outlierPercentage = outlierCount * 100.0 / values.size();
-                DataQualityReport.OutlierReport outlierReport = new DataQualityReport.OutlierReport(
-                    columnName, outlierCount, outlierPercentage, "IQR"
-                );
-                outlierReport.setMinNormal(lowerBound);
-                outlierReport.setMaxNormal(upperBound);
-                outlierReport.setSampleOutliers(sampleOutliers);
-                report.getOutliers().add(outlierReport);
+    /**
+     * 列名是否符合 quality.uniqueness.candidate-key-columns（不区分大小写，* 匹配任意字符）
+     */
+    private boolean isCandidateKey(String columnName) {
+        String name = columnName.toLowerCase(Locale.ROOT);
+        for (String pattern : candidateKeyColumns.split(",")) {
+            String regex = Pattern.quote(pattern.trim().toLowerCase(Locale.ROOT)).replace("*", "\\E.*\\Q");
+            if (!pattern.isBlank() && name.matches(regex)) {
+                return true;
             }
         }
+        return false;
     }
 
-    private void checkFormatIssues(Connection connection, String tableName, DataQualityReport report) throws SQLException {
-        for (DataQualityReport.ColumnQualityResult column : report.getColumnQuality()) {
-            String columnName = column.getColumnName();
+    /**
+     * 唯一性评分：不同值占非空值的百分比，重复值越多评分越低。
+     * 不同值个数是 HyperLogLog 估计，与非空值个数的差距在估计误差（2 倍标准误差）之内时视为完全唯一（只影响接近 100 的一端）。
+     */
+    private double uniquenessScore(ColumnProfile column) {
+        long values = column.getRowCount() - column.getNullCount();
+        if (values == 0) {
+            return 100.0;
+        }
+        long distinct = Math.min(values, column.getDistinctEstimate());
+        if (values - distinct <= 2 * column.getDistinctSketch().standardError()) {
+            return 100.0;
+        }
+        return distinct * 100.0 / values;
+    }
 
-            // 检查手机号格式
-            checkPhoneFormat(connection, tableName, columnName, report);
+    /**
+     * 合并多张表（如按月分区的同构表）已保存的草图，得到整体的行数、不同值个数和重复行估计，不扫描数据。
+     * 重复行只能发现超出 HyperLogLog 误差的部分（精度 14 时约为不同行数的 1.6%）。
+     * 同名列的草图合并为一列；没有做过质量检查的表列在 missingTables 中。
+     */
+    public Map<String, Object> getMergedProfile(Long dataSourceId, List<String> tableNames) {
+        if (tableNames == null || tableNames.isEmpty()) {
+            throw new IllegalArgumentException("tables 不能为空");
+        }
+        Set<String> profiledTables = new LinkedHashSet<>();
+        long rowCount = 0;
+        HyperLogLog rows = null;
+        Map<String, long[]> columnCounts = new LinkedHashMap<>();
+        Map<String, HyperLogLog> columnSketches = new HashMap<>();
+        for (TableProfileSketch sketch : sketchRepository.findByDataSourceIdAndTableNameIn(dataSourceId, tableNames)) {
+            profiledTables.add(sketch.getTableName());
+            HyperLogLog hll = HyperLogLog.fromBytes(sketch.getHllSketch());
+            if (TableProfileSketch.ROW_COLUMN.equals(sketch.getColumnName())) {
+                rowCount += sketch.getRowCount();
+                rows = merge(rows, hll);
+                continue;
+            }
+            long[] counts = columnCounts.computeIfAbsent(sketch.getColumnName(), k -> new long[3]);
+            counts[0] += sketch.getRowCount();
+            counts[1] += sketch.getNullCount();
+            counts[2] += sketch.getBlankCount();
+            columnSketches.put(sketch.getColumnName(), merge(columnSketches.get(sketch.getColumnName()), hll));
+        }
 
-            // 检查邮箱格式
-            checkEmailFormat(connection, tableName, columnName, report);
+        List<Map<String, Object>> columns = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : columnCounts.entrySet()) {
+            Map<String, Object> column = new LinkedHashMap<>();
+            column.put("columnName", entry.getKey());
+            column.put("rowCount", entry.getValue()[0]);
+            column.put("nullCount", entry.getValue()[1]);
+            column.put("blankCount", entry.getValue()[2]);
+            column.put("distinctCount", columnSketches.get(entry.getKey()).estimate());
+            columns.add(column);
+        }
 
-            // 检查日期格式
-            checkDateFormat(connection, tableName, columnName, column.getDataType(), report);
+        List<String> missingTables = new ArrayList<>(tableNames);
+        missingTables.removeAll(profiledTables);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tables", profiledTables);
+        result.put("missingTables", missingTables);
+        result.put("rowCount", rowCount);
+        long distinctRows = rows != null ? Math.min(rowCount, rows.estimate()) : 0;
+        long duplicateRows = rowCount - distinctRows;
+        // 合并后只有 HyperLogLog 估计，差值在估计误差之内视为没有重复
+        if (rows != null && duplicateRows <= 2 * rows.standardError()) {
+            duplicateRows = 0;
         }
+        result.put("distinctRows", distinctRows);
+        result.put("duplicateRows", duplicateRows);
+        result.put("columns", columns);
+        return result;
     }
 
-    private void checkPhoneFormat(Connection connection, String tableName, String columnName, DataQualityReport report) throws SQLException {
-        if (!columnName.toLowerCase().contains("phone") &&
-            !columnName.toLowerCase().contains("mobile") &&
-            !columnName.toLowerCase().contains("tel")) {
-            return;
+    private HyperLogLog merge(HyperLogLog merged, HyperLogLog sketch) {
+        if (merged == null) {
+            return sketch;
         }
+        merged.merge(sketch);
+        return merged;
+    }
 
-        String sql = String.format(
-            "SELECT COUNT(*) FROM %s WHERE %s IS NOT NULL AND %s NOT REGEXP '^1[3-9][0-9]{9}$'",
-            tableName, columnName, columnName
-        );
+    /**
+     * 整行重复：行数与不同行数之差（多出来的副本数）。不同行数在扫描时由行哈希统计，
+     * 行数不超过 exact-row-limit 时是精确值；超过后为 HyperLogLog 估计，差值在估计误差之内视为没有重复
+     */
+    private void checkDuplicates(TableProfile profile, DataQualityReport report) {
+        RowSketch rows = profile.getRowSketch();
+        if (rows == null) return;
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next() && rs.getLong(1) > 0) {
-                report.getFormatIssues().add(
-                    new DataQualityReport.FormatIssueReport(columnName, "手机号格式", rs.getLong(1))
-                );
+        long totalRows = profile.getRowCount();
+        long duplicateCount = Math.max(0, totalRows - rows.getDistinctCount());
+        if (duplicateCount <= 2 * rows.standardError()) {
+            duplicateCount = 0;
+        }
+
+        if (duplicateCount > 0) {
+            List<String> columns = new ArrayList<>();
+            for (ColumnProfile column : profile.getColumns()) {
+                columns.add(column.getName());
             }
-        } catch (SQLException e) {
-            // 某些数据库不支持 REGEXP，忽略错误
+            double duplicatePercentage = duplicateCount * 100.0 / totalRows;
+            report.getDuplicates().add(
+                new DataQualityReport.DuplicateReport(duplicateCount, duplicatePercentage, columns)
+            );
         }
     }
 
-    private void checkEmailFormat(Connection connection, String tableName, String columnName, DataQualityReport report) throws SQLException {
-        if (!columnName.toLowerCase().contains("email") &&
-            !columnName.toLowerCase().contains("mail")) {
-            return;
+    /**
+     * IQR 异常值检测：Q1 / Q3 取自扫描时的分位数草图，开启下推且数据库支持时改用 PERCENTILE_CONT；
+     * 再用一条聚合查询按各列的界限统计异常值个数，同时取低端和高端异常值中最极端和最接近界限的值作为样例。
+     * 增量检查时，上次使用的 Q1 / Q3 仍在合并后分位数的误差范围内的列沿用累计的个数（新行在扫描时已按同样的界限统计），
+     * 只有分布变化的列重新统计。抽样模式下直接在样本行中统计，并换算为全表估计。
+     */
+    private void checkOutliers(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                               ProfileScan scan, DataQualityReport report) throws SQLException {
+        TableProfile profile = scan.profile;
+        List<ColumnProfile> numericColumns = new ArrayList<>();
+        for (ColumnProfile column : profile.getColumns()) {
+            if (isNumericType(column.getDataType().toUpperCase())) {
+                numericColumns.add(column);
+            }
+        }
+        if (numericColumns.isEmpty()) return;
+
+        double[][] quartiles = scan.sampleRows == null && !scan.incremental && pushdownPercentiles(connection)
+            ? queryQuartiles(connection, query, tableName, profile, numericColumns)
+            : sketchQuartiles(numericColumns);
+
+        // 计算各列的正常范围
+        List<ColumnProfile> columns = new ArrayList<>();
+        List<double[]> bounds = new ArrayList<>();
+        for (int i = 0; i < numericColumns.size(); i++) {
+            ColumnProfile column = numericColumns.get(i);
+            if (column.getRowCount() - column.getNullCount() < 4 || quartiles[i] == null) continue;
+            if (outlierBoundsValid(column)) {
+                quartiles[i] = new double[]{column.getOutlierQ1(), column.getOutlierQ3()};
+            }
+            double q1 = quartiles[i][0];
+            double q3 = quartiles[i][1];
+            double iqr = q3 - q1;
+            columns.add(column);
+            bounds.add(new double[]{q1 - 1.5 * iqr, q3 + 1.5 * iqr, q1, q3});
         }
+        if (columns.isEmpty()) return;
 
-        String sql = String.format(
-            "SELECT COUNT(*) FROM %s WHERE %s IS NOT NULL AND %s NOT LIKE '%%@%%.%%'",
-            tableName, columnName, columnName
-        );
+        if (scan.sampleRows != null) {
+            checkSampleOutliers(scan, columns, bounds, report);
+            return;
+        }
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next() && rs.getLong(1) > 0) {
-                report.getFormatIssues().add(
-                    new DataQualityReport.FormatIssueReport(columnName, "邮箱格式", rs.getLong(1))
-                );
+        // 统计异常值
+        List<ColumnProfile> recountColumns = new ArrayList<>();
+        List<double[]> recountBounds = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!outlierBoundsValid(columns.get(i))) {
+                recountColumns.add(columns.get(i));
+                recountBounds.add(bounds.get(i));
             }
         }
+        countOutliers(connection, query, tableName, profile, recountColumns, recountBounds);
+
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnProfile column = columns.get(i);
+            if (column.getOutlierCount() == 0) continue;
+            double outlierPercentage = column.getOutlierCount() * 100.0 / (column.getRowCount() - column.getNullCount());
+            DataQualityReport.OutlierReport outlierReport = new DataQualityReport.OutlierReport(
+                column.getName(), column.getOutlierCount(), outlierPercentage, "IQR"
+            );
+            outlierReport.setMinNormal(bounds.get(i)[0]);
+            outlierReport.setMaxNormal(bounds.get(i)[1]);
+            outlierReport.setSampleOutliers(new ArrayList<>(column.getOutlierSamples()));
+            report.getOutliers().add(outlierReport);
+        }
     }
 
-    private void checkDateFormat(Connection connection, String tableName, String columnName, String dataType, DataQualityReport report) throws SQLException {
-        if (!dataType.toUpperCase().contains("DATE") &&
-            !dataType.toUpperCase().contains("TIME")) {
+    /**
+     * 一条聚合查询按各列的界限统计异常值个数，并取样例：低于下界的最小、最大值和高于上界的最小、最大值。
+     * 个数和样例在同一次扫描中得到，不再为每个有异常值的列单独查询样例（异常值少于 5 个时那条查询要扫描全表）。
+     * 结果写入各列的 setOutliers
+     */
+    private void countOutliers(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                               TableProfile profile, List<ColumnProfile> columns,
+                               List<double[]> bounds) throws SQLException {
+        if (columns.isEmpty()) {
             return;
         }
+        List<String> aggregates = new ArrayList<>();
+        for (ColumnProfile column : columns) {
+            String name = column.getName();
+            aggregates.add(String.format("SUM(CASE WHEN %s < ? OR %s > ? THEN 1 ELSE 0 END)", name, name));
+            aggregates.add(String.format("MIN(CASE WHEN %s < ? THEN %s END)", name, name));
+            aggregates.add(String.format("MAX(CASE WHEN %s < ? THEN %s END)", name, name));
+            aggregates.add(String.format("MIN(CASE WHEN %s > ? THEN %s END)", name, name));
+            aggregates.add(String.format("MAX(CASE WHEN %s > ? THEN %s END)", name, name));
+        }
+        String sql = "SELECT " + String.join(", ", aggregates) + " FROM " + tableName + profileRows(profile);
+        try (PreparedStatement stmt = prepareStatement(connection, query, sql)) {
+            int parameter = 1;
+            for (double[] bound : bounds) {
+                stmt.setDouble(parameter++, bound[0]);
+                stmt.setDouble(parameter++, bound[1]);
+                stmt.setDouble(parameter++, bound[0]);
+                stmt.setDouble(parameter++, bound[0]);
+                stmt.setDouble(parameter++, bound[1]);
+                stmt.setDouble(parameter++, bound[1]);
+            }
+            bindProfileRows(stmt, parameter, profile);
+            try (ResultSet rs = stmt.executeQuery()) {
+                boolean found = rs.next();
+                for (int i = 0; i < columns.size(); i++) {
+                    long count = 0;
+                    Set<Double> samples = new LinkedHashSet<>();
+                    if (found) {
+                        count = rs.getLong(5 * i + 1);
+                        for (int j = 2; j <= 5; j++) {
+                            double value = rs.getDouble(5 * i + j);
+                            if (!rs.wasNull()) {
+                                samples.add(value);
+                            }
+                        }
+                    }
+                    double[] bound = bounds.get(i);
+                    columns.get(i).setOutliers(bound[2], bound[3], count, new ArrayList<>(samples));
+                }
+            }
+        }
+    }
+
+    /**
+     * 上次统计异常值使用的 Q1 / Q3 是否仍在合并后分位数草图的误差范围内（秩误差 quality.outlier.rank-error）
+     */
+    private boolean outlierBoundsValid(ColumnProfile column) {
+        KllSketch sketch = column.getQuantiles();
+        if (column.getOutlierQ1() == null || sketch == null || sketch.getCount() == 0) {
+            return false;
+        }
+        return withinRank(sketch, 0.25, column.getOutlierQ1()) && withinRank(sketch, 0.75, column.getOutlierQ3());
+    }
+
+    private boolean withinRank(KllSketch sketch, double q, double value) {
+        return sketch.quantile(Math.max(0, q - outlierRankError)) <= value
+            && value <= sketch.quantile(Math.min(1, q + outlierRankError));
+    }
+
+    /**
+     * 在保留的样本行中统计异常值，个数按样本换算为全表估计，比例附带置信区间
+     */
+    private void checkSampleOutliers(ProfileScan scan, List<ColumnProfile> columns, List<double[]> bounds,
+                                     DataQualityReport report) {
+        SampleResult sample = scan.rowsSample;
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnProfile column = columns.get(i);
+            int index = scan.numericColumns.indexOf(column);
+            double lowerBound = bounds.get(i)[0];
+            double upperBound = bounds.get(i)[1];
+
+            long values = 0;
+            long outlierCount = 0;
+            List<Object> sampleOutliers = new ArrayList<>();
+            for (double[] row : scan.sampleRows) {
+                double val = row[index];
+                if (Double.isNaN(val)) continue;
+                values++;
+                if (val < lowerBound || val > upperBound) {
+                    outlierCount++;
+                    if (sampleOutliers.size() < 5) {
+                        sampleOutliers.add(val);
+                    }
+                }
+            }
+            if (outlierCount == 0) continue;
+
+            DataQualityReport.OutlierReport outlierReport = new DataQualityReport.OutlierReport(
+                column.getName(), sample.scale(outlierCount), outlierCount * 100.0 / values, "IQR"
+            );
+            outlierReport.setOutlierPercentageInterval(percentages(sample.proportionInterval(outlierCount, values)));
+            outlierReport.setMinNormal(lowerBound);
+            outlierReport.setMaxNormal(upperBound);
+            outlierReport.setSampleOutliers(sampleOutliers);
+            report.getOutliers().add(outlierReport);
+        }
+    }
 
-        String sql = String.format(
-            "SELECT COUNT(*) FROM %s WHERE %s IS NOT NULL AND %s > NOW() + INTERVAL 100 YEAR",
-            tableName, columnName, columnName
-        );
+    /**
+     * 各列的 [Q1, Q3]，取自扫描时维护的分位数草图
+     */
+    private double[][] sketchQuartiles(List<ColumnProfile> columns) {
+        double[][] quartiles = new double[columns.size()][];
+        for (int i = 0; i < columns.size(); i++) {
+            KllSketch sketch = columns.get(i).getQuantiles();
+            if (sketch != null && sketch.getCount() > 0) {
+                quartiles[i] = new double[]{sketch.quantile(0.25), sketch.quantile(0.75)};
+            }
+        }
+        return quartiles;
+    }
 
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next() && rs.getLong(1) > 0) {
-                report.getFormatIssues().add(
-                    new DataQualityReport.FormatIssueReport(columnName, "合理日期范围", rs.getLong(1))
-                );
+    /**
+     * 各列的 [Q1, Q3]，由数据库用 PERCENTILE_CONT 精确计算（一条语句计算所有数值列）
+     */
+    private double[][] queryQuartiles(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                                      TableProfile profile, List<ColumnProfile> columns) throws SQLException {
+        List<String> percentiles = new ArrayList<>();
+        for (ColumnProfile column : columns) {
+            percentiles.add(String.format("PERCENTILE_CONT(0.25) WITHIN GROUP (ORDER BY %s)", column.getName()));
+            percentiles.add(String.format("PERCENTILE_CONT(0.75) WITHIN GROUP (ORDER BY %s)", column.getName()));
+        }
+        String sql = "SELECT " + String.join(", ", percentiles) + " FROM " + tableName + profileRows(profile);
+        double[][] quartiles = new double[columns.size()][];
+        try (PreparedStatement stmt = prepareStatement(connection, query, sql)) {
+            bindProfileRows(stmt, 1, profile);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        double q1 = rs.getDouble(2 * i + 1);
+                        boolean empty = rs.wasNull();
+                        double q3 = rs.getDouble(2 * i + 2);
+                        if (!empty && !rs.wasNull()) {
+                            quartiles[i] = new double[]{q1, q3};
+                        }
+                    }
+                }
             }
-        } catch (SQLException e) {
-            // 语法可能因数据库而异，忽略错误
         }
+        return quartiles;
+    }
+
+    /**
+     * 画像包含的行：有水位线时与画像扫描的条件相同，只统计水位线不超过画像保存的值的行（及水位线为 NULL 的行），
+     * 检查期间新写入的行留给下次增量，不会计入异常值个数而与画像的行数不一致
+     */
+    private static String profileRows(TableProfile profile) {
+        String watermark = profile.getWatermarkColumn();
+        if (watermark == null || profile.getWatermarkValue() == null) {
+            return "";
+        }
+        return " WHERE " + watermark + " <= ? OR " + watermark + " IS NULL";
+    }
+
+    private static void bindProfileRows(PreparedStatement stmt, int parameter, TableProfile profile) throws SQLException {
+        if (profile.getWatermarkColumn() != null && profile.getWatermarkValue() != null) {
+            stmt.setObject(parameter, profile.getWatermarkValue());
+        }
+    }
+
+    /**
+     * 开启了分位数下推，且数据库支持 PERCENTILE_CONT ... WITHIN GROUP 聚合（PostgreSQL、Oracle、H2）
+     */
+    private boolean pushdownPercentiles(Connection connection) throws SQLException {
+        if (!percentilePushdown) {
+            return false;
+        }
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        return product.contains("postgresql") || product.contains("oracle") || product.equals("h2");
     }
 
     private void calculateOverallScore(DataQualityReport report) {
@@ -1,14 +1,24 @@
 package com.data.assistant.service;
 
+import com.data.assistant.model.ResultTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 /**
  * 数据查询服务
@@ -21,10 +31,28 @@ public class DataQueryService {
     @Autowired
     private DynamicDataSourceService dynamicDataSourceService;
 
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
+    @Value("${query.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Value("${query.stream.max-rows:100000}")
+    private long streamMaxRows;
+
+    @Value("${query.stream.max-bytes:52428800}")
+    private long streamMaxBytes;
+
     /**
      * 清理 SQL（移除 Markdown 代码块标记等）
      */
-    private String cleanSql(String sql) {
+    static String cleanSql(String sql) {
         if (sql == null || sql.isEmpty()) {
             return sql;
         }
@@ -39,41 +67,217 @@ public class DataQueryService {
     /**
      * 执行 SQL 查询（使用当前数据源）
      */
-    public List<Map<String, Object>> executeQuery(String sql) {
+    public ResultTable executeQuery(String sql) {
+        return executeQuery(dynamicDataSourceService.getCurrentDataSourceId(), sql);
+    }
+
+    /**
+     * 执行 SQL 查询（指定数据源），只读查询的结果会被缓存
+     */
+    public ResultTable executeQuery(Long dataSourceId, String sql) {
+        return executeQueryCached(dataSourceId, sql, true).getTable();
+    }
+
+    /**
+     * 执行 SQL 查询并返回缓存状态（用于在响应头中标记缓存命中）
+     *
+     * @param useCache 为 false 时跳过缓存直接查询
+     */
+    public QueryResultCache.Lookup executeQueryCached(Long dataSourceId, String sql, boolean useCache) {
+        return executeQueryCached(dataSourceId, sql, useCache, 0, 0);
+    }
+
+    /**
+     * 执行 SQL 查询并限制语句的超时和最大行数（连接池的 JdbcTemplate 是共享的，限制只设置在本次语句上）
+     * 执行期间登记在 QueryRegistry 中，可以被取消；命中缓存时不登记。
+     *
+     * @param timeoutSeconds 查询超时（秒），<= 0 表示不限制
+     * @param maxRows 最多读取的行数，<= 0 表示不限制
+     */
+    public QueryResultCache.Lookup executeQueryCached(Long dataSourceId, String sql, boolean useCache,
+                                                     int timeoutSeconds, int maxRows) {
+        String cleanedSql = cleanSql(sql);
         try {
-            sql = cleanSql(sql);
-            logger.info("Executing SQL query: {}", sql);
-            JdbcTemplate jdbcTemplate = dynamicDataSourceService.getCurrentJdbcTemplate();
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
-            logger.info("Query returned {} rows", results.size());
-            return results;
+            QueryResultCache.Lookup lookup = queryResultCache.getOrLoad(dataSourceId, cleanedSql, useCache, () -> {
+                logger.info("Executing SQL query on datasource {}: {}", dataSourceId, cleanedSql);
+                JdbcTemplate jdbcTemplate = dataSourceId != null
+                    ? dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+                    : dynamicDataSourceService.getCurrentJdbcTemplate();
+                try (QueryRegistry.RunningQuery query = queryRegistry.start("query", dataSourceId,
+                        jdbcTemplate.getDataSource(), cleanedSql)) {
+                    ResultTable results;
+                    try {
+                        results = jdbcTemplate.query(connection -> {
+                            PreparedStatement stmt = connection.prepareStatement(cleanedSql);
+                            if (timeoutSeconds > 0) {
+                                stmt.setQueryTimeout(timeoutSeconds);
+                            }
+                            if (maxRows > 0) {
+                                stmt.setMaxRows(maxRows);
+                            }
+                            query.attach(connection, stmt);
+                            return stmt;
+                        }, ResultTable.extractor());
+                    } catch (RuntimeException e) {
+                        // 被取消的查询以数据库返回的中断错误结束，转换为取消原因
+                        query.checkCancelled();
+                        throw e;
+                    }
+                    logger.info("Query returned {} rows", results.size());
+                    return results;
+                }
+            });
+            if (lookup.getStatus() == QueryResultCache.Status.HIT) {
+                logger.info("Query cache hit on datasource {} ({} rows)", dataSourceId, lookup.getTable().size());
+            }
+            return lookup;
+        } catch (CancellationException e) {
+            logger.info("SQL query on datasource {} was cancelled: {}", dataSourceId, e.getMessage());
+            throw e;
         } catch (Exception e) {
-            logger.error("Failed to execute SQL query: {}", sql, e);
+            logger.error("Failed to execute SQL query on datasource {}: {}", dataSourceId, cleanedSql, e);
             throw new RuntimeException("查询执行失败: " + e.getMessage(), e);
         }
     }
 
     /**
-     * 执行 SQL 查询（指定数据源）
+     * 流式执行 SQL 查询（指定数据源）
+     * 使用游标按 fetchSize 分批读取，逐行回调 handler，不在内存中物化整个结果集。
+     * 行数和字节数受服务端预算限制，超出预算时停止读取并标记为截断。
+     *
+     * @param dataSourceId 数据源ID，为空时使用当前数据源
+     * @param sql SQL 语句
+     * @param rowLimit 调用方期望的最大行数（<= 0 表示使用服务端上限）
+     * @param handler 行处理器
+     * @return 流式执行摘要
      */
-    public List<Map<String, Object>> executeQuery(Long dataSourceId, String sql) {
-        try {
-            sql = cleanSql(sql);
-            logger.info("Executing SQL query on datasource {}: {}", dataSourceId, sql);
-            JdbcTemplate jdbcTemplate = dynamicDataSourceService.getJdbcTemplate(dataSourceId);
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
-            logger.info("Query returned {} rows", results.size());
-            return results;
+    public StreamSummary streamQuery(Long dataSourceId, String sql, long rowLimit, RowStreamHandler handler) {
+        return streamQuery(dataSourceId, sql, rowLimit, 0, handler);
+    }
+
+    /**
+     * 流式执行 SQL 查询，并限制查询超时
+     *
+     * @param timeoutSeconds 查询超时（秒），<= 0 表示不限制
+     */
+    public StreamSummary streamQuery(Long dataSourceId, String sql, long rowLimit, int timeoutSeconds,
+                                     RowStreamHandler handler) {
+        String cleanedSql = cleanSql(sql);
+        long maxRows = rowLimit > 0 ? Math.min(rowLimit, streamMaxRows) : streamMaxRows;
+        logger.info("Streaming SQL query on datasource {} (maxRows={}, maxBytes={}): {}",
+                dataSourceId, maxRows, streamMaxBytes, cleanedSql);
+
+        JdbcTemplate jdbcTemplate = dataSourceId != null
+                ? dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+                : dynamicDataSourceService.getCurrentJdbcTemplate();
+
+        // 数据源单独配置了 fetchSize 时优先使用
+        int fetchSize = jdbcTemplate.getFetchSize() > 0 ? jdbcTemplate.getFetchSize() : streamFetchSize;
+
+        try (QueryRegistry.RunningQuery query = queryRegistry.start("query-stream", dataSourceId,
+                jdbcTemplate.getDataSource(), cleanedSql)) {
+            try {
+                return jdbcTemplate.execute((ConnectionCallback<StreamSummary>) connection ->
+                        streamOnConnection(connection, cleanedSql, maxRows, fetchSize, timeoutSeconds, query, handler));
+            } catch (RuntimeException e) {
+                query.checkCancelled();
+                throw e;
+            }
+        } catch (UncheckedIOException | CancellationException e) {
+            // 客户端断开等写出异常或查询被取消，直接向上抛出，由调用方决定如何处理
+            throw e;
         } catch (Exception e) {
-            logger.error("Failed to execute SQL query on datasource {}: {}", dataSourceId, sql, e);
+            logger.error("Failed to stream SQL query on datasource {}: {}", dataSourceId, cleanedSql, e);
             throw new RuntimeException("查询执行失败: " + e.getMessage(), e);
         }
     }
 
+    private StreamSummary streamOnConnection(Connection connection, String sql, long maxRows, int fetchSize,
+                                             int timeoutSeconds, QueryRegistry.RunningQuery query,
+                                             RowStreamHandler handler) throws java.sql.SQLException {
+        // PostgreSQL 只有在非自动提交模式下才会按 fetchSize 使用服务端游标
+        boolean originalAutoCommit = connection.getAutoCommit();
+        if (originalAutoCommit) {
+            connection.setAutoCommit(false);
+        }
+
+        StreamSummary summary = new StreamSummary();
+        long startTime = System.currentTimeMillis();
+        try (PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            if (timeoutSeconds > 0) {
+                stmt.setQueryTimeout(timeoutSeconds);
+            }
+            if (maxRows < Integer.MAX_VALUE) {
+                // 多取一行用于判断是否被截断
+                stmt.setMaxRows((int) maxRows + 1);
+            }
+            query.attach(connection, stmt);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                try {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    List<String> columns = new ArrayList<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+                    handler.onColumns(columns);
+
+                    while (rs.next()) {
+                        if (summary.rowCount >= maxRows) {
+                            summary.truncated = true;
+                            summary.truncateReason = "超出最大行数限制: " + maxRows;
+                            break;
+                        }
+                        Object[] values = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            values[i] = rs.getObject(i + 1);
+                        }
+                        summary.byteCount += handler.onRow(values);
+                        summary.rowCount++;
+                        if (summary.byteCount >= streamMaxBytes) {
+                            summary.truncated = summary.truncated || rs.next();
+                            if (summary.truncated) {
+                                summary.truncateReason = "超出最大字节数限制: " + streamMaxBytes;
+                            }
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    // 客户端已断开：先取消语句，避免关闭结果集时还要读完剩余的行
+                    stmt.cancel();
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (originalAutoCommit) {
+                // 只读查询，回滚即可结束游标事务；这里失败（通常是连接已断开）不能掩盖查询本身的异常，只记录日志
+                try {
+                    connection.rollback();
+                } catch (java.sql.SQLException e) {
+                    logger.warn("Failed to roll back streaming transaction: {}", e.getMessage());
+                }
+                try {
+                    connection.setAutoCommit(true);
+                } catch (java.sql.SQLException e) {
+                    logger.warn("Failed to restore auto-commit after streaming: {}", e.getMessage());
+                }
+            }
+        }
+
+        summary.elapsedMillis = System.currentTimeMillis() - startTime;
+        logger.info("Streamed {} rows ({} bytes, truncated={}) in {} ms",
+                summary.rowCount, summary.byteCount, summary.truncated, summary.elapsedMillis);
+        return summary;
+    }
+
     /**
      * 执行分析查询
      */
-    public List<Map<String, Object>> executeAnalysisQuery(String type, String sql) {
+    public ResultTable executeAnalysisQuery(String type, String sql) {
         return executeQuery(sql);
     }
 
@@ -81,8 +285,17 @@ public class DataQueryService {
      * 获取数据库表结构信息（使用当前数据源）
      */
     public Map<String, Object> getTableSchema(String tableName) {
+        return getTableSchema(null, tableName);
+    }
+
+    /**
+     * 获取指定数据源的表结构信息，dataSourceId 为空时使用当前数据源
+     */
+    public Map<String, Object> getTableSchema(Long dataSourceId, String tableName) {
         try {
-            JdbcTemplate jdbcTemplate = dynamicDataSourceService.getCurrentJdbcTemplate();
+            JdbcTemplate jdbcTemplate = dataSourceId != null
+                    ? dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+                    : dynamicDataSourceService.getCurrentJdbcTemplate();
             String sql = String.format(
                     "SELECT COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_KEY " +
                             "FROM INFORMATION_SCHEMA.COLUMNS " +
@@ -102,6 +315,15 @@ public class DataQueryService {
      */
     public List<String> getAllTableNames() {
         List<String> tables = new ArrayList<>();
+        Long dataSourceId = dynamicDataSourceService.getCurrentDataSourceId();
+        if (dataSourceId != null) {
+            try {
+                // 优先使用表结构目录缓存
+                return schemaCatalogService.getCatalog(dataSourceId).getTableNames();
+            } catch (Exception e) {
+                logger.warn("Schema catalog unavailable for datasource {}, probing tables: {}", dataSourceId, e.getMessage());
+            }
+        }
         try {
             JdbcTemplate jdbcTemplate = dynamicDataSourceService.getCurrentJdbcTemplate();
 
@@ -197,14 +419,23 @@ public class DataQueryService {
     /**
      * 获取样本数据（使用当前数据源）
      */
-    public List<Map<String, Object>> getSampleData(String tableName, int limit) {
+    public ResultTable getSampleData(String tableName, int limit) {
+        return getSampleData(null, tableName, limit);
+    }
+
+    /**
+     * 获取指定数据源的样本数据，dataSourceId 为空时使用当前数据源
+     */
+    public ResultTable getSampleData(Long dataSourceId, String tableName, int limit) {
         try {
-            JdbcTemplate jdbcTemplate = dynamicDataSourceService.getCurrentJdbcTemplate();
+            JdbcTemplate jdbcTemplate = dataSourceId != null
+                    ? dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+                    : dynamicDataSourceService.getCurrentJdbcTemplate();
             String sql = String.format("SELECT * FROM %s LIMIT %d", tableName, limit);
-            return jdbcTemplate.queryForList(sql);
+            return jdbcTemplate.query(sql, ResultTable.extractor());
         } catch (Exception e) {
             logger.error("Failed to get sample data from: {}", tableName, e);
-            return new ArrayList<>();
+            return ResultTable.empty();
         }
     }
 
@@ -221,4 +452,38 @@ public class DataQueryService {
     public void switchDataSource(Long dataSourceId) {
         dynamicDataSourceService.switchDataSource(dataSourceId);
     }
+
+    /**
+     * 流式结果行处理器
+     */
+    public interface RowStreamHandler {
+
+        /**
+         * 列信息就绪（在第一行之前回调一次）
+         */
+        void onColumns(List<String> columns) throws IOException;
+
+        /**
+         * 处理一行数据
+         * @return 该行输出的字节数，用于字节预算统计
+         */
+        long onRow(Object[] values) throws IOException;
+    }
+
+    /**
+     * 流式执行摘要
+     */
+    public static class StreamSummary {
+        private long rowCount;
+        private long byteCount;
+        private boolean truncated;
+        private String truncateReason;
+        private long elapsedMillis;
+
+        public long getRowCount() { return rowCount; }
+        public long getByteCount() { return byteCount; }
+        public boolean isTruncated() { return truncated; }
+        public String getTruncateReason() { return truncateReason; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
 }
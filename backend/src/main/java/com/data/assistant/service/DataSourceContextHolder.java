@@ -0,0 +1,35 @@
+package com.data.assistant.service;
+
+/**
+ * 请求级数据源上下文
+ * 保存当前线程（即当前请求）选择的数据源ID，避免并发请求之间互相切换数据源。
+ * 由 DataSourceContextInterceptor 在请求开始和结束时清理。
+ */
+public final class DataSourceContextHolder {
+
+    private static final ThreadLocal<Long> CONTEXT = new ThreadLocal<>();
+
+    private DataSourceContextHolder() {
+    }
+
+    /**
+     * 设置当前请求使用的数据源ID
+     */
+    public static void set(Long dataSourceId) {
+        CONTEXT.set(dataSourceId);
+    }
+
+    /**
+     * 获取当前请求使用的数据源ID，未设置时返回 null
+     */
+    public static Long get() {
+        return CONTEXT.get();
+    }
+
+    /**
+     * 清除当前请求的数据源选择
+     */
+    public static void clear() {
+        CONTEXT.remove();
+    }
+}
@@ -0,0 +1,322 @@
+package com.data.assistant.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 数据源连接池配置
+ * 从 DataSource.connectionParams（JSON）解析，未配置的项使用全局默认值。
+ *
+ * 示例：
+ * <pre>
+ * {
+ *   "maximumPoolSize": 30, "minimumIdle": 2, "readOnly": true, "fetchSize": 1000,
+ *   "statementCacheSize": 250, "statementCacheSqlLimit": 2048,
+ *   "socketTimeout": 60000, "connectTimeout": 10000,
+ *   "adaptive": { "enabled": true, "minPoolSize": 5, "maxPoolSize": 60 },
+ *   "guard": { "costBudget": 500000, "maxRows": 5000, "queryTimeoutSeconds": 20 },
+ *   "properties": { "rewriteBatchedStatements": "true" }
+ * }
+ * </pre>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DataSourcePoolSettings {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 最大连接数
+     */
+    private Integer maximumPoolSize;
+
+    /**
+     * 最小空闲连接数（0 表示空闲时可完全释放连接）
+     */
+    private Integer minimumIdle;
+
+    /**
+     * 空闲连接回收时间（毫秒）
+     */
+    private Long idleTimeout;
+
+    /**
+     * 获取连接的等待超时（毫秒）
+     */
+    private Long connectionTimeout;
+
+    /**
+     * 连接最大存活时间（毫秒）
+     */
+    private Long maxLifetime;
+
+    /**
+     * 是否只读连接
+     */
+    private Boolean readOnly;
+
+    /**
+     * 每次从服务端拉取的行数
+     */
+    private Integer fetchSize;
+
+    /**
+     * 预编译语句缓存条数（0 表示关闭）
+     */
+    private Integer statementCacheSize;
+
+    /**
+     * 可缓存的 SQL 最大长度（仅 MySQL）
+     */
+    private Integer statementCacheSqlLimit;
+
+    /**
+     * Socket 读超时（毫秒）
+     */
+    private Integer socketTimeout;
+
+    /**
+     * 建立连接超时（毫秒）
+     */
+    private Integer connectTimeout;
+
+    /**
+     * 自适应连接池配置
+     */
+    private Adaptive adaptive = new Adaptive();
+
+    /**
+     * 生成 SQL 执行前检查的限制（见 SqlGuardService）
+     */
+    private Guard guard = new Guard();
+
+    /**
+     * 额外的驱动参数
+     */
+    private Map<String, String> properties = new LinkedHashMap<>();
+
+    /**
+     * 解析 connectionParams，为空时返回全部为默认值的配置
+     *
+     * @throws IllegalArgumentException 不是合法的 JSON 或字段类型不符时（不静默使用默认值，避免配置错误被忽略）
+     */
+    public static DataSourcePoolSettings parse(String connectionParams) {
+        if (connectionParams == null || connectionParams.trim().isEmpty()) {
+            return new DataSourcePoolSettings();
+        }
+        try {
+            DataSourcePoolSettings settings = MAPPER.readValue(connectionParams, DataSourcePoolSettings.class);
+            if (settings.adaptive == null) {
+                settings.adaptive = new Adaptive();
+            }
+            if (settings.guard == null) {
+                settings.guard = new Guard();
+            }
+            if (settings.properties == null) {
+                settings.properties = new LinkedHashMap<>();
+            }
+            return settings;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("连接参数格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    public Integer getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(Integer maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public Integer getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public void setMinimumIdle(Integer minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    public Long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(Long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public Boolean getReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(Boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Integer getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(Integer statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public Integer getStatementCacheSqlLimit() {
+        return statementCacheSqlLimit;
+    }
+
+    public void setStatementCacheSqlLimit(Integer statementCacheSqlLimit) {
+        this.statementCacheSqlLimit = statementCacheSqlLimit;
+    }
+
+    public Integer getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Integer socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Adaptive getAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(Adaptive adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public Guard getGuard() {
+        return guard;
+    }
+
+    public void setGuard(Guard guard) {
+        this.guard = guard;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 自适应连接池配置
+     * 启用后按等待时间和使用率在 [minPoolSize, maxPoolSize] 范围内调整最大连接数。
+     * minPoolSize 默认 1；maxPoolSize 默认为初始最大连接数的 datasource.pool.adaptive.default-ceiling-factor 倍。
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Adaptive {
+
+        private boolean enabled = false;
+
+        private Integer minPoolSize;
+
+        private Integer maxPoolSize;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Integer getMinPoolSize() {
+            return minPoolSize;
+        }
+
+        public void setMinPoolSize(Integer minPoolSize) {
+            this.minPoolSize = minPoolSize;
+        }
+
+        public Integer getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(Integer maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+    }
+
+    /**
+     * 执行前检查的限制，未配置的项使用全局默认值（sql.guard.*）
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Guard {
+
+        /**
+         * EXPLAIN 估计代价上限（数据库自身的代价单位，0 表示不检查）
+         */
+        private Double costBudget;
+
+        /**
+         * 最多返回行数
+         */
+        private Integer maxRows;
+
+        /**
+         * 查询超时（秒）
+         */
+        private Integer queryTimeoutSeconds;
+
+        public Double getCostBudget() {
+            return costBudget;
+        }
+
+        public void setCostBudget(Double costBudget) {
+            this.costBudget = costBudget;
+        }
+
+        public Integer getMaxRows() {
+            return maxRows;
+        }
+
+        public void setMaxRows(Integer maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        public Integer getQueryTimeoutSeconds() {
+            return queryTimeoutSeconds;
+        }
+
+        public void setQueryTimeoutSeconds(Integer queryTimeoutSeconds) {
+            this.queryTimeoutSeconds = queryTimeoutSeconds;
+        }
+    }
+}
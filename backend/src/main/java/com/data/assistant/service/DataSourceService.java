@@ -32,6 +32,16 @@ public class DataSourceService {
     @Lazy
     private DynamicDataSourceService dynamicDataSourceService;
     
+    @Autowired
+    @Lazy
+    private SchemaCatalogService schemaCatalogService;
+    
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryPlanService queryPlanService;
+    
     /**
      * 获取所有数据源
      */
@@ -93,8 +103,11 @@ public class DataSourceService {
         DataSource saved = dataSourceRepository.save(dataSource);
         
         // 初始化到动态数据源
+        if (saved.getIsDefault()) {
+            dynamicDataSourceService.setDefaultDataSourceId(saved.getId());
+        }
         try {
-            dynamicDataSourceService.switchDataSource(saved.getId());
+            dynamicDataSourceService.initDataSource(saved.getId());
         } catch (Exception e) {
             logger.warn("Failed to initialize datasource in pool: {}", e.getMessage());
         }
@@ -139,9 +152,15 @@ public class DataSourceService {
         }
         
         DataSource updated = dataSourceRepository.save(existing);
+        if (updated.getIsDefault()) {
+            dynamicDataSourceService.setDefaultDataSourceId(id);
+        }
         
-        // 刷新动态数据源
+        // 刷新动态数据源，连接目标可能已变化，表结构缓存一并失效
         dynamicDataSourceService.refreshDataSource(id);
+        schemaCatalogService.invalidate(id);
+        queryResultCache.invalidateDataSource(id);
+        queryPlanService.invalidate(id);
         
         return updated;
     }
@@ -153,6 +172,12 @@ public class DataSourceService {
         DataSource dataSource = dataSourceRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("数据源不存在"));
         
+        // 从动态数据源移除
+        dynamicDataSourceService.removeDataSource(id);
+        schemaCatalogService.invalidate(id);
+        queryResultCache.invalidateDataSource(id);
+        queryPlanService.invalidate(id);
+        
         // 如果删除的是默认数据源，需要重新设置默认
         if (dataSource.getIsDefault()) {
             List<DataSource> others = dataSourceRepository.findByActiveTrue();
@@ -161,12 +186,10 @@ public class DataSourceService {
                 DataSource newDefault = others.get(0);
                 newDefault.setIsDefault(true);
                 dataSourceRepository.save(newDefault);
+                dynamicDataSourceService.setDefaultDataSourceId(newDefault.getId());
             }
         }
         
-        // 从动态数据源移除
-        dynamicDataSourceService.removeDataSource(id);
-        
         dataSourceRepository.delete(dataSource);
     }
     
@@ -232,6 +255,7 @@ public class DataSourceService {
         
         newDefault.setIsDefault(true);
         dataSourceRepository.save(newDefault);
+        dynamicDataSourceService.setDefaultDataSourceId(id);
     }
     
     /**
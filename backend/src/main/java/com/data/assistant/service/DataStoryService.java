@@ -1,6 +1,12 @@
 package com.data.assistant.service;
 
 import com.data.assistant.repository.DataSourceRepository;
+import com.data.assistant.service.profile.ColumnProfile;
+import com.data.assistant.service.profile.TableProfile;
+import com.data.assistant.service.profile.TableProfileStore;
+import com.data.assistant.service.sampling.SampleResult;
+import com.data.assistant.service.sampling.SampleSpec;
+import com.data.assistant.service.sampling.TableSampler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -17,15 +23,44 @@ public class DataStoryService {
     @Autowired
     private DataSource jdbcDataSource;
 
+    @Autowired
+    private TableSampler tableSampler;
+
+    @Autowired
+    private TableProfileStore profileStore;
+
     public Map<String, Object> generateDataStory(Long dataSourceId, String tableName) {
+        return generateDataStory(dataSourceId, tableName, null);
+    }
+
+    /**
+     * @param spec 为 null 时优先使用数据质量检查保存的画像（不扫描数据），没有画像时精确扫描；
+     *             抽样模式下统计信息和值分布都来自同一份样本，计数为换算后的估计值并附带 95% 置信区间
+     */
+    public Map<String, Object> generateDataStory(Long dataSourceId, String tableName, SampleSpec spec) {
         Map<String, Object> story = new HashMap<>();
         
         try {
-            // 1. 获取表的基本统计信息
-            Map<String, Object> statistics = getTableStatistics(dataSourceId, tableName);
-            
-            // 2. 获取数值列的分布
-            List<Map<String, Object>> columnDistributions = getColumnDistributions(dataSourceId, tableName);
+            Map<String, Object> statistics;
+            List<Map<String, Object>> columnDistributions;
+            TableProfile profile = spec == null ? profileStore.load(dataSourceId, tableName) : null;
+            if (profile != null) {
+                // 1-2. 统计信息和值分布直接取自保存的画像
+                statistics = new HashMap<>();
+                columnDistributions = new ArrayList<>();
+                profileStatistics(profile, statistics, columnDistributions);
+            } else if (spec != null && spec.isSampled()) {
+                // 1-2. 一次抽样同时得到统计信息和值分布
+                statistics = new HashMap<>();
+                columnDistributions = new ArrayList<>();
+                profileSample(tableName, spec, statistics, columnDistributions);
+            } else {
+                // 1. 获取表的基本统计信息
+                statistics = getTableStatistics(dataSourceId, tableName);
+
+                // 2. 获取数值列的分布
+                columnDistributions = getColumnDistributions(dataSourceId, tableName);
+            }
             
             // 3. 生成洞察
             List<String> insights = generateInsights(statistics, columnDistributions);
@@ -152,6 +187,196 @@ public class DataStoryService {
         return distributions;
     }
 
+    /**
+     * 抽样统计：总行数、数值列的最小 / 最大 / 平均值（附置信区间）和不同值个数估计、各列 TOP 10 值，
+     * 都由一次抽样计算，取代每列一次的 COUNT(DISTINCT) 和 GROUP BY 全表扫描
+     */
+    private void profileSample(String tableName, SampleSpec spec, Map<String, Object> stats,
+                               List<Map<String, Object>> distributions) throws SQLException {
+        try (Connection connection = jdbcDataSource.getConnection()) {
+            List<Map<String, Object>> columns = new ArrayList<>();
+            try (ResultSet colRs = connection.getMetaData().getColumns(null, null, tableName, "%")) {
+                while (colRs.next()) {
+                    Map<String, Object> col = new HashMap<>();
+                    col.put("name", colRs.getString("COLUMN_NAME"));
+                    col.put("type", colRs.getString("TYPE_NAME"));
+                    columns.add(col);
+                }
+            }
+            stats.put("columns", columns);
+            stats.put("columnCount", columns.size());
+            if (columns.isEmpty()) {
+                throw new SQLException("表不存在或没有列: " + tableName);
+            }
+
+            List<String> names = new ArrayList<>();
+            List<ColumnSample> samples = new ArrayList<>();
+            for (Map<String, Object> col : columns) {
+                names.add((String) col.get("name"));
+                samples.add(new ColumnSample(isNumeric(((String) col.get("type")).toUpperCase())));
+            }
+            SampleResult sample = tableSampler.scan(connection, null, tableName, names, spec, row -> {
+                for (int i = 0; i < row.length; i++) {
+                    samples.get(i).add(row[i]);
+                }
+            });
+            stats.put("totalRows", sample.getPopulationRows());
+            stats.put("sampling", sample.toMap());
+
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnSample columnSample = samples.get(i);
+                if (columnSample.numeric && columnSample.count > 0) {
+                    Map<String, Object> colStats = new HashMap<>();
+                    colStats.put("min", columnSample.min);
+                    colStats.put("max", columnSample.max);
+                    colStats.put("avg", columnSample.mean);
+                    colStats.put("avgInterval", sample.meanInterval(columnSample.mean, columnSample.variance(), columnSample.count));
+                    colStats.put("uniqueCount", columnSample.estimateDistinct(sample));
+                    columns.get(i).put("statistics", colStats);
+                }
+
+                Map<String, Object> dist = new HashMap<>();
+                dist.put("column", names.get(i));
+                List<Map<String, Object>> topValues = new ArrayList<>();
+                for (Map.Entry<Object, Long> entry : columnSample.top(10)) {
+                    Map<String, Object> value = new HashMap<>();
+                    value.put("value", entry.getKey());
+                    value.put("count", sample.scale(entry.getValue()));
+                    value.put("countInterval", sample.countInterval(entry.getValue()));
+                    topValues.add(value);
+                }
+                dist.put("topValues", topValues);
+                distributions.add(dist);
+            }
+        }
+    }
+
+    /**
+     * 由数据质量检查保存的画像得到统计信息和值分布，不扫描数据：平均值由累计的和计算，
+     * 不同值个数为 HyperLogLog 估计，TOP 值的计数来自高频值草图（下界，出现次数较少的值可能不准确）
+     */
+    private void profileStatistics(TableProfile profile, Map<String, Object> stats,
+                                   List<Map<String, Object>> distributions) {
+        stats.put("totalRows", profile.getRowCount());
+        List<Map<String, Object>> columns = new ArrayList<>();
+        for (ColumnProfile column : profile.getColumns()) {
+            Map<String, Object> col = new HashMap<>();
+            col.put("name", column.getName());
+            col.put("type", column.getDataType());
+            long values = column.getRowCount() - column.getNullCount();
+            if (isNumeric(column.getDataType().toUpperCase()) && values > 0) {
+                Map<String, Object> colStats = new HashMap<>();
+                colStats.put("min", column.getMin());
+                colStats.put("max", column.getMax());
+                colStats.put("avg", column.getSum() / values);
+                colStats.put("uniqueCount", column.getDistinctEstimate());
+                col.put("statistics", colStats);
+            }
+            columns.add(col);
+
+            Map<String, Object> dist = new HashMap<>();
+            dist.put("column", column.getName());
+            List<Map<String, Object>> topValues = new ArrayList<>();
+            if (column.getTopValues() != null) {
+                for (Map.Entry<Object, Long> entry : column.getTopValues().top(10)) {
+                    Map<String, Object> value = new HashMap<>();
+                    value.put("value", entry.getKey());
+                    value.put("count", entry.getValue());
+                    topValues.add(value);
+                }
+            }
+            dist.put("topValues", topValues);
+            distributions.add(dist);
+        }
+        stats.put("columns", columns);
+        stats.put("columnCount", columns.size());
+
+        Map<String, Object> source = new HashMap<>();
+        source.put("profiledAt", profile.getProfiledAt());
+        source.put("fullRefreshedAt", profile.getFullRefreshedAt());
+        source.put("watermarkColumn", profile.getWatermarkColumn());
+        source.put("watermarkValue", profile.getWatermarkValue());
+        stats.put("profile", source);
+    }
+
+    private boolean isNumeric(String colType) {
+        return colType.contains("INT") || colType.contains("DECIMAL") ||
+               colType.contains("FLOAT") || colType.contains("DOUBLE") ||
+               colType.contains("NUMERIC");
+    }
+
+    /**
+     * 单列的样本统计：值频次（TOP 值和不同值估计）、数值列的最小 / 最大值和均值方差
+     */
+    private static class ColumnSample {
+        final boolean numeric;
+        final Map<Object, Long> frequencies = new HashMap<>();
+        long count;
+        Number min;
+        Number max;
+        double mean;
+        double m2;
+
+        ColumnSample(boolean numeric) {
+            this.numeric = numeric;
+        }
+
+        void add(Object value) {
+            if (value == null || value instanceof byte[]) {
+                return;
+            }
+            frequencies.merge(value, 1L, Long::sum);
+            if (numeric && value instanceof Number) {
+                Number number = (Number) value;
+                double x = number.doubleValue();
+                if (min == null || x < min.doubleValue()) {
+                    min = number;
+                }
+                if (max == null || x > max.doubleValue()) {
+                    max = number;
+                }
+                // Welford 算法累计均值和方差
+                count++;
+                double delta = x - mean;
+                mean += delta / count;
+                m2 += delta * (x - mean);
+            }
+        }
+
+        double variance() {
+            return count > 1 ? m2 / (count - 1) : 0;
+        }
+
+        /**
+         * Haas-Stokes Duj1 估计（与 PostgreSQL ANALYZE 相同）：n * d / (n - f1 + f1 * n / N)，
+         * d 为样本中的不同值个数，f1 为只出现一次的值个数；精确扫描时即为不同值个数
+         */
+        long estimateDistinct(SampleResult sample) {
+            long sampled = 0;
+            long singletons = 0;
+            for (long frequency : frequencies.values()) {
+                sampled += frequency;
+                if (frequency == 1) {
+                    singletons++;
+                }
+            }
+            long distinct = frequencies.size();
+            if (sample.isExact() || sampled == 0) {
+                return distinct;
+            }
+            // 列的非空值总数按样本比例换算
+            double population = (double) sampled * sample.getPopulationRows() / sample.getSampleRows();
+            double estimate = sampled * distinct / (sampled - singletons + singletons * sampled / population);
+            return Math.round(Math.max(distinct, Math.min(population, estimate)));
+        }
+
+        List<Map.Entry<Object, Long>> top(int limit) {
+            List<Map.Entry<Object, Long>> entries = new ArrayList<>(frequencies.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            return entries.subList(0, Math.min(limit, entries.size()));
+        }
+    }
+
     private List<String> generateInsights(Map<String, Object> statistics, List<Map<String, Object>> distributions) {
         List<String> insights = new ArrayList<>();
         
@@ -192,6 +417,18 @@ public class DataStoryService {
         Integer columnCount = (Integer) statistics.get("columnCount");
         story.append(String.format("该数据表共有 **%,d** 条记录，包含 **%d** 个字段。\n\n", 
             totalRows, columnCount));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> sampling = (Map<String, Object>) statistics.get("sampling");
+        if (sampling != null && !Boolean.TRUE.equals(sampling.get("exact"))) {
+            story.append(String.format("> 以上统计基于 %,d 行样本估计（%s），95%% 置信度下比例误差约 ±%.1f%%。\n\n",
+                (Long) sampling.get("sampleRows"), sampling.get("method"), (Double) sampling.get("marginOfError") * 100));
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> profile = (Map<String, Object>) statistics.get("profile");
+        if (profile != null) {
+            story.append(String.format("> 以上统计来自 %s 数据质量检查保存的画像，未重新扫描数据；TOP 值的计数为近似值。\n\n",
+                profile.get("profiledAt")));
+        }
         
         story.append("## 关键发现\n\n");
         for (int i = 0; i < insights.size(); i++) {
@@ -3,22 +3,36 @@ package com.data.assistant.service;
 import com.data.assistant.model.DataSource;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.sql.Connection;
-import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 动态数据源服务
  * 管理多个数据源的连接池
+ *
+ * 数据源选择是请求级的（见 DataSourceContextHolder），未选择时使用默认数据源；
+ * 每个连接池对应一个缓存的 JdbcTemplate，取用时不做连接校验，连接健康由后台定时检查。
+ * 连接池参数来自数据源的 connectionParams（见 DataSourcePoolSettings），可选开启自适应调整最大连接数。
  */
 @Service
 public class DynamicDataSourceService {
@@ -28,19 +42,52 @@ public class DynamicDataSourceService {
     @Autowired
     private DataSourceService dataSourceService;
     
-    // 数据源连接池缓存
-    private final Map<Long, HikariDataSource> dataSourcePool = new ConcurrentHashMap<>();
+    @Value("${datasource.health-check.interval-seconds:30}")
+    private long healthCheckIntervalSeconds;
     
-    // 当前使用的数据源ID
-    private Long currentDataSourceId = null;
+    @Value("${datasource.health-check.timeout-seconds:5}")
+    private int healthCheckTimeoutSeconds;
+    
+    @Value("${datasource.pool.maximum-pool-size:10}")
+    private int defaultMaximumPoolSize;
+    
+    @Value("${datasource.pool.minimum-idle:0}")
+    private int defaultMinimumIdle;
+    
+    @Value("${datasource.pool.adaptive.interval-seconds:15}")
+    private long adaptiveIntervalSeconds;
+    
+    // 平均获取连接等待超过该值（毫秒）时扩容
+    @Value("${datasource.pool.adaptive.grow-wait-millis:20}")
+    private double adaptiveGrowWaitMillis;
+    
+    // 窗口内峰值使用率低于该值时缩容
+    @Value("${datasource.pool.adaptive.shrink-utilization:0.3}")
+    private double adaptiveShrinkUtilization;
+    
+    // 未配置 adaptive.maxPoolSize 时，扩容上限为初始最大连接数的该倍数
+    @Value("${datasource.pool.adaptive.default-ceiling-factor:2}")
+    private double adaptiveDefaultCeilingFactor;
+    
+    // 数据源连接池缓存（连接池与对应的 JdbcTemplate）
+    private final Map<Long, PoolEntry> dataSourcePool = new ConcurrentHashMap<>();
+    
+    // 连接池健康状态（由后台任务更新）
+    private final Map<Long, PoolHealth> healthStatus = new ConcurrentHashMap<>();
+    
+    // 默认数据源ID（请求未指定数据源时使用）
+    private volatile Long defaultDataSourceId = null;
+    
+    private ScheduledExecutorService healthChecker;
     
     @PostConstruct
     public void init() {
         // 加载默认数据源（如果有的话）
         try {
             dataSourceService.getDefaultDataSource().ifPresent(ds -> {
+                defaultDataSourceId = ds.getId();
                 try {
-                    switchDataSource(ds.getId());
+                    getPool(ds.getId());
                     logger.info("Default datasource initialized: {}", ds.getName());
                 } catch (Exception e) {
                     logger.warn("Failed to initialize default datasource: {}", e.getMessage());
@@ -50,14 +97,27 @@ public class DynamicDataSourceService {
             // 如果没有默认数据源或查询失败，只是记录日志，不阻止应用启动
             logger.info("No default datasource configured or failed to load: {}", e.getMessage());
         }
+        
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "datasource-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth,
+            healthCheckIntervalSeconds, healthCheckIntervalSeconds, TimeUnit.SECONDS);
+        healthChecker.scheduleWithFixedDelay(this::adjustPoolSizes,
+            adaptiveIntervalSeconds, adaptiveIntervalSeconds, TimeUnit.SECONDS);
     }
     
     @PreDestroy
     public void destroy() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
         // 关闭所有连接池
-        dataSourcePool.forEach((id, ds) -> {
+        dataSourcePool.forEach((id, entry) -> {
             try {
-                ds.close();
+                entry.dataSource.close();
                 logger.info("Closed datasource pool: {}", id);
             } catch (Exception e) {
                 logger.error("Failed to close datasource pool: {}", id, e);
@@ -67,86 +127,278 @@ public class DynamicDataSourceService {
     
     /**
      * 切换数据源
+     * 只影响当前请求线程，不会改变其他并发请求使用的数据源。
      */
     public void switchDataSource(Long dataSourceId) {
-        if (dataSourceId.equals(currentDataSourceId)) {
-            return; // 已经是当前数据源
-        }
-        
-        DataSource dataSource = dataSourceService.getDataSourceById(dataSourceId)
-            .orElseThrow(() -> new IllegalArgumentException("数据源不存在: " + dataSourceId));
-        
-        // 获取或创建连接池
-        HikariDataSource hikariDS = dataSourcePool.computeIfAbsent(dataSourceId, id -> {
-            return createHikariDataSource(dataSource);
-        });
-        
-        // 测试连接
-        try (Connection conn = hikariDS.getConnection()) {
-            if (!conn.isValid(5)) {
-                throw new SQLException("数据源连接无效");
-            }
-        } catch (SQLException e) {
-            // 移除无效的连接池
-            dataSourcePool.remove(dataSourceId);
-            throw new RuntimeException("无法连接到数据源: " + e.getMessage(), e);
-        }
-        
-        currentDataSourceId = dataSourceId;
-        logger.info("Switched to datasource: {} (ID: {})", dataSource.getName(), dataSourceId);
+        getPool(dataSourceId);
+        DataSourceContextHolder.set(dataSourceId);
+    }
+    
+    /**
+     * 预热数据源连接池（不改变当前请求的数据源选择）
+     */
+    public void initDataSource(Long dataSourceId) {
+        getPool(dataSourceId);
+    }
+    
+    /**
+     * 设置默认数据源（默认数据源变更后调用）
+     */
+    public void setDefaultDataSourceId(Long dataSourceId) {
+        this.defaultDataSourceId = dataSourceId;
     }
     
     /**
      * 获取当前 JdbcTemplate
      */
     public JdbcTemplate getCurrentJdbcTemplate() {
-        if (currentDataSourceId == null) {
+        Long dataSourceId = getCurrentDataSourceId();
+        if (dataSourceId == null) {
             throw new IllegalStateException("未选择数据源，请先配置并选择数据源");
         }
-        
-        HikariDataSource dataSource = dataSourcePool.get(currentDataSourceId);
-        if (dataSource == null) {
-            throw new IllegalStateException("当前数据源连接池不存在");
-        }
-        
-        return new JdbcTemplate(dataSource);
+        return getJdbcTemplate(dataSourceId);
     }
     
     /**
      * 获取指定数据源的 JdbcTemplate
      */
     public JdbcTemplate getJdbcTemplate(Long dataSourceId) {
-        switchDataSource(dataSourceId);
-        return getCurrentJdbcTemplate();
+        return getPool(dataSourceId).jdbcTemplate;
+    }
+    
+    /**
+     * 获取指定数据源的连接参数配置
+     */
+    public DataSourcePoolSettings getSettings(Long dataSourceId) {
+        return getPool(dataSourceId).settings;
     }
     
     /**
-     * 获取当前数据源ID
+     * 获取当前数据源ID（当前请求选择的数据源，未选择时为默认数据源）
      */
     public Long getCurrentDataSourceId() {
-        return currentDataSourceId;
+        Long dataSourceId = DataSourceContextHolder.get();
+        return dataSourceId != null ? dataSourceId : defaultDataSourceId;
+    }
+    
+    /**
+     * 获取所有连接池的健康状态和使用情况
+     */
+    public Map<Long, Map<String, Object>> getHealthStatus() {
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        dataSourcePool.forEach((id, entry) -> {
+            Map<String, Object> status = new LinkedHashMap<>();
+            PoolHealth health = healthStatus.get(id);
+            status.put("healthy", health == null || health.healthy);
+            status.put("lastCheckedAt", health != null ? health.checkedAt.toString() : null);
+            status.put("message", health != null ? health.message : null);
+            HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+            status.put("maximumPoolSize", entry.dataSource.getHikariConfigMXBean().getMaximumPoolSize());
+            status.put("adaptive", entry.settings.getAdaptive().isEnabled());
+            status.put("readOnly", entry.dataSource.isReadOnly());
+            if (pool != null) {
+                status.put("activeConnections", pool.getActiveConnections());
+                status.put("idleConnections", pool.getIdleConnections());
+                status.put("totalConnections", pool.getTotalConnections());
+                status.put("threadsAwaitingConnection", pool.getThreadsAwaitingConnection());
+            }
+            result.put(id, status);
+        });
+        return result;
+    }
+    
+    /**
+     * 获取或创建连接池
+     */
+    private PoolEntry getPool(Long dataSourceId) {
+        PoolEntry entry = dataSourcePool.get(dataSourceId);
+        if (entry != null) {
+            return entry;
+        }
+        return dataSourcePool.computeIfAbsent(dataSourceId, id -> {
+            DataSource dataSource = dataSourceService.getDataSourceById(id)
+                .orElseThrow(() -> new IllegalArgumentException("数据源不存在: " + id));
+            DataSourcePoolSettings settings = DataSourcePoolSettings.parse(dataSource.getConnectionParams());
+            PoolMetrics metrics = new PoolMetrics();
+            try {
+                HikariDataSource hikariDS = createHikariDataSource(dataSource, settings, metrics);
+                logger.info("Created datasource pool: {} (ID: {}, maximumPoolSize: {})",
+                    dataSource.getName(), id, hikariDS.getMaximumPoolSize());
+                return new PoolEntry(hikariDS, settings, metrics);
+            } catch (IllegalArgumentException e) {
+                // 连接池配置错误，原样抛出
+                throw e;
+            } catch (RuntimeException e) {
+                throw new RuntimeException("无法连接到数据源: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    /**
+     * 后台健康检查：逐个校验连接池，只在状态变化时记录日志
+     */
+    private void checkHealth() {
+        dataSourcePool.forEach((id, entry) -> {
+            boolean healthy;
+            String message = null;
+            try (Connection conn = entry.dataSource.getConnection()) {
+                healthy = conn.isValid(healthCheckTimeoutSeconds);
+                if (!healthy) {
+                    message = "数据源连接无效";
+                }
+            } catch (Exception e) {
+                healthy = false;
+                message = e.getMessage();
+            }
+            
+            PoolHealth previous = healthStatus.put(id, new PoolHealth(healthy, message));
+            if (previous == null ? !healthy : previous.healthy != healthy) {
+                if (healthy) {
+                    logger.info("Datasource {} recovered", id);
+                } else {
+                    logger.warn("Datasource {} health check failed: {}", id, message);
+                }
+            }
+        });
+    }
+    
+    /**
+     * 自适应调整连接池大小
+     * 按上一个窗口内的平均获取等待时间、等待超时次数和峰值使用率，
+     * 在配置的 [minPoolSize, maxPoolSize] 范围内扩容或缩容最大连接数。
+     */
+    private void adjustPoolSizes() {
+        dataSourcePool.forEach((id, entry) -> {
+            DataSourcePoolSettings.Adaptive adaptive = entry.settings.getAdaptive();
+            if (!adaptive.isEnabled() || entry.dataSource.isClosed()) {
+                return;
+            }
+            try {
+                PoolMetrics.Window window = entry.metrics.drain();
+                int current = entry.dataSource.getHikariConfigMXBean().getMaximumPoolSize();
+                int min = adaptive.getMinPoolSize() != null ? adaptive.getMinPoolSize() : 1;
+                int max = adaptiveCeiling(entry.settings);
+                HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+                int waiting = pool != null ? pool.getThreadsAwaitingConnection() : 0;
+                double utilization = (double) window.peakActive / current;
+                
+                int target = current;
+                if (window.timeouts > 0 || waiting > 0 || window.avgWaitMillis() > adaptiveGrowWaitMillis) {
+                    // 连接不足：按等待线程数扩容，至少增加 25%
+                    target = current + Math.max(waiting, Math.max(1, current / 4));
+                } else if (window.acquisitions > 0 && utilization < adaptiveShrinkUtilization) {
+                    // 长期空闲：缩容到峰值的两倍左右
+                    target = Math.max(window.peakActive * 2, current - Math.max(1, current / 4));
+                } else if (window.acquisitions == 0) {
+                    target = current - Math.max(1, current / 4);
+                }
+                target = Math.max(min, Math.min(max, target));
+                
+                if (target != current) {
+                    // 先调整最小空闲数，保证 minimumIdle <= maximumPoolSize
+                    int minimumIdle = entry.dataSource.getHikariConfigMXBean().getMinimumIdle();
+                    if (minimumIdle > target) {
+                        entry.dataSource.getHikariConfigMXBean().setMinimumIdle(target);
+                    }
+                    entry.dataSource.getHikariConfigMXBean().setMaximumPoolSize(target);
+                    logger.info("Resized datasource pool {}: {} -> {} (avgWait={}ms, timeouts={}, peakActive={}, waiting={})",
+                        id, current, target, String.format("%.1f", window.avgWaitMillis()),
+                        window.timeouts, window.peakActive, waiting);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to resize datasource pool {}: {}", id, e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * 自适应连接池的扩容上限：adaptive.maxPoolSize；未配置时为初始最大连接数
+     * （maximumPoolSize，没有时为全局默认值）乘以 default-ceiling-factor，至少比初始值大 1
+     */
+    private int adaptiveCeiling(DataSourcePoolSettings settings) {
+        DataSourcePoolSettings.Adaptive adaptive = settings.getAdaptive();
+        if (adaptive.getMaxPoolSize() != null) {
+            return adaptive.getMaxPoolSize();
+        }
+        int configured = settings.getMaximumPoolSize() != null ? settings.getMaximumPoolSize() : defaultMaximumPoolSize;
+        return Math.max(configured + 1, (int) Math.ceil(configured * adaptiveDefaultCeilingFactor));
     }
     
     /**
      * 创建 Hikari 连接池
      */
-    private HikariDataSource createHikariDataSource(DataSource dataSource) {
+    private HikariDataSource createHikariDataSource(DataSource dataSource, DataSourcePoolSettings settings,
+                                                    PoolMetrics metrics) {
         HikariConfig config = new HikariConfig();
+        String type = dataSource.getType().toLowerCase();
         
+        config.setPoolName("ds-" + dataSource.getId());
         config.setJdbcUrl(buildJdbcUrl(dataSource));
         config.setUsername(dataSource.getUsername());
         config.setPassword(dataSource.getPassword());
-        config.setDriverClassName(getDriverClassName(dataSource.getType()));
+        config.setDriverClassName(getDriverClassName(type));
         
-        // 连接池配置
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(2);
-        config.setIdleTimeout(300000);
-        config.setConnectionTimeout(20000);
-        config.setMaxLifetime(1200000);
+        // 连接池配置（自适应模式下从 minPoolSize 起步）
+        int maximumPoolSize = settings.getMaximumPoolSize() != null ? settings.getMaximumPoolSize() : defaultMaximumPoolSize;
+        DataSourcePoolSettings.Adaptive adaptive = settings.getAdaptive();
+        if (adaptive.isEnabled() && settings.getMaximumPoolSize() == null && adaptive.getMinPoolSize() != null) {
+            maximumPoolSize = adaptive.getMinPoolSize();
+        }
+        if (adaptive.isEnabled()) {
+            // 配置错误时直接拒绝，不让连接池停留在无法调整的大小
+            int min = adaptive.getMinPoolSize() != null ? adaptive.getMinPoolSize() : 1;
+            int ceiling = adaptiveCeiling(settings);
+            if (min < 1 || min > ceiling || maximumPoolSize > ceiling) {
+                throw new IllegalArgumentException(String.format(
+                    "数据源 %d 自适应连接池配置错误: minPoolSize=%d, maximumPoolSize=%d, maxPoolSize=%d",
+                    dataSource.getId(), min, maximumPoolSize, ceiling));
+            }
+        }
+        int minimumIdle = settings.getMinimumIdle() != null ? settings.getMinimumIdle() : defaultMinimumIdle;
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(Math.min(minimumIdle, maximumPoolSize));
+        config.setIdleTimeout(settings.getIdleTimeout() != null ? settings.getIdleTimeout() : 300000);
+        config.setConnectionTimeout(settings.getConnectionTimeout() != null ? settings.getConnectionTimeout() : 20000);
+        config.setMaxLifetime(settings.getMaxLifetime() != null ? settings.getMaxLifetime() : 1200000);
+        config.setReadOnly(Boolean.TRUE.equals(settings.getReadOnly()));
+        config.setMetricsTrackerFactory((poolName, poolStats) -> metrics.bind(poolStats));
         
-        // 连接测试
-        config.setConnectionTestQuery("SELECT 1");
+        // 驱动参数：语句缓存、超时
+        switch (type) {
+            case "mysql":
+                if (settings.getStatementCacheSize() != null && settings.getStatementCacheSize() > 0) {
+                    config.addDataSourceProperty("cachePrepStmts", "true");
+                    config.addDataSourceProperty("useServerPrepStmts", "true");
+                    config.addDataSourceProperty("prepStmtCacheSize", settings.getStatementCacheSize());
+                    config.addDataSourceProperty("prepStmtCacheSqlLimit",
+                        settings.getStatementCacheSqlLimit() != null ? settings.getStatementCacheSqlLimit() : 2048);
+                }
+                if (settings.getSocketTimeout() != null) {
+                    config.addDataSourceProperty("socketTimeout", settings.getSocketTimeout());
+                }
+                if (settings.getConnectTimeout() != null) {
+                    config.addDataSourceProperty("connectTimeout", settings.getConnectTimeout());
+                }
+                break;
+            case "postgresql":
+                // PostgreSQL 驱动的超时单位为秒
+                if (settings.getStatementCacheSize() != null) {
+                    config.addDataSourceProperty("preparedStatementCacheQueries", settings.getStatementCacheSize());
+                    if (settings.getStatementCacheSize() == 0) {
+                        config.addDataSourceProperty("prepareThreshold", 0);
+                    }
+                }
+                if (settings.getSocketTimeout() != null) {
+                    config.addDataSourceProperty("socketTimeout", Math.max(1, settings.getSocketTimeout() / 1000));
+                }
+                if (settings.getConnectTimeout() != null) {
+                    config.addDataSourceProperty("connectTimeout", Math.max(1, settings.getConnectTimeout() / 1000));
+                }
+                break;
+            default:
+                break;
+        }
+        settings.getProperties().forEach(config::addDataSourceProperty);
         
         return new HikariDataSource(config);
     }
@@ -162,7 +414,7 @@ public class DynamicDataSourceService {
         
         switch (type) {
             case "mysql":
-                return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true", 
+                return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&useCursorFetch=true", 
                     host, port, database);
             case "postgresql":
                 return String.format("jdbc:postgresql://%s:%d/%s", 
@@ -194,14 +446,19 @@ public class DynamicDataSourceService {
      * 刷新数据源（配置变更后调用）
      */
     public void refreshDataSource(Long dataSourceId) {
-        HikariDataSource oldDS = dataSourcePool.remove(dataSourceId);
-        if (oldDS != null && !oldDS.isClosed()) {
-            oldDS.close();
+        PoolEntry old = dataSourcePool.remove(dataSourceId);
+        healthStatus.remove(dataSourceId);
+        if (old != null && !old.dataSource.isClosed()) {
+            old.dataSource.close();
         }
         
-        // 如果是当前数据源，重新初始化
-        if (dataSourceId.equals(currentDataSourceId)) {
-            switchDataSource(dataSourceId);
+        // 如果是默认数据源，重新初始化
+        if (dataSourceId.equals(defaultDataSourceId)) {
+            try {
+                getPool(dataSourceId);
+            } catch (Exception e) {
+                logger.warn("Failed to reinitialize datasource {}: {}", dataSourceId, e.getMessage());
+            }
         }
         
         logger.info("Refreshed datasource: {}", dataSourceId);
@@ -211,15 +468,108 @@ public class DynamicDataSourceService {
      * 移除数据源
      */
     public void removeDataSource(Long dataSourceId) {
-        HikariDataSource ds = dataSourcePool.remove(dataSourceId);
-        if (ds != null && !ds.isClosed()) {
-            ds.close();
+        PoolEntry entry = dataSourcePool.remove(dataSourceId);
+        healthStatus.remove(dataSourceId);
+        if (entry != null && !entry.dataSource.isClosed()) {
+            entry.dataSource.close();
         }
         
-        if (dataSourceId.equals(currentDataSourceId)) {
-            currentDataSourceId = null;
+        if (dataSourceId.equals(defaultDataSourceId)) {
+            defaultDataSourceId = null;
         }
         
         logger.info("Removed datasource: {}", dataSourceId);
     }
+    
+    /**
+     * 连接池及其复用的 JdbcTemplate
+     */
+    private static class PoolEntry {
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSourcePoolSettings settings;
+        private final PoolMetrics metrics;
+        
+        PoolEntry(HikariDataSource dataSource, DataSourcePoolSettings settings, PoolMetrics metrics) {
+            this.dataSource = dataSource;
+            this.settings = settings;
+            this.metrics = metrics;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            if (settings.getFetchSize() != null) {
+                this.jdbcTemplate.setFetchSize(settings.getFetchSize());
+            }
+        }
+    }
+    
+    /**
+     * 连接池指标采集（Hikari MetricsTracker 回调）
+     * 累计一个调整窗口内的获取连接等待时间、超时次数和峰值活跃连接数。
+     */
+    private static class PoolMetrics implements IMetricsTracker {
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final AtomicInteger peakActive = new AtomicInteger();
+        private volatile PoolStats poolStats;
+        
+        IMetricsTracker bind(PoolStats poolStats) {
+            this.poolStats = poolStats;
+            return this;
+        }
+        
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquisitions.increment();
+            waitNanos.add(elapsedAcquiredNanos);
+            PoolStats stats = poolStats;
+            if (stats != null) {
+                peakActive.accumulateAndGet(stats.getActiveConnections(), Math::max);
+            }
+        }
+        
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+        
+        /**
+         * 取出并重置当前窗口的统计
+         */
+        Window drain() {
+            return new Window(acquisitions.sumThenReset(), waitNanos.sumThenReset(),
+                timeouts.sumThenReset(), peakActive.getAndSet(0));
+        }
+        
+        static class Window {
+            final long acquisitions;
+            final long waitNanos;
+            final long timeouts;
+            final int peakActive;
+            
+            Window(long acquisitions, long waitNanos, long timeouts, int peakActive) {
+                this.acquisitions = acquisitions;
+                this.waitNanos = waitNanos;
+                this.timeouts = timeouts;
+                this.peakActive = peakActive;
+            }
+            
+            double avgWaitMillis() {
+                return acquisitions == 0 ? 0 : waitNanos / 1_000_000.0 / acquisitions;
+            }
+        }
+    }
+    
+    /**
+     * 最近一次健康检查结果
+     */
+    private static class PoolHealth {
+        private final boolean healthy;
+        private final String message;
+        private final LocalDateTime checkedAt = LocalDateTime.now();
+        
+        PoolHealth(boolean healthy, String message) {
+            this.healthy = healthy;
+            this.message = message;
+        }
+    }
 }
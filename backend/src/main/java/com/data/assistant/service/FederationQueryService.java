@@ -1,52 +1,99 @@
 package com.data.assistant.service;
 
-import com.data.assistant.repository.DataSourceRepository;
+import com.data.assistant.model.ResultTable;
+import com.data.assistant.service.federation.AggregatePlan;
+import com.data.assistant.service.federation.FederationExecutor;
+import com.data.assistant.service.federation.FederationExecutor.SourceResult;
+import com.data.assistant.service.federation.FederationExecutor.SourceTask;
+import com.data.assistant.service.federation.FederationValues;
+import com.data.assistant.service.federation.HashAggregator;
+import com.data.assistant.service.federation.HashJoinOperator;
+import com.data.assistant.service.federation.JoinKeyCollector;
+import com.data.assistant.service.federation.JoinSpec;
+import com.data.assistant.service.sql.SqlParser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import javax.sql.DataSource;
-import java.sql.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.util.*;
 
+/**
+ * 联邦查询服务
+ * 通过 FederationExecutor 在多个数据源上并发执行，结果按完成顺序合并；
+ * 失败或超时的数据源不会中断整个查询，而是在 sources 中单独报告（partial = true）。
+ */
 @Service
 public class FederationQueryService {
 
     @Autowired
-    private DataSourceRepository dataSourceRepository;
+    private FederationExecutor federationExecutor;
 
     @Autowired
-    private DataSource jdbcDataSource;
+    private DynamicDataSourceService dynamicDataSourceService;
 
-    public Map<String, Object> executeFederationQuery(List<Long> dataSourceIds, String sql) throws Exception {
-        Map<String, Object> result = new HashMap<>();
-        List<Map<String, Object>> allData = new ArrayList<>();
+    @Autowired
+    private SqlParser sqlParser;
+
+    // JOIN 构建侧哈希表的内存预算（MB），超出后按分区溢写到磁盘
+    @Value("${federation.join.memory-budget-mb:64}")
+    private long joinMemoryBudgetMb;
+
+    // 溢写目录，为空时使用系统临时目录
+    @Value("${federation.join.spill-dir:}")
+    private String joinSpillDir;
 
-        for (Long dataSourceId : dataSourceIds) {
-            com.data.assistant.model.DataSource dataSource = dataSourceRepository.findById(dataSourceId)
-                    .orElseThrow(() -> new RuntimeException("DataSource not found: " + dataSourceId));
+    // JOIN 返回的最大行数，超出时标记截断
+    @Value("${federation.join.max-output-rows:10000}")
+    private int joinMaxOutputRows;
 
-            try (Connection connection = jdbcDataSource.getConnection();
-                 Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
+    // 半连接下推：是否启用、探测侧至少是构建侧的多少倍才下推、IN 列表最多键数、每批键数、最多批次数
+    @Value("${federation.join.semi-join.enabled:true}")
+    private boolean semiJoinEnabled;
 
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
+    @Value("${federation.join.semi-join.min-ratio:4}")
+    private long semiJoinMinRatio;
+
+    @Value("${federation.join.semi-join.max-keys:50000}")
+    private int semiJoinMaxKeys;
+
+    @Value("${federation.join.semi-join.batch-size:1000}")
+    private int semiJoinBatchSize;
+
+    @Value("${federation.join.semi-join.max-batches:5}")
+    private int semiJoinMaxBatches;
+
+    public Map<String, Object> executeFederationQuery(List<Long> dataSourceIds, String sql) throws Exception {
+        Map<String, Object> result = new HashMap<>();
+        List<Map<String, Object>> allData = new ArrayList<>();
 
-                while (rs.next()) {
+        // 各数据源完成后立即合并，总耗时取决于最慢的数据源
+        List<SourceResult<ResultTable>> sourceResults = federationExecutor.execute(dataSourceIds,
+            (dataSourceId, jdbcTemplate, timeout) -> federationExecutor.query(jdbcTemplate, sql, timeout),
+            sourceResult -> {
+                if (!sourceResult.isSuccess()) {
+                    return;
+                }
+                for (Map<String, Object> sourceRow : sourceResult.getValue()) {
                     Map<String, Object> row = new LinkedHashMap<>();
-                    row.put("_dataSourceId", dataSourceId);
-                    row.put("_dataSourceName", dataSource.getName());
-                    for (int i = 1; i <= columnCount; i++) {
-                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
-                    }
+                    row.put("_dataSourceId", sourceResult.getDataSourceId());
+                    row.put("_dataSourceName", sourceResult.getDataSourceName());
+                    row.putAll(sourceRow);
                     allData.add(row);
                 }
-            }
-        }
+            });
 
         result.put("data", allData);
         result.put("totalCount", allData.size());
         result.put("dataSourceCount", dataSourceIds.size());
+        putSourceSummaries(result, sourceResults);
 
         return result;
     }
@@ -54,100 +101,392 @@ public class FederationQueryService {
     public Map<String, Object> joinAcrossDataSources(Long leftDsId, String leftTable, 
                                                       Long rightDsId, String rightTable,
                                                       String joinColumn) throws Exception {
-        Map<String, Object> result = new HashMap<>();
-        
-        // 从左数据源获取数据
-        List<Map<String, Object>> leftData = fetchData(leftDsId, leftTable);
-        
-        // 从右数据源获取数据
-        List<Map<String, Object>> rightData = fetchData(rightDsId, rightTable);
-        
-        // 执行内存JOIN
-        List<Map<String, Object>> joinedData = new ArrayList<>();
-        
-        // 构建右表索引
-        Map<Object, List<Map<String, Object>>> rightIndex = new HashMap<>();
-        for (Map<String, Object> rightRow : rightData) {
-            Object key = rightRow.get(joinColumn);
-            if (key != null) {
-                rightIndex.computeIfAbsent(key, k -> new ArrayList<>()).add(rightRow);
-            }
+        JoinSpec spec = new JoinSpec();
+        spec.setLeftDsId(leftDsId);
+        spec.setLeftTable(leftTable);
+        spec.setLeftKey(joinColumn);
+        spec.setRightDsId(rightDsId);
+        spec.setRightTable(rightTable);
+        spec.setRightKey(joinColumn);
+        return joinAcrossDataSources(spec);
+    }
+
+    /**
+     * 跨数据源 JOIN
+     * 先并发读取两侧表的估计行数（数据库统计信息，不扫描表），以较小一侧为构建侧；估计值不考虑过滤条件，
+     * 任一侧没有估计值时以左表为构建侧、不做半连接下推。构建侧和探测侧都按游标流式读取，
+     * 由 HashJoinOperator 在内存预算内完成连接，超出预算的分区溢写到本地临时文件。
+     * 两侧只读取连接键和指定的列；结果超过 maxRows 时截断并标记 truncated。
+     *
+     * 探测侧不需要保留未匹配行且明显更大时，做半连接下推：把构建侧的连接键以 IN (...) 批次
+     * （键过多时退化为键范围谓词）下推到探测侧，只传输可能匹配的行；协调端再用布隆过滤器丢弃不可能匹配的行。
+     */
+    public Map<String, Object> joinAcrossDataSources(JoinSpec spec) {
+        int timeout = federationExecutor.getDefaultTimeoutSeconds();
+
+        // 并发读取两侧的估计行数，选择较小的一侧构建哈希表；过滤条件在这里先解析校验
+        if (spec.getLeftWhere() != null && !spec.getLeftWhere().trim().isEmpty()) {
+            condition(spec.getLeftWhere());
         }
-        
-        // JOIN操作
-        for (Map<String, Object> leftRow : leftData) {
-            Object key = leftRow.get(joinColumn);
-            if (key != null && rightIndex.containsKey(key)) {
-                for (Map<String, Object> rightRow : rightIndex.get(key)) {
-                    Map<String, Object> joinedRow = new LinkedHashMap<>();
-                    leftRow.forEach((k, v) -> joinedRow.put("left." + k, v));
-                    rightRow.forEach((k, v) -> joinedRow.put("right." + k, v));
-                    joinedData.add(joinedRow);
+        if (spec.getRightWhere() != null && !spec.getRightWhere().trim().isEmpty()) {
+            condition(spec.getRightWhere());
+        }
+        long[] counts = {-1, -1};
+        List<SourceTask<Long>> estimateTasks = List.of(
+            (dataSourceId, jdbcTemplate, t) -> estimateRows(jdbcTemplate, spec.getLeftTable(), t),
+            (dataSourceId, jdbcTemplate, t) -> estimateRows(jdbcTemplate, spec.getRightTable(), t));
+        federationExecutor.executeEach(List.of(spec.getLeftDsId(), spec.getRightDsId()), estimateTasks, timeout,
+            sourceResult -> counts[sourceResult.getIndex()] = sourceResult.isSuccess() ? sourceResult.getValue() : -1);
+        boolean estimated = counts[0] >= 0 && counts[1] >= 0;
+        boolean buildIsLeft = !estimated || counts[0] <= counts[1];
+        JoinSide build = buildIsLeft ? JoinSide.left(spec) : JoinSide.right(spec);
+        JoinSide probe = buildIsLeft ? JoinSide.right(spec) : JoinSide.left(spec);
+        long buildCount = buildIsLeft ? counts[0] : counts[1];
+        long probeCount = buildIsLeft ? counts[1] : counts[0];
+        boolean probeOuter = buildIsLeft ? spec.getJoinType().preservesRight() : spec.getJoinType().preservesLeft();
+        boolean semiJoin = semiJoinEnabled && estimated && !probeOuter && probeCount > buildCount * semiJoinMinRatio;
+
+        int maxRows = spec.getMaxRows() > 0 ? Math.min(spec.getMaxRows(), joinMaxOutputRows) : joinMaxOutputRows;
+        List<Object[][]> joinedPairs = new ArrayList<>();
+        long[] joinedCount = new long[1];
+        HashJoinOperator.JoinSink sink = (leftRow, rightRow) -> {
+            if (joinedCount[0]++ < maxRows) {
+                joinedPairs.add(new Object[][]{leftRow, rightRow});
+            }
+        };
+
+        long startTime = System.currentTimeMillis();
+        List<String> buildColumns;
+        List<String> probeColumns;
+        HashJoinOperator.Stats stats;
+        Map<String, Object> semiJoinInfo = new LinkedHashMap<>();
+        try (HashJoinOperator join = new HashJoinOperator(spec.getJoinType(), buildIsLeft,
+                joinMemoryBudgetMb * 1024L * 1024L, resolveSpillDir(), sink)) {
+            JdbcTemplate buildJdbc = dynamicDataSourceService.getJdbcTemplate(build.dataSourceId);
+            JdbcTemplate probeJdbc = dynamicDataSourceService.getJdbcTemplate(probe.dataSourceId);
+            String probeSql = buildJoinSideSql(probe.table, probe.key, probe.columns, probe.where, null);
+
+            if (!semiJoin) {
+                buildColumns = streamJoinSide(buildJdbc, buildJoinSideSql(build.table, build.key, build.columns,
+                    build.where, null), build.key, timeout, join::addBuildRow);
+                probeColumns = streamJoinSide(probeJdbc, probeSql, probe.key, timeout, join::probe);
+                semiJoinInfo.put("mode", "none");
+            } else {
+                // 每个 IN 批次都是一次探测侧查询：连接键没有索引时每批都是全表扫描，只允许一批；
+                // 有索引时最多 maxBatches 批，键更多时改为一次键范围扫描
+                boolean probeIndexed = isIndexed(probeJdbc, probe.table, probe.key);
+                int maxBatches = probeIndexed ? semiJoinMaxBatches : 1;
+                JoinKeyCollector keyCollector = new JoinKeyCollector(
+                    (int) Math.min(semiJoinMaxKeys, (long) semiJoinBatchSize * maxBatches), buildCount);
+                semiJoinInfo.put("probeKeyIndexed", probeIndexed);
+                buildColumns = streamJoinSide(buildJdbc, buildJoinSideSql(build.table, build.key, build.columns,
+                    build.where, null), build.key, timeout, (key, row) -> {
+                        keyCollector.add(key);
+                        join.addBuildRow(key, row);
+                    });
+                long[] filtered = new long[1];
+                java.util.function.BiConsumer<Object, Object[]> probeConsumer = (key, row) -> {
+                    if (keyCollector.mightMatch(key)) {
+                        join.probe(key, row);
+                    } else {
+                        filtered[0]++;
+                    }
+                };
+
+                if (!keyCollector.isOverflow()) {
+                    // 键数不多：按批次 IN (...) 下推，只读取匹配的行
+                    List<List<Object>> batches = keyCollector.batches(semiJoinBatchSize);
+                    List<String> columns = null;
+                    for (List<Object> batch : batches) {
+                        String batchSql = buildJoinSideSql(probe.table, probe.key, probe.columns, probe.where,
+                            probe.key + " IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")");
+                        columns = streamJoinSide(probeJdbc, batchSql, probe.key, timeout, probeConsumer,
+                            batch.toArray());
+                    }
+                    // 构建侧为空时不必读取探测侧数据，只取列名
+                    probeColumns = columns != null ? columns : streamJoinSide(probeJdbc,
+                        buildJoinSideSql(probe.table, probe.key, probe.columns, "1 = 0", null),
+                        probe.key, timeout, probeConsumer);
+                    semiJoinInfo.put("mode", "in-list");
+                    semiJoinInfo.put("keys", keyCollector.getKeyCount());
+                    semiJoinInfo.put("batches", batches.size());
+                } else if (keyCollector.hasRange()) {
+                    // 键太多：下推键范围谓词，协调端用布隆过滤器进一步过滤
+                    probeColumns = streamJoinSide(probeJdbc, buildJoinSideSql(probe.table, probe.key, probe.columns,
+                        probe.where, probe.key + " BETWEEN ? AND ?"), probe.key, timeout, probeConsumer,
+                        keyCollector.getMin(), keyCollector.getMax());
+                    semiJoinInfo.put("mode", "key-range");
+                } else {
+                    probeColumns = streamJoinSide(probeJdbc, probeSql, probe.key, timeout, probeConsumer);
+                    semiJoinInfo.put("mode", "bloom-filter");
                 }
+                semiJoinInfo.put("probeRowsFiltered", filtered[0]);
             }
+            join.finish();
+            stats = join.getStats();
         }
-        
+        List<String> leftColumns = buildIsLeft ? buildColumns : probeColumns;
+        List<String> rightColumns = buildIsLeft ? probeColumns : buildColumns;
+
+        List<Map<String, Object>> joinedData = new ArrayList<>(joinedPairs.size());
+        for (Object[][] pair : joinedPairs) {
+            Map<String, Object> joinedRow = new LinkedHashMap<>();
+            putPrefixed(joinedRow, "left.", leftColumns, pair[0]);
+            putPrefixed(joinedRow, "right.", rightColumns, pair[1]);
+            joinedData.add(joinedRow);
+        }
+
+        Map<String, Object> result = new HashMap<>();
         result.put("data", joinedData);
-        result.put("leftCount", leftData.size());
-        result.put("rightCount", rightData.size());
-        result.put("joinedCount", joinedData.size());
+        result.put("leftEstimatedRows", counts[0]);
+        result.put("rightEstimatedRows", counts[1]);
+        result.put("joinedCount", joinedCount[0]);
+        result.put("joinType", spec.getJoinType().name());
+        result.put("buildSide", buildIsLeft ? "left" : "right");
+        result.put("truncated", joinedCount[0] > maxRows);
+        result.put("spilledPartitions", stats.getSpilledPartitions());
+        result.put("spilledBytes", stats.getSpilledBytes());
+        result.put("semiJoin", semiJoinInfo);
+        result.put("executionTime", System.currentTimeMillis() - startTime);
         
         return result;
     }
 
-    private List<Map<String, Object>> fetchData(Long dataSourceId, String tableName) throws Exception {
-        List<Map<String, Object>> data = new ArrayList<>();
-        com.data.assistant.model.DataSource dataSource = dataSourceRepository.findById(dataSourceId)
-                .orElseThrow(() -> new RuntimeException("DataSource not found"));
+    /**
+     * 生成 JOIN 一侧的查询：只投影连接键和需要的列，附加过滤条件和下推的键谓词
+     */
+    private String buildJoinSideSql(String table, String key, List<String> columns, String where,
+                                    String keyPredicate) {
+        FederationValues.checkIdentifier(table);
+        String keyColumn = FederationValues.checkIdentifier(key);
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (columns == null || columns.isEmpty()) {
+            sql.append("*");
+        } else {
+            LinkedHashSet<String> projection = new LinkedHashSet<>();
+            projection.add(keyColumn);
+            columns.forEach(column -> projection.add(FederationValues.checkIdentifier(column)));
+            sql.append(String.join(", ", projection));
+        }
+        sql.append(" FROM ").append(table);
+        List<String> predicates = new ArrayList<>();
+        if (where != null && !where.trim().isEmpty()) {
+            predicates.add("(" + condition(where) + ")");
+        }
+        if (keyPredicate != null) {
+            predicates.add(keyPredicate);
+        }
+        if (!predicates.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 用户提供的过滤条件：解析为单个条件表达式（不能有子查询），下推时使用解析后重新生成的文本
+     */
+    private String condition(String where) {
+        return sqlParser.parseCondition(where).toString();
+    }
 
-        String sql = "SELECT * FROM " + tableName + " LIMIT 10000";
-        
-        try (Connection connection = jdbcDataSource.getConnection();
-             Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    /**
+     * 连接键是否为探测表某个索引的首列；无法读取索引信息时按没有索引处理
+     */
+    private boolean isIndexed(JdbcTemplate jdbcTemplate, String table, String key) {
+        String[] parts = table.split("\\.");
+        String schema = parts.length > 1 ? parts[0] : null;
+        String tableName = parts[parts.length - 1];
+        try {
+            Boolean indexed = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+                for (String name : new String[]{tableName, tableName.toUpperCase(), tableName.toLowerCase()}) {
+                    try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), schema, name, false, true)) {
+                        boolean found = false;
+                        while (rs.next()) {
+                            found = true;
+                            if (rs.getShort("ORDINAL_POSITION") == 1 && key.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                                return true;
+                            }
+                        }
+                        if (found) {
+                            return false;
+                        }
+                    }
+                }
+                return false;
+            });
+            return Boolean.TRUE.equals(indexed);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 表的估计行数，读取数据库维护的统计信息（PostgreSQL pg_class.reltuples、MySQL information_schema.TABLES.TABLE_ROWS、
+     * H2 ROW_COUNT_ESTIMATE），不扫描表；不支持的数据库、从未收集统计信息或读取失败时返回 -1
+     */
+    private long estimateRows(JdbcTemplate jdbcTemplate, String table, int timeoutSeconds) {
+        String[] parts = FederationValues.checkIdentifier(table).split("\\.");
+        String schema = parts.length > 1 ? parts[0] : null;
+        String tableName = parts[parts.length - 1];
+        try {
+            Long estimate = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+                String sql;
+                List<String> params;
+                if (product.contains("postgres")) {
+                    sql = "SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)";
+                    params = List.of(table.trim());
+                } else if (product.contains("mysql") || product.contains("mariadb")) {
+                    sql = "SELECT TABLE_ROWS FROM information_schema.TABLES "
+                        + "WHERE TABLE_SCHEMA = " + (schema != null ? "?" : "DATABASE()") + " AND TABLE_NAME = ?";
+                    params = schema != null ? List.of(schema, tableName) : List.of(tableName);
+                } else if (product.contains("h2")) {
+                    sql = "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES "
+                        + "WHERE UPPER(TABLE_SCHEMA) = UPPER(" + (schema != null ? "?" : "SCHEMA()") + ") "
+                        + "AND UPPER(TABLE_NAME) = UPPER(?)";
+                    params = schema != null ? List.of(schema, tableName) : List.of(tableName);
+                } else {
+                    return -1L;
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setQueryTimeout(timeoutSeconds);
+                    for (int i = 0; i < params.size(); i++) {
+                        stmt.setString(i + 1, params.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        // 从未 ANALYZE 的 PostgreSQL 表为 -1（旧版本为 0），与没有统计信息同样处理
+                        long rows = rs.next() ? (long) rs.getDouble(1) : -1;
+                        return rows > 0 ? rows : -1L;
+                    }
+                }
+            });
+            return estimate != null ? estimate : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
 
+    /**
+     * 流式读取 JOIN 的一侧，逐行交给 consumer（连接键, 行），返回列名
+     */
+    private List<String> streamJoinSide(JdbcTemplate jdbcTemplate, String sql, String key, int timeoutSeconds,
+                                        java.util.function.BiConsumer<Object, Object[]> consumer, Object... params) {
+        return federationExecutor.stream(jdbcTemplate, sql, timeoutSeconds, rs -> {
             ResultSetMetaData metaData = rs.getMetaData();
             int columnCount = metaData.getColumnCount();
-
+            List<String> columns = new ArrayList<>(columnCount);
+            int keyIndex = -1;
+            for (int i = 1; i <= columnCount; i++) {
+                String label = metaData.getColumnLabel(i);
+                columns.add(label);
+                if (keyIndex < 0 && label.equalsIgnoreCase(key.trim())) {
+                    keyIndex = i - 1;
+                }
+            }
+            if (keyIndex < 0) {
+                throw new IllegalArgumentException("连接列不存在: " + key);
+            }
             while (rs.next()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.put(metaData.getColumnLabel(i), rs.getObject(i));
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1);
                 }
-                data.add(row);
+                consumer.accept(row[keyIndex], row);
             }
+            return columns;
+        }, params);
+    }
+
+    private void putPrefixed(Map<String, Object> target, String prefix, List<String> columns, Object[] values) {
+        for (int i = 0; i < columns.size(); i++) {
+            target.put(prefix + columns.get(i), values != null ? values[i] : null);
         }
-        
-        return data;
     }
 
-    public List<Map<String, Object>> aggregateAcrossDataSources(List<Long> dataSourceIds, 
-                                                                 String tableName,
-                                                                 String aggColumn,
-                                                                 String aggFunction) throws Exception {
-        List<Map<String, Object>> results = new ArrayList<>();
+    private Path resolveSpillDir() {
+        if (joinSpillDir != null && !joinSpillDir.trim().isEmpty()) {
+            return Paths.get(joinSpillDir.trim());
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "federation-join");
+    }
+
+    public Map<String, Object> aggregateAcrossDataSources(List<Long> dataSourceIds, 
+                                                           String tableName,
+                                                           String aggColumn,
+                                                           String aggFunction) throws Exception {
+        AggregatePlan.Aggregation aggregation = new AggregatePlan.Aggregation(
+            AggregatePlan.parseFunction(aggFunction), aggColumn, "result");
+        return aggregateAcrossDataSources(dataSourceIds,
+            new AggregatePlan(tableName, null, List.of(aggregation), null));
+    }
+
+    /**
+     * 联邦聚合
+     * 每个数据源只执行部分聚合（AVG 拆为 SUM + COUNT，按 GROUP BY 分组），
+     * 只有分组后的部分结果跨网络传输，协调端按完成顺序做哈希合并。
+     */
+    public Map<String, Object> aggregateAcrossDataSources(List<Long> dataSourceIds, AggregatePlan plan) {
+        String partialSql = plan.toPartialSql();
+        HashAggregator aggregator = new HashAggregator(plan);
         
-        for (Long dataSourceId : dataSourceIds) {
-            com.data.assistant.model.DataSource dataSource = dataSourceRepository.findById(dataSourceId)
-                    .orElseThrow(() -> new RuntimeException("DataSource not found"));
-
-            String sql = String.format("SELECT %s(%s) as result FROM %s", 
-                aggFunction, aggColumn, tableName);
-            
-            try (Connection connection = jdbcDataSource.getConnection();
-                 Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-
-                if (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    row.put("dataSourceId", dataSourceId);
-                    row.put("dataSourceName", dataSource.getName());
-                    row.put("result", rs.getObject("result"));
-                    results.add(row);
+        List<SourceResult<ResultTable>> sourceResults = federationExecutor.execute(dataSourceIds,
+            (dataSourceId, jdbcTemplate, timeout) -> federationExecutor.query(jdbcTemplate, partialSql, timeout),
+            sourceResult -> {
+                if (sourceResult.isSuccess()) {
+                    aggregator.merge(sourceResult.getValue());
                 }
-            }
-        }
+            });
         
-        return results;
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", aggregator.result());
+        result.put("groupCount", aggregator.getGroupCount());
+        result.put("partialRows", aggregator.getPartialRows());
+        result.put("pushedDownSql", partialSql);
+        putSourceSummaries(result, sourceResults);
+        return result;
+    }
+
+    /**
+     * JOIN 的一侧（便于按构建侧/探测侧统一处理）
+     */
+    private static class JoinSide {
+        private final Long dataSourceId;
+        private final String table;
+        private final String key;
+        private final List<String> columns;
+        private final String where;
+
+        private JoinSide(Long dataSourceId, String table, String key, List<String> columns, String where) {
+            this.dataSourceId = dataSourceId;
+            this.table = table;
+            this.key = key;
+            this.columns = columns;
+            this.where = where;
+        }
+
+        static JoinSide left(JoinSpec spec) {
+            return new JoinSide(spec.getLeftDsId(), spec.getLeftTable(), spec.getLeftKey(),
+                spec.getLeftColumns(), spec.getLeftWhere());
+        }
+
+        static JoinSide right(JoinSpec spec) {
+            return new JoinSide(spec.getRightDsId(), spec.getRightTable(), spec.getRightKey(),
+                spec.getRightColumns(), spec.getRightWhere());
+        }
+    }
+
+    /**
+     * 写入各数据源的执行摘要，存在失败或超时的数据源时标记为部分结果
+     */
+    private void putSourceSummaries(Map<String, Object> result, List<? extends SourceResult<?>> sourceResults) {
+        List<Map<String, Object>> sources = new ArrayList<>();
+        boolean partial = false;
+        for (SourceResult<?> sourceResult : sourceResults) {
+            sources.add(sourceResult.toSummary());
+            partial |= !sourceResult.isSuccess();
+        }
+        result.put("sources", sources);
+        result.put("partial", partial);
     }
 }
@@ -3,14 +3,18 @@ package com.data.assistant.service;
 import cn.iflow.sdk.query.IFlowQuery;
 import cn.iflow.sdk.types.messages.AssistantMessage;
 import cn.iflow.sdk.types.messages.Message;
+import com.data.assistant.service.ai.AIExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +28,9 @@ public class IflowClientService {
     @Value("${iflow.enabled:true}")
     private boolean iflowEnabled;
 
+    @Autowired
+    private AIExecutor aiExecutor;
+
     /**
      * 同步查询 - 使用默认配置（自动启动 iFlow 进程）
      */
@@ -49,6 +56,42 @@ public class IflowClientService {
         }
     }
 
+    /**
+     * 流式查询 - 按 AssistantMessage 分块把文本交给 onChunk，返回完整文本
+     * 当前 SDK 只提供 querySync，分块在查询返回后依次输出；onChunk 抛出的异常（客户端断开）直接向上抛出。
+     */
+    public String streamQuery(String prompt, Consumer<String> onChunk) {
+        List<Message> response;
+        if (!iflowEnabled) {
+            logger.warn("iFlow is disabled. Returning mock response.");
+            response = null;
+        } else {
+            try {
+                response = IFlowQuery.querySync(prompt);
+            } catch (Exception e) {
+                logger.error("Failed to execute streamQuery via iFlow SDK", e);
+                response = null;
+            }
+        }
+        if (response == null) {
+            String fallback = handleFallbackResponse(prompt);
+            onChunk.accept(fallback);
+            return fallback;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Message message : response) {
+            if (message instanceof AssistantMessage) {
+                String chunk = ((AssistantMessage) message).getChunk().getText();
+                if (chunk != null && !chunk.isEmpty()) {
+                    text.append(chunk);
+                    onChunk.accept(chunk);
+                }
+            }
+        }
+        return text.toString();
+    }
+
     /**
      * 异步查询 - 返回 CompletableFuture
      */
@@ -58,24 +101,22 @@ public class IflowClientService {
             return CompletableFuture.completedFuture(handleFallbackResponse(prompt));
         }
 
-        CompletableFuture<String> future = new CompletableFuture<>();
-
-        // 在新线程中执行查询
-        new Thread(() -> {
+        // 在 AI 执行器的 iflow 通道上执行（有并发上限、排队和超时），返回的 future 取消时中断查询
+        CompletableFuture<String> query = aiExecutor.submit("iflow", () -> {
             try {
                 List<Message> response = IFlowQuery.querySync(prompt);
-                String result = response.stream()
+                return response.stream()
                         .filter(msg -> msg instanceof AssistantMessage)
                         .map(msg -> ((AssistantMessage) msg).getChunk().getText())
                         .collect(Collectors.joining());
-                future.complete(result);
             } catch (Exception e) {
-                logger.error("Async query failed", e);
-                future.complete(handleFallbackResponse(prompt));
+                throw new CompletionException(e);
             }
-        }).start();
-
-        return future;
+        });
+        return AIExecutor.recover(query, e -> {
+            logger.error("Async query failed", e);
+            return handleFallbackResponse(prompt);
+        });
     }
 
     /**
@@ -94,6 +135,14 @@ public class IflowClientService {
         return simpleQuery(prompt);
     }
 
+    /**
+     * SQL 生成查询（流式）
+     */
+    public String generateSqlStream(String schema, String naturalLanguageQuery, Consumer<String> onChunk) {
+        String prompt = buildSqlGenerationPrompt(schema, naturalLanguageQuery);
+        return streamQuery(prompt, onChunk);
+    }
+
     /**
      * 代码生成 - 生成数据分析代码
      */
@@ -0,0 +1,73 @@
+package com.data.assistant.service;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 请求级查询上下文
+ * 保存当前请求的用户、客户端指定的查询ID（请求头 X-Query-Id，便于客户端在查询完成前取消）
+ * 和客户端连接探测，在当前线程上启动的查询会登记到 QueryRegistry 中。
+ * 由 DataSourceContextInterceptor 在请求开始和结束时设置和清理；异步线程需要自行设置。
+ */
+public final class QueryContextHolder {
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+
+    private QueryContextHolder() {
+    }
+
+    public static void set(Context context) {
+        CONTEXT.set(context);
+    }
+
+    /**
+     * 获取当前线程的查询上下文，未设置时（如定时任务）返回 null
+     */
+    public static Context get() {
+        return CONTEXT.get();
+    }
+
+    public static void clear() {
+        CONTEXT.remove();
+    }
+
+    /**
+     * 查询上下文
+     */
+    public static class Context {
+        private final String user;
+        private final String queryId;
+        private final BooleanSupplier clientProbe;
+
+        public Context(String user, String queryId) {
+            this(user, queryId, null);
+        }
+
+        /**
+         * @param clientProbe 检查客户端是否仍然连接（返回 false 时取消查询），为空时不检查
+         */
+        public Context(String user, String queryId, BooleanSupplier clientProbe) {
+            this.user = user;
+            this.queryId = queryId;
+            this.clientProbe = clientProbe;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public String getQueryId() {
+            return queryId;
+        }
+
+        public BooleanSupplier getClientProbe() {
+            return clientProbe;
+        }
+
+        /**
+         * 相同用户和查询ID，使用另一个客户端连接探测（用于异步线程）
+         */
+        public Context withClientProbe(BooleanSupplier probe) {
+            return new Context(user, queryId, probe);
+        }
+    }
+}
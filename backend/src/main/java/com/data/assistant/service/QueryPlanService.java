@@ -0,0 +1,227 @@
+package com.data.assistant.service;
+
+import com.data.assistant.service.sql.ExplainPlanParser;
+import com.data.assistant.service.sql.QueryPlan;
+import com.data.assistant.service.sql.SqlParser;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 执行计划（EXPLAIN）
+ *
+ * 通过数据源连接池执行对应数据库的 EXPLAIN 并解析为 QueryPlan，按 数据源 + 归一化 SQL 缓存（LRU + TTL），
+ * 重复分析同一 SQL 不再访问数据库。只分析单条 SELECT：执行的是解析后重新生成的 SQL，
+ * 不会把附带的其他语句一起发给数据库。
+ */
+@Service
+public class QueryPlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanService.class);
+
+    @Autowired
+    private DynamicDataSourceService dynamicDataSourceService;
+
+    @Autowired
+    private SqlParser sqlParser;
+
+    @Value("${plan.explain.timeout-seconds:10}")
+    private int timeoutSeconds;
+
+    @Value("${plan.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${plan.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public Lookup explain(Long dataSourceId, String sql) {
+        return explain(dataSourceId, sqlParser.parse(sql));
+    }
+
+    /**
+     * 获取执行计划，优先从缓存读取
+     *
+     * @param dataSourceId 数据源ID，为空时使用当前数据源
+     * @throws IllegalArgumentException 不是 SELECT 查询、数据库类型不支持或计划无法解析
+     */
+    public Lookup explain(Long dataSourceId, Statement statement) {
+        if (!(statement instanceof Select)) {
+            throw new IllegalArgumentException("只能分析 SELECT 查询的执行计划");
+        }
+        Long resolvedId = dataSourceId != null ? dataSourceId : dynamicDataSourceService.getCurrentDataSourceId();
+        String sql = statement.toString();
+        String key = resolvedId + "|" + QueryResultCache.normalize(sql);
+        QueryPlan cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return new Lookup(cached, true);
+        }
+        misses.increment();
+        try {
+            QueryPlan plan = load(resolvedId, sql);
+            put(key, resolvedId, plan);
+            return new Lookup(plan, false);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        }
+    }
+
+    private QueryPlan load(Long dataSourceId, String sql) {
+        JdbcTemplate jdbcTemplate = dataSourceId != null
+            ? dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+            : dynamicDataSourceService.getCurrentJdbcTemplate();
+        long start = System.currentTimeMillis();
+        QueryPlan plan = jdbcTemplate.execute((ConnectionCallback<QueryPlan>) connection -> {
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            String dialect = product.contains("mysql") || product.contains("mariadb") ? "mysql"
+                : product.contains("postgresql") ? "postgresql"
+                : product.contains("h2") ? "h2" : null;
+            if (dialect == null) {
+                throw new IllegalArgumentException("不支持的数据库类型: " + product);
+            }
+            String explain = "mysql".equals(dialect) ? "EXPLAIN FORMAT=JSON " + sql
+                : "postgresql".equals(dialect) ? "EXPLAIN (FORMAT JSON) " + sql : "EXPLAIN " + sql;
+            try (java.sql.Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet rs = statement.executeQuery(explain)) {
+                    // PostgreSQL 文本格式每行一条，JSON 格式只有一行；H2 / MySQL 只有一行
+                    StringBuilder raw = new StringBuilder();
+                    while (rs.next()) {
+                        if (raw.length() > 0) {
+                            raw.append('\n');
+                        }
+                        raw.append(rs.getString(1));
+                    }
+                    return "mysql".equals(dialect) ? ExplainPlanParser.parseMySql(raw.toString())
+                        : "postgresql".equals(dialect) ? ExplainPlanParser.parsePostgres(raw.toString(),
+                            relation -> postgresTableRows(connection, relation))
+                        : ExplainPlanParser.parseH2(raw.toString());
+                }
+            }
+        });
+        logger.info("Explained query on datasource {} in {}ms ({})", dataSourceId,
+            System.currentTimeMillis() - start, plan.getDialect());
+        return plan;
+    }
+
+    /**
+     * PostgreSQL 表的估计总行数（pg_class.reltuples，按 search_path 解析表名），未知或从未 ANALYZE 时返回 -1
+     */
+    private double postgresTableRows(Connection connection, String relation) {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT reltuples FROM pg_class WHERE oid = to_regclass(quote_ident(?))")) {
+            statement.setQueryTimeout(timeoutSeconds);
+            statement.setString(1, relation);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : -1;
+            }
+        } catch (SQLException e) {
+            logger.debug("Failed to read reltuples of {}: {}", relation, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 使数据源的执行计划缓存失效（数据源变更、表数据被覆盖导入后计划可能变化）
+     *
+     * @param dataSourceId 为空时清空全部
+     */
+    public synchronized void invalidate(Long dataSourceId) {
+        if (dataSourceId == null) {
+            entries.clear();
+            return;
+        }
+        entries.values().removeIf(entry -> Objects.equals(dataSourceId, entry.dataSourceId));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("failures", failures.sum());
+        stats.put("evictions", evictions.sum());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        return stats;
+    }
+
+    private synchronized QueryPlan get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.plan.getCreatedAt() > ttlSeconds * 1000) {
+            entries.remove(key);
+            return null;
+        }
+        return entry != null ? entry.plan : null;
+    }
+
+    private synchronized void put(String key, Long dataSourceId, QueryPlan plan) {
+        entries.put(key, new Entry(dataSourceId, plan));
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 执行计划查找结果
+     */
+    public static class Lookup {
+        private final QueryPlan plan;
+        private final boolean cached;
+
+        Lookup(QueryPlan plan, boolean cached) {
+            this.plan = plan;
+            this.cached = cached;
+        }
+
+        public QueryPlan getPlan() {
+            return plan;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+    }
+
+    private static class Entry {
+        private final Long dataSourceId;
+        private final QueryPlan plan;
+
+        Entry(Long dataSourceId, QueryPlan plan) {
+            this.dataSourceId = dataSourceId;
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.data.assistant.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 执行中查询登记表
+ *
+ * 查询执行期间登记（查询ID、用户、来源、SQL、开始时间、正在执行的 Statement），可以按查询ID取消：
+ * 先调用 Statement.cancel()，经过宽限时间仍未结束时在另一个连接上执行
+ * KILL QUERY（MySQL / MariaDB）或 pg_cancel_backend（PostgreSQL）。
+ * 终止用的连接不从连接池获取（连接池可能正被这些查询占满），单独建立并限制连接和执行超时；
+ * 终止在独立的线程上执行，不阻塞客户端连接检查。
+ * 带客户端连接探测的查询由后台定时检查，客户端断开后自动取消。
+ */
+@Service
+public class QueryRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryRegistry.class);
+
+    private static final String SYSTEM_USER = "system";
+
+    @Value("${query.registry.client-check-seconds:5}")
+    private int clientCheckSeconds;
+
+    @Value("${query.registry.kill-grace-millis:2000}")
+    private long killGraceMillis;
+
+    @Value("${query.registry.max-sql-length:500}")
+    private int maxSqlLength;
+
+    // 终止查询时建立连接和执行的超时（秒）
+    @Value("${query.registry.kill-timeout-seconds:5}")
+    private int killTimeoutSeconds;
+
+    private final Map<String, RunningQuery> running = new ConcurrentHashMap<>();
+
+    // 物理连接 -> 数据库端的连接ID（Backend.NONE 表示数据库不支持），连接被回收后自动移除
+    private final Map<Connection, Backend> backends = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder killed = new LongAdder();
+    private final LongAdder clientDisconnects = new LongAdder();
+    private final DurationWindow durations = new DurationWindow(500);
+
+    private ScheduledExecutorService watchdog;
+    private ScheduledExecutorService killer;
+
+    @PostConstruct
+    public void init() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "query-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        watchdog = scheduler;
+        if (clientCheckSeconds > 0) {
+            watchdog.scheduleWithFixedDelay(this::checkClients, clientCheckSeconds, clientCheckSeconds, TimeUnit.SECONDS);
+        }
+        ScheduledThreadPoolExecutor killScheduler = new ScheduledThreadPoolExecutor(2, r -> {
+            Thread thread = new Thread(r, "query-kill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        killScheduler.setRemoveOnCancelPolicy(true);
+        killer = killScheduler;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+        killer.shutdownNow();
+    }
+
+    /**
+     * 登记一个查询，用户、客户端查询ID和连接探测取自当前线程的 QueryContextHolder
+     * 必须在 try-with-resources 中使用，关闭时移除登记并记录耗时。
+     *
+     * @param source     发起查询的模块，如 query、report、data-quality
+     * @param dataSource 执行查询的连接池，用于执行 KILL；为空时只能通过 Statement.cancel() 取消
+     */
+    public RunningQuery start(String source, Long dataSourceId, DataSource dataSource, String sql) {
+        QueryContextHolder.Context context = QueryContextHolder.get();
+        RunningQuery query = new RunningQuery(
+            UUID.randomUUID().toString(),
+            context != null ? context.getQueryId() : null,
+            context != null && context.getUser() != null ? context.getUser() : SYSTEM_USER,
+            source, dataSourceId, dataSource, sql,
+            context != null ? context.getClientProbe() : null);
+        running.put(query.id, query);
+        started.increment();
+        return query;
+    }
+
+    /**
+     * 取消查询
+     *
+     * @param id 查询ID或客户端指定的查询ID（同一个客户端查询ID下的查询全部取消）
+     * @return 被取消的查询数，0 表示没有找到执行中的查询
+     */
+    public int cancel(String id, String reason) {
+        int count = 0;
+        for (RunningQuery query : running.values()) {
+            if ((id.equals(query.id) || id.equals(query.requestId)) && query.cancel(reason)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 执行中的查询（按开始时间排序）
+     *
+     * @param user 为空时返回所有用户的查询
+     */
+    public List<Map<String, Object>> list(String user) {
+        List<RunningQuery> queries = new ArrayList<>(running.values());
+        queries.sort(Comparator.comparingLong(query -> query.startedAt));
+        List<Map<String, Object>> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (RunningQuery query : queries) {
+            if (user == null || user.equals(query.user)) {
+                result.add(query.toMap(now));
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        Map<String, Integer> bySource = new LinkedHashMap<>();
+        long oldest = 0;
+        for (RunningQuery query : running.values()) {
+            bySource.merge(query.source, 1, Integer::sum);
+            oldest = Math.max(oldest, now - query.startedAt);
+        }
+        stats.put("inFlight", bySource.values().stream().mapToInt(Integer::intValue).sum());
+        stats.put("inFlightBySource", bySource);
+        stats.put("oldestRunningMillis", oldest);
+        stats.put("started", started.sum());
+        stats.put("completed", completed.sum());
+        stats.put("cancelled", cancellations.sum());
+        stats.put("killed", killed.sum());
+        stats.put("clientDisconnects", clientDisconnects.sum());
+        stats.put("durationMillis", durations.snapshot());
+        return stats;
+    }
+
+    /**
+     * 定时检查带连接探测的查询，客户端断开时取消
+     */
+    private void checkClients() {
+        long now = System.currentTimeMillis();
+        for (RunningQuery query : running.values()) {
+            if (query.clientProbe == null || query.cancelled || now - query.startedAt < clientCheckSeconds * 1000L) {
+                continue;
+            }
+            boolean connected;
+            try {
+                connected = query.clientProbe.getAsBoolean();
+            } catch (RuntimeException e) {
+                connected = false;
+            }
+            if (!connected && query.cancel("客户端已断开")) {
+                clientDisconnects.increment();
+            }
+        }
+    }
+
+    /**
+     * 查询连接在数据库端的连接ID，每个物理连接只查询一次
+     */
+    private Backend backend(Connection connection) {
+        Connection physical = connection;
+        try {
+            if (connection.isWrapperFor(Connection.class)) {
+                physical = connection.unwrap(Connection.class);
+            }
+        } catch (SQLException e) {
+            // 按代理连接缓存
+        }
+        Backend cached = backends.get(physical);
+        if (cached != null) {
+            return cached;
+        }
+        Backend backend = Backend.NONE;
+        try {
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            boolean mysql = product.contains("mysql") || product.contains("mariadb");
+            String lookup = mysql ? "SELECT CONNECTION_ID()"
+                : product.contains("postgresql") ? "SELECT pg_backend_pid()" : null;
+            if (lookup != null) {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(lookup)) {
+                    if (rs.next()) {
+                        backend = new Backend(mysql, rs.getLong(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not resolve backend id for query cancellation: {}", e.getMessage());
+        }
+        backends.put(physical, backend);
+        return backend;
+    }
+
+    /**
+     * Statement.cancel() 之后查询仍在执行时，在另一个连接上终止
+     * 语句已关闭或已换成下一条时不再执行，避免连接归还连接池后终止了其他请求的查询；
+     * 建立终止连接可能耗时，建立后再确认一次，并要求数据库端该连接仍在执行（PostgreSQL 还要求语句开始时间早于本次登记的语句）。
+     */
+    private void kill(RunningQuery query, Statement statement, Backend backend) {
+        try {
+            if (!isExecuting(query, statement)) {
+                return;
+            }
+            try (Connection connection = openKillConnection(query.dataSource, backend)) {
+                if (!isExecuting(query, statement)) {
+                    return;
+                }
+                long elapsedMillis = System.currentTimeMillis() - query.statementStartedAt;
+                if (backend.kill(connection, elapsedMillis / 2, killTimeoutSeconds)) {
+                    killed.increment();
+                    logger.warn("Query {} did not stop after cancel, terminated backend {}", query.id, backend.id);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to kill query {}: {}", query.id, e.getMessage());
+        }
+    }
+
+    private boolean isExecuting(RunningQuery query, Statement statement) throws SQLException {
+        return query.statement == statement && running.containsKey(query.id) && !statement.isClosed();
+    }
+
+    /**
+     * 建立终止用的连接：Hikari 连接池按其 URL、账号和驱动参数直接建立（不占用连接池），其他数据源从数据源获取
+     */
+    private Connection openKillConnection(DataSource dataSource, Backend backend) throws SQLException {
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            return dataSource.getConnection();
+        }
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+        Properties properties = new Properties();
+        hikari.getDataSourceProperties().forEach((key, value) -> properties.setProperty(key.toString(), String.valueOf(value)));
+        if (hikari.getUsername() != null) {
+            properties.setProperty("user", hikari.getUsername());
+        }
+        if (hikari.getPassword() != null) {
+            properties.setProperty("password", hikari.getPassword());
+        }
+        // MySQL 驱动的超时单位为毫秒，PostgreSQL 为秒
+        String timeout = backend.mysql ? String.valueOf(killTimeoutSeconds * 1000L) : String.valueOf(killTimeoutSeconds);
+        properties.setProperty("connectTimeout", timeout);
+        properties.setProperty("socketTimeout", timeout);
+        if (!backend.mysql) {
+            properties.setProperty("loginTimeout", timeout);
+        }
+        return DriverManager.getConnection(hikari.getJdbcUrl(), properties);
+    }
+
+    /**
+     * 查询连接在数据库端的连接ID
+     */
+    private static class Backend {
+        private static final Backend NONE = new Backend(false, -1);
+
+        private final boolean mysql;
+        private final long id;
+
+        Backend(boolean mysql, long id) {
+            this.mysql = mysql;
+            this.id = id;
+        }
+
+        boolean isKillable() {
+            return id >= 0;
+        }
+
+        /**
+         * 数据库端该连接仍在执行语句时终止（PostgreSQL 还要求语句已执行至少 minAgeMillis），返回是否执行了终止
+         */
+        boolean kill(Connection connection, long minAgeMillis, int timeoutSeconds) throws SQLException {
+            String sql = mysql
+                ? "SELECT ID FROM information_schema.PROCESSLIST WHERE ID = ? AND COMMAND = 'Query'"
+                : "SELECT pg_cancel_backend(pid) FROM pg_stat_activity WHERE pid = ? AND state = 'active'"
+                    + " AND query_start <= clock_timestamp() - ? * interval '1 millisecond'";
+            boolean found;
+            try (PreparedStatement check = connection.prepareStatement(sql)) {
+                check.setQueryTimeout(timeoutSeconds);
+                check.setLong(1, id);
+                if (!mysql) {
+                    check.setLong(2, minAgeMillis);
+                }
+                try (ResultSet rs = check.executeQuery()) {
+                    found = rs.next();
+                }
+            }
+            if (found && mysql) {
+                try (Statement kill = connection.createStatement()) {
+                    kill.setQueryTimeout(timeoutSeconds);
+                    kill.execute("KILL QUERY " + id);
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * 一个执行中的查询
+     */
+    public class RunningQuery implements AutoCloseable {
+        private final String id;
+        private final String requestId;
+        private final String user;
+        private final String source;
+        private final Long dataSourceId;
+        private final DataSource dataSource;
+        private final String sql;
+        private final BooleanSupplier clientProbe;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile Statement statement;
+        private volatile long statementStartedAt;
+        private volatile Backend backend;
+        private volatile boolean cancelled;
+        private volatile String cancelReason;
+
+        RunningQuery(String id, String requestId, String user, String source, Long dataSourceId,
+                     DataSource dataSource, String sql, BooleanSupplier clientProbe) {
+            this.id = id;
+            this.requestId = requestId;
+            this.user = user;
+            this.source = source;
+            this.dataSourceId = dataSourceId;
+            this.dataSource = dataSource;
+            this.sql = sql;
+            this.clientProbe = clientProbe;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 登记即将执行的语句（同一查询依次执行多条语句时每条都要登记）
+         * 查询已被取消时关闭语句并抛出 CancellationException。
+         */
+        public void attach(Connection connection, Statement stmt) throws SQLException {
+            if (dataSource != null && backend == null) {
+                backend = backend(connection);
+            }
+            statementStartedAt = System.currentTimeMillis();
+            statement = stmt;
+            // 与 cancel() 先设置标记再读取语句的顺序相反，两者并发时至少有一方能看到对方
+            if (cancelled) {
+                statement = null;
+                stmt.close();
+                checkCancelled();
+            }
+        }
+
+        /**
+         * 查询已被取消时抛出 CancellationException（用于把取消导致的 SQLException 转换为明确的原因）
+         */
+        public void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException("查询已取消: " + cancelReason);
+            }
+        }
+
+        boolean cancel(String reason) {
+            synchronized (this) {
+                if (cancelled) {
+                    return false;
+                }
+                cancelReason = reason;
+                cancelled = true;
+            }
+            cancellations.increment();
+            logger.info("Cancelling query {} ({}, user={}): {}", id, source, user, reason);
+            Statement stmt = statement;
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                } catch (SQLException e) {
+                    logger.warn("Statement.cancel() failed for query {}: {}", id, e.getMessage());
+                }
+                Backend target = backend;
+                if (target != null && target.isKillable()) {
+                    killer.schedule(() -> kill(this, stmt, target), killGraceMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            statement = null;
+            if (running.remove(id) != null) {
+                completed.increment();
+                durations.add(System.currentTimeMillis() - startedAt);
+            }
+        }
+
+        Map<String, Object> toMap(long now) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("requestId", requestId);
+            map.put("user", user);
+            map.put("source", source);
+            map.put("dataSourceId", dataSourceId);
+            map.put("sql", sql != null && sql.length() > maxSqlLength ? sql.substring(0, maxSqlLength) + "..." : sql);
+            map.put("startedAt", Instant.ofEpochMilli(startedAt).toString());
+            map.put("elapsedMillis", now - startedAt);
+            map.put("executing", statement != null);
+            map.put("cancelled", cancelled);
+            map.put("cancelReason", cancelReason);
+            return map;
+        }
+    }
+
+    /**
+     * 最近 N 个已结束查询的耗时
+     */
+    private static class DurationWindow {
+        private final long[] values;
+        private int count = 0;
+        private int index = 0;
+
+        DurationWindow(int size) {
+            this.values = new long[size];
+        }
+
+        synchronized void add(long value) {
+            values[index] = value;
+            index = (index + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+        }
+
+        synchronized Map<String, Long> snapshot() {
+            Map<String, Long> snapshot = new LinkedHashMap<>();
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            snapshot.put("p50", percentile(sorted, 0.5));
+            snapshot.put("p95", percentile(sorted, 0.95));
+            snapshot.put("p99", percentile(sorted, 0.99));
+            snapshot.put("max", count == 0 ? 0 : sorted[count - 1]);
+            return snapshot;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+    }
+}
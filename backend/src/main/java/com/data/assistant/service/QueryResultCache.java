@@ -0,0 +1,360 @@
+package com.data.assistant.service;
+
+import com.data.assistant.model.ResultTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 查询结果缓存
+ *
+ * 按 数据源 + 归一化 SQL 缓存只读查询的结果，内存占用按结果的估算字节数限制，LRU + TTL 淘汰。
+ * 同一 SQL 并发执行时只查询一次数据库，其余请求等待同一结果。
+ * 表被导入覆盖时按表名失效：SQL 文本中以完整单词出现该表名的缓存全部删除（宁可多删，不会漏删）。
+ *
+ * 只缓存 SELECT / WITH 查询，包含 NOW()、RAND() 等不确定函数或 FOR UPDATE 的查询不缓存。
+ */
+@Service
+public class QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    private static final Pattern CACHEABLE = Pattern.compile("^\\(*\\s*(select|with)\\b.*", Pattern.DOTALL);
+    private static final Pattern NON_DETERMINISTIC = Pattern.compile(
+        "\\b(now|rand|random|uuid|sysdate|current_timestamp|current_date|current_time|localtimestamp|localtime"
+            + "|curdate|curtime|utc_date|utc_time|utc_timestamp|getdate|getutcdate|sysdatetime|sysutcdatetime"
+            + "|sysdatetimeoffset|newid|unix_timestamp|gen_random_uuid|nextval|last_insert_id)\\b"
+            + "|\\bfor\\s+update\\b|\\bfor\\s+share\\b");
+
+    /**
+     * 缓存状态（用于 X-Cache 响应头）
+     */
+    public enum Status {
+        HIT, MISS, BYPASS
+    }
+
+    /**
+     * 查询加载器
+     */
+    @FunctionalInterface
+    public interface Loader {
+        ResultTable load() throws Exception;
+    }
+
+    @Value("${query.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 单个结果超过该大小不缓存，避免一个大结果挤掉整个缓存
+    @Value("${query.cache.max-entry-bytes:8388608}")
+    private long maxEntryBytes;
+
+    @Value("${query.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<ResultTable>> inFlight = new ConcurrentHashMap<>();
+    private long usedBytes = 0;
+    // 每次失效递增；查询期间发生过失效的结果不再放入缓存，避免缓存到失效前读出的旧数据
+    private long generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 读取缓存，未命中时执行 loader 并缓存结果
+     *
+     * @param dataSourceId 数据源ID，为空表示主数据源
+     * @param sql SQL 语句
+     * @param useCache 为 false 时直接查询（仍会用新结果刷新缓存）
+     */
+    public Lookup getOrLoad(Long dataSourceId, String sql, boolean useCache, Loader loader) throws Exception {
+        String normalized = normalize(sql);
+        if (!enabled || !isCacheable(normalized)) {
+            bypasses.increment();
+            return new Lookup(loader.load(), Status.BYPASS, 0);
+        }
+        String key = keyOf(dataSourceId, normalized);
+        if (useCache) {
+            Entry entry = get(key);
+            if (entry != null) {
+                hits.increment();
+                return new Lookup(entry.table, Status.HIT, System.currentTimeMillis() - entry.createdAt);
+            }
+        }
+
+        CompletableFuture<ResultTable> future = new CompletableFuture<>();
+        CompletableFuture<ResultTable> existing = useCache ? inFlight.putIfAbsent(key, future) : null;
+        if (existing != null) {
+            // 相同查询正在执行，等待其结果
+            hits.increment();
+            return new Lookup(await(existing), Status.HIT, 0);
+        }
+        (useCache ? misses : bypasses).increment();
+        long loadGeneration = currentGeneration();
+        try {
+            ResultTable table = loader.load();
+            put(key, dataSourceId, normalized, table, loadGeneration);
+            future.complete(table);
+            return new Lookup(table, useCache ? Status.MISS : Status.BYPASS, 0);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (useCache) {
+                inFlight.remove(key, future);
+            }
+        }
+    }
+
+    /**
+     * 使引用了指定表的缓存失效
+     *
+     * @param dataSourceId 数据源ID，为空时在所有数据源中失效（主数据源可能与某个动态数据源是同一个库）
+     */
+    public synchronized void invalidateTable(Long dataSourceId, String tableName) {
+        Pattern table = Pattern.compile("(?<![\\w.])(?:[\\w`\"]+\\.)?[`\"\\[]?" + Pattern.quote(tableName.toLowerCase(Locale.ROOT))
+            + "[`\"\\]]?(?!\\w)");
+        generation++;
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if ((dataSourceId == null || dataSourceId.equals(entry.dataSourceId)) && table.matcher(entry.sql).find()) {
+                iterator.remove();
+                usedBytes -= entry.bytes;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            invalidations.add(removed);
+            logger.info("Query cache invalidated {} entries for table {}", removed, tableName);
+        }
+    }
+
+    /**
+     * 使数据源的全部缓存失效（数据源配置变更、删除时调用）
+     */
+    public synchronized void invalidateDataSource(Long dataSourceId) {
+        generation++;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (Objects.equals(dataSourceId, entry.dataSourceId)) {
+                iterator.remove();
+                usedBytes -= entry.bytes;
+                invalidations.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("bypasses", bypasses.sum());
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("usedBytes", usedBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    private synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.createdAt > ttlSeconds * 1000) {
+            entries.remove(key);
+            usedBytes -= entry.bytes;
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private synchronized void put(String key, Long dataSourceId, String sql, ResultTable table, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        long bytes = table.estimateBytes() + sql.length() * 2L + 128;
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        if (bytes > maxEntryBytes || bytes > maxBytes) {
+            return;
+        }
+        entries.put(key, new Entry(dataSourceId, sql, table, bytes));
+        usedBytes += bytes;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            usedBytes -= eldest.bytes;
+            evictions.increment();
+        }
+    }
+
+    private static ResultTable await(CompletableFuture<ResultTable> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static String keyOf(Long dataSourceId, String normalized) {
+        return (dataSourceId != null ? dataSourceId.toString() : "primary") + "|" + normalized;
+    }
+
+    private static boolean isCacheable(String normalized) {
+        return CACHEABLE.matcher(normalized).matches() && !NON_DETERMINISTIC.matcher(normalized).find();
+    }
+
+    /**
+     * 归一化 SQL：去掉注释和末尾分号，引号以外的部分转小写并合并空白。
+     * 单引号、双引号、反引号中的内容原样保留：MySQL 中双引号是字符串常量，PostgreSQL 中带双引号的标识符区分大小写，
+     * 转小写会让不同的查询共用缓存。引号内的反斜杠转义（MySQL）和两个连续引号都按转义处理，
+     * 在不把反斜杠当转义的数据库上最多只是少命中缓存，不会把不同的查询归为一个。
+     */
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = i + 1;
+                while (end < length) {
+                    if (sql.charAt(end) == '\\' && c != '`') {
+                        end += 2;
+                        continue;
+                    }
+                    if (sql.charAt(end) == c) {
+                        // 两个连续引号是转义
+                        if (end + 1 < length && sql.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end, length - 1);
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(sql, i, end + 1);
+                i = end;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+                pendingSpace = true;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ';' || out.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * 缓存查找结果
+     */
+    public static class Lookup {
+        private final ResultTable table;
+        private final Status status;
+        private final long ageMillis;
+
+        Lookup(ResultTable table, Status status, long ageMillis) {
+            this.table = table;
+            this.status = status;
+            this.ageMillis = ageMillis;
+        }
+
+        public ResultTable getTable() {
+            return table;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * 命中时缓存结果的存在时间（毫秒）
+         */
+        public long getAgeMillis() {
+            return ageMillis;
+        }
+    }
+
+    private static class Entry {
+        private final Long dataSourceId;
+        private final String sql;
+        private final ResultTable table;
+        private final long bytes;
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(Long dataSourceId, String sql, ResultTable table, long bytes) {
+            this.dataSourceId = dataSourceId;
+            this.sql = sql;
+            this.table = table;
+            this.bytes = bytes;
+        }
+    }
+}
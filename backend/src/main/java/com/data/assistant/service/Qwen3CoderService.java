@@ -5,6 +5,8 @@ import com.alibaba.dashscope.aigc.generation.GenerationParam;
 import com.alibaba.dashscope.aigc.generation.GenerationResult;
 import com.alibaba.dashscope.common.Message;
 import com.alibaba.dashscope.common.Role;
+import com.data.assistant.service.ai.AIExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -24,9 +26,15 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public class Qwen3CoderService {
     
+    // 异步调用在 AI 执行器的独立通道上执行（有并发上限和超时），不使用公共 ForkJoinPool
+    private static final String AI_LANE = "qwen3-coder";
+    
     @Value("${dashscope.api.key:}")
     private String apiKey;
     
+    @Autowired
+    private AIExecutor aiExecutor;
+    
     private Generation gen;
     
     @PostConstruct
@@ -356,35 +364,35 @@ public class Qwen3CoderService {
      * 异步生成代码
      */
     public CompletableFuture<String> generateCodeWithQwen3Async(String description) {
-        return CompletableFuture.supplyAsync(() -> generateCodeWithQwen3(description));
+        return aiExecutor.submit(AI_LANE, () -> generateCodeWithQwen3(description));
     }
     
     /**
      * 异步优化代码
      */
     public CompletableFuture<String> optimizeCodeWithQwen3Async(String code, String requirements) {
-        return CompletableFuture.supplyAsync(() -> optimizeCodeWithQwen3(code, requirements));
+        return aiExecutor.submit(AI_LANE, () -> optimizeCodeWithQwen3(code, requirements));
     }
     
     /**
      * 异步分析代码
      */
     public CompletableFuture<String> analyzeCodeWithQwen3Async(String code) {
-        return CompletableFuture.supplyAsync(() -> analyzeCodeWithQwen3(code));
+        return aiExecutor.submit(AI_LANE, () -> analyzeCodeWithQwen3(code));
     }
     
     /**
      * 异步修复代码
      */
     public CompletableFuture<String> fixCodeWithQwen3Async(String code, String errorDescription) {
-        return CompletableFuture.supplyAsync(() -> fixCodeWithQwen3(code, errorDescription));
+        return aiExecutor.submit(AI_LANE, () -> fixCodeWithQwen3(code, errorDescription));
     }
     
     /**
      * 异步解释代码
      */
     public CompletableFuture<String> explainCodeWithQwen3Async(String code) {
-        return CompletableFuture.supplyAsync(() -> explainCodeWithQwen3(code));
+        return aiExecutor.submit(AI_LANE, () -> explainCodeWithQwen3(code));
     }
     
     /**
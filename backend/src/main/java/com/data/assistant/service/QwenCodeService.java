@@ -5,6 +5,8 @@ import com.alibaba.dashscope.aigc.generation.GenerationParam;
 import com.alibaba.dashscope.aigc.generation.GenerationResult;
 import com.alibaba.dashscope.common.Message;
 import com.alibaba.dashscope.common.Role;
+import com.data.assistant.service.ai.AIExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -20,9 +22,15 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public class QwenCodeService {
     
+    // 异步调用在 AI 执行器的独立通道上执行（有并发上限和超时），不使用公共 ForkJoinPool
+    private static final String AI_LANE = "qwen-code";
+    
     @Value("${dashscope.api.key:}")
     private String apiKey;
     
+    @Autowired
+    private AIExecutor aiExecutor;
+    
     private Generation gen;
     
     @PostConstruct
@@ -248,35 +256,35 @@ public class QwenCodeService {
      * 异步分析代码
      */
     public CompletableFuture<String> analyzeCodeAsync(String code) {
-        return CompletableFuture.supplyAsync(() -> analyzeCode(code));
+        return aiExecutor.submit(AI_LANE, () -> analyzeCode(code));
     }
     
     /**
      * 异步生成代码
      */
     public CompletableFuture<String> generateCodeAsync(String description) {
-        return CompletableFuture.supplyAsync(() -> generateCode(description));
+        return aiExecutor.submit(AI_LANE, () -> generateCode(description));
     }
     
     /**
      * 异步优化代码
      */
     public CompletableFuture<String> optimizeCodeAsync(String code, String requirements) {
-        return CompletableFuture.supplyAsync(() -> optimizeCode(code, requirements));
+        return aiExecutor.submit(AI_LANE, () -> optimizeCode(code, requirements));
     }
     
     /**
      * 异步修复代码
      */
     public CompletableFuture<String> fixCodeAsync(String code, String errorDescription) {
-        return CompletableFuture.supplyAsync(() -> fixCode(code, errorDescription));
+        return aiExecutor.submit(AI_LANE, () -> fixCode(code, errorDescription));
     }
     
     /**
      * 异步解释代码
      */
     public CompletableFuture<String> explainCodeAsync(String code) {
-        return CompletableFuture.supplyAsync(() -> explainCode(code));
+        return aiExecutor.submit(AI_LANE, () -> explainCode(code));
     }
     
     /**
@@ -14,7 +14,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -35,6 +35,12 @@ public class ReportService {
     @Autowired
     private DataSource jdbcDataSource;
 
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private QueryRegistry queryRegistry;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -106,7 +112,7 @@ public class ReportService {
 
         try {
             // 执行SQL查询
-            List<Map<String, Object>> results = executeSql(template.getDataSourceId(), template.getGeneratedSql());
+            ResultTable results = executeSql(template.getDataSourceId(), template.getGeneratedSql());
 
             // 生成文件
             String fileName = generateReportFile(template, results, instance.getId());
@@ -114,7 +120,7 @@ public class ReportService {
             // 更新实例
             instance.setStatus(ReportInstance.ExecuteStatus.SUCCESS);
             instance.setRowCount(results.size());
-            instance.setResultData(objectMapper.writeValueAsString(results.subList(0, Math.min(results.size(), 100))));
+            instance.setResultData(objectMapper.writeValueAsString(results.head(100)));
             instance.setFileName(fileName);
             instance.setFileUrl("/api/reports/download/" + instance.getId());
             instance.setExecuteDuration(System.currentTimeMillis() - startTime);
@@ -177,29 +183,25 @@ public class ReportService {
         return "SELECT * FROM " + naturalLanguage.replaceAll("[^a-zA-Z0-9_]", "_");
     }
 
-    private List<Map<String, Object>> executeSql(Long dataSourceId, String sql) throws Exception {
-        List<Map<String, Object>> results = new ArrayList<>();
-
-        try (Connection connection = jdbcDataSource.getConnection();
-             Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            while (rs.next()) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.put(metaData.getColumnLabel(i), rs.getObject(i));
+    private ResultTable executeSql(Long dataSourceId, String sql) throws Exception {
+        // 报表 SQL 在主数据源上执行，结果按主数据源缓存（定时报表和重复执行的模板命中缓存）
+        // 执行期间登记在 QueryRegistry 中，可以被取消
+        return queryResultCache.getOrLoad(null, sql, true, () -> {
+            try (QueryRegistry.RunningQuery query = queryRegistry.start("report", null, jdbcDataSource, sql);
+                 Connection connection = jdbcDataSource.getConnection();
+                 Statement stmt = connection.createStatement()) {
+                query.attach(connection, stmt);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    return ResultTable.from(rs);
+                } catch (SQLException e) {
+                    query.checkCancelled();
+                    throw e;
                 }
-                results.add(row);
             }
-        }
-
-        return results;
+        }).getTable();
     }
 
-    private String generateReportFile(ReportTemplate template, List<Map<String, Object>> data, Long instanceId) throws Exception {
+    private String generateReportFile(ReportTemplate template, ResultTable data, Long instanceId) throws Exception {
         // 创建报告目录
         File dir = new File(REPORT_DIR);
         if (!dir.exists()) {
@@ -229,23 +231,26 @@ public class ReportService {
         return fileName;
     }
 
-    private void generateCsvFile(List<Map<String, Object>> data, String filePath) throws Exception {
+    private void generateCsvFile(ResultTable data, String filePath) throws Exception {
         if (data.isEmpty()) return;
 
         try (FileWriter writer = new FileWriter(filePath)) {
             // 写入表头
-            Set<String> headers = data.get(0).keySet();
-            writer.write(String.join(",", headers));
+            writer.write(String.join(",", data.getColumnNames()));
             writer.write("\n");
 
-            // 写入数据
-            for (Map<String, Object> row : data) {
-                List<String> values = new ArrayList<>();
-                for (String header : headers) {
-                    Object value = row.get(header);
-                    values.add(value != null ? value.toString().replace(",", ";") : "");
+            // 写入数据（直接按列向量读取）
+            int columnCount = data.getColumnCount();
+            for (int row = 0; row < data.getRowCount(); row++) {
+                for (int col = 0; col < columnCount; col++) {
+                    if (col > 0) {
+                        writer.write(",");
+                    }
+                    Object value = data.getValue(row, col);
+                    if (value != null) {
+                        writer.write(value.toString().replace(",", ";"));
+                    }
                 }
-                writer.write(String.join(",", values));
                 writer.write("\n");
             }
         }
@@ -0,0 +1,312 @@
+package com.data.assistant.service;
+
+import com.data.assistant.model.SchemaCatalog;
+import com.data.assistant.model.SchemaCatalog.ColumnInfo;
+import com.data.assistant.model.SchemaCatalog.TableInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 表结构目录缓存服务
+ * 按数据源缓存表、字段、注释和主键信息，以及预先生成的提示词 schema 文本。
+ *
+ * 加载只需要两次元数据调用（表、全部字段）和一次主键查询，不再逐表查询；
+ * 缓存过期后先返回旧数据并在后台刷新；数据源配置变更或导入建表时显式失效。
+ */
+@Service
+public class SchemaCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaCatalogService.class);
+
+    @Autowired
+    private DynamicDataSourceService dynamicDataSourceService;
+
+    @Value("${schema.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // 超过该时间未被访问的缓存不再后台刷新，直接淘汰
+    @Value("${schema.cache.idle-evict-seconds:3600}")
+    private long idleEvictSeconds;
+
+    private final Map<Long, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<Long, Object> loadLocks = new ConcurrentHashMap<>();
+    // 失效代数：加载前后代数不同说明加载期间发生了失效，加载结果不放入缓存
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile long lastLoadMillis;
+
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void init() {
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "schema-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(10, ttlSeconds / 2);
+        refresher.scheduleWithFixedDelay(this::refreshExpired, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 获取数据源的表结构目录
+     * 未缓存时同步加载（同一数据源并发请求只加载一次）；已过期时返回旧数据并触发后台刷新。
+     */
+    public SchemaCatalog getCatalog(Long dataSourceId) {
+        CacheEntry entry = cache.get(dataSourceId);
+        if (entry != null) {
+            entry.lastAccess = System.currentTimeMillis();
+            if (!entry.isExpired()) {
+                hits.increment();
+            } else {
+                staleHits.increment();
+                scheduleRefresh(dataSourceId, entry);
+            }
+            return entry.catalog;
+        }
+
+        synchronized (loadLocks.computeIfAbsent(dataSourceId, id -> new Object())) {
+            entry = cache.get(dataSourceId);
+            if (entry != null) {
+                hits.increment();
+                return entry.catalog;
+            }
+            misses.increment();
+            long generation = generationOf(dataSourceId);
+            entry = new CacheEntry(load(dataSourceId));
+            // 加载期间被失效时结果可能是变更前的结构，只返回给本次调用，下次重新加载
+            if (generation == generationOf(dataSourceId)) {
+                cache.put(dataSourceId, entry);
+            }
+            return entry.catalog;
+        }
+    }
+
+    /**
+     * 获取提示词使用的 schema 文本
+     */
+    public String getPromptSchema(Long dataSourceId) {
+        return getCatalog(dataSourceId).getPromptSchema();
+    }
+
+    /**
+     * 使指定数据源的缓存失效（数据源配置变更、表结构变更后调用）
+     */
+    public void invalidate(Long dataSourceId) {
+        generations.computeIfAbsent(dataSourceId, id -> new AtomicLong()).incrementAndGet();
+        if (cache.remove(dataSourceId) != null) {
+            invalidations.increment();
+            logger.info("Schema catalog invalidated for datasource {}", dataSourceId);
+        }
+    }
+
+    /**
+     * 使所有数据源的缓存失效（无法确定变更影响的数据源时调用，例如导入建表）
+     */
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        if (!cache.isEmpty()) {
+            invalidations.add(cache.size());
+            cache.clear();
+            logger.info("Schema catalog invalidated for all datasources");
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long staleCount = staleHits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + staleCount + missCount;
+        stats.put("hits", hitCount);
+        stats.put("staleHits", staleCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (hitCount + staleCount) / total);
+        stats.put("refreshes", refreshes.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("cachedDataSources", cache.size());
+        stats.put("lastLoadMillis", lastLoadMillis);
+        return stats;
+    }
+
+    /**
+     * 数据源当前的失效代数（单个失效与全部失效次数之和，只增不减）
+     */
+    private long generationOf(Long dataSourceId) {
+        return globalGeneration.get() + generations.computeIfAbsent(dataSourceId, id -> new AtomicLong()).get();
+    }
+
+    private void scheduleRefresh(Long dataSourceId, CacheEntry entry) {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> refresh(dataSourceId, entry));
+        }
+    }
+
+    private void refresh(Long dataSourceId, CacheEntry entry) {
+        try {
+            long generation = generationOf(dataSourceId);
+            SchemaCatalog catalog = load(dataSourceId);
+            CacheEntry refreshed = new CacheEntry(catalog);
+            refreshed.lastAccess = entry.lastAccess;
+            // 刷新期间被显式失效的条目不再放回
+            if (generation == generationOf(dataSourceId) && cache.replace(dataSourceId, entry, refreshed)) {
+                refreshes.increment();
+            }
+        } catch (Exception e) {
+            refreshFailures.increment();
+            logger.warn("Failed to refresh schema catalog for datasource {}: {}", dataSourceId, e.getMessage());
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * 后台任务：刷新即将过期且近期被访问过的缓存，淘汰长时间未访问的缓存
+     */
+    private void refreshExpired() {
+        long now = System.currentTimeMillis();
+        cache.forEach((dataSourceId, entry) -> {
+            if (now - entry.lastAccess > idleEvictSeconds * 1000) {
+                cache.remove(dataSourceId, entry);
+            } else if (now - entry.catalog.getLoadedAt() > ttlSeconds * 1000 / 2) {
+                scheduleRefresh(dataSourceId, entry);
+            }
+        });
+    }
+
+    /**
+     * 从数据库元数据加载表结构
+     */
+    private SchemaCatalog load(Long dataSourceId) {
+        long start = System.currentTimeMillis();
+        List<TableInfo> tables = dynamicDataSourceService.getJdbcTemplate(dataSourceId)
+            .execute((ConnectionCallback<List<TableInfo>>) this::loadTables);
+        lastLoadMillis = System.currentTimeMillis() - start;
+        logger.info("Loaded schema catalog for datasource {}: {} tables in {} ms",
+            dataSourceId, tables.size(), lastLoadMillis);
+        return new SchemaCatalog(dataSourceId, tables);
+    }
+
+    private List<TableInfo> loadTables(Connection connection) throws java.sql.SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = connection.getCatalog();
+        String schema = connection.getSchema();
+
+        // 表及注释
+        Map<String, String> tableComments = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getTables(catalog, schema, "%", new String[]{"TABLE", "VIEW"})) {
+            while (rs.next()) {
+                tableComments.put(rs.getString("TABLE_NAME"), rs.getString("REMARKS"));
+            }
+        }
+
+        Set<String> primaryKeys = loadPrimaryKeys(connection, schema);
+
+        // 所有表的字段一次取回
+        Map<String, List<ColumnInfo>> columns = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getColumns(catalog, schema, "%", "%")) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (!tableComments.containsKey(table)) {
+                    continue;
+                }
+                String column = rs.getString("COLUMN_NAME");
+                boolean primaryKey = primaryKeys.contains(keyOf(table, column));
+                columns.computeIfAbsent(table, t -> new ArrayList<>()).add(new ColumnInfo(
+                    column,
+                    rs.getString("TYPE_NAME"),
+                    rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+                    primaryKey,
+                    rs.getString("REMARKS")));
+            }
+        }
+
+        List<TableInfo> tables = new ArrayList<>(tableComments.size());
+        tableComments.forEach((table, comment) ->
+            tables.add(new TableInfo(table, comment, columns.getOrDefault(table, new ArrayList<>()))));
+        return tables;
+    }
+
+    /**
+     * 一次查询取回所有主键列（INFORMATION_SCHEMA 在 MySQL、PostgreSQL、H2 中都可用），失败时不标记主键
+     */
+    private Set<String> loadPrimaryKeys(Connection connection, String schema) {
+        Set<String> keys = new HashSet<>();
+        String schemaFilter = schema != null ? "tc.TABLE_SCHEMA = '" + schema.replace("'", "''") + "'"
+            : "tc.TABLE_SCHEMA = DATABASE()";
+        String sql = "SELECT kcu.TABLE_NAME, kcu.COLUMN_NAME " +
+            "FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc " +
+            "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE kcu " +
+            "ON tc.CONSTRAINT_NAME = kcu.CONSTRAINT_NAME AND tc.TABLE_SCHEMA = kcu.TABLE_SCHEMA " +
+            "AND tc.TABLE_NAME = kcu.TABLE_NAME " +
+            "WHERE tc.CONSTRAINT_TYPE = 'PRIMARY KEY' AND " + schemaFilter;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                keys.add(keyOf(rs.getString(1), rs.getString(2)));
+            }
+        } catch (Exception e) {
+            logger.debug("Failed to load primary keys: {}", e.getMessage());
+        }
+        return keys;
+    }
+
+    private static String keyOf(String table, String column) {
+        return (table + "." + column).toLowerCase(Locale.ROOT);
+    }
+
+    private class CacheEntry {
+        private final SchemaCatalog catalog;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        CacheEntry(SchemaCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - catalog.getLoadedAt() > ttlSeconds * 1000;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.data.assistant.service;
+
+import com.data.assistant.model.SchemaCatalog;
+import com.data.assistant.model.SchemaCatalog.ColumnInfo;
+import com.data.assistant.model.SchemaCatalog.TableInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 表结构相关度索引（BM25 倒排索引，不依赖向量模型）
+ *
+ * 每张表作为一篇文档，文档内容由表名、表注释、字段名、字段注释组成，表名和表注释加权重复计入词频。
+ * 分词规则：英文按 snake_case / camelCase 切分并去掉复数后缀，中文取单字和相邻双字。
+ * 另外记录表之间的连接关系（TableRelation 和 xxx_id 命名推断），用于给选中的表补充连接邻居。
+ */
+public class SchemaRelevanceIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TABLE_NAME_WEIGHT = 3;
+    private static final int TABLE_COMMENT_WEIGHT = 2;
+
+    private final SchemaCatalog catalog;
+    private final List<TableInfo> tables;
+    private final List<Map<String, Integer>> termFrequencies = new ArrayList<>();
+    private final int[] documentLengths;
+    private final Map<String, List<Integer>> postings = new HashMap<>();
+    private final Map<String, Integer> tableIndexes = new HashMap<>();
+    private final double averageLength;
+    // 表序号 -> 连接邻居（表序号 -> 连接条件）
+    private final List<Map<Integer, String>> neighbours = new ArrayList<>();
+
+    /**
+     * @param relations 已知的表关系，每项为 {源表, 源字段, 目标表, 目标字段}
+     */
+    public SchemaRelevanceIndex(SchemaCatalog catalog, Collection<String[]> relations) {
+        this.catalog = catalog;
+        this.tables = catalog.getTables();
+        this.documentLengths = new int[tables.size()];
+
+        long totalLength = 0;
+        for (int i = 0; i < tables.size(); i++) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            TableInfo table = tables.get(i);
+            tableIndexes.putIfAbsent(table.getName().toLowerCase(Locale.ROOT), i);
+            addTerms(frequencies, table.getName(), TABLE_NAME_WEIGHT);
+            addTerms(frequencies, table.getComment(), TABLE_COMMENT_WEIGHT);
+            for (ColumnInfo column : table.getColumns()) {
+                addTerms(frequencies, column.getName(), 1);
+                addTerms(frequencies, column.getComment(), 1);
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                length += entry.getValue();
+                postings.computeIfAbsent(entry.getKey(), t -> new ArrayList<>()).add(i);
+            }
+            termFrequencies.add(frequencies);
+            documentLengths[i] = length;
+            totalLength += length;
+            neighbours.add(new LinkedHashMap<>());
+        }
+        this.averageLength = tables.isEmpty() ? 1 : Math.max(1.0, (double) totalLength / tables.size());
+
+        for (String[] relation : relations) {
+            addRelation(relation[0], relation[1], relation[2], relation[3]);
+        }
+        inferRelations();
+    }
+
+    public SchemaCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * 选出与问题最相关的 topK 张表，并补充它们的连接邻居（最多 maxNeighbours 张）
+     * 问题中没有任何词命中索引时返回空结果，由调用方决定是否回退到完整 schema。
+     */
+    public Selection select(String question, int topK, int maxNeighbours) {
+        double[] scores = score(question);
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                ranked.add(i);
+            }
+        }
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+
+        Set<Integer> selected = new LinkedHashSet<>(ranked.subList(0, Math.min(topK, ranked.size())));
+        // 邻居按其关联的已选表的排名顺序加入，同等条件下优先相关度更高的邻居
+        Set<Integer> added = new LinkedHashSet<>();
+        for (Integer index : new ArrayList<>(selected)) {
+            List<Integer> candidates = new ArrayList<>(neighbours.get(index).keySet());
+            candidates.sort((a, b) -> Double.compare(scores[b], scores[a]));
+            for (Integer neighbour : candidates) {
+                if (added.size() >= maxNeighbours) {
+                    break;
+                }
+                if (!selected.contains(neighbour)) {
+                    added.add(neighbour);
+                }
+            }
+        }
+        selected.addAll(added);
+
+        List<TableInfo> selectedTables = new ArrayList<>(selected.size());
+        Set<String> joins = new LinkedHashSet<>();
+        for (Integer index : selected) {
+            selectedTables.add(tables.get(index));
+            neighbours.get(index).forEach((other, condition) -> {
+                if (selected.contains(other)) {
+                    joins.add(condition);
+                }
+            });
+        }
+        return new Selection(selectedTables, new ArrayList<>(joins), added.size());
+    }
+
+    private double[] score(String question) {
+        double[] scores = new double[tables.size()];
+        Map<String, Integer> queryTerms = new HashMap<>();
+        addTerms(queryTerms, question, 1);
+        int documents = tables.size();
+        for (String term : queryTerms.keySet()) {
+            List<Integer> docs = postings.get(term);
+            if (docs == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (documents - docs.size() + 0.5) / (docs.size() + 0.5));
+            for (Integer doc : docs) {
+                int tf = termFrequencies.get(doc).get(term);
+                double norm = K1 * (1 - B + B * documentLengths[doc] / averageLength);
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+        return scores;
+    }
+
+    private void addRelation(String sourceTable, String sourceColumn, String targetTable, String targetColumn) {
+        int source = indexOf(sourceTable);
+        int target = indexOf(targetTable);
+        if (source < 0 || target < 0 || source == target) {
+            return;
+        }
+        String condition = tables.get(source).getName() + "." + sourceColumn + " = "
+            + tables.get(target).getName() + "." + targetColumn;
+        neighbours.get(source).putIfAbsent(target, condition);
+        neighbours.get(target).putIfAbsent(source, condition);
+    }
+
+    /**
+     * 按命名约定推断关系：字段 xxx_id / xxxId 指向表 xxx 或 xxxs 的主键（没有主键信息时假定为 id）
+     */
+    private void inferRelations() {
+        for (TableInfo table : tables) {
+            for (ColumnInfo column : table.getColumns()) {
+                String name = column.getName().toLowerCase(Locale.ROOT);
+                String prefix;
+                if (name.endsWith("_id") && name.length() > 3) {
+                    prefix = name.substring(0, name.length() - 3);
+                } else if (column.getName().endsWith("Id") && name.length() > 2) {
+                    prefix = name.substring(0, name.length() - 2);
+                } else {
+                    continue;
+                }
+                for (String candidate : new String[]{prefix, prefix + "s", prefix + "es", "t_" + prefix}) {
+                    int target = indexOf(candidate);
+                    if (target >= 0) {
+                        addRelation(table.getName(), column.getName(), candidate, primaryKeyOf(tables.get(target)));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String primaryKeyOf(TableInfo table) {
+        for (ColumnInfo column : table.getColumns()) {
+            if (column.isPrimaryKey()) {
+                return column.getName();
+            }
+        }
+        return "id";
+    }
+
+    private int indexOf(String tableName) {
+        Integer index = tableName != null ? tableIndexes.get(tableName.toLowerCase(Locale.ROOT)) : null;
+        return index != null ? index : -1;
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        if (text == null) {
+            return;
+        }
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * 分词：英文词按下划线、驼峰切分并转小写，去掉复数后缀；中文取单字和相邻双字
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            boolean cjk = Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+            boolean alnum = !cjk && Character.isLetterOrDigit(c);
+            // 驼峰边界：小写或数字后面跟大写
+            if (alnum && Character.isUpperCase(c) && word.length() > 0
+                && !Character.isUpperCase(word.charAt(word.length() - 1))) {
+                addWord(terms, word);
+            }
+            if (alnum) {
+                word.append(c);
+            } else {
+                addWord(terms, word);
+            }
+            if (cjk) {
+                terms.add(String.valueOf(c));
+                if (previousCjk != 0) {
+                    terms.add(new String(new char[]{previousCjk, c}));
+                }
+                previousCjk = c;
+            } else {
+                previousCjk = 0;
+            }
+        }
+        return terms;
+    }
+
+    private static void addWord(List<String> terms, StringBuilder word) {
+        if (word.length() == 0) {
+            return;
+        }
+        String term = word.toString().toLowerCase(Locale.ROOT);
+        word.setLength(0);
+        if (term.length() > 4 && term.endsWith("ies")) {
+            term = term.substring(0, term.length() - 3) + "y";
+        } else if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) {
+            term = term.substring(0, term.length() - 1);
+        }
+        terms.add(term);
+    }
+
+    /**
+     * 检索结果
+     */
+    public static class Selection {
+        private final List<TableInfo> tables;
+        private final List<String> joins;
+        private final int neighbourCount;
+
+        Selection(List<TableInfo> tables, List<String> joins, int neighbourCount) {
+            this.tables = tables;
+            this.joins = joins;
+            this.neighbourCount = neighbourCount;
+        }
+
+        public List<TableInfo> getTables() {
+            return tables;
+        }
+
+        /**
+         * 选中表之间的连接条件，例如 orders.user_id = users.id
+         */
+        public List<String> getJoins() {
+            return joins;
+        }
+
+        public int getNeighbourCount() {
+            return neighbourCount;
+        }
+
+        public boolean isEmpty() {
+            return tables.isEmpty();
+        }
+
+        /**
+         * 生成提示词格式的 schema 文本，附带表间连接条件
+         */
+        public String toPromptSchema() {
+            StringBuilder schema = new StringBuilder(SchemaCatalog.toPromptSchema(tables));
+            if (!joins.isEmpty()) {
+                schema.append("表关联:\n");
+                for (String join : joins) {
+                    schema.append("  ").append(join).append("\n");
+                }
+            }
+            return schema.toString();
+        }
+    }
+}
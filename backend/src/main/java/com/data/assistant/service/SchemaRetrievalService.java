@@ -0,0 +1,123 @@
+package com.data.assistant.service;
+
+import com.data.assistant.model.SchemaCatalog;
+import com.data.assistant.model.TableRelation;
+import com.data.assistant.repository.TableRelationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 表结构检索服务
+ * 为 NL2SQL 提示词挑选与问题相关的表：BM25 选出 topK 张表，再补充它们的连接邻居，
+ * 只把这些表的结构和表间关联发给模型，避免大库把全部表结构塞进提示词。
+ *
+ * 表数量较少或问题没有命中任何表时返回完整 schema。
+ */
+@Service
+public class SchemaRetrievalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaRetrievalService.class);
+
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
+
+    @Autowired
+    private TableRelationRepository tableRelationRepository;
+
+    @Value("${schema.retrieval.enabled:true}")
+    private boolean enabled;
+
+    @Value("${schema.retrieval.top-k:8}")
+    private int topK;
+
+    @Value("${schema.retrieval.max-neighbours:6}")
+    private int maxNeighbours;
+
+    // 表数量不超过该值时直接使用完整 schema
+    @Value("${schema.retrieval.min-tables:15}")
+    private int minTables;
+
+    // 索引随表结构目录一起重建：目录对象变化（刷新、失效）或表关系变化时失效
+    private final Map<Long, SchemaRelevanceIndex> indexes = new ConcurrentHashMap<>();
+
+    private final LongAdder prunedRequests = new LongAdder();
+    private final LongAdder fullRequests = new LongAdder();
+    private final LongAdder fullChars = new LongAdder();
+    private final LongAdder prunedChars = new LongAdder();
+
+    /**
+     * 获取与问题相关的提示词 schema
+     */
+    public String getPromptSchema(Long dataSourceId, String question) {
+        SchemaCatalog catalog = schemaCatalogService.getCatalog(dataSourceId);
+        String fullSchema = catalog.getPromptSchema();
+        if (!enabled || question == null || question.trim().isEmpty() || catalog.getTables().size() <= minTables) {
+            fullRequests.increment();
+            return fullSchema;
+        }
+
+        SchemaRelevanceIndex.Selection selection = getIndex(dataSourceId, catalog).select(question, topK, maxNeighbours);
+        if (selection.isEmpty()) {
+            logger.debug("No table matched question, using full schema for datasource {}", dataSourceId);
+            fullRequests.increment();
+            return fullSchema;
+        }
+
+        String schema = selection.toPromptSchema();
+        prunedRequests.increment();
+        fullChars.add(fullSchema.length());
+        prunedChars.add(schema.length());
+        logger.info("Schema pruned for datasource {}: {} of {} tables ({} neighbours), {} -> {} chars",
+            dataSourceId, selection.getTables().size(), catalog.getTables().size(),
+            selection.getNeighbourCount(), fullSchema.length(), schema.length());
+        return schema;
+    }
+
+    /**
+     * 表关系变化后调用，下次检索时重建索引
+     */
+    public void invalidate(Long dataSourceId) {
+        indexes.remove(dataSourceId);
+    }
+
+    /**
+     * 检索统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long full = fullChars.sum();
+        stats.put("prunedRequests", prunedRequests.sum());
+        stats.put("fullSchemaRequests", fullRequests.sum());
+        stats.put("averageReduction", full == 0 ? 0.0 : 1.0 - (double) prunedChars.sum() / full);
+        stats.put("indexedDataSources", indexes.size());
+        return stats;
+    }
+
+    private SchemaRelevanceIndex getIndex(Long dataSourceId, SchemaCatalog catalog) {
+        SchemaRelevanceIndex index = indexes.get(dataSourceId);
+        if (index != null && index.getCatalog() == catalog) {
+            return index;
+        }
+        long start = System.currentTimeMillis();
+        List<String[]> relations = new ArrayList<>();
+        for (TableRelation relation : tableRelationRepository.findByDataSourceId(dataSourceId)) {
+            relations.add(new String[]{relation.getSourceTable(), relation.getSourceColumn(),
+                relation.getTargetTable(), relation.getTargetColumn()});
+        }
+        index = new SchemaRelevanceIndex(catalog, relations);
+        indexes.put(dataSourceId, index);
+        logger.info("Built schema index for datasource {}: {} tables, {} relations in {} ms",
+            dataSourceId, catalog.getTables().size(), relations.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
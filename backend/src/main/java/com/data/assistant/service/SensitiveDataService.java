@@ -3,10 +3,15 @@ package com.data.assistant.service;
 import com.data.assistant.model.SensitiveColumn;
 import com.data.assistant.model.SensitiveDataType;
 import com.data.assistant.repository.SensitiveColumnRepository;
+import com.data.assistant.service.sampling.SampleResult;
+import com.data.assistant.service.sampling.SampleSpec;
+import com.data.assistant.service.sampling.TableSampler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -20,6 +25,15 @@ public class SensitiveDataService {
     @Autowired
     private DynamicDataSourceService dynamicDataSourceService;
 
+    @Autowired
+    private TableSampler tableSampler;
+
+    @Value("${sensitive.scan.default-accuracy:0.05}")
+    private double defaultAccuracy;
+
+    @Value("${sensitive.scan.max-rows:10000}")
+    private long maxScanRows;
+
     // 字段名模式匹配
     private static final Map<SensitiveDataType, List<String>> COLUMN_NAME_PATTERNS = new HashMap<>();
     static {
@@ -32,8 +46,31 @@ public class SensitiveDataService {
         COLUMN_NAME_PATTERNS.put(SensitiveDataType.PASSWORD, Arrays.asList("password", "pwd", "passwd", "secret"));
     }
 
+    // 内容匹配使用的正则（预编译）
+    private static final Map<SensitiveDataType, Pattern> CONTENT_PATTERNS = new EnumMap<>(SensitiveDataType.class);
+    static {
+        for (SensitiveDataType type : SensitiveDataType.values()) {
+            if (type.getPattern() != null) {
+                CONTENT_PATTERNS.put(type, Pattern.compile(type.getPattern()));
+            }
+        }
+    }
+
+    /**
+     * 按默认精度（sensitive.scan.default-accuracy）抽样扫描
+     */
+    @Transactional
+    public SampleResult scanTable(Long dataSourceId, String tableName) {
+        return scanTable(dataSourceId, tableName, SampleSpec.sampled(defaultAccuracy));
+    }
+
+    /**
+     * @param spec 内容识别的扫描方式：精确模式检查所有行，抽样模式按目标精度抽样；
+     *             两种方式都最多读取 sensitive.scan.max-rows 行（扫描在事务中进行，不能读取整张大表）
+     * @return 内容识别的抽样信息，没有需要按内容识别的列时为 null
+     */
     @Transactional
-    public void scanTable(Long dataSourceId, String tableName) {
+    public SampleResult scanTable(Long dataSourceId, String tableName, SampleSpec spec) {
         // 清除该表的历史扫描结果
         sensitiveColumnRepository.deleteByDataSourceIdAndTableName(dataSourceId, tableName);
 
@@ -44,7 +81,7 @@ public class SensitiveDataService {
             scanByColumnName(metaData, dataSourceId, tableName);
 
             // 2. 基于内容采样识别
-            scanByContent(connection, dataSourceId, tableName);
+            return scanByContent(connection, dataSourceId, tableName, spec);
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to scan sensitive data: " + e.getMessage(), e);
@@ -69,55 +106,67 @@ public class SensitiveDataService {
         }
     }
 
-    private void scanByContent(Connection connection, Long dataSourceId, String tableName) throws SQLException {
-        // 获取表的所有列
+    /**
+     * 对字段名未识别的列，一次扫描（或抽样）所有列的值，按非空值中匹配各类型正则的比例识别
+     * （原来每列取 SELECT DISTINCT ... LIMIT 100，只看到表开头的数据）。读取的行数不超过 sensitive.scan.max-rows，
+     * 无法抽样的表（没有可用的抽样方式时要读取全表做蓄水池抽样）只检查前面的这些行
+     */
+    private SampleResult scanByContent(Connection connection, Long dataSourceId, String tableName,
+                                       SampleSpec spec) throws SQLException {
+        // 获取表的所有列，跳过已识别的列
         List<String> columns = new ArrayList<>();
         DatabaseMetaData metaData = connection.getMetaData();
         try (ResultSet rs = metaData.getColumns(null, null, tableName, "%")) {
             while (rs.next()) {
-                columns.add(rs.getString("COLUMN_NAME"));
+                String column = rs.getString("COLUMN_NAME");
+                if (sensitiveColumnRepository.findByDataSourceIdAndTableNameAndColumnName(dataSourceId, tableName, column).isEmpty()) {
+                    columns.add(column);
+                }
             }
         }
+        if (columns.isEmpty()) {
+            return null;
+        }
 
-        // 对每个列采样检查
-        for (String column : columns) {
-            // 跳过已识别的列
-            List<SensitiveColumn> existing = sensitiveColumnRepository
-                    .findByDataSourceIdAndTableNameAndColumnName(dataSourceId, tableName, column);
-            if (!existing.isEmpty()) continue;
-
-            // 采样数据
-            String sql = String.format("SELECT DISTINCT %s FROM %s WHERE %s IS NOT NULL LIMIT 100", column, tableName, column);
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-
-                Map<SensitiveDataType, Integer> matchCounts = new HashMap<>();
-                int totalSamples = 0;
-
-                while (rs.next()) {
-                    String value = rs.getString(1);
-                    if (value == null || value.isEmpty()) continue;
-                    totalSamples++;
-
-                    // 检查各种敏感数据类型
-                    for (SensitiveDataType type : SensitiveDataType.values()) {
-                        if (type.getPattern() != null && Pattern.matches(type.getPattern(), value)) {
-                            matchCounts.merge(type, 1, Integer::sum);
-                        }
+        long[] totalSamples = new long[columns.size()];
+        List<Map<SensitiveDataType, Long>> matchCounts = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            matchCounts.add(new EnumMap<>(SensitiveDataType.class));
+        }
+        SampleResult sample = tableSampler.scan(connection, null, tableName, columns, spec, maxScanRows, row -> {
+            for (int i = 0; i < row.length; i++) {
+                String value = toText(row[i]);
+                if (value == null || value.isEmpty()) continue;
+                totalSamples[i]++;
+
+                // 检查各种敏感数据类型
+                for (Map.Entry<SensitiveDataType, Pattern> entry : CONTENT_PATTERNS.entrySet()) {
+                    if (entry.getValue().matcher(value).matches()) {
+                        matchCounts.get(i).merge(entry.getKey(), 1L, Long::sum);
                     }
                 }
-
-                // 如果匹配率超过阈值，标记为敏感列
-                if (totalSamples > 0) {
-                    for (Map.Entry<SensitiveDataType, Integer> entry : matchCounts.entrySet()) {
-                        double matchRate = (double) entry.getValue() / totalSamples;
-                        if (matchRate > 0.7) {
-                            saveSensitiveColumn(dataSourceId, tableName, column, entry.getKey(), "CONTENT_SAMPLE", matchRate);
-                        }
-                    }
+            }
+        });
+
+        // 如果匹配率超过阈值，标记为敏感列
+        for (int i = 0; i < columns.size(); i++) {
+            if (totalSamples[i] == 0) continue;
+            for (Map.Entry<SensitiveDataType, Long> entry : matchCounts.get(i).entrySet()) {
+                double matchRate = (double) entry.getValue() / totalSamples[i];
+                if (matchRate > 0.7) {
+                    String method = sample.isExact() ? "CONTENT_SCAN" : "CONTENT_SAMPLE";
+                    saveSensitiveColumn(dataSourceId, tableName, columns.get(i), entry.getKey(), method, matchRate);
                 }
             }
         }
+        return sample;
+    }
+
+    private static String toText(Object value) {
+        if (value == null || value instanceof byte[]) {
+            return null;
+        }
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
     }
 
     private void saveSensitiveColumn(Long dataSourceId, String tableName, String columnName,
@@ -0,0 +1,339 @@
+package com.data.assistant.service;
+
+import com.data.assistant.service.sql.SqlAnalyzer;
+import com.data.assistant.service.sql.SqlParser;
+import com.data.assistant.service.sql.SqlRewriter;
+import com.data.assistant.service.sql.SqlRule;
+import com.data.assistant.service.sql.SqlRuleContext;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成 SQL 的执行前检查
+ *
+ * 模型生成的 SQL 在执行前：
+ * - 必须能解析为单条 SELECT，不能包含 SELECT INTO、FOR UPDATE 和有副作用的函数（sleep、读写文件等）
+ * - 返回行数限制在 maxRows 以内（添加或收紧 LIMIT），执行时设置语句超时和 maxRows
+ * - 配置了代价预算时先 EXPLAIN，估计代价超出预算的查询不执行，返回执行计划问题和索引建议
+ *
+ * 限制可按数据源在 connectionParams 的 guard 中覆盖（见 DataSourcePoolSettings.Guard）。
+ * EXPLAIN 失败（如数据库类型不支持）时不拦截，只在结果中记录原因。
+ */
+@Service
+public class SqlGuardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlGuardService.class);
+
+    @Autowired
+    private SqlParser sqlParser;
+
+    @Autowired
+    private SqlOptimizationService sqlOptimizationService;
+
+    @Autowired
+    private DynamicDataSourceService dynamicDataSourceService;
+
+    @Value("${sql.guard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sql.guard.max-rows:10000}")
+    private int defaultMaxRows;
+
+    @Value("${sql.guard.query-timeout-seconds:30}")
+    private int defaultTimeoutSeconds;
+
+    @Value("${sql.guard.cost-budget:0}")
+    private double defaultCostBudget;
+
+    @Value("${sql.guard.denied-functions:sleep,benchmark,pg_sleep,load_file,pg_read_file,pg_read_binary_file,"
+        + "pg_ls_dir,lo_import,lo_export,dblink,dblink_exec,pg_terminate_backend,pg_cancel_backend,set_config,"
+        + "nextval,setval,get_lock,file_read,file_write,csvread,csvwrite,link_schema}")
+    private String deniedFunctionList;
+
+    private Set<String> deniedFunctions;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder rewritten = new LongAdder();
+    private final LongAdder explainFailures = new LongAdder();
+    private final Map<String, LongAdder> rejections = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        deniedFunctions = new HashSet<>();
+        for (String name : deniedFunctionList.split(",")) {
+            if (!name.trim().isEmpty()) {
+                deniedFunctions.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * 检查并改写待执行的 SQL
+     *
+     * @param dataSourceId 执行查询的数据源，为空时使用全局默认限制
+     */
+    public Verdict check(Long dataSourceId, String sql) {
+        String cleanedSql = DataQueryService.cleanSql(sql);
+        if (!enabled) {
+            return new Verdict(cleanedSql, Collections.emptyList(), 0, 0);
+        }
+        checked.increment();
+        DataSourcePoolSettings.Guard guard = dataSourceId != null
+            ? dynamicDataSourceService.getSettings(dataSourceId).getGuard() : new DataSourcePoolSettings.Guard();
+        int maxRows = guard.getMaxRows() != null ? guard.getMaxRows() : defaultMaxRows;
+        int timeoutSeconds = guard.getQueryTimeoutSeconds() != null ? guard.getQueryTimeoutSeconds() : defaultTimeoutSeconds;
+        double costBudget = guard.getCostBudget() != null ? guard.getCostBudget() : defaultCostBudget;
+
+        Statement statement;
+        try {
+            statement = sqlParser.parse(cleanedSql);
+        } catch (IllegalArgumentException e) {
+            return reject(new Verdict("PARSE_ERROR", "生成的SQL无法解析，未执行: " + e.getMessage(),
+                Collections.emptyList()));
+        }
+        if (!(statement instanceof Select)) {
+            String type = statement.getClass().getSimpleName().toUpperCase(Locale.ROOT);
+            return reject(new Verdict("READ_ONLY", "只允许执行查询（SELECT）语句，生成的是 " + type + " 语句",
+                Collections.emptyList()));
+        }
+
+        ReadOnlyRule rule = new ReadOnlyRule(deniedFunctions);
+        new SqlAnalyzer(Collections.singletonList(rule)).analyze(statement, null);
+        if (!rule.deniedFunctions.isEmpty()) {
+            return reject(new Verdict("DENIED_FUNCTION", "查询包含不允许的函数: "
+                + String.join(", ", rule.deniedFunctions), new ArrayList<>(rule.deniedFunctions)));
+        }
+        if (!rule.violations.isEmpty()) {
+            return reject(new Verdict("READ_ONLY", "查询包含写入或加锁操作: " + String.join("；", rule.violations),
+                rule.violations));
+        }
+
+        List<String> rewrites = new ArrayList<>();
+        String capped = maxRows > 0 ? SqlRewriter.capRows((Select) statement, maxRows) : null;
+        if (capped != null) {
+            rewrites.add(capped);
+            rewritten.increment();
+        }
+        Verdict verdict = new Verdict(rewrites.isEmpty() ? cleanedSql : statement.toString(), rewrites,
+            maxRows, timeoutSeconds);
+
+        if (costBudget > 0) {
+            try {
+                Map<String, Object> plan = sqlOptimizationService.explainSql(statement, dataSourceId);
+                double cost = (Double) plan.get("totalCost");
+                verdict.estimatedCost = cost >= 0 ? cost : null;
+                verdict.costBudget = costBudget;
+                if (cost > costBudget) {
+                    Verdict rejected = new Verdict("COST_BUDGET", String.format(
+                        "查询估计代价 %.0f 超过数据源预算 %.0f，未执行；请缩小查询范围或按建议建立索引", cost, costBudget),
+                        Collections.emptyList());
+                    rejected.estimatedCost = cost;
+                    rejected.costBudget = costBudget;
+                    rejected.suggestions = plan.get("suggestions");
+                    rejected.indexRecommendations = plan.get("indexRecommendations");
+                    return reject(rejected);
+                }
+            } catch (RuntimeException e) {
+                explainFailures.increment();
+                logger.warn("Guard could not explain query on datasource {}: {}", dataSourceId, e.getMessage());
+                verdict.explainError = e.getMessage();
+            }
+        }
+        return verdict;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("checked", checked.sum());
+        stats.put("rewritten", rewritten.sum());
+        stats.put("explainFailures", explainFailures.sum());
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        rejections.forEach((code, count) -> rejected.put(code, count.sum()));
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private Verdict reject(Verdict verdict) {
+        rejections.computeIfAbsent(verdict.code, key -> new LongAdder()).increment();
+        logger.info("Guard rejected generated SQL ({}): {}", verdict.code, verdict.message);
+        return verdict;
+    }
+
+    /**
+     * 检查结果
+     */
+    public static class Verdict {
+        private final boolean allowed;
+        private final String code;
+        private final String message;
+        private final String sql;
+        private final List<String> rewrites;
+        private final List<String> violations;
+        private final int maxRows;
+        private final int timeoutSeconds;
+        private Double estimatedCost;
+        private Double costBudget;
+        private Object suggestions;
+        private Object indexRecommendations;
+        private String explainError;
+
+        Verdict(String sql, List<String> rewrites, int maxRows, int timeoutSeconds) {
+            this.allowed = true;
+            this.code = null;
+            this.message = null;
+            this.sql = sql;
+            this.rewrites = rewrites;
+            this.violations = Collections.emptyList();
+            this.maxRows = maxRows;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        Verdict(String code, String message, List<String> violations) {
+            this.allowed = false;
+            this.code = code;
+            this.message = message;
+            this.sql = null;
+            this.rewrites = Collections.emptyList();
+            this.violations = violations;
+            this.maxRows = 0;
+            this.timeoutSeconds = 0;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        /**
+         * 拦截原因：PARSE_ERROR、READ_ONLY、DENIED_FUNCTION、COST_BUDGET
+         */
+        public String getCode() {
+            return code;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * 实际执行的 SQL（可能添加了 LIMIT），被拦截时为 null
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        public List<String> getRewrites() {
+            return rewrites;
+        }
+
+        /**
+         * 执行时的最大行数，0 表示不限制
+         */
+        public int getMaxRows() {
+            return maxRows;
+        }
+
+        /**
+         * 执行时的查询超时（秒），0 表示不限制
+         */
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("allowed", allowed);
+            if (!allowed) {
+                map.put("code", code);
+                map.put("message", message);
+                if (!violations.isEmpty()) {
+                    map.put("violations", violations);
+                }
+            } else {
+                map.put("rewrites", rewrites);
+                map.put("maxRows", maxRows);
+                map.put("queryTimeoutSeconds", timeoutSeconds);
+            }
+            if (estimatedCost != null) {
+                map.put("estimatedCost", estimatedCost);
+                map.put("costBudget", costBudget);
+            }
+            if (suggestions != null) {
+                map.put("suggestions", suggestions);
+                map.put("indexRecommendations", indexRecommendations);
+            }
+            if (explainError != null) {
+                map.put("explainError", explainError);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * 查找 SELECT INTO、FOR UPDATE / SHARE 和禁止调用的函数（包括子查询中的）
+     */
+    private static class ReadOnlyRule implements SqlRule {
+        private final Set<String> denied;
+        private final List<String> violations = new ArrayList<>();
+        private final Set<String> deniedFunctions = new LinkedHashSet<>();
+
+        ReadOnlyRule(Set<String> denied) {
+            this.denied = denied;
+        }
+
+        @Override
+        public String getId() {
+            return "read-only";
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            if (select.getIntoTables() != null && !select.getIntoTables().isEmpty()) {
+                violations.add("SELECT INTO " + select.getIntoTables());
+            }
+            if (select.getForMode() != null) {
+                violations.add("FOR " + select.getForMode().getValue());
+            }
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (expression instanceof Function) {
+                String name = ((Function) expression).getName();
+                if (name != null && denied.contains(functionName(name))) {
+                    deniedFunctions.add(functionName(name));
+                }
+            }
+        }
+
+        /**
+         * 去掉 schema 前缀和引号：pg_catalog."pg_sleep" -> pg_sleep
+         */
+        private static String functionName(String name) {
+            int dot = name.lastIndexOf('.');
+            String bare = dot >= 0 ? name.substring(dot + 1) : name;
+            return bare.replace("\"", "").replace("`", "").toLowerCase(Locale.ROOT);
+        }
+    }
+}
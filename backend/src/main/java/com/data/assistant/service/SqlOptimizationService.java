@@ -1,170 +1,206 @@
 package com.data.assistant.service;
 
+import com.data.assistant.model.SchemaCatalog;
+import com.data.assistant.service.sql.BuiltinSqlRules;
+import com.data.assistant.service.sql.IndexAdvisor;
+import com.data.assistant.service.sql.PlanInspector;
+import com.data.assistant.service.sql.QueryPlan;
+import com.data.assistant.service.sql.SqlAnalyzer;
+import com.data.assistant.service.sql.SqlIssue;
+import com.data.assistant.service.sql.SqlParser;
+import com.data.assistant.service.sql.SqlRewriter;
+import com.data.assistant.service.sql.SqlRule;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.regex.*;
 
+/**
+ * SQL 分析与优化
+ *
+ * 基于 JSqlParser 语法树：分析时一次遍历执行所有规则（内置规则 + Spring 容器中的 SqlRule Bean），
+ * 优化时在语法树上做语义等价的改写后重新生成 SQL。无法解析的 SQL 不做分析和改写。
+ * 指定数据源时还可以结合 EXPLAIN 执行计划检查全表扫描、额外排序等问题并给出索引建议。
+ */
 @Service
 public class SqlOptimizationService {
 
-    public Map<String, Object> analyzeSql(String sql) {
-        Map<String, Object> result = new HashMap<>();
-        List<Map<String, Object>> suggestions = new ArrayList<>();
-        int score = 100;
+    private static final Logger logger = LoggerFactory.getLogger(SqlOptimizationService.class);
 
-        // 1. 检查SELECT *
-        if (sql.matches("(?i).*SELECT\\s+\\*.*")) {
-            suggestions.add(createSuggestion(
-                "避免使用SELECT *",
-                "查询中使用了SELECT *，建议只查询需要的字段，减少网络传输和内存占用",
-                "high",
-                "将SELECT * 改为具体的字段列表"
-            ));
-            score -= 15;
-        }
+    @Autowired
+    private SqlParser sqlParser;
 
-        // 2. 检查缺少WHERE子句的UPDATE/DELETE
-        if (sql.matches("(?i).*(UPDATE|DELETE).*") && !sql.matches("(?i).*WHERE.*")) {
-            suggestions.add(createSuggestion(
-                "缺少WHERE条件",
-                "UPDATE或DELETE语句缺少WHERE条件，可能导致全表数据被修改或删除",
-                "critical",
-                "添加适当的WHERE条件限制影响范围"
-            ));
-            score -= 30;
-        }
+    @Autowired
+    private SchemaCatalogService schemaCatalogService;
 
-        // 3. 检查隐式类型转换
-        if (sql.matches("(?i).*WHERE.*\\d+.*")) {
-            suggestions.add(createSuggestion(
-                "可能的隐式类型转换",
-                "WHERE条件中数字与字符串字段比较可能导致索引失效",
-                "medium",
-                "确保比较操作符两侧类型一致"
-            ));
-            score -= 10;
-        }
+    @Autowired
+    private QueryPlanService queryPlanService;
 
-        // 4. 检查LIKE前缀模糊查询
-        if (sql.matches("(?i).*LIKE\\s+'%.*")) {
-            suggestions.add(createSuggestion(
-                "前缀模糊查询",
-                "使用了'%xxx'形式的前缀模糊查询，无法使用索引",
-                "medium",
-                "考虑使用全文索引或反向索引优化"
-            ));
-            score -= 10;
-        }
+    @Autowired(required = false)
+    private List<SqlRule> customRules;
 
-        // 5. 检查OR条件
-        if (sql.matches("(?i).*WHERE.*\\bOR\\b.*")) {
-            suggestions.add(createSuggestion(
-                "使用OR条件",
-                "OR条件可能导致索引失效，考虑使用UNION或IN替代",
-                "low",
-                "将OR改为UNION或IN"
-            ));
-            score -= 5;
-        }
+    @Value("${sql.optimize.default-limit:1000}")
+    private long defaultLimit;
 
-        // 6. 检查子查询
-        if (sql.matches("(?i).*SELECT.*\\(SELECT.*")) {
-            suggestions.add(createSuggestion(
-                "使用子查询",
-                "子查询性能较差，考虑改为JOIN",
-                "medium",
-                "将子查询改为JOIN语法"
-            ));
-            score -= 10;
-        }
+    @Value("${plan.full-scan-min-rows:1000}")
+    private long fullScanMinRows;
 
-        // 7. 检查NOT IN
-        if (sql.matches("(?i).*NOT\\s+IN.*")) {
-            suggestions.add(createSuggestion(
-                "使用NOT IN",
-                "NOT IN在子查询返回NULL时结果不正确，且性能较差",
-                "medium",
-                "使用NOT EXISTS替代NOT IN"
-            ));
-            score -= 10;
+    @Value("${plan.row-blowup-factor:10}")
+    private double rowBlowupFactor;
+
+    private SqlAnalyzer analyzer;
+
+    @PostConstruct
+    public void init() {
+        List<SqlRule> rules = new ArrayList<>(BuiltinSqlRules.all());
+        if (customRules != null) {
+            rules.addAll(customRules);
         }
+        analyzer = new SqlAnalyzer(rules);
+        logger.info("SQL analyzer initialized with {} rules", rules.size());
+    }
 
-        // 8. 检查ORDER BY RAND()
-        if (sql.matches("(?i).*ORDER\\s+BY\\s+RAND\\s*\\(.*")) {
-            suggestions.add(createSuggestion(
-                "使用ORDER BY RAND()",
-                "ORDER BY RAND()会导致全表扫描和文件排序，性能极差",
-                "high",
-                "使用应用层随机或优化算法替代"
-            ));
-            score -= 20;
+    public Map<String, Object> analyzeSql(String sql) {
+        return analyzeSql(sql, null);
+    }
+
+    public Map<String, Object> analyzeSql(String sql, Long dataSourceId) {
+        return analyzeSql(sql, dataSourceId, false);
+    }
+
+    /**
+     * 分析 SQL
+     *
+     * @param dataSourceId 不为空时按该数据源的表结构检查字段类型（如隐式类型转换）
+     * @param withPlan     为 true 且指定了数据源时，同时检查 SELECT 的执行计划；获取失败时返回 planError
+     */
+    public Map<String, Object> analyzeSql(String sql, Long dataSourceId, boolean withPlan) {
+        Map<String, Object> result = new HashMap<>();
+        Statement statement;
+        try {
+            statement = sqlParser.parse(sql);
+        } catch (IllegalArgumentException e) {
+            result.put("parsed", false);
+            result.put("parseError", e.getMessage());
+            result.put("suggestions", Collections.singletonList(new SqlIssue("parse-error", "无法解析SQL",
+                e.getMessage(), "low", "检查SQL语法；数据库方言特有的语法暂不支持分析", 0).toMap()));
+            result.put("totalSuggestions", 1);
+            return result;
         }
 
-        // 9. 检查LIMIT大偏移量
-        Pattern limitPattern = Pattern.compile("(?i)LIMIT\\s+\\d+\\s*,\\s*(\\d+)");
-        Matcher limitMatcher = limitPattern.matcher(sql);
-        if (limitMatcher.find()) {
-            int offset = Integer.parseInt(limitMatcher.group(1));
-            if (offset > 10000) {
-                suggestions.add(createSuggestion(
-                    "大偏移量分页",
-                    "LIMIT大偏移量会导致扫描大量无用数据",
-                    "high",
-                    "使用覆盖索引或延迟关联优化分页"
-                ));
-                score -= 15;
+        SchemaCatalog catalog = getCatalog(dataSourceId);
+        List<SqlIssue> issues = new ArrayList<>(analyzer.analyze(statement, catalog));
+        if (withPlan && dataSourceId != null && statement instanceof Select) {
+            try {
+                result.put("plan", explain(statement, dataSourceId, catalog, issues));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to explain SQL for analysis: {}", e.getMessage());
+                result.put("planError", e.getMessage());
             }
         }
 
-        // 10. 检查多表JOIN
-        Pattern joinPattern = Pattern.compile("(?i)\\bJOIN\\b");
-        Matcher joinMatcher = joinPattern.matcher(sql);
-        int joinCount = 0;
-        while (joinMatcher.find()) joinCount++;
-        if (joinCount > 3) {
-            suggestions.add(createSuggestion(
-                "多表JOIN",
-                "查询涉及" + joinCount + "个表JOIN，可能导致性能问题",
-                "medium",
-                "考虑拆分查询或优化JOIN顺序"
-            ));
-            score -= 10;
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        int score = 100;
+        for (SqlIssue issue : issues) {
+            suggestions.add(issue.toMap());
+            score -= issue.getPenalty();
         }
 
+        result.put("parsed", true);
         result.put("score", Math.max(0, score));
         result.put("grade", score >= 90 ? "A" : score >= 70 ? "B" : score >= 50 ? "C" : "D");
         result.put("suggestions", suggestions);
         result.put("totalSuggestions", suggestions.size());
-
         return result;
     }
 
-    private Map<String, Object> createSuggestion(String title, String description, String severity, String solution) {
-        Map<String, Object> suggestion = new HashMap<>();
-        suggestion.put("title", title);
-        suggestion.put("description", description);
-        suggestion.put("severity", severity);
-        suggestion.put("solution", solution);
-        return suggestion;
+    /**
+     * 获取 SELECT 的执行计划并检查
+     *
+     * 返回 dialect、cached（是否来自缓存）、totalCost、estimatedRows、plan（节点树）、
+     * suggestions（执行计划问题）和 indexRecommendations（索引建议）。
+     *
+     * @throws IllegalArgumentException SQL 无法解析、不是 SELECT 或数据库类型不支持
+     */
+    public Map<String, Object> explainSql(String sql, Long dataSourceId) {
+        return explainSql(sqlParser.parse(sql), dataSourceId);
     }
 
-    public String optimizeSql(String sql) {
-        String optimized = sql;
+    /**
+     * 获取已解析语句的执行计划并检查（不修改语句）
+     */
+    public Map<String, Object> explainSql(Statement statement, Long dataSourceId) {
+        List<SqlIssue> issues = new ArrayList<>();
+        Map<String, Object> result = explain(statement, dataSourceId, getCatalog(dataSourceId), issues);
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        for (SqlIssue issue : issues) {
+            suggestions.add(issue.toMap());
+        }
+        result.put("suggestions", suggestions);
+        return result;
+    }
 
-        // 1. 将OR改为UNION（简单情况）
-        optimized = optimized.replaceAll("(?i)WHERE\\s+(.+)\\s+OR\\s+(.+)", 
-            "WHERE $1 UNION SELECT * FROM table WHERE $2");
+    /**
+     * @param issues 执行计划检查出的问题追加到该列表
+     */
+    private Map<String, Object> explain(Statement statement, Long dataSourceId, SchemaCatalog catalog,
+                                        List<SqlIssue> issues) {
+        QueryPlanService.Lookup lookup = queryPlanService.explain(dataSourceId, statement);
+        QueryPlan plan = lookup.getPlan();
+        issues.addAll(PlanInspector.inspect(plan, fullScanMinRows, rowBlowupFactor));
+        List<Map<String, Object>> recommendations = new ArrayList<>();
+        for (IndexAdvisor.Recommendation recommendation
+            : IndexAdvisor.recommend(statement, catalog, plan, fullScanMinRows)) {
+            recommendations.add(recommendation.toMap());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dialect", plan.getDialect());
+        result.put("cached", lookup.isCached());
+        result.put("totalCost", plan.getTotalCost());
+        result.put("estimatedRows", Math.round(plan.getRoot().getRows()));
+        result.put("plan", plan.getRoot().toMap());
+        result.put("indexRecommendations", recommendations);
+        return result;
+    }
 
-        // 2. 将NOT IN改为NOT EXISTS
-        optimized = optimized.replaceAll("(?i)NOT\\s+IN\\s*\\(([^)]+)\\)", 
-            "NOT EXISTS (SELECT 1 FROM table WHERE condition)");
+    public String optimizeSql(String sql) {
+        return (String) rewriteSql(sql).get("optimized");
+    }
 
-        // 3. 添加LIMIT限制（如果没有）
-        if (!optimized.matches("(?i).*LIMIT.*") && optimized.matches("(?i).*SELECT.*")) {
-            optimized = optimized + " LIMIT 1000";
+    /**
+     * 改写 SQL，返回 original、optimized 和应用的改写 rewrites；没有改写时 optimized 与原 SQL 相同
+     */
+    public Map<String, Object> rewriteSql(String sql) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("original", sql);
+        try {
+            Statement statement = sqlParser.parse(sql);
+            List<String> rewrites = SqlRewriter.rewrite(statement, defaultLimit);
+            result.put("optimized", rewrites.isEmpty() ? sql : statement.toString());
+            result.put("rewrites", rewrites);
+        } catch (IllegalArgumentException e) {
+            result.put("optimized", sql);
+            result.put("rewrites", Collections.emptyList());
+            result.put("parseError", e.getMessage());
         }
+        return result;
+    }
 
-        return optimized;
+    private SchemaCatalog getCatalog(Long dataSourceId) {
+        if (dataSourceId == null) {
+            return null;
+        }
+        try {
+            return schemaCatalogService.getCatalog(dataSourceId);
+        } catch (Exception e) {
+            logger.warn("Failed to load schema catalog for SQL analysis: {}", e.getMessage());
+            return null;
+        }
     }
 }
@@ -7,6 +7,8 @@ import com.data.assistant.repository.TableRelationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.sql.*;
 import java.util.*;
@@ -23,6 +25,9 @@ public class TableRelationService {
     @Autowired
     private DynamicDataSourceService dynamicDataSourceService;
 
+    @Autowired
+    private SchemaRetrievalService schemaRetrievalService;
+
     @Transactional
     public void analyzeTableRelations(Long dataSourceId) {
         DataSource dataSource = dataSourceRepository.findById(dataSourceId)
@@ -30,6 +35,7 @@ public class TableRelationService {
 
         // 清除旧的关系数据
         tableRelationRepository.deleteByDataSourceId(dataSourceId);
+        invalidateAfterCommit(dataSourceId);
 
         // 获取指定数据源的连接
         try (Connection connection = dynamicDataSourceService.getJdbcTemplate(dataSourceId).getDataSource().getConnection()) {
@@ -231,11 +237,31 @@ public class TableRelationService {
         relation.setConfidence(1.0);
         relation.setDescription(description);
 
-        return tableRelationRepository.save(relation);
+        TableRelation saved = tableRelationRepository.save(relation);
+        invalidateAfterCommit(dataSourceId);
+        return saved;
     }
 
     @Transactional
     public void deleteRelation(Long relationId) {
+        tableRelationRepository.findById(relationId)
+                .ifPresent(relation -> invalidateAfterCommit(relation.getDataSourceId()));
         tableRelationRepository.deleteById(relationId);
     }
+
+    /**
+     * 事务提交后再使相关性索引失效：提交前失效时，并发请求可能按未提交的旧关系重建索引并一直缓存
+     */
+    private void invalidateAfterCommit(Long dataSourceId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schemaRetrievalService.invalidate(dataSourceId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schemaRetrievalService.invalidate(dataSourceId);
+            }
+        });
+    }
 }
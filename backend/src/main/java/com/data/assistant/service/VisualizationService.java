@@ -1,5 +1,6 @@
 package com.data.assistant.service;
 
+import com.data.assistant.model.ResultTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,15 +36,10 @@ public class VisualizationService {
                 ORDER BY sale_date
                 """;
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+            ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
-            List<String> dates = new ArrayList<>();
-            List<Double> totals = new ArrayList<>();
-
-            for (Map<String, Object> row : results) {
-                dates.add(row.get("DATE").toString());
-                totals.add(((Number) row.get("TOTAL")).doubleValue());
-            }
+            List<String> dates = results.toStringList("DATE");
+            double[] totals = results.toDoubleArray("TOTAL");
 
             return Map.of(
                     "type", "line",
@@ -69,15 +65,10 @@ public class VisualizationService {
                 ORDER BY total DESC
                 """;
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+            ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
-            List<String> regions = new ArrayList<>();
-            List<Double> totals = new ArrayList<>();
-
-            for (Map<String, Object> row : results) {
-                regions.add(row.get("REGION").toString());
-                totals.add(((Number) row.get("TOTAL")).doubleValue());
-            }
+            List<String> regions = results.toStringList("REGION");
+            double[] totals = results.toDoubleArray("TOTAL");
 
             return Map.of(
                     "type", "bar",
@@ -104,15 +95,10 @@ public class VisualizationService {
                 ORDER BY total DESC
                 """;
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
+            ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
-            List<String> productNames = new ArrayList<>();
-            List<Double> totals = new ArrayList<>();
-
-            for (Map<String, Object> row : results) {
-                productNames.add(row.get("NAME").toString());
-                totals.add(((Number) row.get("TOTAL")).doubleValue());
-            }
+            List<String> productNames = results.toStringList("NAME");
+            double[] totals = results.toDoubleArray("TOTAL");
 
             return Map.of(
                     "type", "pie",
@@ -139,14 +125,16 @@ public class VisualizationService {
                 ORDER BY purchase_count DESC
                 """;
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql);
-
-            List<String> customerNames = new ArrayList<>();
-            List<Long> purchaseCounts = new ArrayList<>();
+            ResultTable results = jdbcTemplate.query(sql, ResultTable.extractor());
 
-            for (Map<String, Object> row : results) {
-                customerNames.add(row.get("NAME").toString());
-                purchaseCounts.add(((Number) row.get("PURCHASE_COUNT")).longValue());
+            List<String> customerNames = results.toStringList("NAME");
+            long[] purchaseCounts = new long[results.getRowCount()];
+            ResultTable.Column countColumn = results.getColumn("PURCHASE_COUNT");
+            for (int i = 0; i < purchaseCounts.length; i++) {
+                // COUNT(*) 一般为 BIGINT，按 long 读取，避免超过 2^53 时经 double 丢失精度
+                purchaseCounts[i] = countColumn instanceof ResultTable.LongColumn
+                    ? ((ResultTable.LongColumn) countColumn).getLong(i)
+                    : (long) countColumn.getDouble(i);
             }
 
             return Map.of(
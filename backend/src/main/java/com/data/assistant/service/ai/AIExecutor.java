@@ -0,0 +1,381 @@
+package com.data.assistant.service.ai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * AI 调用执行器
+ *
+ * 所有对 AI 提供商的阻塞调用都在这个有界线程池中执行，不占用 Tomcat 请求线程，也不使用公共 ForkJoinPool。
+ * 每个提供商有独立的并发上限和等待队列：超过并发上限的任务在该提供商的队列中排队（不占线程），
+ * 队列满时立即拒绝；任务有超时，超时或调用方取消（例如 HTTP 客户端断开）时从队列移除或中断执行线程。
+ *
+ * 配置：ai.executor.*，提供商单独配置 ai.provider.{name}.max-concurrency / queue-capacity / timeout-seconds。
+ */
+@Component
+public class AIExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AIExecutor.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${ai.executor.threads:32}")
+    private int threads;
+
+    // 批量分发线程数：批量任务完成后在这些线程上回调并发出下一个任务，不占用 AI 调用线程和计时线程
+    @Value("${ai.executor.dispatch-threads:4}")
+    private int dispatchThreads;
+
+    @Value("${ai.provider.default.max-concurrency:8}")
+    private int defaultMaxConcurrency;
+
+    @Value("${ai.provider.default.queue-capacity:100}")
+    private int defaultQueueCapacity;
+
+    @Value("${ai.provider.default.timeout-seconds:60}")
+    private int defaultTimeoutSeconds;
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor dispatcher;
+    private ScheduledExecutorService timer;
+    private final Map<String, ProviderLane> lanes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        // 线程池本身不排队：排队发生在各提供商的队列中，分发到线程池的任务数不超过各提供商并发上限之和；
+        // 新的提供商通道创建时线程数随之扩大到该和（见 resizePool），线程池队列只用于线程交接
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ai-call-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        AtomicInteger dispatchCounter = new AtomicInteger();
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "ai-dispatch-" + dispatchCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        dispatcher.allowCoreThreadTimeOut(true);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ai-call-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        timer = scheduler;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.shutdownNow();
+        dispatcher.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交任务，使用提供商配置的超时
+     */
+    public <T> CompletableFuture<T> submit(String provider, Supplier<T> task) {
+        return submit(provider, task, lane(provider).timeoutSeconds);
+    }
+
+    /**
+     * 提交任务
+     * 返回的 future 被取消时：任务还在排队则直接移除，已在执行则中断执行线程。
+     *
+     * @param provider 提供商名称（决定使用哪个并发通道）
+     * @param timeoutSeconds 从提交开始计算的超时（包括排队时间），<= 0 表示不限制
+     */
+    public <T> CompletableFuture<T> submit(String provider, Supplier<T> task, int timeoutSeconds) {
+        ProviderLane lane = lane(provider);
+        Call<T> call = new Call<>(lane, task);
+        if (!lane.offer(call)) {
+            lane.rejected.increment();
+            call.completeExceptionally(new RejectedExecutionException(
+                "AI 服务繁忙（" + lane.name + " 排队已满），请稍后重试"));
+            return call;
+        }
+        if (timeoutSeconds > 0) {
+            ScheduledFuture<?> timeout = timer.schedule(() -> {
+                if (call.completeExceptionally(new TimeoutException(
+                        "AI 调用超时（" + lane.name + "，" + timeoutSeconds + " 秒）"))) {
+                    lane.timeouts.increment();
+                }
+            }, timeoutSeconds, TimeUnit.SECONDS);
+            call.whenComplete((result, error) -> timeout.cancel(false));
+        }
+        // 超时或取消时：还在排队的直接移除，执行中的中断线程（并发名额在线程真正退出时归还）
+        call.whenComplete((result, error) -> call.abandon());
+        return call;
+    }
+
+    /**
+     * 批量分发使用的线程池（任务完成后的回调和发出下一个任务在这里执行）
+     */
+    public Executor getDispatchExecutor() {
+        return dispatcher;
+    }
+
+    /**
+     * 延迟执行轻量任务（在计时线程上运行，任务本身不能阻塞）
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 把失败（包括超时、排队已满）转换为降级结果；返回的 future 被取消时同时取消原调用
+     */
+    public static <T> CompletableFuture<T> recover(CompletableFuture<T> call, Function<Throwable, T> fallback) {
+        CompletableFuture<T> result = call.exceptionally(e ->
+            fallback.apply(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 同步等待结果；调用线程被中断时取消任务
+     * 任务异常原样抛出（RuntimeException），超时抛出 CompletionException 包装的 TimeoutException。
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("AI 调用已取消");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * 各提供商的并发和排队情况
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        Map<String, Object> providers = new LinkedHashMap<>();
+        lanes.forEach((name, lane) -> providers.put(name, lane.getStats()));
+        stats.put("providers", providers);
+        return stats;
+    }
+
+    private ProviderLane lane(String provider) {
+        String name = provider != null && !provider.isEmpty() ? provider.toLowerCase(Locale.ROOT) : "default";
+        ProviderLane lane = lanes.get(name);
+        if (lane == null) {
+            lane = lanes.computeIfAbsent(name, n -> new ProviderLane(n,
+                environment.getProperty("ai.provider." + n + ".max-concurrency", Integer.class, defaultMaxConcurrency),
+                environment.getProperty("ai.provider." + n + ".queue-capacity", Integer.class, defaultQueueCapacity),
+                environment.getProperty("ai.provider." + n + ".timeout-seconds", Integer.class, defaultTimeoutSeconds)));
+            resizePool();
+        }
+        return lane;
+    }
+
+    /**
+     * 线程数取 ai.executor.threads 与各提供商并发上限之和的较大值：
+     * 否则各通道同时跑满时，超出线程数的任务在线程池的无界队列中等待，既不受提供商排队上限约束，也不计入排队时间
+     */
+    private synchronized void resizePool() {
+        int total = 0;
+        for (ProviderLane lane : lanes.values()) {
+            total += lane.maxConcurrency;
+        }
+        int size = Math.max(threads, total);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+            logger.info("AI executor resized to {} threads", size);
+        }
+    }
+
+    /**
+     * 单个提供商的并发通道
+     */
+    private class ProviderLane {
+        private final String name;
+        private final int maxConcurrency;
+        private final int queueCapacity;
+        private final int timeoutSeconds;
+        private final Deque<Call<?>> queue = new ArrayDeque<>();
+        private int running = 0;
+
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder queueWaitMillis = new LongAdder();
+
+        ProviderLane(String name, int maxConcurrency, int queueCapacity, int timeoutSeconds) {
+            this.name = name;
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+            this.queueCapacity = Math.max(0, queueCapacity);
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        synchronized boolean offer(Call<?> call) {
+            if (running < maxConcurrency) {
+                start(call);
+                return true;
+            }
+            if (queue.size() >= queueCapacity) {
+                return false;
+            }
+            queue.addLast(call);
+            return true;
+        }
+
+        /**
+         * 排队中的任务结束（超时或取消），从队列移除
+         */
+        synchronized void dequeue(Call<?> call) {
+            if (call.state == Call.QUEUED) {
+                queue.remove(call);
+                call.state = Call.DONE;
+            }
+        }
+
+        /**
+         * 执行线程退出：归还并发名额并启动下一个排队的任务
+         */
+        synchronized void finished(Call<?> call) {
+            if (call.state == Call.RUNNING) {
+                call.state = Call.DONE;
+                running--;
+            }
+            while (running < maxConcurrency && !queue.isEmpty()) {
+                Call<?> next = queue.pollFirst();
+                if (!next.isDone()) {
+                    start(next);
+                }
+            }
+        }
+
+        private void start(Call<?> call) {
+            call.state = Call.RUNNING;
+            running++;
+            queueWaitMillis.add(System.currentTimeMillis() - call.submittedAt);
+            call.execution = executor.submit(call::run);
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long done = completed.sum() + failed.sum();
+            stats.put("maxConcurrency", maxConcurrency);
+            stats.put("running", running);
+            stats.put("queued", queue.size());
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("completed", completed.sum());
+            stats.put("failed", failed.sum());
+            stats.put("rejected", rejected.sum());
+            stats.put("timeouts", timeouts.sum());
+            stats.put("cancelled", cancelled.sum());
+            stats.put("avgQueueWaitMillis", done == 0 ? 0 : queueWaitMillis.sum() / done);
+            return stats;
+        }
+    }
+
+    /**
+     * 一次 AI 调用；本身就是返回给调用方的 future
+     */
+    private static class Call<T> extends CompletableFuture<T> {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private final ProviderLane lane;
+        private final Supplier<T> task;
+        private final long submittedAt = System.currentTimeMillis();
+        // 以下字段在 lane 的锁内读写
+        private int state = QUEUED;
+        private Future<?> execution;
+
+        Call(ProviderLane lane, Supplier<T> task) {
+            this.lane = lane;
+            this.task = task;
+        }
+
+        void run() {
+            try {
+                if (isDone()) {
+                    return;
+                }
+                T result = task.get();
+                if (complete(result)) {
+                    lane.completed.increment();
+                }
+            } catch (Throwable e) {
+                if (completeExceptionally(e)) {
+                    lane.failed.increment();
+                }
+            } finally {
+                lane.finished(this);
+            }
+        }
+
+        /**
+         * future 结束后调用：未执行的从队列移除，执行中（超时或取消）的中断执行线程
+         */
+        void abandon() {
+            if (isCancelled()) {
+                lane.cancelled.increment();
+            }
+            Future<?> running;
+            synchronized (lane) {
+                lane.dequeue(this);
+                running = state == RUNNING ? execution : null;
+            }
+            if (running != null && !running.isDone()) {
+                running.cancel(true);
+                logger.debug("Interrupted AI call on {}", lane.name);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.data.assistant.service.ai;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 统一 AI 服务接口
@@ -48,6 +49,31 @@ public interface AIService {
      */
     String chat(String prompt, Map<String, Object> context);
     
+    /**
+     * 通用对话查询（流式）
+     * 模型每输出一段文本就调用一次 onToken；onToken 抛出异常（例如客户端已断开）时中止生成。
+     * 默认实现不支持流式，完成后一次性输出全部文本。
+     * @param prompt 提示词
+     * @param context 上下文
+     * @param onToken 文本片段回调
+     * @return 完整的 AI 响应
+     */
+    default String chatStream(String prompt, Map<String, Object> context, Consumer<String> onToken) {
+        String response = chat(prompt, context);
+        onToken.accept(response);
+        return response;
+    }
+    
+    /**
+     * 自然语言转 SQL（流式）
+     * 生成过程中把模型的原始输出通过 onToken 转发，结束后解析为 SQL 结果。
+     * 默认实现不支持流式，不输出中间文本。
+     */
+    default NL2SQLResult naturalLanguageToSQLStream(String naturalLanguage, String schema, Map<String, Object> context,
+                                                    Consumer<String> onToken) {
+        return naturalLanguageToSQL(naturalLanguage, schema, context);
+    }
+    
     /**
      * 获取服务提供商名称
      */
@@ -1,30 +1,69 @@
 package com.data.assistant.service.ai;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AI 服务工厂
  * 管理所有 AI 提供商的服务实例
+ *
+ * 默认路由按优先级（iFlow > DashScope > 其他 > Mock）选择第一个可用且熔断器未打开的提供商。
+ * 可用性检查（isAvailable，iFlow 需要发起一次真实调用）结果缓存 availability-ttl-seconds 秒，
+ * 调用失败、超时由 ProviderHealthTracker 统计并熔断。
  */
 @Component
 public class AIServiceFactory {
     
+    private static final Logger logger = LoggerFactory.getLogger(AIServiceFactory.class);
+    
+    private static final List<String> PREFERRED_PROVIDERS = Arrays.asList("iflow", "dashscope");
+    private static final String MOCK_PROVIDER = "mock";
+    
     @Autowired
     private List<AIService> aiServices;
     
+    @Autowired
+    private ProviderHealthTracker healthTracker;
+    
+    @Value("${ai.routing.availability-ttl-seconds:60}")
+    private long availabilityTtlSeconds;
+    
     private Map<String, AIService> serviceMap = new HashMap<>();
     
+    // 按路由优先级排列的提供商名称
+    private final List<String> routingOrder = new ArrayList<>();
+    
+    // 提供商 -> {是否可用, 检查时间}
+    private final Map<String, long[]> availability = new ConcurrentHashMap<>();
+    
     @PostConstruct
     public void init() {
         for (AIService service : aiServices) {
             serviceMap.put(service.getProviderName().toLowerCase(), service);
         }
+        for (String name : PREFERRED_PROVIDERS) {
+            if (serviceMap.containsKey(name)) {
+                routingOrder.add(name);
+            }
+        }
+        serviceMap.keySet().stream()
+            .filter(name -> !routingOrder.contains(name) && !MOCK_PROVIDER.equals(name))
+            .sorted()
+            .forEach(routingOrder::add);
+        if (serviceMap.containsKey(MOCK_PROVIDER)) {
+            routingOrder.add(MOCK_PROVIDER);
+        }
     }
     
     /**
@@ -39,29 +78,39 @@ public class AIServiceFactory {
     }
     
     /**
-     * 获取默认的 AI 服务（优先 iFlow）
+     * 获取默认的 AI 服务（按优先级选择可用且未熔断的提供商，优先 iFlow）
      */
     public AIService getDefaultService() {
-        // 优先返回可用的 iFlow
-        if (serviceMap.containsKey("iflow") && serviceMap.get("iflow").isAvailable()) {
-            return serviceMap.get("iflow");
-        }
-        // 其次返回可用的 DashScope（真实 AI）
-        if (serviceMap.containsKey("dashscope") && serviceMap.get("dashscope").isAvailable()) {
-            return serviceMap.get("dashscope");
-        }
-        // 最后回退到 mock（总是可用）
-        if (serviceMap.containsKey("mock")) {
-            return serviceMap.get("mock");
+        for (String name : routingOrder) {
+            // Mock 总是可用，作为最后的回退，不受熔断影响
+            if (MOCK_PROVIDER.equals(name)) {
+                return serviceMap.get(name);
+            }
+            if (isAvailable(name) && healthTracker.allowRequest(name)) {
+                return serviceMap.get(name);
+            }
         }
-        // 否则返回第一个可用的
-        for (AIService service : serviceMap.values()) {
-            if (service.isAvailable()) {
+        // 所有真实提供商都不可用且没有 Mock 时返回第一个
+        logger.warn("No healthy AI provider, falling back to {}", routingOrder.get(0));
+        return serviceMap.get(routingOrder.get(0));
+    }
+    
+    /**
+     * 获取对冲请求使用的备用服务：除 primary 和 Mock 以外按优先级第一个可用且未熔断的提供商
+     * 没有合适的备用服务时返回 null。
+     * 只做不改变熔断器状态的检查：多数对冲请求不会真正发给备用服务，半开状态的试探名额在真正发出时才占用。
+     */
+    public AIService getHedgeService(AIService primary) {
+        for (String name : routingOrder) {
+            AIService service = serviceMap.get(name);
+            if (service == primary || MOCK_PROVIDER.equals(name)) {
+                continue;
+            }
+            if (isAvailable(name) && healthTracker.wouldAllow(name)) {
                 return service;
             }
         }
-        // 最后返回第一个
-        return serviceMap.values().iterator().next();
+        return null;
     }
     
     /**
@@ -69,17 +118,36 @@ public class AIServiceFactory {
      */
     public Map<String, Boolean> getAvailableProviders() {
         Map<String, Boolean> providers = new HashMap<>();
-        for (Map.Entry<String, AIService> entry : serviceMap.entrySet()) {
-            providers.put(entry.getKey(), entry.getValue().isAvailable());
+        for (String name : serviceMap.keySet()) {
+            providers.put(name, isAvailable(name));
         }
         return providers;
     }
     
     /**
-     * 检查提供商是否可用
+     * 检查提供商是否可用（熔断器打开时视为不可用）
      */
     public boolean isProviderAvailable(String provider) {
-        AIService service = serviceMap.get(provider.toLowerCase());
-        return service != null && service.isAvailable();
+        String name = provider.toLowerCase();
+        return serviceMap.containsKey(name) && isAvailable(name) && !healthTracker.isOpen(name);
+    }
+    
+    /**
+     * 带缓存的可用性检查
+     */
+    private boolean isAvailable(String name) {
+        long now = System.currentTimeMillis();
+        long[] cached = availability.get(name);
+        if (cached != null && now - cached[1] < availabilityTtlSeconds * 1000) {
+            return cached[0] == 1;
+        }
+        boolean available;
+        try {
+            available = serviceMap.get(name).isAvailable();
+        } catch (Exception e) {
+            available = false;
+        }
+        availability.put(name, new long[]{available ? 1 : 0, now});
+        return available;
     }
 }
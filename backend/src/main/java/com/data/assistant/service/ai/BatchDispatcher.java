@@ -0,0 +1,100 @@
+package com.data.assistant.service.ai;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 有界并发的批量分发器
+ *
+ * 同时最多执行 parallelism 个任务，每完成一个再发出下一个；任务按顺序发出、按完成顺序回调（异常结束的任务不回调）。
+ * 任务完成后的回调和发出下一个任务都在分发线程池上执行，不占用完成任务的线程（AI 调用线程或计时线程）。
+ * 返回的 future 在全部任务完成后完成；被取消或回调抛出异常时取消正在执行的任务并停止发出新任务。
+ */
+class BatchDispatcher<I, R> {
+
+    private final List<I> items;
+    private final Function<I, CompletableFuture<R>> task;
+    private final BiConsumer<I, R> onResult;
+    private final Executor executor;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final Set<CompletableFuture<R>> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param executor 分发线程池
+     */
+    BatchDispatcher(List<I> items, Function<I, CompletableFuture<R>> task, BiConsumer<I, R> onResult,
+                    Executor executor) {
+        this.items = items;
+        this.task = task;
+        this.onResult = onResult;
+        this.executor = executor;
+        this.remaining = new AtomicInteger(items.size());
+    }
+
+    CompletableFuture<Void> start(int parallelism) {
+        done.whenComplete((value, error) -> {
+            if (error != null) {
+                running.forEach(call -> call.cancel(true));
+            }
+        });
+        if (items.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+        for (int i = 0; i < Math.min(parallelism, items.size()); i++) {
+            dispatchNext();
+        }
+        return done;
+    }
+
+    /**
+     * 发出下一个任务；任务同步完成（例如命中缓存）时在循环中继续发出，避免递归过深
+     */
+    private void dispatchNext() {
+        while (!done.isDone()) {
+            int index = next.getAndIncrement();
+            if (index >= items.size()) {
+                return;
+            }
+            I item = items.get(index);
+            CompletableFuture<R> call = task.apply(item);
+            if (call.isDone()) {
+                finish(item, call);
+                continue;
+            }
+            running.add(call);
+            call.whenCompleteAsync((value, error) -> {
+                running.remove(call);
+                finish(item, call);
+                dispatchNext();
+            }, executor).exceptionally(e -> {
+                // 分发线程池已关闭
+                done.completeExceptionally(e);
+                return null;
+            });
+            return;
+        }
+    }
+
+    private void finish(I item, CompletableFuture<R> call) {
+        if (!done.isDone() && !call.isCompletedExceptionally()) {
+            try {
+                onResult.accept(item, call.join());
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+    }
+}
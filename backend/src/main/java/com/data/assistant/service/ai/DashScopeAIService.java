@@ -18,6 +18,7 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * DashScope (阿里云灵积模型服务) AI 服务实现
@@ -132,6 +133,36 @@ public class DashScopeAIService implements AIService {
         }
     }
 
+    @Override
+    public String chatStream(String prompt, Map<String, Object> context, Consumer<String> onToken) {
+        if (!available) {
+            String message = "DashScope 服务未配置，请设置 API Key";
+            onToken.accept(message);
+            return message;
+        }
+
+        try {
+            return streamDashScope(prompt, onToken);
+        } catch (NoApiKeyException | InputRequiredException e) {
+            throw new IllegalStateException("对话失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public NL2SQLResult naturalLanguageToSQLStream(String naturalLanguage, String schema, Map<String, Object> context,
+                                                   Consumer<String> onToken) {
+        if (!available) {
+            return NL2SQLResult.failure("DashScope 服务未配置，请设置 API Key");
+        }
+
+        try {
+            String prompt = buildNL2SQLPrompt(naturalLanguage, schema, context);
+            return parseNL2SQLResponse(streamDashScope(prompt, onToken));
+        } catch (NoApiKeyException | InputRequiredException e) {
+            throw new IllegalStateException("NL2SQL 转换失败: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public String getProviderName() {
         return "dashscope";
@@ -146,22 +177,41 @@ public class DashScopeAIService implements AIService {
      * 调用 DashScope API
      */
     private String callDashScope(String prompt) throws NoApiKeyException, InputRequiredException {
+        GenerationResult result = generation.call(buildParam(prompt, false));
+        return result.getOutput().getChoices().get(0).getMessage().getContent();
+    }
+
+    /**
+     * 流式调用 DashScope API（增量输出），每收到一段文本调用一次 onToken，返回完整文本
+     * 在调用线程上阻塞读取；线程被中断或 onToken 抛出异常时停止读取。
+     */
+    private String streamDashScope(String prompt, Consumer<String> onToken) throws NoApiKeyException, InputRequiredException {
+        StringBuilder response = new StringBuilder();
+        generation.streamCall(buildParam(prompt, true)).blockingForEach(result -> {
+            String delta = result.getOutput().getChoices().get(0).getMessage().getContent();
+            if (delta != null && !delta.isEmpty()) {
+                response.append(delta);
+                onToken.accept(delta);
+            }
+        });
+        return response.toString();
+    }
+
+    private GenerationParam buildParam(String prompt, boolean incrementalOutput) {
         Message userMsg = Message.builder()
                 .role(Role.USER.getValue())
                 .content(prompt)
                 .build();
 
-        GenerationParam param = GenerationParam.builder()
+        return GenerationParam.builder()
                 .apiKey(apiKey)
                 .model(model)
                 .messages(Arrays.asList(userMsg))
                 .resultFormat(GenerationParam.ResultFormat.MESSAGE)
+                .incrementalOutput(incrementalOutput)
                 .maxTokens(2000)
                 .temperature(0.7f)
                 .build();
-
-        GenerationResult result = generation.call(param);
-        return result.getOutput().getChoices().get(0).getMessage().getContent();
     }
 
     /**
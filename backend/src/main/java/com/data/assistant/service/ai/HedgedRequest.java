@@ -0,0 +1,177 @@
+package com.data.assistant.service.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 对冲请求
+ *
+ * 先向主提供商发出请求；超过 delay 仍未返回时，向备用提供商发出同样的请求，取先成功的结果并取消另一个。
+ * 主请求在 delay 之前就失败时立即向备用提供商重试。所有请求都失败时返回最后一个失败结果（或异常）。
+ * 返回的 future 被取消时取消所有请求。
+ *
+ * 备用提供商由调用方事先选定：对冲任务在共享的计时线程上执行，不能在其中做可用性检查之类的阻塞调用。
+ * 真正向备用提供商发请求前再经 admitBackup 确认（熔断器放行），不放行时视为没有备用提供商。
+ */
+class HedgedRequest<T> {
+
+    private final AIService primary;
+    private final AIService backup;
+    private final Function<AIService, CompletableFuture<T>> attempt;
+    private final Predicate<T> succeeded;
+    private final Predicate<AIService> admitBackup;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    // 以下字段在 this 的锁内读写
+    private final List<CompletableFuture<T>> attempts = new ArrayList<>();
+    private boolean hedged = false;
+    private boolean backupLaunched = false;
+    private ScheduledFuture<?> timer;
+    private AIService winner;
+    private T failedResult;
+    private Throwable failure;
+
+    /**
+     * @param backup 备用提供商，没有时为 null（只在主请求失败时结束）
+     * @param attempt 向指定提供商发出一次请求
+     * @param succeeded 判断结果是否成功；不成功的结果视为失败，继续等待其他请求
+     * @param admitBackup 向备用提供商发出请求前调用，返回 false 时不发出；必须是非阻塞的
+     */
+    HedgedRequest(AIService primary, AIService backup, Function<AIService, CompletableFuture<T>> attempt,
+                  Predicate<T> succeeded, Predicate<AIService> admitBackup) {
+        this.primary = primary;
+        this.backup = backup;
+        this.attempt = attempt;
+        this.succeeded = succeeded;
+        this.admitBackup = admitBackup;
+    }
+
+    /**
+     * 发出主请求，并通过 scheduler 安排延迟对冲
+     *
+     * @param scheduler 在对冲延迟后执行给定任务
+     */
+    CompletableFuture<T> start(Function<Runnable, ScheduledFuture<?>> scheduler) {
+        result.whenComplete((value, error) -> cancelAll());
+        launch(primary);
+        synchronized (this) {
+            if (backup != null && !hedged && !result.isDone()) {
+                timer = scheduler.apply(this::hedge);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 返回结果的提供商；尚未完成或全部失败时为 null
+     */
+    synchronized AIService getWinner() {
+        return winner;
+    }
+
+    /**
+     * 是否向备用提供商发出了请求
+     */
+    synchronized boolean isBackupLaunched() {
+        return backupLaunched;
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (hedged || result.isDone()) {
+                return;
+            }
+            hedged = true;
+        }
+        if (backup != null && admitBackup.test(backup)) {
+            synchronized (this) {
+                backupLaunched = true;
+            }
+            launch(backup);
+        } else {
+            completeIfAllFailed();
+        }
+    }
+
+    private void launch(AIService service) {
+        CompletableFuture<T> call = attempt.apply(service);
+        boolean cancelled;
+        synchronized (this) {
+            attempts.add(call);
+            // 发出请求期间结果已经完成（被取消或另一个请求已成功）：cancelAll 可能没有看到这个请求，在这里取消
+            cancelled = result.isDone();
+        }
+        if (cancelled) {
+            call.cancel(true);
+            return;
+        }
+        call.whenComplete((value, error) -> onAttemptDone(service, value, error));
+    }
+
+    private void onAttemptDone(AIService service, T value, Throwable error) {
+        if (error == null && succeeded.test(value)) {
+            synchronized (this) {
+                if (winner == null && !result.isDone()) {
+                    winner = service;
+                }
+            }
+            result.complete(value);
+            return;
+        }
+        boolean hedgeLaunched;
+        synchronized (this) {
+            if (error == null) {
+                failedResult = value;
+            } else if (failedResult == null) {
+                failure = error;
+            }
+            hedgeLaunched = hedged;
+        }
+        if (hedgeLaunched) {
+            completeIfAllFailed();
+        } else {
+            // 主请求在对冲前就失败，立即改用备用提供商
+            hedge();
+        }
+    }
+
+    private void completeIfAllFailed() {
+        T lastResult;
+        Throwable lastFailure;
+        synchronized (this) {
+            if (!hedged) {
+                return;
+            }
+            for (CompletableFuture<T> call : attempts) {
+                if (!call.isDone()) {
+                    return;
+                }
+            }
+            lastResult = failedResult;
+            lastFailure = failure;
+        }
+        if (lastResult != null) {
+            result.complete(lastResult);
+        } else {
+            result.completeExceptionally(lastFailure);
+        }
+    }
+
+    private void cancelAll() {
+        List<CompletableFuture<T>> pending;
+        synchronized (this) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            hedged = true;
+            pending = new ArrayList<>(attempts);
+        }
+        for (CompletableFuture<T> call : pending) {
+            call.cancel(true);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * iFlow AI 服务实现
@@ -81,6 +82,18 @@ public class IflowAIService implements AIService {
         }
     }
 
+    @Override
+    public String chatStream(String prompt, Map<String, Object> context, Consumer<String> onToken) {
+        return iflowClientService.streamQuery(prompt, onToken);
+    }
+
+    @Override
+    public NL2SQLResult naturalLanguageToSQLStream(String naturalLanguage, String schema, Map<String, Object> context,
+                                                   Consumer<String> onToken) {
+        String response = iflowClientService.generateSqlStream(schema, naturalLanguage, onToken);
+        return parseNL2SQLResponse(response);
+    }
+
     @Override
     public String getProviderName() {
         return "iFlow";
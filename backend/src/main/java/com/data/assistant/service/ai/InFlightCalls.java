@@ -0,0 +1,127 @@
+package com.data.assistant.service.ai;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 进行中调用的合并
+ *
+ * 相同 key 的调用在第一个调用完成前只执行一次，后来的调用方等待同一结果。
+ * 每个调用方拿到各自的 future：单个调用方取消只是退出等待，所有调用方都取消后才取消底层调用。
+ */
+class InFlightCalls<T> {
+
+    private final Map<String, Shared> calls = new HashMap<>();
+
+    /**
+     * @param start 没有进行中的调用时发起调用
+     * @param forJoiner 转换给后加入的调用方的结果（例如复制并标记为合并命中）
+     */
+    CompletableFuture<T> join(String key, Supplier<CompletableFuture<T>> start, UnaryOperator<T> forJoiner) {
+        Shared shared;
+        boolean owner = false;
+        synchronized (calls) {
+            shared = calls.get(key);
+            if (shared == null) {
+                shared = new Shared(key);
+                calls.put(key, shared);
+                owner = true;
+            }
+            // 在查找的同一把锁内计数，避免加入一个刚被全部调用方取消的调用
+            shared.waiters++;
+        }
+        CompletableFuture<T> waiter = shared.addWaiter(owner ? UnaryOperator.identity() : forJoiner);
+        if (owner) {
+            CompletableFuture<T> call;
+            try {
+                call = start.get();
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            shared.bind(call);
+        }
+        return waiter;
+    }
+
+    /**
+     * 进行中的调用数
+     */
+    int size() {
+        synchronized (calls) {
+            return calls.size();
+        }
+    }
+
+    private class Shared {
+        private final String key;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        // 以下字段在 calls 的锁内读写
+        private CompletableFuture<T> call;
+        private int waiters = 0;
+        private boolean cancelled = false;
+
+        Shared(String key) {
+            this.key = key;
+            result.whenComplete((value, error) -> remove());
+        }
+
+        CompletableFuture<T> addWaiter(UnaryOperator<T> transform) {
+            CompletableFuture<T> waiter = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(value != null ? transform.apply(value) : null);
+                }
+            });
+            waiter.whenComplete((value, error) -> {
+                if (waiter.isCancelled()) {
+                    leave();
+                }
+            });
+            return waiter;
+        }
+
+        void bind(CompletableFuture<T> call) {
+            boolean cancelNow;
+            synchronized (calls) {
+                this.call = call;
+                cancelNow = cancelled;
+            }
+            if (cancelNow) {
+                call.cancel(true);
+            }
+            call.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        private void leave() {
+            CompletableFuture<T> toCancel;
+            synchronized (calls) {
+                if (--waiters > 0 || result.isDone()) {
+                    return;
+                }
+                cancelled = true;
+                calls.remove(key, this);
+                toCancel = call;
+            }
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+        }
+
+        private void remove() {
+            synchronized (calls) {
+                calls.remove(key, this);
+            }
+        }
+    }
+}
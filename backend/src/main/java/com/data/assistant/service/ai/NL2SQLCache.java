@@ -0,0 +1,462 @@
+package com.data.assistant.service.ai;
+
+import com.data.assistant.model.QueryHistory;
+import com.data.assistant.repository.QueryHistoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * NL2SQL 结果缓存
+ *
+ * 缓存键由 AI 提供商、数据源、schema 版本和归一化后的问题组成，表结构变化后 schema 版本改变，旧结果自然失效。
+ * 内存层按 LRU + TTL 淘汰；精确未命中时在同一提供商/数据源/schema 版本下按词集合相似度查找近似问题
+ * （两个问题中的数字和比较/排序/否定词必须完全相同，避免“前 10 名”命中“前 20 名”、“最高”命中“最低”）；
+ * 可选的持久层把结果写入 query_history，服务重启后仍可命中。
+ */
+@Component
+public class NL2SQLCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(NL2SQLCache.class);
+
+    public static final String HIT_EXACT = "exact";
+    public static final String HIT_SIMILAR = "similar";
+    public static final String HIT_PERSISTENT = "persistent";
+    // 相同问题正在生成，与之共享一次模型调用
+    public static final String HIT_INFLIGHT = "inflight";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 语气词/虚词只按整词去掉（中文没有空格，礼貌前缀只去词首、疑问语气词只去词尾），不删除词中的字（申请、目的）
+    private static final Set<String> FILLER_WORDS = Set.of("请问", "请", "帮我", "帮忙", "一下", "的", "了", "吗", "呢", "吧");
+    private static final Pattern LEADING_FILLERS = Pattern.compile("^(请问|帮我|帮忙)+");
+    private static final Pattern TRAILING_PARTICLES = Pattern.compile("(吗|呢)+$");
+    private static final Pattern ENGLISH_STOP_WORDS = Pattern.compile("\\b(please|the|a|an)\\b");
+    // 决定 SQL 条件/排序方向的词：相似度再高，这些词不同也不能复用（“最高”与“最低”只差一个字）
+    private static final List<String> CJK_OPERATOR_WORDS = List.of(
+        "最高", "最低", "最大", "最小", "最多", "最少", "最早", "最晚", "最近", "最新", "最旧",
+        "大于", "小于", "高于", "低于", "多于", "少于", "早于", "晚于", "等于", "超过", "不足", "以上", "以下", "以内", "之前", "之后",
+        "至少", "至多", "升序", "降序", "正序", "倒序", "增加", "减少", "增长", "下降", "上升",
+        "前", "后", "不", "没有", "未", "非", "除了", "排除", "包含", "和", "或");
+    private static final Set<String> LATIN_OPERATOR_WORDS = Set.of(
+        "max", "min", "maximum", "minimum", "highest", "lowest", "most", "least", "top", "bottom", "first", "last",
+        "earliest", "latest", "newest", "oldest", "greater", "less", "more", "fewer", "above", "below", "over", "under",
+        "before", "after", "between", "asc", "desc", "ascending", "descending", "increase", "decrease",
+        "not", "no", "without", "except", "exclude", "excluding", "and", "or");
+
+    @Autowired
+    private QueryHistoryRepository queryHistoryRepository;
+
+    @Value("${nl2sql.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nl2sql.cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${nl2sql.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    // 近似匹配的最低 Jaccard 相似度，<= 0 关闭近似匹配
+    @Value("${nl2sql.cache.similarity-threshold:0.85}")
+    private double similarityThreshold;
+
+    @Value("${nl2sql.cache.persistent.enabled:false}")
+    private boolean persistentEnabled;
+
+    @Value("${nl2sql.cache.persistent.ttl-hours:168}")
+    private long persistentTtlHours;
+
+    // 访问顺序的 LinkedHashMap 实现 LRU；近似匹配按作用域（提供商 + 数据源 + schema 版本）分组
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Set<Entry>> scopes = new HashMap<>();
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder persistentHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 生成缓存键
+     */
+    public Key key(String provider, Long dataSourceId, String schemaVersion, String question) {
+        return new Key(provider, dataSourceId, schemaVersion, question);
+    }
+
+    /**
+     * 查找缓存结果，返回副本；未命中返回 null
+     */
+    public NL2SQLResult get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry;
+        String hitType;
+        synchronized (this) {
+            entry = entries.get(key.getId());
+            if (entry != null && entry.isExpired()) {
+                remove(entry);
+                entry = null;
+            }
+            hitType = HIT_EXACT;
+            if (entry == null) {
+                entry = findSimilar(key);
+                hitType = HIT_SIMILAR;
+            }
+        }
+        if (entry != null) {
+            (HIT_EXACT.equals(hitType) ? exactHits : similarHits).increment();
+            return copyOf(entry.result, hitType);
+        }
+
+        NL2SQLResult persisted = loadPersistent(key);
+        if (persisted != null) {
+            persistentHits.increment();
+            putMemory(key, persisted);
+            return copyOf(persisted, HIT_PERSISTENT);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 缓存成功的结果（失败结果不缓存）
+     */
+    public void put(Key key, NL2SQLResult result) {
+        if (!enabled || result == null || !result.isSuccess() || result.getSql() == null) {
+            return;
+        }
+        NL2SQLResult snapshot = copyOf(result, null);
+        putMemory(key, snapshot);
+        if (persistentEnabled) {
+            savePersistent(key, snapshot);
+        }
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        scopes.clear();
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long exact = exactHits.sum();
+        long similar = similarHits.sum();
+        long persistent = persistentHits.sum();
+        long total = exact + similar + persistent + misses.sum();
+        stats.put("exactHits", exact);
+        stats.put("similarHits", similar);
+        stats.put("persistentHits", persistent);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (exact + similar + persistent) / total);
+        stats.put("evictions", evictions.sum());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        return stats;
+    }
+
+    private synchronized void putMemory(Key key, NL2SQLResult result) {
+        Entry previous = entries.get(key.getId());
+        if (previous != null) {
+            remove(previous);
+        }
+        Entry entry = new Entry(key, result, System.currentTimeMillis() + ttlMinutes * 60_000);
+        entries.put(key.getId(), entry);
+        scopes.computeIfAbsent(key.getScope(), s -> new HashSet<>()).add(entry);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            removeFromScope(eldest);
+            evictions.increment();
+        }
+    }
+
+    private Entry findSimilar(Key key) {
+        if (similarityThreshold <= 0) {
+            return null;
+        }
+        Set<Entry> candidates = scopes.get(key.getScope());
+        if (candidates == null) {
+            return null;
+        }
+        Entry best = null;
+        double bestScore = similarityThreshold;
+        List<Entry> expired = new ArrayList<>();
+        for (Entry candidate : candidates) {
+            if (candidate.isExpired()) {
+                expired.add(candidate);
+                continue;
+            }
+            if (!candidate.key.numbers.equals(key.numbers) || !candidate.key.operators.equals(key.operators)) {
+                continue;
+            }
+            double score = jaccard(candidate.key.tokens, key.tokens);
+            if (score >= bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        expired.forEach(this::remove);
+        if (best != null) {
+            // 刷新 LRU 顺序
+            entries.get(best.key.getId());
+        }
+        return best;
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key.getId());
+        removeFromScope(entry);
+    }
+
+    private void removeFromScope(Entry entry) {
+        Set<Entry> scope = scopes.get(entry.key.getScope());
+        if (scope != null) {
+            scope.remove(entry);
+            if (scope.isEmpty()) {
+                scopes.remove(entry.key.getScope());
+            }
+        }
+    }
+
+    private NL2SQLResult loadPersistent(Key key) {
+        if (!persistentEnabled) {
+            return null;
+        }
+        try {
+            Optional<QueryHistory> history = queryHistoryRepository.findFirstByCacheKeyAndCreatedAtAfterOrderByCreatedAtDesc(
+                key.getId(), LocalDateTime.now().minusHours(persistentTtlHours));
+            if (history.isPresent() && history.get().getResultJson() != null) {
+                return objectMapper.readValue(history.get().getResultJson(), NL2SQLResult.class);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to load NL2SQL cache from query history: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private void savePersistent(Key key, NL2SQLResult result) {
+        try {
+            QueryHistory history = new QueryHistory();
+            history.setQueryText(truncate(key.question, 1000));
+            history.setSqlQuery(truncate(result.getSql(), 2000));
+            history.setQueryType(result.getIntent() != null ? result.getIntent().name() : null);
+            history.setIsFavorite(false);
+            history.setCreatedAt(LocalDateTime.now());
+            history.setDataSourceId(key.dataSourceId);
+            history.setCacheKey(key.getId());
+            history.setResultJson(objectMapper.writeValueAsString(result));
+            queryHistoryRepository.save(history);
+        } catch (Exception e) {
+            logger.warn("Failed to persist NL2SQL cache entry: {}", e.getMessage());
+        }
+    }
+
+    static NL2SQLResult copyOf(NL2SQLResult source, String cacheHit) {
+        NL2SQLResult copy = new NL2SQLResult();
+        copy.setSql(source.getSql());
+        copy.setSuccess(source.isSuccess());
+        copy.setErrorMessage(source.getErrorMessage());
+        copy.setIntent(source.getIntent());
+        copy.setInvolvedTables(source.getInvolvedTables() != null ? new ArrayList<>(source.getInvolvedTables()) : null);
+        copy.setDescription(source.getDescription());
+        copy.setSuggestedChart(source.getSuggestedChart());
+        copy.setCacheHit(cacheHit);
+        return copy;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        int intersection = 0;
+        for (String token : a) {
+            if (b.contains(token)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    /**
+     * 归一化问题：全角转半角、转小写、去掉标点和不影响语义的语气词/虚词、合并空白
+     */
+    static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = text.replaceAll("\\p{P}+", " ");
+        text = ENGLISH_STOP_WORDS.matcher(text).replaceAll(" ");
+        StringBuilder normalized = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            word = TRAILING_PARTICLES.matcher(LEADING_FILLERS.matcher(word).replaceAll("")).replaceAll("");
+            if (!word.isEmpty() && !FILLER_WORDS.contains(word)) {
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(word);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 缓存键
+     */
+    public static class Key {
+        private final String provider;
+        private final Long dataSourceId;
+        private final String schemaVersion;
+        private final String question;
+        private final String normalized;
+        private final String scope;
+        private final String id;
+        private final Set<String> tokens = new HashSet<>();
+        private final Set<String> numbers = new HashSet<>();
+        private final Set<String> operators = new HashSet<>();
+
+        Key(String provider, Long dataSourceId, String schemaVersion, String question) {
+            this.provider = provider != null && !provider.isEmpty() ? provider : "default";
+            this.dataSourceId = dataSourceId;
+            this.schemaVersion = schemaVersion;
+            this.question = question;
+            this.normalized = normalize(question);
+            this.scope = this.provider + "|" + dataSourceId + "|" + schemaVersion;
+            this.id = sha256(scope + "|" + normalized);
+            tokenize();
+            for (String word : CJK_OPERATOR_WORDS) {
+                if (normalized.contains(word)) {
+                    operators.add(word);
+                }
+            }
+            for (String word : normalized.split(" ")) {
+                if (LATIN_OPERATOR_WORDS.contains(word)) {
+                    operators.add(word);
+                }
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getNormalized() {
+            return normalized;
+        }
+
+        /**
+         * 英文、数字按空白切分；中文取相邻双字（单字问题取单字）
+         */
+        private void tokenize() {
+            for (String word : normalized.split(" ")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                StringBuilder latin = new StringBuilder();
+                char previousCjk = 0;
+                for (int i = 0; i <= word.length(); i++) {
+                    char c = i < word.length() ? word.charAt(i) : ' ';
+                    boolean cjk = Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+                    if (!cjk && c != ' ') {
+                        latin.append(c);
+                    } else if (latin.length() > 0) {
+                        addToken(latin.toString());
+                        latin.setLength(0);
+                    }
+                    if (cjk) {
+                        if (previousCjk != 0) {
+                            tokens.add(new String(new char[]{previousCjk, c}));
+                        } else if (i + 1 >= word.length()
+                            || Character.UnicodeScript.of(word.charAt(i + 1)) != Character.UnicodeScript.HAN) {
+                            tokens.add(String.valueOf(c));
+                        }
+                        previousCjk = c;
+                    } else {
+                        previousCjk = 0;
+                    }
+                }
+            }
+        }
+
+        private void addToken(String token) {
+            // 简单去掉英文复数后缀
+            if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss") && Character.isLetter(token.charAt(0))) {
+                token = token.substring(0, token.length() - 1);
+            }
+            tokens.add(token);
+            // 数字单独记录（包括 top10、2024q1 之类混合词中的数字）
+            for (String number : token.split("\\D+")) {
+                if (!number.isEmpty()) {
+                    numbers.add(number);
+                }
+            }
+        }
+
+        private static String sha256(String text) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest) {
+                    hex.append(String.format("%02x", b));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                return Integer.toHexString(text.hashCode());
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Key key;
+        private final NL2SQLResult result;
+        private final long expiresAt;
+
+        Entry(Key key, NL2SQLResult result, long expiresAt) {
+            this.key = key;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -44,6 +44,11 @@ public class NL2SQLResult {
      */
     private SuggestedChart suggestedChart;
     
+    /**
+     * 缓存命中类型（exact / similar / persistent / inflight），未命中缓存时为 null
+     */
+    private String cacheHit;
+    
     public enum QueryIntent {
         QUERY,      // 查询型
         ANALYSIS,   // 分析型
@@ -0,0 +1,257 @@
+package com.data.assistant.service.ai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI 提供商健康统计
+ *
+ * 每个提供商记录最近 window 次调用的结果（成功/失败），以及成功调用的耗时，按操作（nl2sql、chat 等）分别统计耗时分位数。
+ * 失败调用（快速报错或超时）的耗时不代表正常响应时间，不计入分位数，以免拉低或拉高对冲延迟。
+ * 熔断器：
+ *   CLOSED     正常；窗口内调用数达到 min-calls 且失败率达到阈值，或连续失败达到上限时打开
+ *   OPEN       不再路由到该提供商，open-seconds 后进入 HALF_OPEN
+ *   HALF_OPEN  只放行一个试探请求，成功则关闭，失败则重新打开
+ */
+@Component
+public class ProviderHealthTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHealthTracker.class);
+
+    /**
+     * 熔断器状态
+     */
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Value("${ai.routing.window:100}")
+    private int window;
+
+    @Value("${ai.routing.circuit.min-calls:10}")
+    private int minCalls;
+
+    @Value("${ai.routing.circuit.failure-rate:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${ai.routing.circuit.consecutive-failures:5}")
+    private int consecutiveFailureThreshold;
+
+    @Value("${ai.routing.circuit.open-seconds:30}")
+    private long openSeconds;
+
+    private final Map<String, Health> providers = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次调用结果
+     *
+     * @param operation 操作名，耗时分位数按操作分别统计
+     */
+    public void record(String provider, String operation, long latencyMillis, boolean success) {
+        Health health = health(provider);
+        synchronized (health) {
+            CircuitState before = health.state;
+            health.record(operation, latencyMillis, success);
+            if (before != health.state) {
+                logger.warn("AI provider {} circuit {} -> {} (failure rate {}, consecutive failures {})",
+                    provider, before, health.state, String.format("%.2f", health.failureRate()),
+                    health.consecutiveFailures);
+            }
+        }
+    }
+
+    /**
+     * 是否允许路由到该提供商（半开状态只放行一个试探请求）
+     */
+    public boolean allowRequest(String provider) {
+        Health health = health(provider);
+        synchronized (health) {
+            if (health.state == CircuitState.OPEN
+                && System.currentTimeMillis() - health.openedAt >= openSeconds * 1000) {
+                health.state = CircuitState.HALF_OPEN;
+                health.trialInFlight = false;
+            }
+            if (health.state == CircuitState.CLOSED) {
+                return true;
+            }
+            // 试探请求被取消时不会有结果，超过 open-seconds 没有结果就再放行一个
+            long now = System.currentTimeMillis();
+            if (health.state == CircuitState.HALF_OPEN
+                && (!health.trialInFlight || now - health.trialStartedAt >= openSeconds * 1000)) {
+                health.trialInFlight = true;
+                health.trialStartedAt = now;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 不改变状态地判断 allowRequest 此刻是否会放行（不占用半开状态的试探名额）
+     * 用于事先选定、不一定真正发出请求的备用提供商；真正发出请求时再调用 allowRequest。
+     */
+    public boolean wouldAllow(String provider) {
+        Health health = health(provider);
+        synchronized (health) {
+            long now = System.currentTimeMillis();
+            switch (health.state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    return now - health.openedAt >= openSeconds * 1000;
+                default:
+                    return !health.trialInFlight || now - health.trialStartedAt >= openSeconds * 1000;
+            }
+        }
+    }
+
+    /**
+     * 不改变状态地判断熔断器是否打开（用于选择备用提供商等只读判断）
+     */
+    public boolean isOpen(String provider) {
+        Health health = health(provider);
+        synchronized (health) {
+            return health.state == CircuitState.OPEN
+                && System.currentTimeMillis() - health.openedAt < openSeconds * 1000;
+        }
+    }
+
+    /**
+     * 某操作最近调用耗时的分位数（毫秒），样本数不足 minSamples 时返回 -1
+     */
+    public long latencyPercentile(String provider, String operation, double percentile, int minSamples) {
+        Health health = health(provider);
+        synchronized (health) {
+            LatencyWindow latencies = health.latencies.get(operation);
+            return latencies != null && latencies.count >= minSamples ? latencies.percentile(percentile) : -1;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        providers.forEach((name, health) -> {
+            synchronized (health) {
+                Map<String, Object> provider = new LinkedHashMap<>();
+                provider.put("circuit", health.state);
+                provider.put("calls", health.outcomeCount);
+                provider.put("failureRate", health.failureRate());
+                provider.put("consecutiveFailures", health.consecutiveFailures);
+                Map<String, Object> latencies = new LinkedHashMap<>();
+                health.latencies.forEach((operation, window) -> {
+                    Map<String, Object> latency = new LinkedHashMap<>();
+                    latency.put("samples", window.count);
+                    latency.put("p50", window.percentile(0.5));
+                    latency.put("p95", window.percentile(0.95));
+                    latency.put("p99", window.percentile(0.99));
+                    latencies.put(operation, latency);
+                });
+                provider.put("latencyMillis", latencies);
+                stats.put(name, provider);
+            }
+        });
+        return stats;
+    }
+
+    private Health health(String provider) {
+        String name = provider != null ? provider.toLowerCase(Locale.ROOT) : "default";
+        return providers.computeIfAbsent(name, n -> new Health());
+    }
+
+    /**
+     * 单个提供商的滑动窗口统计，读写都在自身的锁内
+     */
+    private class Health {
+        private final boolean[] outcomes = new boolean[Math.max(1, window)];
+        private int outcomeCount = 0;
+        private int outcomeIndex = 0;
+        private int failures = 0;
+        private int consecutiveFailures = 0;
+        private final Map<String, LatencyWindow> latencies = new LinkedHashMap<>();
+
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt;
+        private boolean trialInFlight;
+        private long trialStartedAt;
+
+        void record(String operation, long latencyMillis, boolean success) {
+            if (outcomeCount == outcomes.length) {
+                if (!outcomes[outcomeIndex]) {
+                    failures--;
+                }
+            } else {
+                outcomeCount++;
+            }
+            outcomes[outcomeIndex] = success;
+            outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+            if (!success) {
+                failures++;
+            }
+            consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+            if (success) {
+                latencies.computeIfAbsent(operation, o -> new LatencyWindow(outcomes.length)).add(latencyMillis);
+            }
+
+            if (state == CircuitState.HALF_OPEN) {
+                trialInFlight = false;
+                if (success) {
+                    state = CircuitState.CLOSED;
+                    // 重新开始统计，避免打开前的失败让熔断器立即再次打开
+                    Arrays.fill(outcomes, true);
+                    failures = 0;
+                } else {
+                    open();
+                }
+            } else if (state == CircuitState.CLOSED && !success
+                && (consecutiveFailures >= consecutiveFailureThreshold
+                    || outcomeCount >= minCalls && failureRate() >= failureRateThreshold)) {
+                open();
+            }
+        }
+
+        double failureRate() {
+            return outcomeCount == 0 ? 0.0 : (double) failures / outcomeCount;
+        }
+
+        private void open() {
+            state = CircuitState.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 最近 N 次耗时的环形缓冲
+     */
+    private static class LatencyWindow {
+        private final long[] values;
+        private int count = 0;
+        private int index = 0;
+
+        LatencyWindow(int size) {
+            this.values = new long[size];
+        }
+
+        void add(long value) {
+            values[index] = value;
+            index = (index + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))];
+        }
+    }
+}
@@ -3,9 +3,23 @@ package com.data.assistant.service.ai;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 统一 AI 服务入口
@@ -16,92 +30,409 @@ public class UnifiedAIService {
     
     private static final Logger logger = LoggerFactory.getLogger(UnifiedAIService.class);
     
+    // 健康统计中的操作名，耗时分位数按操作分别统计
+    private static final String OP_NL2SQL = "nl2sql";
+    private static final String OP_NL2SQL_STREAM = "nl2sql-stream";
+    private static final String OP_ANALYZE = "analyze";
+    private static final String OP_CODE = "code";
+    private static final String OP_EXPLAIN = "explain";
+    private static final String OP_CHAT = "chat";
+    private static final String OP_CHAT_STREAM = "chat-stream";
+    
     @Autowired
     private AIServiceFactory aiServiceFactory;
     
+    @Autowired
+    private NL2SQLCache nl2sqlCache;
+    
+    @Autowired
+    private AIExecutor aiExecutor;
+    
+    @Autowired
+    private ProviderHealthTracker healthTracker;
+    
+    // 对冲：使用默认路由的 NL2SQL 请求超过主提供商的耗时分位数仍未返回时，向备用提供商再发一次
+    @Value("${ai.routing.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+    
+    @Value("${ai.routing.hedge.percentile:0.95}")
+    private double hedgePercentile;
+    
+    // 样本不足时使用的对冲延迟
+    @Value("${ai.routing.hedge.default-delay-ms:3000}")
+    private long hedgeDefaultDelayMillis;
+    
+    @Value("${ai.routing.hedge.min-delay-ms:500}")
+    private long hedgeMinDelayMillis;
+    
+    @Value("${ai.routing.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+    
+    @Value("${ai.batch.parallelism:4}")
+    private int batchParallelism;
+    
+    @Value("${ai.batch.max-parallelism:16}")
+    private int batchMaxParallelism;
+    
+    @Value("${ai.batch.max-questions:500}")
+    private int batchMaxQuestions;
+    
+    private final InFlightCalls<NL2SQLResult> inFlight = new InFlightCalls<>();
+    
+    private final LongAdder hedgedRequests = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    
     /**
      * 自然语言转 SQL
+     * 结果按 提供商 + 数据源 + schema 版本 + 归一化问题 缓存；带多轮对话历史的请求不走缓存，
+     * 上下文中 noCache=true 时跳过查找但仍会用新结果覆盖缓存。
      * @param provider AI 提供商（iflow, qwen, openai 等）
      * @param naturalLanguage 自然语言查询
      * @param schema 数据库 schema
-     * @param context 上下文
+     * @param context 上下文（dataSourceId、schemaVersion、history、noCache）
      * @return NL2SQL 结果
      */
     public NL2SQLResult naturalLanguageToSQL(String provider, String naturalLanguage, String schema, Map<String, Object> context) {
+        return AIExecutor.await(naturalLanguageToSQLAsync(provider, naturalLanguage, schema, context));
+    }
+    
+    /**
+     * 自然语言转 SQL（异步）
+     * 缓存命中时直接返回已完成的 future；否则在 AI 执行器上按提供商限流执行。
+     * 未指定提供商时走默认路由，并在主提供商超过其 p95 耗时仍未返回时对冲到备用提供商。
+     * 取消返回的 future 会取消排队中的任务或中断执行中的调用。
+     */
+    public CompletableFuture<NL2SQLResult> naturalLanguageToSQLAsync(String provider, String naturalLanguage,
+                                                                     String schema, Map<String, Object> context) {
+        NL2SQLCache.Key cacheKey;
         try {
-            AIService service = getServiceOrDefault(provider);
-            return service.naturalLanguageToSQL(naturalLanguage, schema, context);
+            cacheKey = cacheKeyOf(provider, naturalLanguage, schema, context);
+            if (cacheKey != null && !Boolean.TRUE.equals(context.get("noCache"))) {
+                NL2SQLResult cached = nl2sqlCache.get(cacheKey);
+                if (cached != null) {
+                    logger.info("NL2SQL cache hit ({}): {}", cached.getCacheHit(), naturalLanguage);
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
         } catch (Exception e) {
+            logger.error("NL2SQL failed for provider: {}", provider, e);
+            return CompletableFuture.completedFuture(NL2SQLResult.failure("NL2SQL 服务异常: " + e.getMessage()));
+        }
+        Supplier<CompletableFuture<NL2SQLResult>> generate = () -> generateSql(provider, naturalLanguage, schema, context, cacheKey);
+        // 相同问题正在生成时共享同一次模型调用
+        CompletableFuture<NL2SQLResult> generation = cacheKey != null
+            ? inFlight.join(cacheKey.getId(), generate, result -> {
+                coalesced.increment();
+                return NL2SQLCache.copyOf(result, NL2SQLCache.HIT_INFLIGHT);
+            })
+            : generate.get();
+        return AIExecutor.recover(generation, e -> {
             logger.error("NL2SQL failed for provider: {}", provider, e);
             return NL2SQLResult.failure("NL2SQL 服务异常: " + e.getMessage());
+        });
+    }
+    
+    /**
+     * 批量自然语言转 SQL
+     * 归一化后相同的问题只生成一次；最多 parallelism 个问题同时生成，每个问题完成时调用 onResult(序号, 结果)
+     * （在批量分发线程上回调）。schema 由 schemaFor 按问题提供，context 所有问题共用。
+     * 返回的 future 在全部问题完成后完成；取消时取消尚未完成的问题。
+     *
+     * @param parallelism 并发数，为空时使用 ai.batch.parallelism
+     */
+    public CompletableFuture<Void> naturalLanguageToSQLBatch(String provider, List<String> questions,
+                                                             Function<String, String> schemaFor,
+                                                             Map<String, Object> context, Integer parallelism,
+                                                             BiConsumer<Integer, NL2SQLResult> onResult) {
+        if (questions == null || questions.isEmpty()) {
+            throw new IllegalArgumentException("questions 不能为空");
         }
+        if (questions.size() > batchMaxQuestions) {
+            throw new IllegalArgumentException("单次最多 " + batchMaxQuestions + " 个问题");
+        }
+        // 按缓存键分组：同一批内的重复问题只占一个并发名额
+        Map<String, List<Integer>> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            String question = questions.get(i) != null ? questions.get(i).trim() : "";
+            NL2SQLCache.Key key = cacheKeyOf(provider, question, null, context);
+            grouped.computeIfAbsent(key != null ? key.getId() : question, k -> new ArrayList<>()).add(i);
+        }
+        List<List<Integer>> groups = new ArrayList<>(grouped.values());
+        int workers = Math.max(1, Math.min(parallelism != null ? parallelism : batchParallelism, batchMaxParallelism));
+        logger.info("NL2SQL batch: {} questions ({} distinct), parallelism {}", questions.size(), groups.size(), workers);
+
+        BatchDispatcher<List<Integer>, NL2SQLResult> dispatcher = new BatchDispatcher<>(groups, group -> {
+            String question = questions.get(group.get(0));
+            if (question == null || question.trim().isEmpty()) {
+                return CompletableFuture.completedFuture(NL2SQLResult.failure("问题不能为空"));
+            }
+            try {
+                return naturalLanguageToSQLAsync(provider, question, schemaFor.apply(question), context);
+            } catch (Exception e) {
+                logger.error("NL2SQL batch item failed: {}", question, e);
+                return CompletableFuture.completedFuture(NL2SQLResult.failure("NL2SQL 服务异常: " + e.getMessage()));
+            }
+        }, (group, result) -> {
+            for (int i = 0; i < group.size(); i++) {
+                NL2SQLResult item = i == 0 || result.getCacheHit() != null
+                    ? result : NL2SQLCache.copyOf(result, NL2SQLCache.HIT_INFLIGHT);
+                onResult.accept(group.get(i), item);
+            }
+        }, aiExecutor.getDispatchExecutor());
+        return dispatcher.start(workers);
     }
     
     /**
-     * 数据分析
+     * 选择提供商并生成 SQL；未指定提供商时对冲到备用提供商
      */
-    public AnalysisResult analyzeData(String provider, String data, String question) {
+    private CompletableFuture<NL2SQLResult> generateSql(String provider, String naturalLanguage, String schema,
+                                                        Map<String, Object> context, NL2SQLCache.Key cacheKey) {
+        AIService service;
         try {
-            AIService service = getServiceOrDefault(provider);
-            return service.analyzeData(data, question);
+            service = getServiceOrDefault(provider);
         } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Function<AIService, CompletableFuture<NL2SQLResult>> attempt = target -> call(target, OP_NL2SQL, () -> {
+            NL2SQLResult result = target.naturalLanguageToSQL(naturalLanguage, schema, context);
+            if (cacheKey != null) {
+                nl2sqlCache.put(cacheKey, result);
+            }
+            return result;
+        });
+        // 显式指定提供商时只调用该提供商；默认路由时对冲到备用提供商
+        return hedgeEnabled && (provider == null || provider.isEmpty())
+            ? hedged(service, attempt)
+            : attempt.apply(service);
+    }
+    
+    /**
+     * 数据分析
+     */
+    public AnalysisResult analyzeData(String provider, String data, String question) {
+        return AIExecutor.await(analyzeDataAsync(provider, data, question));
+    }
+    
+    /**
+     * 数据分析（异步）
+     */
+    public CompletableFuture<AnalysisResult> analyzeDataAsync(String provider, String data, String question) {
+        return submit(provider, OP_ANALYZE, service -> service.analyzeData(data, question), e -> {
             logger.error("Data analysis failed for provider: {}", provider, e);
             return AnalysisResult.failure("数据分析服务异常: " + e.getMessage());
-        }
+        });
     }
     
     /**
      * 生成代码
      */
     public CodeResult generateCode(String provider, String description, String language) {
-        try {
-            AIService service = getServiceOrDefault(provider);
-            return service.generateCode(description, language);
-        } catch (Exception e) {
+        return AIExecutor.await(generateCodeAsync(provider, description, language));
+    }
+    
+    /**
+     * 生成代码（异步）
+     */
+    public CompletableFuture<CodeResult> generateCodeAsync(String provider, String description, String language) {
+        return submit(provider, OP_CODE, service -> service.generateCode(description, language), e -> {
             logger.error("Code generation failed for provider: {}", provider, e);
             return CodeResult.failure("代码生成服务异常: " + e.getMessage());
-        }
+        });
     }
     
     /**
      * 解释代码
      */
     public String explainCode(String provider, String code) {
-        try {
-            AIService service = getServiceOrDefault(provider);
-            return service.explainCode(code);
-        } catch (Exception e) {
+        return AIExecutor.await(explainCodeAsync(provider, code));
+    }
+    
+    /**
+     * 解释代码（异步）
+     */
+    public CompletableFuture<String> explainCodeAsync(String provider, String code) {
+        return submit(provider, OP_EXPLAIN, service -> service.explainCode(code), e -> {
             logger.error("Code explanation failed for provider: {}", provider, e);
             return "代码解释服务异常: " + e.getMessage();
-        }
+        });
     }
     
     /**
      * 通用对话
      */
     public String chat(String provider, String prompt, Map<String, Object> context) {
-        try {
-            AIService service = getServiceOrDefault(provider);
-            return service.chat(prompt, context);
-        } catch (Exception e) {
+        return AIExecutor.await(chatAsync(provider, prompt, context));
+    }
+    
+    /**
+     * 通用对话（异步）
+     */
+    public CompletableFuture<String> chatAsync(String provider, String prompt, Map<String, Object> context) {
+        return submit(provider, OP_CHAT, service -> service.chat(prompt, context), e -> {
             logger.error("Chat failed for provider: {}", provider, e);
             return "对话服务异常: " + e.getMessage();
+        });
+    }
+    
+    /**
+     * 通用对话（流式）
+     * 文本片段在生成过程中通过 onToken 输出（在 AI 执行线程上回调），返回的 future 完成时得到完整响应。
+     * 与非流式方法不同，失败不转换为错误文本：部分内容可能已经输出，由调用方决定如何结束流。
+     */
+    public CompletableFuture<String> chatStream(String provider, String prompt, Map<String, Object> context,
+                                                Consumer<String> onToken) {
+        AIService service;
+        try {
+            service = getServiceOrDefault(provider);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return call(service, OP_CHAT_STREAM, () -> service.chatStream(prompt, context, onToken));
+    }
+    
+    /**
+     * 自然语言转 SQL（流式）
+     * 缓存命中时直接返回结果，不输出中间文本；否则转发模型的原始输出，结束后写入缓存。
+     */
+    public CompletableFuture<NL2SQLResult> naturalLanguageToSQLStream(String provider, String naturalLanguage, String schema,
+                                                                      Map<String, Object> context, Consumer<String> onToken) {
+        NL2SQLCache.Key cacheKey;
+        AIService service;
+        try {
+            cacheKey = cacheKeyOf(provider, naturalLanguage, schema, context);
+            if (cacheKey != null && !Boolean.TRUE.equals(context.get("noCache"))) {
+                NL2SQLResult cached = nl2sqlCache.get(cacheKey);
+                if (cached != null) {
+                    logger.info("NL2SQL cache hit ({}): {}", cached.getCacheHit(), naturalLanguage);
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
+            service = getServiceOrDefault(provider);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return call(service, OP_NL2SQL_STREAM, () -> {
+            NL2SQLResult result = service.naturalLanguageToSQLStream(naturalLanguage, schema, context, onToken);
+            if (cacheKey != null) {
+                nl2sqlCache.put(cacheKey, result);
+            }
+            return result;
+        });
     }
     
     /**
      * 智能查询（自动选择最佳服务）
      */
     public NL2SQLResult smartQuery(String naturalLanguage, String schema, Map<String, Object> context) {
-        // 优先使用 iFlow
-        if (aiServiceFactory.isProviderAvailable("iflow")) {
-            return naturalLanguageToSQL("iflow", naturalLanguage, schema, context);
-        }
-        
-        // 回退到默认服务
+        // 默认路由优先 iFlow，并跳过熔断中的提供商
         return naturalLanguageToSQL(null, naturalLanguage, schema, context);
     }
     
+    /**
+     * 生成 NL2SQL 缓存键；多轮对话的结果依赖历史，不缓存
+     * 上下文没有 schema 版本时使用 schema 文本的哈希
+     */
+    private NL2SQLCache.Key cacheKeyOf(String provider, String naturalLanguage, String schema, Map<String, Object> context) {
+        if (naturalLanguage == null || context == null || context.get("history") != null) {
+            return null;
+        }
+        Object dataSourceId = context.get("dataSourceId");
+        Object schemaVersion = context.get("schemaVersion");
+        String version = schemaVersion != null ? schemaVersion.toString()
+            : Integer.toHexString(schema != null ? schema.hashCode() : 0);
+        return nl2sqlCache.key(provider, dataSourceId instanceof Long ? (Long) dataSourceId : null, version, naturalLanguage);
+    }
+    
+    private <T> CompletableFuture<T> submit(String provider, String operation, Function<AIService, T> task,
+                                            Function<Throwable, T> onError) {
+        AIService service;
+        try {
+            service = getServiceOrDefault(provider);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(onError.apply(e));
+        }
+        return AIExecutor.recover(call(service, operation, () -> task.apply(service)), onError);
+    }
+    
+    /**
+     * 在 AI 执行器上调用，并把耗时和结果记入提供商健康统计
+     * 被取消（对冲落败、客户端断开）和排队已满的调用不计入统计。
+     */
+    private <T> CompletableFuture<T> call(AIService service, String operation, Supplier<T> task) {
+        String provider = service.getProviderName();
+        long start = System.currentTimeMillis();
+        CompletableFuture<T> future = aiExecutor.submit(provider, task);
+        future.whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException || cause instanceof RejectedExecutionException
+                || cause instanceof UncheckedIOException) {
+                return;
+            }
+            healthTracker.record(provider, operation, System.currentTimeMillis() - start,
+                cause == null && succeeded(result));
+        });
+        return future;
+    }
+    
+    /**
+     * 对冲 NL2SQL 请求：主提供商超过其耗时分位数仍未返回时向备用提供商再发一次，取先成功的结果
+     */
+    private CompletableFuture<NL2SQLResult> hedged(AIService primary,
+                                                   Function<AIService, CompletableFuture<NL2SQLResult>> attempt) {
+        long delay = hedgeDelay(primary);
+        // 在调用线程上选定备用提供商（可能做可用性检查），对冲任务在计时线程上只负责发出请求
+        AIService backup = aiServiceFactory.getHedgeService(primary);
+        HedgedRequest<NL2SQLResult> request = new HedgedRequest<>(primary, backup, attempt, NL2SQLResult::isSuccess,
+            service -> healthTracker.allowRequest(service.getProviderName()));
+        CompletableFuture<NL2SQLResult> result = request.start(task -> aiExecutor.schedule(task, delay));
+        result.whenComplete((value, error) -> {
+            if (request.isBackupLaunched()) {
+                hedgedRequests.increment();
+                AIService winner = request.getWinner();
+                if (winner != null && winner != primary) {
+                    hedgeWins.increment();
+                    logger.info("NL2SQL hedged request won by {} after {} ms delay on {}",
+                        winner.getProviderName(), delay, primary.getProviderName());
+                }
+            }
+        });
+        return result;
+    }
+    
+    private long hedgeDelay(AIService primary) {
+        long percentile = healthTracker.latencyPercentile(primary.getProviderName(), OP_NL2SQL,
+            hedgePercentile, hedgeMinSamples);
+        return Math.max(hedgeMinDelayMillis, percentile > 0 ? percentile : hedgeDefaultDelayMillis);
+    }
+    
+    /**
+     * 提供商健康、对冲和请求合并统计
+     */
+    public Map<String, Object> getRoutingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("providers", healthTracker.getStats());
+        stats.put("hedgeEnabled", hedgeEnabled);
+        stats.put("hedgedRequests", hedgedRequests.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("nl2sqlInFlight", inFlight.size());
+        stats.put("nl2sqlCoalesced", coalesced.sum());
+        return stats;
+    }
+    
+    private static boolean succeeded(Object result) {
+        if (result instanceof NL2SQLResult) {
+            return ((NL2SQLResult) result).isSuccess();
+        }
+        if (result instanceof AnalysisResult) {
+            return ((AnalysisResult) result).isSuccess();
+        }
+        if (result instanceof CodeResult) {
+            return ((CodeResult) result).isSuccess();
+        }
+        return result != null;
+    }
+    
     /**
      * 获取服务或默认服务
      */
@@ -0,0 +1,170 @@
+package com.data.assistant.service.federation;
+
+import net.sf.jsqlparser.expression.Expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 联邦聚合计划
+ * 把 SUM/COUNT/MIN/MAX/AVG（及 GROUP BY）改写为各数据源上的部分聚合：
+ * AVG 拆成 SUM + COUNT，其余函数原样下推；协调端再用 HashAggregator 合并部分结果。
+ */
+public class AggregatePlan {
+
+    /**
+     * 支持的聚合函数
+     */
+    public enum Function {
+        SUM, COUNT, MIN, MAX, AVG
+    }
+
+    /**
+     * 部分聚合（在数据源上执行）
+     */
+    public enum PartialFunction {
+        SUM, COUNT, MIN, MAX
+    }
+
+    /**
+     * 一个用户请求的聚合项
+     */
+    public static class Aggregation {
+        private final Function function;
+        private final String column;
+        private final String alias;
+        // 在部分聚合列中的位置（AVG 占 SUM、COUNT 两列）
+        private int partialIndex;
+
+        public Aggregation(Function function, String column, String alias) {
+            this.function = function;
+            this.column = column;
+            this.alias = alias;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        int getPartialIndex() {
+            return partialIndex;
+        }
+    }
+
+    private final String tableName;
+    private final List<String> groupBy;
+    private final List<Aggregation> aggregations;
+    private final Expression where;
+    private final List<PartialFunction> partialFunctions = new ArrayList<>();
+    private final List<String> partialExpressions = new ArrayList<>();
+
+    /**
+     * @param where 过滤条件，由 SqlParser.parseCondition 解析（单个条件表达式，不含子查询），没有时为 null；
+     *              下推时使用解析后重新生成的文本
+     */
+    public AggregatePlan(String tableName, List<String> groupBy, List<Aggregation> aggregations, Expression where) {
+        this.tableName = FederationValues.checkIdentifier(tableName);
+        this.groupBy = new ArrayList<>();
+        if (groupBy != null) {
+            groupBy.forEach(column -> this.groupBy.add(FederationValues.checkIdentifier(column)));
+        }
+        if (aggregations == null || aggregations.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个聚合项");
+        }
+        this.aggregations = aggregations;
+        this.where = where;
+
+        for (Aggregation aggregation : aggregations) {
+            String column = aggregation.column;
+            if ("*".equals(column)) {
+                if (aggregation.function != Function.COUNT) {
+                    throw new IllegalArgumentException(aggregation.function + " 不支持 *");
+                }
+            } else {
+                FederationValues.checkIdentifier(column);
+            }
+            aggregation.partialIndex = partialFunctions.size();
+            switch (aggregation.function) {
+                case AVG:
+                    addPartial(PartialFunction.SUM, column);
+                    addPartial(PartialFunction.COUNT, column);
+                    break;
+                case SUM:
+                    addPartial(PartialFunction.SUM, column);
+                    break;
+                case COUNT:
+                    addPartial(PartialFunction.COUNT, column);
+                    break;
+                case MIN:
+                    addPartial(PartialFunction.MIN, column);
+                    break;
+                case MAX:
+                    addPartial(PartialFunction.MAX, column);
+                    break;
+                default:
+                    throw new IllegalArgumentException("不支持的聚合函数: " + aggregation.function);
+            }
+        }
+    }
+
+    /**
+     * 解析聚合函数名
+     */
+    public static Function parseFunction(String name) {
+        try {
+            return Function.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("不支持的聚合函数: " + name);
+        }
+    }
+
+    /**
+     * 生成下推到每个数据源的部分聚合 SQL
+     * 结果列依次为：GROUP BY 列（g0, g1...），部分聚合列（p0, p1...）
+     */
+    public String toPartialSql() {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < groupBy.size(); i++) {
+            items.add(groupBy.get(i) + " AS g" + i);
+        }
+        for (int i = 0; i < partialExpressions.size(); i++) {
+            items.add(partialExpressions.get(i) + " AS p" + i);
+        }
+        sql.append(String.join(", ", items));
+        sql.append(" FROM ").append(tableName);
+        if (where != null) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (!groupBy.isEmpty()) {
+            sql.append(" GROUP BY ").append(String.join(", ", groupBy));
+        }
+        return sql.toString();
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    public List<PartialFunction> getPartialFunctions() {
+        return partialFunctions;
+    }
+
+    private void addPartial(PartialFunction function, String column) {
+        partialFunctions.add(function);
+        partialExpressions.add(function.name() + "(" + column + ")");
+    }
+}
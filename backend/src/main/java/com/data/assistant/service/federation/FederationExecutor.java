@@ -0,0 +1,334 @@
+package com.data.assistant.service.federation;
+
+import com.data.assistant.model.ResultTable;
+import com.data.assistant.repository.DataSourceRepository;
+import com.data.assistant.service.DynamicDataSourceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 联邦查询执行器
+ * 把同一个任务并发分发到多个数据源（各自使用 DynamicDataSourceService 的连接池），
+ * 线程池有界，每个数据源有独立的超时；结果按完成顺序回调，超时或失败的数据源单独报告。
+ */
+@Component
+public class FederationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FederationExecutor.class);
+
+    @Autowired
+    private DynamicDataSourceService dynamicDataSourceService;
+
+    @Autowired
+    private DataSourceRepository dataSourceRepository;
+
+    @Value("${federation.executor.threads:16}")
+    private int threads;
+
+    @Value("${federation.executor.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${federation.source-timeout-seconds:30}")
+    private int defaultTimeoutSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "federation-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public int getDefaultTimeoutSeconds() {
+        return defaultTimeoutSeconds;
+    }
+
+    /**
+     * 并发执行，使用默认超时
+     */
+    public <T> List<SourceResult<T>> execute(List<Long> dataSourceIds, SourceTask<T> task,
+                                             Consumer<SourceResult<T>> onComplete) {
+        return execute(dataSourceIds, task, defaultTimeoutSeconds, onComplete);
+    }
+
+    /**
+     * 在多个数据源上并发执行同一个任务
+     *
+     * @param dataSourceIds 数据源ID列表（重复的ID只执行一次）
+     * @param task 在每个数据源上执行的任务
+     * @param timeoutSeconds 单个数据源的超时（秒），同时作为 JDBC 查询超时
+     * @param onComplete 每个数据源完成（成功、失败或超时）时在调用线程上回调，可用于增量合并
+     * @return 各数据源的执行结果，按完成顺序排列
+     */
+    public <T> List<SourceResult<T>> execute(List<Long> dataSourceIds, SourceTask<T> task, int timeoutSeconds,
+                                             Consumer<SourceResult<T>> onComplete) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(dataSourceIds));
+        return executeEach(distinctIds, Collections.nCopies(distinctIds.size(), task), timeoutSeconds, onComplete);
+    }
+
+    /**
+     * 并发执行一组任务，第 i 个任务在第 i 个数据源上执行（同一数据源可出现多次）
+     * 结果的 index 对应任务在列表中的位置。
+     */
+    public <T> List<SourceResult<T>> executeEach(List<Long> dataSourceIds, List<SourceTask<T>> tasks,
+                                                 int timeoutSeconds, Consumer<SourceResult<T>> onComplete) {
+        Map<Long, String> names = resolveNames(dataSourceIds);
+        CompletionService<SourceResult<T>> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<SourceResult<T>>, Integer> pending = new LinkedHashMap<>();
+        List<SourceResult<T>> results = new ArrayList<>(dataSourceIds.size());
+
+        for (int i = 0; i < dataSourceIds.size(); i++) {
+            int index = i;
+            Long dataSourceId = dataSourceIds.get(i);
+            SourceTask<T> task = tasks.get(i);
+            String name = names.get(dataSourceId);
+            try {
+                Future<SourceResult<T>> future = completionService.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        JdbcTemplate jdbcTemplate = dynamicDataSourceService.getJdbcTemplate(dataSourceId);
+                        T value = task.run(dataSourceId, jdbcTemplate, timeoutSeconds);
+                        return SourceResult.success(index, dataSourceId, name, value, System.currentTimeMillis() - start);
+                    } catch (Exception e) {
+                        logger.warn("Federation task failed on datasource {}: {}", dataSourceId, e.getMessage());
+                        return SourceResult.failure(index, dataSourceId, name, SourceResult.FAILED,
+                            e.getMessage(), System.currentTimeMillis() - start);
+                    }
+                });
+                pending.put(future, index);
+            } catch (RejectedExecutionException e) {
+                SourceResult<T> rejected = SourceResult.failure(index, dataSourceId, name, SourceResult.REJECTED,
+                    "联邦查询线程池已满", 0);
+                results.add(rejected);
+                onComplete.accept(rejected);
+            }
+        }
+
+        // 按完成顺序收集结果；超过截止时间仍未完成的数据源视为超时
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) + TimeUnit.SECONDS.toNanos(1);
+        try {
+            while (!pending.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                Future<SourceResult<T>> future = remaining > 0
+                    ? completionService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (future == null) {
+                    break;
+                }
+                pending.remove(future);
+                SourceResult<T> result = future.get();
+                results.add(result);
+                onComplete.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 任务内部已捕获异常，这里不会发生
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pending.forEach((future, index) -> {
+                future.cancel(true);
+                Long dataSourceId = dataSourceIds.get(index);
+                SourceResult<T> timeout = SourceResult.failure(index, dataSourceId, names.get(dataSourceId),
+                    SourceResult.TIMEOUT, "数据源响应超时（" + timeoutSeconds + "秒）", timeoutSeconds * 1000L);
+                results.add(timeout);
+                onComplete.accept(timeout);
+            });
+        }
+        return results;
+    }
+
+    /**
+     * 带查询超时执行查询并物化为 ResultTable
+     */
+    public ResultTable query(JdbcTemplate jdbcTemplate, String sql, int timeoutSeconds, Object... params) {
+        return jdbcTemplate.execute((ConnectionCallback<ResultTable>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                prepare(stmt, timeoutSeconds, jdbcTemplate.getFetchSize(), params);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return ResultTable.from(rs);
+                }
+            }
+        });
+    }
+
+    /**
+     * 带查询超时执行查询，由 extractor 自行遍历结果集（用于流式处理，不物化结果）
+     */
+    public <T> T stream(JdbcTemplate jdbcTemplate, String sql, int timeoutSeconds, ResultSetExtractor<T> extractor,
+                        Object... params) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            // PostgreSQL 只有在非自动提交模式下才会按 fetchSize 使用服务端游标
+            boolean originalAutoCommit = connection.getAutoCommit();
+            if (originalAutoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                prepare(stmt, timeoutSeconds, jdbcTemplate.getFetchSize() > 0 ? jdbcTemplate.getFetchSize() : 1000,
+                    params);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return extractor.extractData(rs);
+                }
+            } finally {
+                if (originalAutoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    private void prepare(PreparedStatement stmt, int timeoutSeconds, int fetchSize, Object[] params)
+            throws java.sql.SQLException {
+        if (timeoutSeconds > 0) {
+            stmt.setQueryTimeout(timeoutSeconds);
+        }
+        if (fetchSize > 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    private Map<Long, String> resolveNames(List<Long> dataSourceIds) {
+        Map<Long, String> names = new LinkedHashMap<>();
+        for (Long dataSourceId : dataSourceIds) {
+            com.data.assistant.model.DataSource dataSource = dataSourceRepository.findById(dataSourceId)
+                .orElseThrow(() -> new RuntimeException("DataSource not found: " + dataSourceId));
+            names.put(dataSourceId, dataSource.getName());
+        }
+        return names;
+    }
+
+    /**
+     * 在单个数据源上执行的任务
+     */
+    @FunctionalInterface
+    public interface SourceTask<T> {
+        T run(Long dataSourceId, JdbcTemplate jdbcTemplate, int timeoutSeconds) throws Exception;
+    }
+
+    /**
+     * 单个数据源的执行结果
+     */
+    public static class SourceResult<T> {
+        public static final String SUCCESS = "success";
+        public static final String FAILED = "failed";
+        public static final String TIMEOUT = "timeout";
+        public static final String REJECTED = "rejected";
+
+        private final int index;
+        private final Long dataSourceId;
+        private final String dataSourceName;
+        private final String status;
+        private final T value;
+        private final String message;
+        private final long elapsedMillis;
+
+        private SourceResult(int index, Long dataSourceId, String dataSourceName, String status, T value,
+                             String message, long elapsedMillis) {
+            this.index = index;
+            this.dataSourceId = dataSourceId;
+            this.dataSourceName = dataSourceName;
+            this.status = status;
+            this.value = value;
+            this.message = message;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        static <T> SourceResult<T> success(int index, Long dataSourceId, String name, T value, long elapsedMillis) {
+            return new SourceResult<>(index, dataSourceId, name, SUCCESS, value, null, elapsedMillis);
+        }
+
+        static <T> SourceResult<T> failure(int index, Long dataSourceId, String name, String status, String message,
+                                           long elapsedMillis) {
+            return new SourceResult<>(index, dataSourceId, name, status, null, message, elapsedMillis);
+        }
+
+        public boolean isSuccess() {
+            return SUCCESS.equals(status);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getDataSourceId() {
+            return dataSourceId;
+        }
+
+        public String getDataSourceName() {
+            return dataSourceName;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * 转为接口返回的数据源执行摘要
+         */
+        public Map<String, Object> toSummary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("dataSourceId", dataSourceId);
+            summary.put("dataSourceName", dataSourceName);
+            summary.put("status", status);
+            summary.put("elapsedMillis", elapsedMillis);
+            if (message != null) {
+                summary.put("message", message);
+            }
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.data.assistant.service.federation;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * 跨数据源值处理
+ * 不同数据库、驱动返回的数值类型不同（Integer/Long/BigDecimal/Double），
+ * 作为分组键或关联键比较前需要统一表示。
+ */
+public final class FederationValues {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private FederationValues() {
+    }
+
+    /**
+     * 校验表名/列名（拼接进 SQL 前调用），返回去掉首尾空白的名称
+     */
+    public static String checkIdentifier(String identifier) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier.trim()).matches()) {
+            throw new IllegalArgumentException("非法的表名或列名: " + identifier);
+        }
+        return identifier.trim();
+    }
+
+    /**
+     * 归一化分组键/关联键：数值统一为去掉末尾 0 的 BigDecimal，二进制值包装为按内容比较的 BinaryKey，其余保持原值
+     */
+    public static Object normalizeKey(Object value) {
+        if (value instanceof Number) {
+            BigDecimal decimal = toBigDecimal((Number) value);
+            if (decimal != null) {
+                return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+            }
+        }
+        if (value instanceof byte[]) {
+            return new BinaryKey((byte[]) value);
+        }
+        return value;
+    }
+
+    /**
+     * 把驱动返回的值转为可序列化、脱离连接后仍可用的值：BLOB 读为 byte[]，CLOB/NCLOB/SQLXML 读为 String，
+     * 其他不可序列化的驱动对象取 toString()。需要在结果集（连接）仍打开时调用。
+     */
+    public static Object materialize(Object value) {
+        try {
+            if (value instanceof Blob) {
+                Blob blob = (Blob) value;
+                return blob.getBytes(1, (int) blob.length());
+            }
+            if (value instanceof Clob) {
+                Clob clob = (Clob) value;
+                return clob.getSubString(1, (int) clob.length());
+            }
+            if (value instanceof SQLXML) {
+                return ((SQLXML) value).getString();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("读取大对象字段失败: " + e.getMessage(), e);
+        }
+        return value == null || value instanceof Serializable ? value : value.toString();
+    }
+
+    /**
+     * 逐个 materialize 一行的值；没有需要转换的值时返回原数组
+     */
+    public static Object[] materialize(Object[] row) {
+        Object[] result = row;
+        for (int i = 0; i < row.length; i++) {
+            Object value = materialize(row[i]);
+            if (value != row[i]) {
+                if (result == row) {
+                    result = row.clone();
+                }
+                result[i] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 数值转为 BigDecimal，NaN/Infinity 返回 null
+     */
+    public static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = value.doubleValue();
+            return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+        }
+        return BigDecimal.valueOf(value.longValue());
+    }
+
+    /**
+     * 比较两个非空值，数值按大小比较，其余按自然顺序
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            BigDecimal x = toBigDecimal((Number) a);
+            BigDecimal y = toBigDecimal((Number) b);
+            if (x != null && y != null) {
+                return x.compareTo(y);
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    /**
+     * 二进制键：byte[] 的 equals/hashCode 按引用比较，作为哈希键时需要按内容比较
+     */
+    public static final class BinaryKey implements Serializable, Comparable<BinaryKey> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+
+        public BinaryKey(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof BinaryKey && Arrays.equals(bytes, ((BinaryKey) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int compareTo(BinaryKey other) {
+            return Arrays.compareUnsigned(bytes, other.bytes);
+        }
+
+        @Override
+        public String toString() {
+            return java.util.HexFormat.of().formatHex(bytes);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.data.assistant.service.federation;
+
+import com.data.assistant.model.ResultTable;
+import com.data.assistant.service.federation.AggregatePlan.Aggregation;
+import com.data.assistant.service.federation.AggregatePlan.PartialFunction;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 协调端哈希聚合
+ * 按分组键合并各数据源返回的部分聚合（SUM 相加、COUNT 相加、MIN/MAX 取极值），
+ * 所有数据源合并完成后再计算最终值（AVG = SUM / COUNT）。
+ * 合并不是线程安全的，应在 FederationExecutor 的完成回调（调用线程）中调用。
+ */
+public class HashAggregator {
+
+    private final AggregatePlan plan;
+    private final int groupCount;
+    private final List<PartialFunction> partialFunctions;
+    // 归一化后的分组键 -> [原始分组值..., 部分聚合累加值...]
+    private final Map<List<Object>, Object[]> groups = new LinkedHashMap<>();
+    private long partialRows = 0;
+
+    public HashAggregator(AggregatePlan plan) {
+        this.plan = plan;
+        this.groupCount = plan.getGroupBy().size();
+        this.partialFunctions = plan.getPartialFunctions();
+    }
+
+    /**
+     * 合并一个数据源返回的部分聚合结果（列顺序与 AggregatePlan.toPartialSql 一致）
+     */
+    public void merge(ResultTable partial) {
+        int rows = partial.getRowCount();
+        for (int row = 0; row < rows; row++) {
+            Object[] keyValues = new Object[groupCount];
+            for (int g = 0; g < groupCount; g++) {
+                keyValues[g] = FederationValues.normalizeKey(partial.getValue(row, g));
+            }
+            List<Object> key = Arrays.asList(keyValues);
+            int currentRow = row;
+            Object[] state = groups.computeIfAbsent(key, k -> {
+                Object[] init = new Object[groupCount + partialFunctions.size()];
+                for (int g = 0; g < groupCount; g++) {
+                    init[g] = partial.getValue(currentRow, g);
+                }
+                return init;
+            });
+            for (int p = 0; p < partialFunctions.size(); p++) {
+                int slot = groupCount + p;
+                state[slot] = combine(partialFunctions.get(p), state[slot], partial.getValue(row, groupCount + p));
+            }
+        }
+        partialRows += rows;
+    }
+
+    /**
+     * 计算最终聚合结果
+     */
+    public List<Map<String, Object>> result() {
+        List<Map<String, Object>> result = new ArrayList<>(groups.size());
+        // 没有 GROUP BY 且所有数据源都失败时也返回一行（与单库聚合语义一致）
+        if (groups.isEmpty() && groupCount == 0) {
+            groups.put(List.of(), new Object[partialFunctions.size()]);
+        }
+        for (Object[] state : groups.values()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int g = 0; g < groupCount; g++) {
+                row.put(plan.getGroupBy().get(g), state[g]);
+            }
+            for (Aggregation aggregation : plan.getAggregations()) {
+                int slot = groupCount + aggregation.getPartialIndex();
+                row.put(aggregation.getAlias(), finish(aggregation, state, slot));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    /**
+     * 已合并的部分聚合行数（即跨网络传输的行数）
+     */
+    public long getPartialRows() {
+        return partialRows;
+    }
+
+    private Object combine(PartialFunction function, Object current, Object value) {
+        if (value == null) {
+            return function == PartialFunction.COUNT && current == null ? 0L : current;
+        }
+        switch (function) {
+            case COUNT:
+                long count = ((Number) value).longValue();
+                return current == null ? count : (Long) current + count;
+            case SUM:
+                return addSum(current, (Number) value);
+            case MIN:
+                return current == null || FederationValues.compare(value, current) < 0 ? value : current;
+            case MAX:
+                return current == null || FederationValues.compare(value, current) > 0 ? value : current;
+            default:
+                throw new IllegalStateException("Unknown partial function: " + function);
+        }
+    }
+
+    /**
+     * SUM 按 BigDecimal 精确累加；出现 NaN / Infinity（DOUBLE 列）后 BigDecimal 无法表示，之后改按 double 累加，
+     * 结果与数据库对 DOUBLE 列求和一致
+     */
+    private static Object addSum(Object current, Number value) {
+        BigDecimal decimal = FederationValues.toBigDecimal(value);
+        if (decimal != null && !(current instanceof Double)) {
+            return current == null ? decimal : ((BigDecimal) current).add(decimal);
+        }
+        double sum = current == null ? 0 : ((Number) current).doubleValue();
+        return sum + value.doubleValue();
+    }
+
+    private Object finish(Aggregation aggregation, Object[] state, int slot) {
+        switch (aggregation.getFunction()) {
+            case AVG:
+                Object sum = state[slot];
+                Long count = (Long) state[slot + 1];
+                if (sum == null || count == null || count == 0) {
+                    return null;
+                }
+                if (sum instanceof Double) {
+                    return (Double) sum / count;
+                }
+                return ((BigDecimal) sum).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+            case COUNT:
+                return state[slot] != null ? state[slot] : 0L;
+            default:
+                return state[slot];
+        }
+    }
+}
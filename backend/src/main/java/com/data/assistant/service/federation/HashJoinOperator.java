@@ -0,0 +1,419 @@
+package com.data.assistant.service.federation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 混合哈希连接（Hybrid Hash Join）
+ *
+ * 构建侧（较小的一侧）按连接键哈希分区放入内存，超出内存预算时把最大的分区整体溢写到临时文件；
+ * 探测侧逐行流入：命中内存分区的行立即连接输出，落在已溢写分区的行也写入对应临时文件。
+ * 探测结束后逐个分区加载溢写的构建数据再连接（分区仍然过大时换哈希种子递归再分区）。
+ *
+ * 支持 INNER/LEFT/RIGHT/FULL，外连接保留侧可以是构建侧也可以是探测侧。
+ * NULL 键与 SQL 语义一致：永远不匹配，但外连接保留侧的 NULL 键行仍会输出。
+ * 键按 FederationValues.normalizeKey 比较（二进制键按内容）；行中的 LOB 等不可序列化的值在加入时转换
+ * （FederationValues.materialize），保证能溢写且连接关闭后仍可读，因此必须在读取结果集的过程中调用 addBuildRow/probe。
+ */
+public class HashJoinOperator implements AutoCloseable {
+
+    private static final int PARTITIONS = 32;
+    private static final int MAX_DEPTH = 3;
+    // ObjectOutputStream 会缓存已写对象的引用，定期 reset 防止内存增长
+    private static final int RESET_INTERVAL = 1000;
+
+    /**
+     * 连接类型
+     */
+    public enum JoinType {
+        INNER, LEFT, RIGHT, FULL;
+
+        public static JoinType parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return INNER;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的连接类型: " + value);
+            }
+        }
+
+        public boolean preservesLeft() {
+            return this == LEFT || this == FULL;
+        }
+
+        public boolean preservesRight() {
+            return this == RIGHT || this == FULL;
+        }
+    }
+
+    /**
+     * 连接结果输出，缺失的一侧为 null
+     */
+    @FunctionalInterface
+    public interface JoinSink {
+        void accept(Object[] leftRow, Object[] rightRow);
+    }
+
+    private final JoinType joinType;
+    private final boolean buildIsLeft;
+    private final boolean buildOuter;
+    private final boolean probeOuter;
+    private final long memoryBudget;
+    private final Path spillDir;
+    private final JoinSink sink;
+    private final int depth;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private final Stats stats;
+    private long memoryUsed = 0;
+    private boolean building = true;
+
+    public HashJoinOperator(JoinType joinType, boolean buildIsLeft, long memoryBudget, Path spillDir, JoinSink sink) {
+        this(joinType, buildIsLeft, memoryBudget, spillDir, sink, 0, new Stats());
+    }
+
+    private HashJoinOperator(JoinType joinType, boolean buildIsLeft, long memoryBudget, Path spillDir,
+                             JoinSink sink, int depth, Stats stats) {
+        this.joinType = joinType;
+        this.buildIsLeft = buildIsLeft;
+        this.buildOuter = buildIsLeft ? joinType.preservesLeft() : joinType.preservesRight();
+        this.probeOuter = buildIsLeft ? joinType.preservesRight() : joinType.preservesLeft();
+        // 超过最大递归深度说明键严重倾斜，无法再拆分，只能整体放入内存
+        this.memoryBudget = depth >= MAX_DEPTH ? Long.MAX_VALUE : memoryBudget;
+        this.spillDir = spillDir;
+        this.sink = sink;
+        this.depth = depth;
+        this.stats = stats;
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * 添加构建侧的一行
+     */
+    public void addBuildRow(Object key, Object[] row) {
+        if (!building) {
+            throw new IllegalStateException("构建阶段已结束");
+        }
+        key = FederationValues.normalizeKey(FederationValues.materialize(key));
+        row = FederationValues.materialize(row);
+        if (key == null) {
+            // NULL 键不会匹配，外连接时直接作为未匹配行输出
+            if (buildOuter) {
+                emit(row, null);
+            }
+            return;
+        }
+        Partition partition = partitions[partitionOf(key)];
+        if (partition.spilled) {
+            partition.buildSpill.write(key, row);
+            return;
+        }
+        partition.table.computeIfAbsent(key, k -> new ArrayList<>(1)).add(new BuildRow(row));
+        long size = estimateSize(key, row);
+        partition.bytes += size;
+        memoryUsed += size;
+        while (memoryUsed > memoryBudget && spillLargestPartition()) {
+            // 循环直到内存降到预算以内或没有可溢写的分区
+        }
+    }
+
+    /**
+     * 探测一行；构建阶段在第一次探测时自动结束
+     */
+    public void probe(Object key, Object[] row) {
+        building = false;
+        key = FederationValues.normalizeKey(FederationValues.materialize(key));
+        row = FederationValues.materialize(row);
+        if (key == null) {
+            if (probeOuter) {
+                emit(null, row);
+            }
+            return;
+        }
+        Partition partition = partitions[partitionOf(key)];
+        if (partition.spilled) {
+            partition.probeSpill().write(key, row);
+            return;
+        }
+        List<BuildRow> matches = partition.table.get(key);
+        if (matches == null) {
+            if (probeOuter) {
+                emit(null, row);
+            }
+            return;
+        }
+        for (BuildRow match : matches) {
+            match.matched = true;
+            emit(match.values, row);
+        }
+    }
+
+    /**
+     * 探测结束：输出内存分区中未匹配的构建行，然后逐个处理溢写的分区
+     */
+    public void finish() {
+        building = false;
+        for (Partition partition : partitions) {
+            if (partition.spilled) {
+                continue;
+            }
+            if (buildOuter) {
+                for (List<BuildRow> rows : partition.table.values()) {
+                    for (BuildRow row : rows) {
+                        if (!row.matched) {
+                            emit(row.values, null);
+                        }
+                    }
+                }
+            }
+            partition.table.clear();
+        }
+        memoryUsed = 0;
+
+        for (Partition partition : partitions) {
+            if (!partition.spilled) {
+                continue;
+            }
+            try (HashJoinOperator nested = new HashJoinOperator(joinType, buildIsLeft, memoryBudget, spillDir,
+                    sink, depth + 1, stats)) {
+                partition.buildSpill.finishWriting();
+                partition.buildSpill.forEach(nested::addBuildRow);
+                if (partition.probeSpill != null) {
+                    partition.probeSpill.finishWriting();
+                    partition.probeSpill.forEach(nested::probe);
+                }
+                nested.finish();
+            } finally {
+                partition.close();
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+    }
+
+    private void emit(Object[] buildRow, Object[] probeRow) {
+        if (buildIsLeft) {
+            sink.accept(buildRow, probeRow);
+        } else {
+            sink.accept(probeRow, buildRow);
+        }
+    }
+
+    private boolean spillLargestPartition() {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if (!partition.spilled && partition.bytes > 0 && (largest == null || partition.bytes > largest.bytes)) {
+                largest = partition;
+            }
+        }
+        if (largest == null) {
+            return false;
+        }
+        largest.spilled = true;
+        largest.buildSpill = new SpillFile(spillDir, stats);
+        for (Map.Entry<Object, List<BuildRow>> entry : largest.table.entrySet()) {
+            for (BuildRow row : entry.getValue()) {
+                largest.buildSpill.write(entry.getKey(), row.values);
+            }
+        }
+        largest.table.clear();
+        memoryUsed -= largest.bytes;
+        largest.bytes = 0;
+        stats.spilledPartitions++;
+        return true;
+    }
+
+    private int partitionOf(Object key) {
+        // 每层递归使用不同的种子，保证再分区时能把数据打散
+        int h = key.hashCode() ^ (depth * 0x85EBCA6B);
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+        return h & (PARTITIONS - 1);
+    }
+
+    /**
+     * 粗略估算一行在堆上占用的字节数
+     */
+    static long estimateSize(Object key, Object[] row) {
+        long size = 64 + 16L + 8L * row.length;
+        for (Object value : row) {
+            size += estimateValue(value);
+        }
+        return size + estimateValue(key);
+    }
+
+    private static long estimateValue(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + ((String) value).length() * 2L;
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof FederationValues.BinaryKey) {
+            return 32 + ((FederationValues.BinaryKey) value).getBytes().length;
+        }
+        if (value instanceof java.math.BigDecimal) {
+            return 48;
+        }
+        return 24;
+    }
+
+    /**
+     * 连接过程统计
+     */
+    public static class Stats {
+        private int spilledPartitions;
+        private long spilledRows;
+        private long spilledBytes;
+
+        public int getSpilledPartitions() {
+            return spilledPartitions;
+        }
+
+        public long getSpilledRows() {
+            return spilledRows;
+        }
+
+        public long getSpilledBytes() {
+            return spilledBytes;
+        }
+    }
+
+    private static class BuildRow {
+        private final Object[] values;
+        private boolean matched;
+
+        BuildRow(Object[] values) {
+            this.values = values;
+        }
+    }
+
+    private class Partition {
+        private final Map<Object, List<BuildRow>> table = new HashMap<>();
+        private long bytes;
+        private boolean spilled;
+        private SpillFile buildSpill;
+        private SpillFile probeSpill;
+
+        SpillFile probeSpill() {
+            if (probeSpill == null) {
+                probeSpill = new SpillFile(spillDir, stats);
+            }
+            return probeSpill;
+        }
+
+        void close() {
+            if (buildSpill != null) {
+                buildSpill.delete();
+                buildSpill = null;
+            }
+            if (probeSpill != null) {
+                probeSpill.delete();
+                probeSpill = null;
+            }
+        }
+    }
+
+    /**
+     * 溢写文件：顺序写入 (key, row) 记录，写完后顺序读回
+     */
+    private static class SpillFile {
+        private final Path path;
+        private final Stats stats;
+        private ObjectOutputStream output;
+        private long records;
+
+        SpillFile(Path dir, Stats stats) {
+            this.stats = stats;
+            try {
+                Files.createDirectories(dir);
+                this.path = Files.createTempFile(dir, "join-", ".spill");
+                this.output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 65536));
+            } catch (IOException e) {
+                throw new UncheckedIOException("创建溢写文件失败", e);
+            }
+        }
+
+        void write(Object key, Object[] row) {
+            try {
+                output.writeObject(key);
+                output.writeObject(row);
+                if (++records % RESET_INTERVAL == 0) {
+                    output.reset();
+                }
+                stats.spilledRows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("写入溢写文件失败", e);
+            }
+        }
+
+        void finishWriting() {
+            if (output == null) {
+                return;
+            }
+            try {
+                output.close();
+                output = null;
+                stats.spilledBytes += Files.size(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("关闭溢写文件失败", e);
+            }
+        }
+
+        void forEach(java.util.function.BiConsumer<Object, Object[]> consumer) {
+            try (ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 65536))) {
+                for (long i = 0; i < records; i++) {
+                    Object key = input.readObject();
+                    Object[] row = (Object[]) input.readObject();
+                    consumer.accept(key, row);
+                }
+            } catch (EOFException e) {
+                throw new IllegalStateException("溢写文件不完整: " + path, e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取溢写文件失败", e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void delete() {
+            try {
+                if (output != null) {
+                    output.close();
+                    output = null;
+                }
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // 临时文件删除失败不影响结果
+            }
+        }
+    }
+}
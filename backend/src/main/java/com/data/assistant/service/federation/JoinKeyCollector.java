@@ -0,0 +1,177 @@
+package com.data.assistant.service.federation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JOIN 键收集器（用于半连接下推）
+ * 构建侧读取时记录去重后的连接键，供探测侧生成 IN (...) 批次；
+ * 键数超过上限时只保留最小/最大值（用于键范围谓词）和布隆过滤器（在协调端提前丢弃不可能匹配的行）。
+ * 键范围只用于数值和日期时间键：字符串在数据库中按列的排序规则比较（如 MySQL 默认不区分大小写），
+ * 与 Java 的 compareTo 不一致，按 Java 计算的范围下推会漏掉能匹配的行。
+ */
+public class JoinKeyCollector {
+
+    private final int maxKeys;
+    // 归一化键 -> 原始值（原始值作为 SQL 参数，保持驱动返回的类型）
+    private final Map<Object, Object> keys = new LinkedHashMap<>();
+    private final BloomFilter bloomFilter;
+    private boolean overflow = false;
+    private Object min;
+    private Object max;
+    private boolean rangeComparable = true;
+
+    public JoinKeyCollector(int maxKeys, long expectedKeys) {
+        this.maxKeys = maxKeys;
+        this.bloomFilter = new BloomFilter(Math.max(expectedKeys, 1), 0.01);
+    }
+
+    /**
+     * 记录一个构建侧的键（NULL 键不会匹配，直接忽略）
+     */
+    public void add(Object key) {
+        if (key == null) {
+            return;
+        }
+        Object normalized = FederationValues.normalizeKey(key);
+        bloomFilter.add(normalized);
+        updateRange(key);
+        if (!overflow) {
+            keys.putIfAbsent(normalized, key);
+            if (keys.size() > maxKeys) {
+                overflow = true;
+                keys.clear();
+            }
+        }
+    }
+
+    /**
+     * 探测侧的键是否可能匹配
+     */
+    public boolean mightMatch(Object key) {
+        return key != null && bloomFilter.mightContain(FederationValues.normalizeKey(key));
+    }
+
+    /**
+     * 键数是否超过上限（超过时不能使用 IN 列表）
+     */
+    public boolean isOverflow() {
+        return overflow;
+    }
+
+    public int getKeyCount() {
+        return keys.size();
+    }
+
+    /**
+     * 按批次切分去重后的键
+     */
+    public List<List<Object>> batches(int batchSize) {
+        List<List<Object>> batches = new ArrayList<>();
+        List<Object> current = new ArrayList<>(batchSize);
+        for (Object key : keys.values()) {
+            current.add(key);
+            if (current.size() == batchSize) {
+                batches.add(current);
+                current = new ArrayList<>(batchSize);
+            }
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * 是否可以生成键范围谓词（所有键都是数值，或都是同一种日期时间类型）
+     */
+    public boolean hasRange() {
+        return rangeComparable && min != null;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    private void updateRange(Object key) {
+        if (!rangeComparable) {
+            return;
+        }
+        if (min == null) {
+            if (!(key instanceof Number) && !isTemporal(key)) {
+                rangeComparable = false;
+                return;
+            }
+            min = key;
+            max = key;
+            return;
+        }
+        boolean sameKind = (key instanceof Number && min instanceof Number) || key.getClass() == min.getClass();
+        if (!sameKind) {
+            rangeComparable = false;
+            return;
+        }
+        if (FederationValues.compare(key, min) < 0) {
+            min = key;
+        }
+        if (FederationValues.compare(key, max) > 0) {
+            max = key;
+        }
+    }
+
+    private static boolean isTemporal(Object key) {
+        return key instanceof java.util.Date || key instanceof java.time.temporal.Temporal;
+    }
+
+    /**
+     * 简单的布隆过滤器（双重哈希）
+     */
+    static class BloomFilter {
+        private final BitSet bits;
+        private final int size;
+        private final int hashCount;
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.size = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 64));
+            this.hashCount = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+            this.bits = new BitSet(size);
+        }
+
+        void add(Object key) {
+            long hash = hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                bits.set(Math.floorMod(h1 + i * h2, size));
+            }
+        }
+
+        boolean mightContain(Object key) {
+            long hash = hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                if (!bits.get(Math.floorMod(h1 + i * h2, size))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash64(Object key) {
+            // splitmix64 混合，把 32 位 hashCode 扩展为两个相互独立的哈希
+            long z = key.hashCode() * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.data.assistant.service.federation;
+
+import com.data.assistant.service.federation.HashJoinOperator.JoinType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跨数据源 JOIN 参数
+ */
+public class JoinSpec {
+
+    private Long leftDsId;
+    private String leftTable;
+    private String leftKey;
+    private List<String> leftColumns = new ArrayList<>();
+    private String leftWhere;
+
+    private Long rightDsId;
+    private String rightTable;
+    private String rightKey;
+    private List<String> rightColumns = new ArrayList<>();
+    private String rightWhere;
+
+    private JoinType joinType = JoinType.INNER;
+
+    /**
+     * 返回的最大行数（<= 0 表示使用服务端上限），超出时结果标记为截断
+     */
+    private int maxRows;
+
+    public Long getLeftDsId() {
+        return leftDsId;
+    }
+
+    public void setLeftDsId(Long leftDsId) {
+        this.leftDsId = leftDsId;
+    }
+
+    public String getLeftTable() {
+        return leftTable;
+    }
+
+    public void setLeftTable(String leftTable) {
+        this.leftTable = leftTable;
+    }
+
+    public String getLeftKey() {
+        return leftKey;
+    }
+
+    public void setLeftKey(String leftKey) {
+        this.leftKey = leftKey;
+    }
+
+    public List<String> getLeftColumns() {
+        return leftColumns;
+    }
+
+    public void setLeftColumns(List<String> leftColumns) {
+        this.leftColumns = leftColumns;
+    }
+
+    public String getLeftWhere() {
+        return leftWhere;
+    }
+
+    public void setLeftWhere(String leftWhere) {
+        this.leftWhere = leftWhere;
+    }
+
+    public Long getRightDsId() {
+        return rightDsId;
+    }
+
+    public void setRightDsId(Long rightDsId) {
+        this.rightDsId = rightDsId;
+    }
+
+    public String getRightTable() {
+        return rightTable;
+    }
+
+    public void setRightTable(String rightTable) {
+        this.rightTable = rightTable;
+    }
+
+    public String getRightKey() {
+        return rightKey;
+    }
+
+    public void setRightKey(String rightKey) {
+        this.rightKey = rightKey;
+    }
+
+    public List<String> getRightColumns() {
+        return rightColumns;
+    }
+
+    public void setRightColumns(List<String> rightColumns) {
+        this.rightColumns = rightColumns;
+    }
+
+    public String getRightWhere() {
+        return rightWhere;
+    }
+
+    public void setRightWhere(String rightWhere) {
+        this.rightWhere = rightWhere;
+    }
+
+    public JoinType getJoinType() {
+        return joinType;
+    }
+
+    public void setJoinType(JoinType joinType) {
+        this.joinType = joinType;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+    }
+}
@@ -0,0 +1,391 @@
+package com.data.assistant.service.profile;
+
+import com.data.assistant.service.federation.FederationValues;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 单列的画像累加器
+ *
+ * 逐行累计空值（NULL）、空白值（'' 或只有空格的字符串）、最小 / 最大值、不同值个数估计，
+ * 以及按列名和类型适用的格式检查：
+ * - 列名包含 phone / mobile / tel：不是 1[3-9] 开头的 11 位手机号
+ * - 列名包含 email / mail：不符合 %@%.%
+ * - 类型包含 DATE / TIME：晚于当前时间 100 年之后
+ * 数值列可以另外开启分位数草图（trackQuantiles），用于 IQR 异常值检测；可以开启高频值草图（trackTopValues）。
+ * 所有累计量都可以与另一部分行的画像合并（merge），用于按水位线的增量画像。
+ */
+public class ColumnProfile {
+
+    /**
+     * NULL 在行哈希中的取值
+     */
+    static final long NULL_HASH = 0x5bd1e9955bd1e995L;
+
+    private static final Pattern PHONE = Pattern.compile("1[3-9][0-9]{9}");
+
+    private final String name;
+    private final String dataType;
+    private final boolean phoneColumn;
+    private final boolean emailColumn;
+    private final boolean dateColumn;
+
+    private long rowCount;
+    private long nullCount;
+    private long blankCount;
+    private Object min;
+    private Object max;
+    private final HyperLogLog distinct;
+    private long phoneViolations;
+    private long emailViolations;
+    private long dateViolations;
+    private KllSketch quantiles;
+    private FrequentItems topValues;
+    private double sum;
+
+    // IQR 异常值：按给定的 Q1 / Q3 统计界限之外的值
+    private Double outlierQ1;
+    private Double outlierQ3;
+    private long outlierCount;
+    private final List<Double> outlierSamples = new ArrayList<>();
+
+    public ColumnProfile(String name, String dataType, int hllPrecision) {
+        this(name, dataType, new HyperLogLog(hllPrecision));
+    }
+
+    ColumnProfile(String name, String dataType, HyperLogLog distinct) {
+        this.name = name;
+        this.dataType = dataType;
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        String upperType = dataType != null ? dataType.toUpperCase(Locale.ROOT) : "";
+        this.phoneColumn = lowerName.contains("phone") || lowerName.contains("mobile") || lowerName.contains("tel");
+        this.emailColumn = lowerName.contains("email") || lowerName.contains("mail");
+        this.dateColumn = upperType.contains("DATE") || upperType.contains("TIME");
+        this.distinct = distinct;
+    }
+
+    /**
+     * 在扫描中同时维护 KLL 分位数草图，rankError 为分位数的目标秩误差
+     */
+    public void trackQuantiles(double rankError) {
+        this.quantiles = KllSketch.forRankError(rankError);
+    }
+
+    /**
+     * 在扫描中同时维护高频值草图，counters 为计数器个数
+     */
+    public void trackTopValues(int counters) {
+        this.topValues = new FrequentItems(counters);
+    }
+
+    /**
+     * 设置异常值统计的 Q1 / Q3 及已有的统计结果；之后 add 的数值在 [Q1 - 1.5 IQR, Q3 + 1.5 IQR] 之外时计为异常值
+     */
+    public void setOutliers(double q1, double q3, long count, List<Double> samples) {
+        this.outlierQ1 = q1;
+        this.outlierQ3 = q3;
+        this.outlierCount = count;
+        this.outlierSamples.clear();
+        for (Double sample : samples) {
+            addOutlierSample(sample);
+        }
+    }
+
+    /**
+     * 从保存的画像还原累计量
+     */
+    void restore(long rowCount, long nullCount, long blankCount, Object min, Object max, double sum,
+                 long phoneViolations, long emailViolations, long dateViolations,
+                 KllSketch quantiles, FrequentItems topValues) {
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.blankCount = blankCount;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.phoneViolations = phoneViolations;
+        this.emailViolations = emailViolations;
+        this.dateViolations = dateViolations;
+        this.quantiles = quantiles;
+        this.topValues = topValues;
+    }
+
+    /**
+     * 合并同一列另一部分行的画像。分位数 / 高频值草图只有两边都有时才保留；
+     * 异常值个数只有两边按同样的 Q1 / Q3 统计时才能相加，否则清除，需要重新统计
+     */
+    public void merge(ColumnProfile other) {
+        rowCount += other.rowCount;
+        nullCount += other.nullCount;
+        blankCount += other.blankCount;
+        distinct.merge(other.distinct);
+        if (other.min != null && (min == null || compare(other.min, min) < 0)) {
+            min = other.min;
+        }
+        if (other.max != null && (max == null || compare(other.max, max) > 0)) {
+            max = other.max;
+        }
+        sum += other.sum;
+        phoneViolations += other.phoneViolations;
+        emailViolations += other.emailViolations;
+        dateViolations += other.dateViolations;
+        if (quantiles != null && other.quantiles != null) {
+            quantiles.merge(other.quantiles);
+        } else {
+            quantiles = null;
+        }
+        if (topValues != null && other.topValues != null) {
+            topValues.merge(other.topValues);
+        } else {
+            topValues = null;
+        }
+        if (outlierQ1 != null && outlierQ1.equals(other.outlierQ1) && outlierQ3.equals(other.outlierQ3)) {
+            outlierCount += other.outlierCount;
+            for (Double sample : other.outlierSamples) {
+                addOutlierSample(sample);
+            }
+        } else {
+            outlierQ1 = null;
+            outlierQ3 = null;
+            outlierCount = 0;
+            outlierSamples.clear();
+        }
+    }
+
+    private void addOutlierSample(double value) {
+        if (outlierSamples.size() < 5) {
+            outlierSamples.add(value);
+        }
+    }
+
+    /**
+     * @param dateLimit 日期检查的上限（扫描开始时的当前时间 + 100 年）
+     * @return 值的哈希，用于计算行哈希
+     */
+    long add(Object value, LocalDateTime dateLimit) {
+        rowCount++;
+        if (value == null) {
+            nullCount++;
+            return NULL_HASH;
+        }
+        if (value instanceof String && isBlank((String) value)) {
+            blankCount++;
+        }
+        long hash = HyperLogLog.hash(value);
+        distinct.addHash(hash);
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            sum += number;
+            if (quantiles != null) {
+                quantiles.add(number);
+            }
+            if (outlierQ1 != null) {
+                double iqr = outlierQ3 - outlierQ1;
+                if (number < outlierQ1 - 1.5 * iqr || number > outlierQ3 + 1.5 * iqr) {
+                    outlierCount++;
+                    addOutlierSample(number);
+                }
+            }
+        }
+        if (!(value instanceof byte[])) {
+            if (topValues != null) {
+                topValues.add(value);
+            }
+            if (min == null || compare(value, min) < 0) {
+                min = value;
+            }
+            if (max == null || compare(value, max) > 0) {
+                max = value;
+            }
+        }
+        if (phoneColumn && !PHONE.matcher(text(value)).matches()) {
+            phoneViolations++;
+        }
+        if (emailColumn && !isEmail(text(value))) {
+            emailViolations++;
+        }
+        if (dateColumn) {
+            LocalDateTime time = toDateTime(value);
+            if (time != null && time.isAfter(dateLimit)) {
+                dateViolations++;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 与 SQL 中 col = '' 的比较一致：末尾空格不参与比较
+     */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 LIKE '%@%.%' 一致：有 @，且 @ 之后还有 .
+     */
+    private static boolean isEmail(String value) {
+        int at = value.indexOf('@');
+        return at >= 0 && value.indexOf('.', at + 1) >= 0;
+    }
+
+    private static String text(Object value) {
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        // 同一列的值通常是同一类型，直接比较，避免逐行转换为 BigDecimal
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return FederationValues.compare(a, b);
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        if (value instanceof java.sql.Timestamp) {
+            return ((java.sql.Timestamp) value).toLocalDateTime();
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().atStartOfDay();
+        }
+        if (value instanceof java.sql.Time) {
+            return null;
+        }
+        if (value instanceof java.util.Date) {
+            return LocalDateTime.ofInstant(((java.util.Date) value).toInstant(), ZoneId.systemDefault());
+        }
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay();
+        }
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    public long getBlankCount() {
+        return blankCount;
+    }
+
+    /**
+     * 缺失值：NULL 或空白
+     */
+    public long getMissingCount() {
+        return nullCount + blankCount;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    /**
+     * 数值的和（非数值列为 0）
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    public long getDistinctEstimate() {
+        return distinct.estimate();
+    }
+
+    /**
+     * 不同值个数的草图，可以序列化保存或与其他分区合并
+     */
+    public HyperLogLog getDistinctSketch() {
+        return distinct;
+    }
+
+    /**
+     * 未开启分位数草图时为 null
+     */
+    public KllSketch getQuantiles() {
+        return quantiles;
+    }
+
+    /**
+     * 未开启高频值草图时为 null
+     */
+    public FrequentItems getTopValues() {
+        return topValues;
+    }
+
+    /**
+     * 没有异常值统计时为 null
+     */
+    public Double getOutlierQ1() {
+        return outlierQ1;
+    }
+
+    public Double getOutlierQ3() {
+        return outlierQ3;
+    }
+
+    public long getOutlierCount() {
+        return outlierCount;
+    }
+
+    public List<Double> getOutlierSamples() {
+        return outlierSamples;
+    }
+
+    public boolean isPhoneColumn() {
+        return phoneColumn;
+    }
+
+    public boolean isEmailColumn() {
+        return emailColumn;
+    }
+
+    public boolean isDateColumn() {
+        return dateColumn;
+    }
+
+    public long getPhoneViolations() {
+        return phoneViolations;
+    }
+
+    public long getEmailViolations() {
+        return emailViolations;
+    }
+
+    public long getDateViolations() {
+        return dateViolations;
+    }
+}
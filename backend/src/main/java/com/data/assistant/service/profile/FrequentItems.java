@@ -0,0 +1,115 @@
+package com.data.assistant.service.profile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 高频值草图（Misra-Gries）
+ *
+ * 最多保留 2k 个计数器，满了以后所有计数减去第 k+1 大的计数并删除不大于 0 的项，
+ * 均摊每个值 O(1)。出现次数超过 N / (k + 1) 的值一定被保留，计数为下界，误差不超过 N / (k + 1)。
+ * 可以合并（计数相加后同样裁剪），用于增量画像。
+ */
+public class FrequentItems {
+
+    private final int k;
+    private final Map<Object, Long> counters = new HashMap<>();
+    private long count;
+
+    public FrequentItems(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("高频值计数器个数必须大于 0");
+        }
+        this.k = k;
+    }
+
+    public void add(Object value) {
+        count++;
+        counters.merge(value, 1L, Long::sum);
+        if (counters.size() > 2 * k) {
+            prune();
+        }
+    }
+
+    public void merge(FrequentItems other) {
+        count += other.count;
+        for (Map.Entry<Object, Long> entry : other.counters.entrySet()) {
+            counters.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        if (counters.size() > 2 * k) {
+            prune();
+        }
+    }
+
+    private void prune() {
+        long[] values = new long[counters.size()];
+        int i = 0;
+        for (long value : counters.values()) {
+            values[i++] = value;
+        }
+        Arrays.sort(values);
+        long threshold = values[values.length - k - 1];
+        Iterator<Map.Entry<Object, Long>> iterator = counters.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Object, Long> entry = iterator.next();
+            long remaining = entry.getValue() - threshold;
+            if (remaining <= 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(remaining);
+            }
+        }
+    }
+
+    /**
+     * 计数最大的 limit 个值（计数为下界）
+     */
+    public List<Map.Entry<Object, Long>> top(int limit) {
+        List<Map.Entry<Object, Long>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 序列化：k、总数，以及各计数器（值按 ProfileValues 编码）
+     */
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(k);
+            out.writeLong(count);
+            out.writeInt(counters.size());
+            for (Map.Entry<Object, Long> entry : counters.entrySet()) {
+                byte[] key = ProfileValues.encode(entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(entry.getValue());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static FrequentItems fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            FrequentItems items = new FrequentItems(in.readInt());
+            items.count = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                items.counters.put(ProfileValues.decode(new String(key, StandardCharsets.UTF_8)), in.readLong());
+            }
+            return items;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("高频值草图数据无效", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.data.assistant.service.profile;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog 基数估计
+ *
+ * 2^precision 个寄存器，每个 1 字节，相对标准误差约 1.04 / sqrt(2^precision)
+ * （precision = 14 时 16KB、约 0.8%）。使用 64 位哈希，不需要大基数修正；
+ * 估计值较小时使用线性计数，基数远小于寄存器数时接近精确。
+ * 同精度的草图可以合并（逐个寄存器取最大值），合并结果等于对所有值一起计数，
+ * 可以序列化后持久化，用于跨分区 / 多次检查的合并。
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog 精度必须在 " + MIN_PRECISION + " 到 " + MAX_PRECISION + " 之间");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 加入一个非空值
+     */
+    public void add(Object value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 低位补 1，保证前导零个数不超过 64 - precision
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 当前估计值的标准误差（绝对值）：线性计数范围内由寄存器碰撞决定，通常远小于 1.04 / sqrt(m)
+     */
+    public double standardError() {
+        int m = registers.length;
+        long estimate = estimate();
+        if (estimate <= 2.5 * m) {
+            double t = (double) estimate / m;
+            return Math.sqrt(m * (Math.exp(t) - t - 1));
+        }
+        return 1.04 / Math.sqrt(m) * estimate;
+    }
+
+    /**
+     * 并入另一个同精度草图
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("HyperLogLog 精度不同，不能合并: " + precision + " / " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * 序列化：第一个字节为精度，其后为寄存器
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < 1) {
+            throw new IllegalArgumentException("HyperLogLog 数据为空");
+        }
+        HyperLogLog hll = new HyperLogLog(bytes[0]);
+        if (bytes.length != hll.registers.length + 1) {
+            throw new IllegalArgumentException("HyperLogLog 数据长度与精度不符");
+        }
+        System.arraycopy(bytes, 1, hll.registers, 0, hll.registers.length);
+        return hll;
+    }
+
+    /**
+     * 64 位哈希：整数按数值、小数按去掉末尾 0 后的十进制表示，其余按字符串（byte[] 按字节）
+     */
+    public static long hash(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return mix(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            // +0.0 使 -0.0 与 0.0 相同
+            return mix(Double.doubleToLongBits(((Number) value).doubleValue() + 0.0));
+        }
+        if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            return hash(decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString());
+        }
+        if (value instanceof byte[]) {
+            return hashBytes((byte[]) value);
+        }
+        if (value instanceof CharSequence) {
+            CharSequence text = (CharSequence) value;
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < text.length(); i++) {
+                h = (h ^ text.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(h);
+        }
+        return hashBytes(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long hashBytes(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * MurmurHash3 的 64 位终结函数，使相近的输入在所有位上充分扩散
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,266 @@
+package com.data.assistant.service.profile;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL 分位数草图（Karnin, Lang, Liberty）
+ *
+ * 按层保存样本，第 h 层每个样本代表 2^h 个原始值；某层满时排序并随机保留奇数位或偶数位，
+ * 合并到上一层。空间约为 O(k)，与值的个数无关，分位数的秩误差约为 2 / k
+ * （k = 200 时约 1%，每列只占几 KB），取代把所有值读入内存再排序。
+ * 草图可以序列化保存，也可以与其他草图合并（逐层拼接后继续压缩），用于增量画像。
+ */
+public class KllSketch {
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_K = 8;
+    private static final int MAX_K = 65535;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private int retained;
+    private int maxRetained;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public KllSketch(int k) {
+        if (k < MIN_K || k > MAX_K) {
+            throw new IllegalArgumentException("KLL 参数 k 必须在 " + MIN_K + " 到 " + MAX_K + " 之间");
+        }
+        this.k = k;
+        this.levels[0] = new double[capacity(0)];
+        this.maxRetained = totalCapacity();
+    }
+
+    /**
+     * 按目标秩误差（如 0.01 表示 1%）创建
+     */
+    public static KllSketch forRankError(double rankError) {
+        if (rankError <= 0 || rankError >= 1) {
+            throw new IllegalArgumentException("分位数误差必须在 0 到 1 之间");
+        }
+        return new KllSketch((int) Math.max(MIN_K, Math.min(MAX_K, Math.ceil(2.0 / rankError))));
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        if (sizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+        }
+        levels[0][sizes[0]++] = value;
+        retained++;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * 合并另一个草图，合并后的误差与按两者的值依次 add 相当
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            int size = other.sizes[h];
+            if (levels[h].length < sizes[h] + size) {
+                levels[h] = Arrays.copyOf(levels[h], Math.max(levels[h].length * 2, sizes[h] + size));
+            }
+            System.arraycopy(other.levels[h], 0, levels[h], sizes[h], size);
+            sizes[h] += size;
+            retained += size;
+        }
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * 第 q（0-1）分位数的近似值，没有值时返回 NaN
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        // 按值排序，权重跟随
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double target = q * count;
+        long cumulative = 0;
+        for (Integer index : order) {
+            cumulative += weights[index];
+            if (cumulative >= target) {
+                return values[index];
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * 序列化：k、值的个数、最小 / 最大值，以及各层的样本
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 8 + 8 + 4 + 4 * levels.length + 8 * retained);
+        buffer.putInt(k).putLong(count).putDouble(min).putDouble(max).putInt(levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            buffer.putInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                buffer.putDouble(levels[h][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static KllSketch fromBytes(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            KllSketch sketch = new KllSketch(buffer.getInt());
+            sketch.count = buffer.getLong();
+            sketch.min = buffer.getDouble();
+            sketch.max = buffer.getDouble();
+            int height = buffer.getInt();
+            if (height < 1 || height > 64) {
+                throw new IllegalArgumentException("KLL 草图数据无效");
+            }
+            while (sketch.levels.length < height) {
+                sketch.grow();
+            }
+            for (int h = 0; h < height; h++) {
+                int size = buffer.getInt();
+                if (size < 0 || size * 8L > buffer.remaining()) {
+                    throw new IllegalArgumentException("KLL 草图数据无效");
+                }
+                if (sketch.levels[h].length < size) {
+                    sketch.levels[h] = new double[size];
+                }
+                for (int i = 0; i < size; i++) {
+                    sketch.levels[h][i] = buffer.getDouble();
+                }
+                sketch.sizes[h] = size;
+                sketch.retained += size;
+            }
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("KLL 草图数据无效", e);
+        }
+    }
+
+    /**
+     * 把最低的满层压缩一半并入上一层（惰性压缩，每次只处理一层）
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == levels.length) {
+                    grow();
+                }
+                double[] level = levels[h];
+                int size = sizes[h];
+                Arrays.sort(level, 0, size);
+                // 奇数个时最大值留在本层
+                int pairs = size / 2;
+                int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+                int next = h + 1;
+                if (levels[next].length < sizes[next] + pairs) {
+                    levels[next] = Arrays.copyOf(levels[next], Math.max(levels[next].length * 2, sizes[next] + pairs));
+                }
+                for (int i = 0; i < pairs; i++) {
+                    levels[next][sizes[next]++] = level[2 * i + offset];
+                }
+                if (size % 2 == 1) {
+                    level[0] = level[size - 1];
+                    sizes[h] = 1;
+                } else {
+                    sizes[h] = 0;
+                }
+                retained -= pairs;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        levels[height - 1] = new double[capacity(height - 1)];
+        maxRetained = totalCapacity();
+    }
+
+    /**
+     * 第 h 层容量：最高层为 k，越低的层按 2/3 递减，至少 2
+     */
+    private int capacity(int h) {
+        int depth = levels.length - h - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,116 @@
+package com.data.assistant.service.profile;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+
+/**
+ * 画像中保存的值（最小 / 最大值、高频值、水位线）与文本之间的转换
+ *
+ * 文本带类型前缀，还原后与 JDBC 驱动返回的类型一致，与之后扫描得到的值可以直接比较、作为同一个键。
+ * 不认识的类型按字符串保存。
+ */
+public final class ProfileValues {
+
+    private ProfileValues() {
+    }
+
+    public static String encode(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Integer) {
+            return "I:" + value;
+        }
+        if (value instanceof Long) {
+            return "L:" + value;
+        }
+        if (value instanceof Short) {
+            return "H:" + value;
+        }
+        if (value instanceof Byte) {
+            return "Y:" + value;
+        }
+        if (value instanceof Double) {
+            return "F:" + value;
+        }
+        if (value instanceof Float) {
+            return "f:" + value;
+        }
+        if (value instanceof BigDecimal) {
+            return "N:" + ((BigDecimal) value).toString();
+        }
+        if (value instanceof BigInteger) {
+            return "G:" + value;
+        }
+        if (value instanceof Boolean) {
+            return "B:" + value;
+        }
+        if (value instanceof java.sql.Timestamp) {
+            return "TS:" + value;
+        }
+        if (value instanceof java.sql.Date) {
+            return "D:" + value;
+        }
+        if (value instanceof java.sql.Time) {
+            return "TM:" + value;
+        }
+        if (value instanceof LocalDateTime) {
+            return "LDT:" + value;
+        }
+        if (value instanceof LocalDate) {
+            return "LD:" + value;
+        }
+        if (value instanceof OffsetDateTime) {
+            return "ODT:" + value;
+        }
+        return "S:" + value;
+    }
+
+    public static Object decode(String text) {
+        if (text == null) {
+            return null;
+        }
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            return text;
+        }
+        String value = text.substring(colon + 1);
+        switch (text.substring(0, colon)) {
+            case "I":
+                return Integer.valueOf(value);
+            case "L":
+                return Long.valueOf(value);
+            case "H":
+                return Short.valueOf(value);
+            case "Y":
+                return Byte.valueOf(value);
+            case "F":
+                return Double.valueOf(value);
+            case "f":
+                return Float.valueOf(value);
+            case "N":
+                return new BigDecimal(value);
+            case "G":
+                return new BigInteger(value);
+            case "B":
+                return Boolean.valueOf(value);
+            case "TS":
+                return java.sql.Timestamp.valueOf(value);
+            case "D":
+                return java.sql.Date.valueOf(value);
+            case "TM":
+                return java.sql.Time.valueOf(value);
+            case "LDT":
+                return LocalDateTime.parse(value);
+            case "LD":
+                return LocalDate.parse(value);
+            case "ODT":
+                return OffsetDateTime.parse(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.data.assistant.service.profile;
+
+/**
+ * 整行去重计数：每行所有列的组合哈希
+ *
+ * 行数不超过 exactLimit 时用开放寻址的 long 集合精确计数（64 位哈希，碰撞可以忽略），
+ * 超过后释放集合，只保留 HyperLogLog 估计。HyperLogLog 始终维护，用于持久化和合并；
+ * 从持久化数据还原或合并之后只有 HyperLogLog 估计。
+ */
+public class RowSketch {
+
+    private static final long ROW_SEED = 0x9e3779b97f4a7c15L;
+
+    private final HyperLogLog hll;
+    private final int exactLimit;
+    private long[] table;
+    private int size;
+    private boolean zeroSeen;
+
+    public RowSketch(int hllPrecision, int exactLimit) {
+        this(new HyperLogLog(hllPrecision), exactLimit);
+    }
+
+    private RowSketch(HyperLogLog hll, int exactLimit) {
+        this.hll = hll;
+        this.exactLimit = exactLimit;
+        this.table = exactLimit > 0 ? new long[1024] : null;
+    }
+
+    /**
+     * 从保存的 HyperLogLog 还原（不再精确计数）
+     */
+    public static RowSketch restore(HyperLogLog hll) {
+        return new RowSketch(hll, 0);
+    }
+
+    /**
+     * 合并另一部分行的计数，之后只用 HyperLogLog
+     */
+    public void merge(RowSketch other) {
+        hll.merge(other.hll);
+        table = null;
+    }
+
+    /**
+     * 行哈希的初始值
+     */
+    static long seed() {
+        return ROW_SEED;
+    }
+
+    /**
+     * 把一列的值哈希并入行哈希（与列顺序有关）
+     */
+    static long combine(long rowHash, long valueHash) {
+        return HyperLogLog.mix(rowHash * 31 + valueHash);
+    }
+
+    public void add(long rowHash) {
+        hll.addHash(rowHash);
+        if (table == null) {
+            return;
+        }
+        if (rowHash == 0) {
+            zeroSeen = true;
+            return;
+        }
+        int mask = table.length - 1;
+        int index = (int) (rowHash ^ (rowHash >>> 32)) & mask;
+        while (table[index] != 0) {
+            if (table[index] == rowHash) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = rowHash;
+        size++;
+        if (size > exactLimit) {
+            // 超过精确计数上限，之后只用 HyperLogLog
+            table = null;
+        } else if (size * 4L > table.length * 3L) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+        for (long hash : old) {
+            if (hash != 0) {
+                int index = (int) (hash ^ (hash >>> 32)) & mask;
+                while (table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = hash;
+            }
+        }
+    }
+
+    /**
+     * 是否为精确计数
+     */
+    public boolean isExact() {
+        return table != null;
+    }
+
+    public long getDistinctCount() {
+        return table != null ? size + (zeroSeen ? 1 : 0) : hll.estimate();
+    }
+
+    /**
+     * 不同行数的标准误差，精确计数时为 0
+     */
+    public double standardError() {
+        return table != null ? 0 : hll.standardError();
+    }
+
+    public HyperLogLog getHll() {
+        return hll;
+    }
+}
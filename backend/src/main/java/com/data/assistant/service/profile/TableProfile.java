@@ -0,0 +1,144 @@
+package com.data.assistant.service.profile;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表画像：一次扫描同时计算所有列的 ColumnProfile
+ *
+ * 扫描（或抽样）得到的每行依次交给各列的累加器，行数即扫描的行数；
+ * 同时把各列的值哈希组合为行哈希，交给 RowSketch 统计不同行数（整行重复）。
+ * 除精确去重的行哈希集合（有上限）外，内存占用与行数无关。
+ * 画像可以保存（TableProfileStore），之后只扫描水位线之后的新行并合并（merge）。
+ */
+public class TableProfile {
+
+    private final String tableName;
+    private final List<ColumnProfile> columns;
+    private final RowSketch rowSketch;
+    private final LocalDateTime dateLimit = LocalDateTime.now().plusYears(100);
+    private long rowCount;
+    private String watermarkColumn;
+    private Object watermarkValue;
+    private LocalDateTime fullRefreshedAt;
+    private LocalDateTime profiledAt;
+
+    /**
+     * @param rowSketch 整行去重计数，为 null 时不统计
+     */
+    public TableProfile(String tableName, List<ColumnProfile> columns, RowSketch rowSketch) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.rowSketch = columns.isEmpty() ? null : rowSketch;
+    }
+
+    /**
+     * 扫描的列名，add 的值按此顺序排列
+     */
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>(columns.size());
+        for (ColumnProfile column : columns) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    /**
+     * 加入一行
+     */
+    public void add(Object[] row) {
+        rowCount++;
+        long rowHash = RowSketch.seed();
+        for (int i = 0; i < row.length; i++) {
+            rowHash = RowSketch.combine(rowHash, columns.get(i).add(row[i], dateLimit));
+        }
+        if (rowSketch != null) {
+            rowSketch.add(rowHash);
+        }
+    }
+
+    /**
+     * 合并同一张表另一部分行（如水位线之后的新行）的画像，两者的列必须一致。
+     * 计数直接相加，两部分的行不能重叠：同一行的新旧版本会重复计入，已计入的行也无法减掉
+     */
+    public void merge(TableProfile other) {
+        if (!getColumnNames().equals(other.getColumnNames())) {
+            throw new IllegalArgumentException("画像的列不一致，不能合并: " + tableName);
+        }
+        rowCount += other.rowCount;
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).merge(other.columns.get(i));
+        }
+        if (rowSketch != null && other.rowSketch != null) {
+            rowSketch.merge(other.rowSketch);
+        }
+    }
+
+    /**
+     * 没有列信息时只统计行数
+     */
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 没有列或未开启整行去重时为 null
+     */
+    public RowSketch getRowSketch() {
+        return rowSketch;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 增量扫描使用的水位线列（只增不改的自增主键或创建时间），没有时为 null
+     */
+    public String getWatermarkColumn() {
+        return watermarkColumn;
+    }
+
+    /**
+     * 已经计入画像的水位线最大值
+     */
+    public Object getWatermarkValue() {
+        return watermarkValue;
+    }
+
+    public void setWatermark(String watermarkColumn, Object watermarkValue) {
+        this.watermarkColumn = watermarkColumn;
+        this.watermarkValue = watermarkValue;
+    }
+
+    /**
+     * 最近一次全表扫描的时间
+     */
+    public LocalDateTime getFullRefreshedAt() {
+        return fullRefreshedAt;
+    }
+
+    public void setFullRefreshedAt(LocalDateTime fullRefreshedAt) {
+        this.fullRefreshedAt = fullRefreshedAt;
+    }
+
+    /**
+     * 最近一次保存的时间（还原的画像才有）
+     */
+    public LocalDateTime getProfiledAt() {
+        return profiledAt;
+    }
+
+    public void setProfiledAt(LocalDateTime profiledAt) {
+        this.profiledAt = profiledAt;
+    }
+}
@@ -0,0 +1,168 @@
+package com.data.assistant.service.profile;
+
+import com.data.assistant.model.TableProfileSketch;
+import com.data.assistant.repository.TableProfileSketchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * 表画像的保存与还原（table_profile_sketches：每列一条，另加整行一条）
+ *
+ * 数据质量检查的精确扫描结束后保存画像；增量检查还原后只合并水位线之后的新行，
+ * 数据故事直接读取画像，不扫描数据。
+ */
+@Service
+public class TableProfileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableProfileStore.class);
+
+    @Autowired
+    private TableProfileSketchRepository sketchRepository;
+
+    /**
+     * 还原保存的画像；没有保存过、是旧版本保存的（缺少增量所需的数据）或数据无法还原时返回 null
+     */
+    public TableProfile load(Long dataSourceId, String tableName) {
+        TableProfileSketch rows = null;
+        List<TableProfileSketch> columns = new ArrayList<>();
+        for (TableProfileSketch sketch : sketchRepository.findByDataSourceIdAndTableName(dataSourceId, tableName)) {
+            if (TableProfileSketch.ROW_COLUMN.equals(sketch.getColumnName())) {
+                rows = sketch;
+            } else if (sketch.getColumnPosition() == null || sketch.getDataType() == null) {
+                return null;
+            } else {
+                columns.add(sketch);
+            }
+        }
+        if (rows == null || rows.getFullRefreshedAt() == null) {
+            return null;
+        }
+        columns.sort(Comparator.comparing(TableProfileSketch::getColumnPosition));
+
+        try {
+            List<ColumnProfile> profiles = new ArrayList<>();
+            for (TableProfileSketch sketch : columns) {
+                ColumnProfile column = new ColumnProfile(sketch.getColumnName(), sketch.getDataType(),
+                    HyperLogLog.fromBytes(sketch.getHllSketch()));
+                column.restore(count(sketch.getRowCount()), count(sketch.getNullCount()), count(sketch.getBlankCount()),
+                    ProfileValues.decode(sketch.getMinValue()), ProfileValues.decode(sketch.getMaxValue()),
+                    sketch.getValueSum() != null ? sketch.getValueSum() : 0,
+                    count(sketch.getPhoneViolations()), count(sketch.getEmailViolations()), count(sketch.getDateViolations()),
+                    sketch.getKllSketch() != null ? KllSketch.fromBytes(sketch.getKllSketch()) : null,
+                    sketch.getTopValues() != null ? FrequentItems.fromBytes(sketch.getTopValues()) : null);
+                if (sketch.getOutlierQ1() != null && sketch.getOutlierQ3() != null) {
+                    column.setOutliers(sketch.getOutlierQ1(), sketch.getOutlierQ3(), count(sketch.getOutlierCount()),
+                        parseSamples(sketch.getOutlierSamples()));
+                }
+                profiles.add(column);
+            }
+            TableProfile profile = new TableProfile(tableName, profiles,
+                RowSketch.restore(HyperLogLog.fromBytes(rows.getHllSketch())));
+            profile.setRowCount(count(rows.getRowCount()));
+            profile.setWatermark(rows.getWatermarkColumn(), ProfileValues.decode(rows.getWatermarkValue()));
+            profile.setFullRefreshedAt(rows.getFullRefreshedAt());
+            profile.setProfiledAt(rows.getProfiledAt());
+            return profile;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to restore profile of {}.{}: {}", dataSourceId, tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存画像（每列一条，另加整行一条），覆盖该表之前的记录；没有整行草图（抽样扫描）时不保存。
+     * 保存失败不影响检查结果
+     */
+    public void save(Long dataSourceId, TableProfile profile) {
+        if (profile.getRowSketch() == null) {
+            return;
+        }
+        try {
+            Map<String, TableProfileSketch> existing = new HashMap<>();
+            for (TableProfileSketch sketch : sketchRepository.findByDataSourceIdAndTableName(dataSourceId, profile.getTableName())) {
+                existing.put(sketch.getColumnName(), sketch);
+            }
+            List<TableProfileSketch> sketches = new ArrayList<>();
+            List<ColumnProfile> columns = profile.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnProfile column = columns.get(i);
+                TableProfileSketch sketch = sketchFor(existing, dataSourceId, profile.getTableName(), column.getName());
+                sketch.setColumnPosition(i);
+                sketch.setDataType(column.getDataType());
+                sketch.setRowCount(column.getRowCount());
+                sketch.setNullCount(column.getNullCount());
+                sketch.setBlankCount(column.getBlankCount());
+                sketch.setDistinctCount(column.getDistinctEstimate());
+                sketch.setHllSketch(column.getDistinctSketch().toBytes());
+                sketch.setMinValue(ProfileValues.encode(column.getMin()));
+                sketch.setMaxValue(ProfileValues.encode(column.getMax()));
+                sketch.setValueSum(column.getSum());
+                sketch.setPhoneViolations(column.getPhoneViolations());
+                sketch.setEmailViolations(column.getEmailViolations());
+                sketch.setDateViolations(column.getDateViolations());
+                sketch.setKllSketch(column.getQuantiles() != null ? column.getQuantiles().toBytes() : null);
+                sketch.setTopValues(column.getTopValues() != null ? column.getTopValues().toBytes() : null);
+                sketch.setOutlierQ1(column.getOutlierQ1());
+                sketch.setOutlierQ3(column.getOutlierQ3());
+                sketch.setOutlierCount(column.getOutlierQ1() != null ? column.getOutlierCount() : null);
+                sketch.setOutlierSamples(column.getOutlierQ1() != null ? formatSamples(column.getOutlierSamples()) : null);
+                sketches.add(sketch);
+            }
+            RowSketch rows = profile.getRowSketch();
+            TableProfileSketch rowSketch = sketchFor(existing, dataSourceId, profile.getTableName(), TableProfileSketch.ROW_COLUMN);
+            rowSketch.setRowCount(profile.getRowCount());
+            rowSketch.setNullCount(0L);
+            rowSketch.setBlankCount(0L);
+            rowSketch.setDistinctCount(rows.getDistinctCount());
+            rowSketch.setHllSketch(rows.getHll().toBytes());
+            rowSketch.setWatermarkColumn(profile.getWatermarkColumn());
+            rowSketch.setWatermarkValue(ProfileValues.encode(profile.getWatermarkValue()));
+            rowSketch.setFullRefreshedAt(profile.getFullRefreshedAt());
+            sketches.add(rowSketch);
+
+            sketchRepository.saveAll(sketches);
+            // 已经不存在的列
+            sketchRepository.deleteAll(existing.values());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to save profile sketches for {}.{}: {}", dataSourceId, profile.getTableName(), e.getMessage());
+        }
+    }
+
+    private TableProfileSketch sketchFor(Map<String, TableProfileSketch> existing, Long dataSourceId,
+                                         String tableName, String columnName) {
+        TableProfileSketch sketch = existing.remove(columnName);
+        if (sketch == null) {
+            sketch = new TableProfileSketch();
+            sketch.setDataSourceId(dataSourceId);
+            sketch.setTableName(tableName);
+            sketch.setColumnName(columnName);
+        }
+        return sketch;
+    }
+
+    private static long count(Long value) {
+        return value != null ? value : 0;
+    }
+
+    private static String formatSamples(List<Double> samples) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (Double sample : samples) {
+            joiner.add(sample.toString());
+        }
+        return joiner.toString();
+    }
+
+    private static List<Double> parseSamples(String text) {
+        List<Double> samples = new ArrayList<>();
+        if (text != null && !text.isEmpty()) {
+            for (String sample : text.split(",")) {
+                samples.add(Double.valueOf(sample));
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,146 @@
+package com.data.assistant.service.sampling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按段（整群）抽样的段内相关性，用于估计设计效应
+ *
+ * 同一段的行是连续插入的，取值往往相近，段内 n 行提供的信息少于 n 行简单随机样本。
+ * 对每一列的两个指标（是否为 NULL、数值列的值）按段做方差分析，得到段内相关系数
+ * rho = (MSB - MSW) / (MSB + (m0 - 1) * MSW)，设计效应为 1 + (平均段大小 - 1) * rho，
+ * 取各列各指标中最大的一个，在 [1, 平均段大小] 之间。各段的均值和离差平方和按 Welford 方法累计。
+ * 分段所依据的主键列按段划分，段内必然相近，不参与估计。
+ */
+class BlockVariance {
+
+    private final int columns;
+    private final int keyColumn;
+    private final List<Block> blocks = new ArrayList<>();
+
+    /**
+     * @param keyColumn 分段主键在各行中的位置，不在扫描的列中时为 -1
+     */
+    BlockVariance(int columns, int keyColumn) {
+        this.columns = columns;
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * 增加一段，段号为增加前的 blockCount()
+     */
+    void startBlock() {
+        blocks.add(new Block(columns));
+    }
+
+    int blockCount() {
+        return blocks.size();
+    }
+
+    void add(int blockIndex, Object[] values) {
+        Block block = blocks.get(blockIndex);
+        block.rows++;
+        for (int i = 0; i < columns; i++) {
+            Object value = values[i];
+            block.nulls[i].add(value == null ? 1 : 0);
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                if (Double.isFinite(number)) {
+                    block.numbers[i].add(number);
+                }
+            }
+        }
+    }
+
+    /**
+     * 设计效应（>= 1），不足两个非空段时为 1
+     */
+    double designEffect() {
+        long rows = 0;
+        int nonEmpty = 0;
+        for (Block block : blocks) {
+            if (block.rows > 0) {
+                rows += block.rows;
+                nonEmpty++;
+            }
+        }
+        if (nonEmpty < 2) {
+            return 1;
+        }
+        double meanBlockSize = (double) rows / nonEmpty;
+        double rho = 0;
+        for (int i = 0; i < columns; i++) {
+            if (i == keyColumn) continue;
+            rho = Math.max(rho, intraclassCorrelation(i, true));
+            rho = Math.max(rho, intraclassCorrelation(i, false));
+        }
+        return Math.max(1, Math.min(meanBlockSize, 1 + (meanBlockSize - 1) * rho));
+    }
+
+    /**
+     * 第 column 列某个指标的段内相关系数（单因素方差分析估计，不等段大小），没有方差时为 0
+     */
+    private double intraclassCorrelation(int column, boolean nulls) {
+        long n = 0;
+        int groups = 0;
+        double sum = 0;
+        double sumOfSquaredSizes = 0;
+        double within = 0;
+        for (Block block : blocks) {
+            Moments moments = nulls ? block.nulls[column] : block.numbers[column];
+            if (moments.count == 0) continue;
+            n += moments.count;
+            groups++;
+            sum += moments.count * moments.mean;
+            sumOfSquaredSizes += (double) moments.count * moments.count;
+            within += moments.m2;
+        }
+        if (groups < 2 || n <= groups) {
+            return 0;
+        }
+        double grandMean = sum / n;
+        double between = 0;
+        for (Block block : blocks) {
+            Moments moments = nulls ? block.nulls[column] : block.numbers[column];
+            if (moments.count == 0) continue;
+            double diff = moments.mean - grandMean;
+            between += moments.count * diff * diff;
+        }
+        double msb = between / (groups - 1);
+        double msw = within / (n - groups);
+        double m0 = (n - sumOfSquaredSizes / n) / (groups - 1);
+        double denominator = msb + (m0 - 1) * msw;
+        if (denominator <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (msb - msw) / denominator));
+    }
+
+    private static class Block {
+        long rows;
+        final Moments[] nulls;
+        final Moments[] numbers;
+
+        Block(int columns) {
+            nulls = new Moments[columns];
+            numbers = new Moments[columns];
+            for (int i = 0; i < columns; i++) {
+                nulls[i] = new Moments();
+                numbers[i] = new Moments();
+            }
+        }
+    }
+
+    private static class Moments {
+        long count;
+        double mean;
+        double m2;
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+    }
+}
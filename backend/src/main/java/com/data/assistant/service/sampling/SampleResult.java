@@ -0,0 +1,176 @@
+package com.data.assistant.service.sampling;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次扫描的抽样信息，以及把样本统计量换算为全表估计、计算 95% 置信区间的方法
+ *
+ * 精确扫描（FULL_SCAN）时样本即全表，换算系数为 1，置信区间退化为点估计。
+ * 按段抽样（PK_BLOCKS）是整群样本，区间按设计效应放宽（有效样本量为样本行数 / 设计效应）。
+ */
+public class SampleResult {
+
+    /**
+     * 95% 置信度对应的正态分位数
+     */
+    public static final double Z = 1.96;
+
+    public enum Method {
+        /** 读取全表，结果精确 */
+        FULL_SCAN,
+        /** PostgreSQL TABLESAMPLE BERNOULLI，逐行独立抽样 */
+        TABLESAMPLE,
+        /** 按主键随机取若干段互不重叠的键范围（MySQL） */
+        PK_BLOCKS,
+        /** 只进游标读取全表，蓄水池抽样保留固定行数 */
+        RESERVOIR,
+        /** 读取的行数达到上限后停止，只有表的一部分且不是随机样本，统计量只描述读到的行 */
+        LIMITED
+    }
+
+    private final Method method;
+    private final long populationRows;
+    private final long sampleRows;
+    private final boolean populationEstimated;
+    private final double designEffect;
+
+    public SampleResult(Method method, long populationRows, long sampleRows, boolean populationEstimated) {
+        this(method, populationRows, sampleRows, populationEstimated, 1);
+    }
+
+    /**
+     * @param designEffect 整群抽样时方差相对简单随机抽样的倍数（>= 1）
+     */
+    public SampleResult(Method method, long populationRows, long sampleRows, boolean populationEstimated,
+                        double designEffect) {
+        this.method = method;
+        this.populationRows = Math.max(populationRows, sampleRows);
+        this.sampleRows = sampleRows;
+        this.populationEstimated = populationEstimated;
+        this.designEffect = Math.max(1, designEffect);
+    }
+
+    /**
+     * 从本样本中再等概率抽取 rows 行得到的样本（总体和设计效应不变），用于只保留了部分样本行的统计
+     */
+    public SampleResult subsample(long rows) {
+        if (rows >= sampleRows) {
+            return this;
+        }
+        return new SampleResult(isExact() ? Method.RESERVOIR : method, populationRows, rows, populationEstimated, designEffect);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public boolean isExact() {
+        return method == Method.FULL_SCAN;
+    }
+
+    /**
+     * 全表行数；TABLESAMPLE / PK_BLOCKS 时按抽样比例由样本行数推算，是估计值
+     */
+    public long getPopulationRows() {
+        return populationRows;
+    }
+
+    public long getSampleRows() {
+        return sampleRows;
+    }
+
+    public boolean isPopulationEstimated() {
+        return populationEstimated;
+    }
+
+    public double getDesignEffect() {
+        return designEffect;
+    }
+
+    /**
+     * 样本中的计数换算为全表估计
+     */
+    public long scale(long sampleCount) {
+        if (isExact() || sampleRows == 0) {
+            return sampleCount;
+        }
+        return Math.round((double) sampleCount * populationRows / sampleRows);
+    }
+
+    /**
+     * 比例（hits / n）的 95% 置信区间，使用 Wilson 区间并按有限总体修正和设计效应调整
+     *
+     * @return [下限, 上限]，取值 0-1
+     */
+    public double[] proportionInterval(long hits, long n) {
+        if (n == 0) {
+            return new double[]{0, 1};
+        }
+        double p = (double) hits / n;
+        double fpc = finitePopulationCorrection();
+        if (isExact() || fpc == 0) {
+            return new double[]{p, p};
+        }
+        // 有限总体修正等价于放大有效样本量，设计效应等价于缩小有效样本量
+        double effectiveN = n / (fpc * designEffect);
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / effectiveN;
+        double center = (p + z2 / (2 * effectiveN)) / denominator;
+        double half = Z * Math.sqrt(p * (1 - p) / effectiveN + z2 / (4 * effectiveN * effectiveN)) / denominator;
+        return new double[]{Math.max(0, center - half), Math.min(1, center + half)};
+    }
+
+    /**
+     * 样本中的计数换算为全表后的 95% 置信区间
+     */
+    public long[] countInterval(long hits) {
+        if (isExact()) {
+            return new long[]{hits, hits};
+        }
+        double[] interval = proportionInterval(hits, sampleRows);
+        return new long[]{Math.round(interval[0] * populationRows), Math.round(interval[1] * populationRows)};
+    }
+
+    /**
+     * 均值的 95% 置信区间
+     *
+     * @param variance 样本方差
+     */
+    public double[] meanInterval(double mean, double variance, long n) {
+        if (isExact() || n < 2) {
+            return new double[]{mean, mean};
+        }
+        double half = Z * Math.sqrt(variance / n * finitePopulationCorrection() * designEffect);
+        return new double[]{mean - half, mean + half};
+    }
+
+    /**
+     * 比例估计的最大误差（p = 0.5 时的置信区间半宽）
+     */
+    public double getMarginOfError() {
+        if (isExact() || sampleRows == 0) {
+            return 0;
+        }
+        return Z * Math.sqrt(0.25 / sampleRows * finitePopulationCorrection() * designEffect);
+    }
+
+    private double finitePopulationCorrection() {
+        return populationRows > 0 ? Math.max(0, 1 - (double) sampleRows / populationRows) : 0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("method", method.name());
+        map.put("exact", isExact());
+        map.put("populationRows", populationRows);
+        map.put("populationEstimated", populationEstimated);
+        map.put("sampleRows", sampleRows);
+        if (designEffect > 1) {
+            map.put("designEffect", designEffect);
+        }
+        map.put("confidenceLevel", 0.95);
+        map.put("marginOfError", getMarginOfError());
+        return map;
+    }
+}
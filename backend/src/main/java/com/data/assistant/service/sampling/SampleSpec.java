@@ -0,0 +1,44 @@
+package com.data.assistant.service.sampling;
+
+/**
+ * 扫描方式：精确（读取全表）或按目标精度抽样
+ *
+ * targetAccuracy 为比例估计在 95% 置信度下的误差范围（如 0.01 表示 ±1 个百分点），
+ * 由它决定样本行数。
+ */
+public final class SampleSpec {
+
+    private static final SampleSpec EXACT = new SampleSpec(false, 0);
+
+    private final boolean sampled;
+    private final double targetAccuracy;
+
+    private SampleSpec(boolean sampled, double targetAccuracy) {
+        this.sampled = sampled;
+        this.targetAccuracy = targetAccuracy;
+    }
+
+    public static SampleSpec exact() {
+        return EXACT;
+    }
+
+    public static SampleSpec sampled(double targetAccuracy) {
+        if (targetAccuracy <= 0 || targetAccuracy >= 0.5) {
+            throw new IllegalArgumentException("抽样精度必须在 0 到 0.5 之间");
+        }
+        return new SampleSpec(true, targetAccuracy);
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public double getTargetAccuracy() {
+        return targetAccuracy;
+    }
+
+    @Override
+    public String toString() {
+        return sampled ? "sampled(" + targetAccuracy + ")" : "exact";
+    }
+}
@@ -0,0 +1,410 @@
+package com.data.assistant.service.sampling;
+
+import com.data.assistant.service.QueryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 表扫描与抽样
+ *
+ * 数据质量检查、数据故事和敏感数据扫描共用：精确模式以只进游标读取全表；抽样模式按目标精度
+ * 计算样本行数（95% 置信度下比例误差 ±targetAccuracy，按有限总体修正），再按数据库选择抽样方式：
+ * - PostgreSQL：TABLESAMPLE BERNOULLI，逐行独立抽样（SYSTEM 按数据页抽样是整群样本，页内的行往往相近）
+ * - MySQL：有单列整数主键时，把主键范围划分为互不重叠的键范围，随机取若干段（每段走主键索引），
+ *   置信区间按段内相关性估计的设计效应放宽
+ * - 其他情况：只进游标读取全表，蓄水池抽样保留固定行数
+ * 表的行数不超过样本行数的两倍时直接读取全表。全表行数由抽样比例和样本行数推算，不直接使用可能过期的统计信息。
+ */
+@Service
+public class TableSampler {
+
+    private static final int BLOCKS_PER_STATEMENT = 50;
+
+    @Value("${sampling.fetch-size:10000}")
+    private int fetchSize;
+
+    @Value("${sampling.max-rows:100000}")
+    private int maxSampleRows;
+
+    @Value("${sampling.block-rows:100}")
+    private int blockRows;
+
+    @Value("${sampling.default-accuracy:0.01}")
+    private double defaultAccuracy;
+
+    /**
+     * 逐行处理扫描结果，values 按列的顺序排列
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(Object[] values) throws SQLException;
+    }
+
+    /**
+     * 样本行数上限（sampling.max-rows），也用作需要保留样本行时的内存上限
+     */
+    public int getMaxSampleRows() {
+        return maxSampleRows;
+    }
+
+    /**
+     * 解析接口参数：mode 为 exact / sampled，未指定时有 accuracy 即为抽样；抽样未指定精度时使用 sampling.default-accuracy
+     */
+    public SampleSpec spec(String mode, Double accuracy) {
+        if (mode == null || mode.isEmpty()) {
+            return accuracy != null ? SampleSpec.sampled(accuracy) : SampleSpec.exact();
+        }
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "exact":
+                return SampleSpec.exact();
+            case "sampled":
+                return SampleSpec.sampled(accuracy != null ? accuracy : defaultAccuracy);
+            default:
+                throw new IllegalArgumentException("不支持的扫描模式: " + mode + "（exact / sampled）");
+        }
+    }
+
+    /**
+     * 按 spec 扫描表的指定列，每行交给 handler
+     *
+     * @param query 不为 null 时，执行的语句登记到该查询上，可以被取消
+     */
+    public SampleResult scan(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                             List<String> columns, SampleSpec spec, RowHandler handler) throws SQLException {
+        return scan(connection, query, tableName, columns, spec, 0, handler);
+    }
+
+    /**
+     * 按 spec 扫描表的指定列，最多读取 maxRows 行（<= 0 不限制）。统计信息过期或没有抽样方式
+     * （精确模式、蓄水池抽样）时也不会超过这个行数，达到上限时结果的方式为 LIMITED
+     */
+    public SampleResult scan(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                             List<String> columns, SampleSpec spec, long maxRows,
+                             RowHandler handler) throws SQLException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("扫描的列不能为空");
+        }
+        String select = "SELECT " + String.join(", ", columns) + " FROM " + tableName;
+        if (!spec.isSampled()) {
+            return fullScan(connection, query, select, maxRows, handler);
+        }
+
+        long target = sampleSize(spec.getTargetAccuracy());
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (product.contains("postgresql")) {
+            long estimate = estimatePostgresRows(connection, query, tableName);
+            if (estimate > 0) {
+                long n = finiteSampleSize(target, estimate);
+                if (n * 2 > estimate) {
+                    return fullScan(connection, query, select, maxRows, handler);
+                }
+                double fraction = Math.min(1.0, (double) n / estimate);
+                String percent = String.format(Locale.ROOT, "%.6f", fraction * 100);
+                long rows = stream(connection, query, select + " TABLESAMPLE BERNOULLI (" + percent + ")",
+                    Collections.emptyList(), maxRows, handler);
+                if (limitReached(rows, maxRows)) {
+                    return limited(rows);
+                }
+                return new SampleResult(SampleResult.Method.TABLESAMPLE, Math.round(rows / fraction), rows, true);
+            }
+        } else if (product.contains("mysql") || product.contains("mariadb")) {
+            long estimate = estimateMySqlRows(connection, query, tableName);
+            if (estimate > 0) {
+                long n = finiteSampleSize(target, estimate);
+                if (n * 2 > estimate) {
+                    return fullScan(connection, query, select, maxRows, handler);
+                }
+                String primaryKey = integerPrimaryKey(connection, tableName);
+                if (primaryKey != null) {
+                    SampleResult result = sampleBlocks(connection, query, tableName, columns, primaryKey,
+                        n, estimate, maxRows, handler);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return reservoir(connection, query, select, (int) target, maxRows, handler);
+    }
+
+    /**
+     * 精确扫描满足条件的行（如增量画像只读取水位线之后的新行），每行交给 handler
+     *
+     * @param where  不含 WHERE 的条件，参数用 ? 占位；为 null 时扫描全表
+     * @return 扫描的行数
+     */
+    public long scanWhere(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                          List<String> columns, String where, List<Object> params, RowHandler handler) throws SQLException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("扫描的列不能为空");
+        }
+        String select = "SELECT " + String.join(", ", columns) + " FROM " + tableName;
+        if (where != null) {
+            select += " WHERE " + where;
+        }
+        return stream(connection, query, select, params, 0, handler);
+    }
+
+    /**
+     * 目标精度对应的样本行数（p = 0.5 时最保守），不超过 sampling.max-rows
+     */
+    long sampleSize(double targetAccuracy) {
+        double n = SampleResult.Z * SampleResult.Z * 0.25 / (targetAccuracy * targetAccuracy);
+        return Math.max(1, Math.min(maxSampleRows, (long) Math.ceil(n)));
+    }
+
+    private static long finiteSampleSize(long n, long population) {
+        return (long) Math.ceil(n / (1 + (n - 1) / (double) population));
+    }
+
+    private SampleResult fullScan(Connection connection, QueryRegistry.RunningQuery query, String select,
+                                  long maxRows, RowHandler handler) throws SQLException {
+        long rows = stream(connection, query, select, Collections.emptyList(), maxRows, handler);
+        if (limitReached(rows, maxRows)) {
+            return limited(rows);
+        }
+        return new SampleResult(SampleResult.Method.FULL_SCAN, rows, rows, false);
+    }
+
+    private static boolean limitReached(long rows, long maxRows) {
+        return maxRows > 0 && rows >= maxRows;
+    }
+
+    private static SampleResult limited(long rows) {
+        return new SampleResult(SampleResult.Method.LIMITED, rows, rows, true);
+    }
+
+    /**
+     * 蓄水池抽样：读取全表（最多 maxRows 行），等概率保留 size 行，读完后再交给 handler；表的行数不超过 size 时即为全表
+     */
+    private SampleResult reservoir(Connection connection, QueryRegistry.RunningQuery query, String select,
+                                   int size, long maxRows, RowHandler handler) throws SQLException {
+        List<Object[]> reservoir = new ArrayList<>(Math.min(size, 10000));
+        long[] seen = new long[1];
+        stream(connection, query, select, Collections.emptyList(), maxRows, row -> {
+            long index = seen[0]++;
+            if (index < size) {
+                reservoir.add(row);
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(index + 1);
+                if (slot < size) {
+                    reservoir.set((int) slot, row);
+                }
+            }
+        });
+        for (Object[] row : reservoir) {
+            handler.row(row);
+        }
+        if (limitReached(seen[0], maxRows)) {
+            return new SampleResult(SampleResult.Method.LIMITED, seen[0], reservoir.size(), true);
+        }
+        if (seen[0] <= size) {
+            return new SampleResult(SampleResult.Method.FULL_SCAN, seen[0], seen[0], false);
+        }
+        return new SampleResult(SampleResult.Method.RESERVOIR, seen[0], reservoir.size(), false);
+    }
+
+    /**
+     * 把 [MIN(pk), MAX(pk)] 划分为宽度相同、互不重叠的键范围（按统计的行数，每段平均约 block-rows 行），
+     * 不放回地随机取若干段读取其中所有行。每一行恰好属于一段，被抽中的概率都等于抽中段数 / 总段数，
+     * 主键有空洞时也不会偏向某些行；全表行数按这个比例由样本行数推算。段内的行取值相近，
+     * 置信区间使用按段内相关性估计的设计效应。
+     *
+     * @return 主键范围无法划分（如跨越整个 BIGINT 范围）时返回 null
+     */
+    private SampleResult sampleBlocks(Connection connection, QueryRegistry.RunningQuery query, String tableName,
+                                      List<String> columns, String primaryKey, long sampleRows, long estimate,
+                                      long maxRows, RowHandler handler) throws SQLException {
+        long min;
+        long max;
+        try (Statement stmt = createStatement(connection, query);
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + primaryKey + "), MAX(" + primaryKey + ") FROM " + tableName)) {
+            if (!rs.next()) {
+                return null;
+            }
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+            if (rs.wasNull()) {
+                return null;
+            }
+        }
+        long span = max - min + 1;
+        if (span <= 0) {
+            return null;
+        }
+
+        // 主键唯一，每段最多 width 行
+        long width = Math.max(1, (long) Math.ceil((double) blockRows * span / estimate));
+        long slots = (span - 1) / width + 1;
+        int blocks = (int) Math.min(slots, (long) Math.ceil((double) sampleRows / blockRows));
+        long[] chosen = chooseSlots(slots, blocks);
+
+        int keyColumn = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).equalsIgnoreCase(primaryKey)) {
+                keyColumn = i;
+            }
+        }
+        BlockVariance variance = new BlockVariance(columns.size(), keyColumn);
+        String select = "SELECT " + String.join(", ", columns) + ", ";
+        String range = " FROM " + tableName + " WHERE " + primaryKey + " >= ? AND " + primaryKey + " <= ?";
+        long rows = 0;
+        int read = 0;
+        for (int from = 0; from < blocks; from += BLOCKS_PER_STATEMENT) {
+            int to = Math.min(blocks, from + BLOCKS_PER_STATEMENT);
+            List<String> parts = new ArrayList<>();
+            List<Object> params = new ArrayList<>();
+            int offset = variance.blockCount();
+            for (int i = from; i < to; i++) {
+                long low = min + chosen[i] * width;
+                long high = max - low < width - 1 ? max : low + width - 1;
+                // 最后一列为段号，用于按段统计
+                parts.add("(" + select + (i - from) + range + ")");
+                params.add(low);
+                params.add(high);
+                variance.startBlock();
+            }
+            rows += stream(connection, query, String.join(" UNION ALL ", parts), params,
+                maxRows > 0 ? maxRows - rows : 0, row -> {
+                    Object[] values = Arrays.copyOf(row, columns.size());
+                    variance.add(offset + ((Number) row[columns.size()]).intValue(), values);
+                    handler.row(values);
+                });
+            read = to;
+            if (limitReached(rows, maxRows)) {
+                return limited(rows);
+            }
+        }
+        long population = Math.round((double) rows * slots / read);
+        return new SampleResult(SampleResult.Method.PK_BLOCKS, population, rows, true, variance.designEffect());
+    }
+
+    /**
+     * 从 [0, slots) 中不放回地随机取 count 个，升序返回（Floyd 算法，只需 O(count) 空间）
+     */
+    private static long[] chooseSlots(long slots, int count) {
+        Set<Long> chosen = new HashSet<>(count * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long j = slots - count; j < slots; j++) {
+            long slot = random.nextLong(j + 1);
+            chosen.add(chosen.contains(slot) ? j : slot);
+        }
+        long[] result = new long[chosen.size()];
+        int i = 0;
+        for (Long slot : chosen) {
+            result[i++] = slot;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 单列整数主键的列名，没有时返回 null
+     */
+    private String integerPrimaryKey(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String column = null;
+        try (ResultSet rs = metaData.getPrimaryKeys(connection.getCatalog(), null, tableName)) {
+            while (rs.next()) {
+                if (column != null) {
+                    return null;
+                }
+                column = rs.getString("COLUMN_NAME");
+            }
+        }
+        if (column == null) {
+            return null;
+        }
+        try (ResultSet rs = metaData.getColumns(connection.getCatalog(), null, tableName, column)) {
+            if (rs.next()) {
+                int type = rs.getInt("DATA_TYPE");
+                if (type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT) {
+                    return column;
+                }
+            }
+        }
+        return null;
+    }
+
+    private long estimatePostgresRows(Connection connection, QueryRegistry.RunningQuery query, String tableName) throws SQLException {
+        // 从未 ANALYZE 过的表 reltuples 为 -1（旧版本为 0）
+        return queryEstimate(connection, query, "SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)", tableName);
+    }
+
+    private long estimateMySqlRows(Connection connection, QueryRegistry.RunningQuery query, String tableName) throws SQLException {
+        return queryEstimate(connection, query,
+            "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", tableName);
+    }
+
+    private long queryEstimate(Connection connection, QueryRegistry.RunningQuery query, String sql, String tableName) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            if (query != null) {
+                query.attach(connection, stmt);
+            }
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? (long) rs.getDouble(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * 以只进游标执行查询并逐行交给 handler，内存占用与结果行数无关
+     *
+     * @param maxRows 最多读取的行数，<= 0 不限制
+     */
+    private long stream(Connection connection, QueryRegistry.RunningQuery query, String sql, List<Object> params,
+                        long maxRows, RowHandler handler) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        boolean mysql = product.contains("mysql") || product.contains("mariadb");
+        // PostgreSQL 只有在非自动提交模式下才会按 fetchSize 使用服务端游标
+        boolean cursorTransaction = !mysql && connection.getAutoCommit();
+        if (cursorTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (query != null) {
+                query.attach(connection, stmt);
+            }
+            // MySQL 驱动只有 fetchSize 为 Integer.MIN_VALUE 时逐行读取，否则会把整个结果集读入内存
+            stmt.setFetchSize(mysql ? Integer.MIN_VALUE : fetchSize);
+            if (maxRows > 0) {
+                stmt.setMaxRows((int) Math.min(maxRows, Integer.MAX_VALUE));
+            }
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            long rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columnCount = rs.getMetaData().getColumnCount();
+                while ((maxRows <= 0 || rows < maxRows) && rs.next()) {
+                    Object[] values = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    handler.row(values);
+                    rows++;
+                }
+            }
+            return rows;
+        } finally {
+            if (cursorTransaction) {
+                // 只读扫描，回滚即可结束游标事务
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private Statement createStatement(Connection connection, QueryRegistry.RunningQuery query) throws SQLException {
+        Statement stmt = connection.createStatement();
+        if (query != null) {
+            query.attach(connection, stmt);
+        }
+        return stmt;
+    }
+}
@@ -0,0 +1,461 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.model.SchemaCatalog;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.arithmetic.Addition;
+import net.sf.jsqlparser.expression.operators.arithmetic.Concat;
+import net.sf.jsqlparser.expression.operators.arithmetic.Division;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
+import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.update.Update;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 内置 SQL 分析规则
+ */
+public final class BuiltinSqlRules {
+
+    private static final long LARGE_OFFSET = 10000;
+    private static final int MAX_JOINS = 3;
+
+    private static final Set<String> RANDOM_FUNCTIONS = new HashSet<>(Arrays.asList(
+        "rand", "random", "newid", "dbms_random.value"));
+    private static final Set<String> NUMERIC_TYPES = new HashSet<>(Arrays.asList(
+        "tinyint", "smallint", "mediumint", "int", "integer", "bigint", "int2", "int4", "int8",
+        "decimal", "numeric", "number", "float", "float4", "float8", "double", "real",
+        "serial", "bigserial", "smallserial"));
+    private static final Set<String> STRING_TYPES = new HashSet<>(Arrays.asList(
+        "char", "varchar", "nchar", "nvarchar", "varchar2", "nvarchar2", "character", "bpchar",
+        "text", "tinytext", "mediumtext", "longtext", "clob", "string"));
+
+    private BuiltinSqlRules() {
+    }
+
+    public static List<SqlRule> all() {
+        return Arrays.asList(
+            new SelectStar(),
+            new MissingWhere(),
+            new ImplicitConversion(),
+            new FunctionOnColumn(),
+            new LeadingWildcardLike(),
+            new OrCondition(),
+            new Subquery(),
+            new NotInSubquery(),
+            new OrderByRandom(),
+            new LargeOffset(),
+            new ManyJoins(),
+            new CartesianJoin()
+        );
+    }
+
+    /**
+     * SELECT *（EXISTS 子查询中的 SELECT * 不影响结果列，不检查）
+     */
+    static class SelectStar implements SqlRule {
+        @Override
+        public String getId() {
+            return "select-star";
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            if (context.isExistsSubquery()) {
+                return;
+            }
+            for (SelectItem<?> item : select.getSelectItems()) {
+                if (item.getExpression() instanceof AllColumns) {
+                    context.report(new SqlIssue(getId(), "避免使用SELECT *",
+                        "查询中使用了SELECT *，建议只查询需要的字段，减少网络传输和内存占用",
+                        "high", "将SELECT * 改为具体的字段列表", 15));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 没有 WHERE 的 UPDATE / DELETE
+     */
+    static class MissingWhere implements SqlRule {
+        @Override
+        public String getId() {
+            return "missing-where";
+        }
+
+        @Override
+        public void onStatement(Statement statement, SqlRuleContext context) {
+            boolean missing = statement instanceof Update && ((Update) statement).getWhere() == null
+                || statement instanceof Delete && ((Delete) statement).getWhere() == null;
+            if (missing) {
+                context.report(new SqlIssue(getId(), "缺少WHERE条件",
+                    "UPDATE或DELETE语句缺少WHERE条件，可能导致全表数据被修改或删除",
+                    "critical", "添加适当的WHERE条件限制影响范围", 30));
+            }
+        }
+    }
+
+    /**
+     * 字段与类型不一致的常量比较（数值字段比较字符串、字符串字段比较数字），需要表结构目录
+     */
+    static class ImplicitConversion implements SqlRule {
+        @Override
+        public String getId() {
+            return "implicit-conversion";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (context.getCatalog() == null) {
+                return;
+            }
+            if (expression instanceof ComparisonOperator) {
+                ComparisonOperator comparison = (ComparisonOperator) expression;
+                check(comparison.getLeftExpression(), comparison.getRightExpression(), context);
+                check(comparison.getRightExpression(), comparison.getLeftExpression(), context);
+            } else if (expression instanceof InExpression
+                && ((InExpression) expression).getRightExpression() instanceof ExpressionList) {
+                InExpression in = (InExpression) expression;
+                for (Object value : (ExpressionList<?>) in.getRightExpression()) {
+                    if (check(in.getLeftExpression(), (Expression) value, context)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private boolean check(Expression side, Expression value, SqlRuleContext context) {
+            if (!(side instanceof Column)) {
+                return false;
+            }
+            SchemaCatalog.ColumnInfo column = context.resolveColumn((Column) side);
+            if (column == null || column.getType() == null) {
+                return false;
+            }
+            String type = baseType(column.getType());
+            boolean mismatch = NUMERIC_TYPES.contains(type) && value instanceof StringValue
+                || STRING_TYPES.contains(type) && (value instanceof LongValue || value instanceof DoubleValue);
+            if (mismatch) {
+                context.report(new SqlIssue(getId(), "隐式类型转换",
+                    "字段 " + column.getName() + "（" + column.getType().toLowerCase(Locale.ROOT) + "）与 "
+                        + value + " 比较，类型不一致会触发隐式转换，导致索引失效",
+                    "medium", "确保比较操作符两侧类型一致", 10));
+            }
+            return mismatch;
+        }
+    }
+
+    /**
+     * 条件中对字段使用函数或运算（如 DATE(created_at) = ...），无法使用该字段上的索引
+     */
+    static class FunctionOnColumn implements SqlRule {
+        @Override
+        public String getId() {
+            return "function-on-column";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (context.getClause() != SqlRuleContext.Clause.WHERE && context.getClause() != SqlRuleContext.Clause.JOIN) {
+                return;
+            }
+            Expression wrapped = null;
+            if (expression instanceof ComparisonOperator) {
+                ComparisonOperator comparison = (ComparisonOperator) expression;
+                wrapped = wrapsColumn(comparison.getLeftExpression()) ? comparison.getLeftExpression()
+                    : wrapsColumn(comparison.getRightExpression()) ? comparison.getRightExpression() : null;
+            } else if (expression instanceof InExpression || expression instanceof LikeExpression) {
+                Expression left = expression instanceof InExpression
+                    ? ((InExpression) expression).getLeftExpression() : ((LikeExpression) expression).getLeftExpression();
+                wrapped = wrapsColumn(left) ? left : null;
+            }
+            if (wrapped != null) {
+                context.report(new SqlIssue(getId(), "条件字段上使用函数或运算",
+                    "条件 " + wrapped + " 对字段做了函数或运算，无法使用该字段上的索引",
+                    "medium", "改写为对常量一侧做运算（如用范围条件替代 DATE(字段) = 值），或建立函数索引", 10));
+            }
+        }
+
+        private static boolean wrapsColumn(Expression expression) {
+            Expression unwrapped = unwrap(expression);
+            boolean computed = unwrapped instanceof Function || unwrapped instanceof CastExpression
+                || unwrapped instanceof Addition || unwrapped instanceof Subtraction
+                || unwrapped instanceof Multiplication || unwrapped instanceof Division
+                || unwrapped instanceof Concat;
+            return computed && containsColumn(unwrapped);
+        }
+    }
+
+    /**
+     * 以通配符开头的 LIKE
+     */
+    static class LeadingWildcardLike implements SqlRule {
+        @Override
+        public String getId() {
+            return "leading-wildcard-like";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (!(expression instanceof LikeExpression)) {
+                return;
+            }
+            Expression pattern = ((LikeExpression) expression).getRightExpression();
+            if (pattern instanceof StringValue) {
+                String value = ((StringValue) pattern).getValue();
+                if (value.startsWith("%") || value.startsWith("_")) {
+                    context.report(new SqlIssue(getId(), "前缀模糊查询",
+                        "使用了'%xxx'形式的前缀模糊查询，无法使用索引",
+                        "medium", "考虑使用全文索引或反向索引优化", 10));
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接不同字段的 OR 条件（同一字段的等值 OR 会被改写为 IN，不在此报告）
+     */
+    static class OrCondition implements SqlRule {
+        @Override
+        public String getId() {
+            return "or-condition";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (!(expression instanceof OrExpression) || context.getParentExpression() instanceof OrExpression) {
+                return;
+            }
+            if (context.getClause() != SqlRuleContext.Clause.WHERE && context.getClause() != SqlRuleContext.Clause.JOIN) {
+                return;
+            }
+            Set<String> columns = new LinkedHashSet<>();
+            for (Expression disjunct : disjuncts(expression)) {
+                columns.addAll(columnsOf(disjunct));
+            }
+            if (columns.size() > 1) {
+                context.report(new SqlIssue(getId(), "使用OR条件",
+                    "OR连接了不同字段（" + String.join(", ", columns) + "）的条件，可能导致索引失效",
+                    "low", "为各字段分别建立索引以便索引合并，或拆分为 UNION ALL", 5));
+            }
+        }
+    }
+
+    /**
+     * 表达式中的子查询（EXISTS 子查询不检查）
+     */
+    static class Subquery implements SqlRule {
+        @Override
+        public String getId() {
+            return "subquery";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (!(expression instanceof ParenthesedSelect) || context.getParentExpression() instanceof ExistsExpression) {
+                return;
+            }
+            if (context.getClause() == SqlRuleContext.Clause.SELECT) {
+                context.report(new SqlIssue(getId(), "使用子查询",
+                    "SELECT 列表中的标量子查询会对每一行结果执行一次",
+                    "medium", "将子查询改为JOIN语法", 10));
+            } else {
+                context.report(new SqlIssue(getId(), "使用子查询",
+                    "条件中的子查询可能无法被优化器改写为连接，性能较差",
+                    "medium", "将子查询改为JOIN或EXISTS", 10));
+            }
+        }
+    }
+
+    /**
+     * NOT IN 子查询：子查询结果含 NULL 时整个条件为空
+     */
+    static class NotInSubquery implements SqlRule {
+        @Override
+        public String getId() {
+            return "not-in-subquery";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (expression instanceof InExpression && ((InExpression) expression).isNot()
+                && ((InExpression) expression).getRightExpression() instanceof ParenthesedSelect) {
+                context.report(new SqlIssue(getId(), "使用NOT IN",
+                    "NOT IN在子查询返回NULL时结果不正确，且性能较差",
+                    "medium", "使用NOT EXISTS替代NOT IN", 10));
+            }
+        }
+    }
+
+    /**
+     * ORDER BY RAND()
+     */
+    static class OrderByRandom implements SqlRule {
+        @Override
+        public String getId() {
+            return "order-by-random";
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (context.getClause() == SqlRuleContext.Clause.ORDER_BY && expression instanceof Function
+                && ((Function) expression).getName() != null
+                && RANDOM_FUNCTIONS.contains(((Function) expression).getName().toLowerCase(Locale.ROOT))) {
+                context.report(new SqlIssue(getId(), "使用ORDER BY RAND()",
+                    "ORDER BY RAND()会导致全表扫描和文件排序，性能极差",
+                    "high", "使用应用层随机或优化算法替代", 20));
+            }
+        }
+    }
+
+    /**
+     * 大偏移量分页（LIMIT m, n / LIMIT n OFFSET m）
+     */
+    static class LargeOffset implements SqlRule {
+        @Override
+        public String getId() {
+            return "large-offset";
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            Expression offset = select.getLimit() != null && select.getLimit().getOffset() != null
+                ? select.getLimit().getOffset()
+                : select.getOffset() != null ? select.getOffset().getOffset() : null;
+            if (offset instanceof LongValue && ((LongValue) offset).getValue() > LARGE_OFFSET) {
+                context.report(new SqlIssue(getId(), "大偏移量分页",
+                    "分页偏移量为 " + ((LongValue) offset).getValue() + "，LIMIT大偏移量会导致扫描大量无用数据",
+                    "high", "使用覆盖索引或延迟关联优化分页，或改为按主键游标分页", 15));
+            }
+        }
+    }
+
+    /**
+     * 单个查询块中 JOIN 过多
+     */
+    static class ManyJoins implements SqlRule {
+        @Override
+        public String getId() {
+            return "many-joins";
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            if (select.getJoins() != null && select.getJoins().size() > MAX_JOINS) {
+                context.report(new SqlIssue(getId(), "多表JOIN",
+                    "查询涉及" + (select.getJoins().size() + 1) + "个表JOIN，可能导致性能问题",
+                    "medium", "考虑拆分查询或优化JOIN顺序", 10));
+            }
+        }
+    }
+
+    /**
+     * 笛卡尔积：CROSS JOIN、没有 ON / USING 的 JOIN、没有 WHERE 的逗号连接
+     */
+    static class CartesianJoin implements SqlRule {
+        @Override
+        public String getId() {
+            return "cartesian-join";
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            if (select.getJoins() == null) {
+                return;
+            }
+            for (Join join : select.getJoins()) {
+                boolean hasCondition = join.getOnExpressions() != null && !join.getOnExpressions().isEmpty()
+                    || join.getUsingColumns() != null && !join.getUsingColumns().isEmpty()
+                    || join.isNatural();
+                boolean cartesian = join.isCross()
+                    || join.isSimple() && select.getWhere() == null
+                    || !join.isSimple() && !hasCondition && !join.isApply();
+                if (cartesian) {
+                    context.report(new SqlIssue(getId(), "笛卡尔积连接",
+                        "与 " + join.getRightItem() + " 的连接没有连接条件，结果行数为两表行数之积",
+                        "high", "补充 ON 连接条件", 20));
+                }
+            }
+        }
+    }
+
+    /**
+     * 展开 OR 链（包括括号内的 OR）
+     */
+    static List<Expression> disjuncts(Expression expression) {
+        List<Expression> result = new ArrayList<>();
+        Expression unwrapped = unwrap(expression);
+        if (unwrapped instanceof OrExpression) {
+            result.addAll(disjuncts(((OrExpression) unwrapped).getLeftExpression()));
+            result.addAll(disjuncts(((OrExpression) unwrapped).getRightExpression()));
+        } else {
+            result.add(unwrapped);
+        }
+        return result;
+    }
+
+    static Expression unwrap(Expression expression) {
+        Expression current = expression;
+        while (current instanceof Parenthesis) {
+            current = ((Parenthesis) current).getExpression();
+        }
+        return current;
+    }
+
+    static boolean containsColumn(Expression expression) {
+        return !columnsOf(expression).isEmpty();
+    }
+
+    /**
+     * 表达式引用的字段（不进入子查询）
+     */
+    static Set<String> columnsOf(Expression expression) {
+        Set<String> columns = new LinkedHashSet<>();
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                columns.add(column.getFullyQualifiedName().toLowerCase(Locale.ROOT));
+            }
+        });
+        return columns;
+    }
+
+    /**
+     * 字段类型的基本名称，如 "VARCHAR(64)" -> "varchar"，"INT UNSIGNED" -> "int"
+     */
+    private static String baseType(String type) {
+        String lower = type.trim().toLowerCase(Locale.ROOT);
+        int end = 0;
+        while (end < lower.length() && (Character.isLetterOrDigit(lower.charAt(end)) || lower.charAt(end) == '_')) {
+            end++;
+        }
+        return lower.substring(0, end);
+    }
+}
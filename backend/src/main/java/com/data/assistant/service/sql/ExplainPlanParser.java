@@ -0,0 +1,254 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.service.sql.QueryPlan.PlanNode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 将各数据库的 EXPLAIN 输出解析为 QueryPlan
+ *
+ * - MySQL / MariaDB：EXPLAIN FORMAT=JSON
+ * - PostgreSQL：EXPLAIN (FORMAT JSON)
+ * - H2：EXPLAIN 返回的带注释的 SQL 文本（没有代价和行数估计）
+ */
+public final class ExplainPlanParser {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // MySQL 中带 using_filesort / using_temporary_table 标记的操作节点
+    private static final Set<String> MYSQL_OPERATIONS = new HashSet<>(Arrays.asList(
+        "ordering_operation", "grouping_operation", "duplicates_removal", "windowing", "union_result"));
+
+    private static final Set<String> PG_JOINS = new HashSet<>(Arrays.asList(
+        "Nested Loop", "Hash Join", "Merge Join"));
+
+    private static final String[] PG_CONDITIONS = {"Index Cond", "Hash Cond", "Merge Cond", "Join Filter", "Filter"};
+
+    // FROM "PUBLIC"."USERS" "U" / INNER JOIN "PUBLIC"."ORDERS"
+    private static final Pattern H2_TABLE = Pattern.compile(
+        "^\\s*(FROM|[A-Z ]*JOIN)\\s+(?:\"[^\"]+\"\\.)?\"([^\"]+)\"(?:\\s+\"([^\"]+)\")?");
+    // /* PUBLIC.USERS.tableScan */
+    private static final Pattern H2_SCAN = Pattern.compile("/\\*\\s*[^.\\s]+\\.[^.\\s]+\\.tableScan\\b");
+    // /* PUBLIC.IDX_ORDERS_USER: USER_ID = 1 */
+    private static final Pattern H2_INDEX = Pattern.compile("/\\*\\s*[^.\\s]+\\.([^.\\s:*]+)(?::\\s*(.*?))?\\s*\\*/");
+
+    private ExplainPlanParser() {
+    }
+
+    public static QueryPlan parseMySql(String json) {
+        JsonNode tree = readJson(json);
+        JsonNode block = tree.path("query_block");
+        PlanNode root = new PlanNode("query_block");
+        root.setCost(number(block.path("cost_info").path("query_cost")));
+        walkMySql(block, root);
+        root.setRows(outputRows(root));
+        return new QueryPlan("mysql", root, json);
+    }
+
+    private static void walkMySql(JsonNode node, PlanNode parent) {
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                walkMySql(element, parent);
+            }
+            return;
+        }
+        if (!node.isObject()) {
+            return;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            if ("table".equals(name) && value.has("table_name")) {
+                parent.addChild(mySqlTable(value));
+            } else if ("nested_loop".equals(name)) {
+                PlanNode join = new PlanNode("nested_loop");
+                join.setJoin(true);
+                walkMySql(value, join);
+                // rows_produced_per_join 是连接到该表为止的累计结果行数
+                JsonNode last = value.path(value.size() - 1).path("table");
+                join.setRows(number(last.path("rows_produced_per_join")));
+                join.setCost(number(last.path("cost_info").path("prefix_cost")));
+                parent.addChild(join);
+            } else if (MYSQL_OPERATIONS.contains(name)) {
+                PlanNode operation = new PlanNode(name);
+                operation.setSort(value.path("using_filesort").asBoolean(false));
+                operation.setTemporary(value.path("using_temporary_table").asBoolean(false));
+                walkMySql(value, operation);
+                operation.setRows(outputRows(operation));
+                parent.addChild(operation);
+            } else if (value.isContainerNode()) {
+                // query_block、attached_subqueries、query_specifications 等容器
+                walkMySql(value, parent);
+            }
+        }
+    }
+
+    private static PlanNode mySqlTable(JsonNode table) {
+        String accessType = table.path("access_type").asText("");
+        PlanNode node = new PlanNode(accessType);
+        String name = table.path("table_name").asText();
+        // <derived2>、<union1,2> 等是中间结果，不是物理表
+        if (!name.startsWith("<")) {
+            node.setTable(name);
+            node.setFullScan("ALL".equalsIgnoreCase(accessType));
+        }
+        node.setIndex(text(table.path("key")));
+        List<String> possibleKeys = new ArrayList<>();
+        for (JsonNode key : table.path("possible_keys")) {
+            possibleKeys.add(key.asText());
+        }
+        node.setPossibleIndexes(possibleKeys);
+        // MariaDB 使用 rows 而不是 rows_examined_per_scan
+        double scanRows = table.has("rows_examined_per_scan")
+            ? number(table.path("rows_examined_per_scan")) : number(table.path("rows"));
+        node.setScanRows(scanRows);
+        double filtered = table.has("filtered") ? number(table.path("filtered")) : 100;
+        node.setRows(scanRows >= 0 && filtered >= 0 ? scanRows * filtered / 100 : scanRows);
+        node.setCost(number(table.path("cost_info").path("prefix_cost")));
+        node.setCondition(text(table.path("attached_condition")));
+        node.setSort(table.path("using_filesort").asBoolean(false));
+        node.setTemporary(table.path("using_temporary_table").asBoolean(false));
+        for (String nested : new String[]{"materialized_from_subquery", "attached_subqueries"}) {
+            if (table.has(nested)) {
+                walkMySql(table.get(nested), node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 没有自身行数的节点取最后一个子节点的输出行数
+     */
+    private static double outputRows(PlanNode node) {
+        List<PlanNode> children = node.getChildren();
+        return children.isEmpty() ? -1 : children.get(children.size() - 1).getRows();
+    }
+
+    public static QueryPlan parsePostgres(String json) {
+        return parsePostgres(json, relation -> -1);
+    }
+
+    /**
+     * @param relationRows 表的估计总行数（pg_class.reltuples），未知时返回负数；
+     *                     Seq Scan 的 Plan Rows 是过滤后的行数，全表扫描读取的行数要按表的总行数计算
+     */
+    public static QueryPlan parsePostgres(String json, ToDoubleFunction<String> relationRows) {
+        JsonNode tree = readJson(json);
+        JsonNode plan = tree.path(0).path("Plan");
+        if (plan.isMissingNode()) {
+            throw new IllegalArgumentException("无法识别的执行计划格式");
+        }
+        return new QueryPlan("postgresql", postgresNode(plan, relationRows), json);
+    }
+
+    private static PlanNode postgresNode(JsonNode plan, ToDoubleFunction<String> relationRows) {
+        String type = plan.path("Node Type").asText("");
+        PlanNode node = new PlanNode(type);
+        String relation = text(plan.path("Relation Name"));
+        if (relation != null) {
+            node.setTable(relation);
+            node.setAlias(text(plan.path("Alias")));
+            node.setFullScan("Seq Scan".equals(type));
+            // Plan Rows 是过滤后的估计行数；全表扫描按表的总行数计算，未知时退回 Plan Rows
+            double tableRows = "Seq Scan".equals(type) ? relationRows.applyAsDouble(relation) : -1;
+            node.setScanRows(tableRows >= 0 ? tableRows : number(plan.path("Plan Rows")));
+        }
+        node.setIndex(text(plan.path("Index Name")));
+        node.setRows(number(plan.path("Plan Rows")));
+        node.setCost(number(plan.path("Total Cost")));
+        node.setJoin(PG_JOINS.contains(type));
+        node.setSort("Sort".equals(type) || "Incremental Sort".equals(type));
+        node.setTemporary("Materialize".equals(type));
+        for (String key : PG_CONDITIONS) {
+            String condition = text(plan.path(key));
+            if (condition != null) {
+                node.setCondition(condition);
+                break;
+            }
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            node.addChild(postgresNode(child, relationRows));
+        }
+        return node;
+    }
+
+    public static QueryPlan parseH2(String text) {
+        PlanNode root = new PlanNode("SELECT");
+        PlanNode current = null;
+        boolean located = false;
+        String upper = text.toUpperCase();
+        for (String line : text.split("\n")) {
+            Matcher table = H2_TABLE.matcher(line);
+            if (table.find()) {
+                current = new PlanNode(table.group(1).trim());
+                current.setTable(table.group(2));
+                current.setAlias(table.group(3));
+                current.setJoin(!"FROM".equals(table.group(1)));
+                root.addChild(current);
+                located = false;
+            }
+            // 表名之后的第一个注释说明访问方式：tableScan 或使用的索引及条件
+            if (current == null || located) {
+                continue;
+            }
+            if (H2_SCAN.matcher(line).find()) {
+                current.setFullScan(true);
+                located = true;
+            } else if (!line.contains("index sorted") && !line.contains("group sorted")) {
+                Matcher index = H2_INDEX.matcher(line);
+                if (index.find()) {
+                    current.setIndex(index.group(1));
+                    current.setCondition(index.group(2));
+                    located = true;
+                }
+            }
+        }
+        // ORDER BY / GROUP BY 能按索引顺序读取时 H2 会标注 index sorted / group sorted
+        root.setSort(upper.contains("ORDER BY") && !text.contains("index sorted"));
+        root.setTemporary(upper.contains("GROUP BY") && !text.contains("group sorted"));
+        return new QueryPlan("h2", root, text);
+    }
+
+    private static JsonNode readJson(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法解析执行计划: " + e.getMessage(), e);
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node.isMissingNode() || node.isNull() ? null : node.asText();
+    }
+
+    /**
+     * MySQL 的代价和行数有时以字符串返回
+     */
+    private static double number(JsonNode node) {
+        if (node.isNumber()) {
+            return node.asDouble();
+        }
+        if (node.isTextual()) {
+            try {
+                return Double.parseDouble(node.asText());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,314 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.model.SchemaCatalog;
+import com.data.assistant.service.sql.QueryPlan.PlanNode;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.update.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 索引建议
+ *
+ * 对执行计划中被全表扫描的表，从语句的 WHERE / JOIN 条件和 ORDER BY 中取出该表的字段，
+ * 按「等值字段 → 一个范围字段（没有范围条件时为排序字段）」的顺序组成联合索引，最多 3 个字段。
+ * 与其他表字段的等值连接条件只对被驱动表有用，驱动表（计划中第一个访问的表）只使用过滤条件。
+ * 只使用 AND 连接的顶层条件，OR / NOT 之下的条件通常无法走索引。
+ */
+public final class IndexAdvisor {
+
+    private static final int MAX_COLUMNS = 3;
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private IndexAdvisor() {
+    }
+
+    /**
+     * @param catalog         可为 null；有表结构目录时跳过以主键开头的建议
+     * @param fullScanMinRows 估计扫描行数不少于该值的全表扫描才给出建议
+     */
+    public static List<Recommendation> recommend(Statement statement, SchemaCatalog catalog,
+                                                 QueryPlan plan, long fullScanMinRows) {
+        PredicateCollector collector = new PredicateCollector();
+        new SqlAnalyzer(Collections.singletonList(collector)).analyze(statement, catalog);
+
+        Map<String, Recommendation> recommendations = new LinkedHashMap<>();
+        PlanNode driving = null;
+        for (PlanNode node : plan.getNodes()) {
+            if (driving == null && node.getTable() != null) {
+                driving = node;
+            }
+            if (!node.isFullScan() || node.getScanRows() >= 0 && node.getScanRows() < fullScanMinRows) {
+                continue;
+            }
+            // MySQL 计划中的表名是别名
+            String key = SqlRuleContext.key(node.getTable());
+            String table = collector.aliases.getOrDefault(key, key);
+            TableColumns columns = collector.tables.get(table);
+            if (columns == null) {
+                continue;
+            }
+            List<String> indexColumns = columns.indexColumns(node != driving);
+            if (indexColumns.isEmpty() || isPrimaryKey(catalog, table, indexColumns.get(0))) {
+                continue;
+            }
+            String reason = "表 " + table + " 被全表扫描"
+                + (node.getScanRows() >= 0 ? "（估计 " + Math.round(node.getScanRows()) + " 行）" : "")
+                + "，条件字段：" + String.join(", ", indexColumns);
+            if (node.getIndex() == null && !node.getPossibleIndexes().isEmpty()) {
+                reason += "；已有可用索引 " + String.join(", ", node.getPossibleIndexes())
+                    + " 但未被使用，可能是选择性太低或统计信息过期";
+            }
+            recommendations.putIfAbsent(table + indexColumns, new Recommendation(table, indexColumns, reason));
+        }
+        return new ArrayList<>(recommendations.values());
+    }
+
+    private static boolean isPrimaryKey(SchemaCatalog catalog, String table, String column) {
+        SchemaCatalog.TableInfo info = catalog != null ? catalog.getTable(table) : null;
+        if (info == null) {
+            return false;
+        }
+        for (SchemaCatalog.ColumnInfo columnInfo : info.getColumns()) {
+            if (columnInfo.getName().equalsIgnoreCase(column)) {
+                return columnInfo.isPrimaryKey();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 建议创建的索引
+     */
+    public static class Recommendation {
+        private final String table;
+        private final List<String> columns;
+        private final String reason;
+
+        Recommendation(String table, List<String> columns, String reason) {
+            this.table = table;
+            this.columns = columns;
+            this.reason = reason;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getDdl() {
+            String name = "idx_" + table + "_" + String.join("_", columns);
+            if (name.length() > MAX_NAME_LENGTH) {
+                name = name.substring(0, MAX_NAME_LENGTH);
+            }
+            return "CREATE INDEX " + name + " ON " + table + " (" + String.join(", ", columns) + ")";
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("table", table);
+            map.put("columns", columns);
+            map.put("reason", reason);
+            map.put("ddl", getDdl());
+            return map;
+        }
+    }
+
+    /**
+     * 单个表上可用于索引的字段（小写，按出现顺序）
+     */
+    private static class TableColumns {
+        private final Set<String> equality = new LinkedHashSet<>();
+        private final Set<String> joinEquality = new LinkedHashSet<>();
+        private final Set<String> range = new LinkedHashSet<>();
+        private final Set<String> ordering = new LinkedHashSet<>();
+
+        /**
+         * @param joined 是否是被驱动表（可以按连接条件查找）
+         */
+        List<String> indexColumns(boolean joined) {
+            List<String> columns = new ArrayList<>();
+            List<String> head = new ArrayList<>(equality);
+            if (joined) {
+                head.addAll(joinEquality);
+            }
+            for (String column : head) {
+                if (columns.size() < MAX_COLUMNS && !columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            // 范围条件之后的字段无法再利用索引，只取一个
+            Set<String> tail = range.isEmpty() ? ordering : Collections.singleton(range.iterator().next());
+            for (String column : tail) {
+                if (columns.size() < MAX_COLUMNS && !columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * 收集各表在顶层 AND 条件和 ORDER BY 中使用的字段
+     */
+    private static class PredicateCollector implements SqlRule {
+        private final Map<String, TableColumns> tables = new HashMap<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private final Set<Expression> conjuncts = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public String getId() {
+            return "index-advisor";
+        }
+
+        @Override
+        public void onStatement(Statement statement, SqlRuleContext context) {
+            if (statement instanceof Update) {
+                addConjuncts(((Update) statement).getWhere());
+            } else if (statement instanceof Delete) {
+                addConjuncts(((Delete) statement).getWhere());
+            }
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            aliases.putAll(context.getTables());
+            addConjuncts(select.getWhere());
+            if (select.getJoins() != null) {
+                for (Join join : select.getJoins()) {
+                    if (join.getOnExpressions() != null) {
+                        for (Expression on : join.getOnExpressions()) {
+                            addConjuncts(on);
+                        }
+                    }
+                }
+            }
+            if (select.getOrderByElements() != null) {
+                for (OrderByElement element : select.getOrderByElements()) {
+                    if (element.getExpression() instanceof Column) {
+                        Column column = (Column) element.getExpression();
+                        String table = context.resolveTable(column);
+                        if (table != null) {
+                            columnsOf(table).ordering.add(SqlRuleContext.key(column.getColumnName()));
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            if (!conjuncts.contains(expression)) {
+                return;
+            }
+            if (expression instanceof EqualsTo) {
+                EqualsTo equals = (EqualsTo) expression;
+                add(equals.getLeftExpression(), equals.getRightExpression(), true, context);
+                add(equals.getRightExpression(), equals.getLeftExpression(), true, context);
+            } else if (expression instanceof ComparisonOperator && !(expression instanceof NotEqualsTo)) {
+                ComparisonOperator comparison = (ComparisonOperator) expression;
+                add(comparison.getLeftExpression(), comparison.getRightExpression(), false, context);
+                add(comparison.getRightExpression(), comparison.getLeftExpression(), false, context);
+            } else if (expression instanceof InExpression && !((InExpression) expression).isNot()) {
+                InExpression in = (InExpression) expression;
+                add(in.getLeftExpression(), in.getRightExpression(), true, context);
+            } else if (expression instanceof Between && !((Between) expression).isNot()) {
+                Between between = (Between) expression;
+                add(between.getLeftExpression(), between.getBetweenExpressionStart(), false, context);
+            } else if (expression instanceof LikeExpression && !((LikeExpression) expression).isNot()) {
+                LikeExpression like = (LikeExpression) expression;
+                // 只有前缀匹配能走索引
+                if (like.getRightExpression() instanceof StringValue) {
+                    String pattern = ((StringValue) like.getRightExpression()).getValue();
+                    if (!pattern.isEmpty() && pattern.charAt(0) != '%' && pattern.charAt(0) != '_') {
+                        add(like.getLeftExpression(), like.getRightExpression(), false, context);
+                    }
+                }
+            }
+        }
+
+        private void add(Expression side, Expression other, boolean equality, SqlRuleContext context) {
+            if (!(side instanceof Column)) {
+                return;
+            }
+            Column column = (Column) side;
+            String table = context.resolveTable(column);
+            // 两侧是同一张表的字段（a.x = a.y）时无法用索引定位
+            if (table == null || references(other, table, context)) {
+                return;
+            }
+            TableColumns columns = columnsOf(table);
+            String name = SqlRuleContext.key(column.getColumnName());
+            if (!equality) {
+                columns.range.add(name);
+            } else if (references(other, null, context)) {
+                columns.joinEquality.add(name);
+            } else {
+                columns.equality.add(name);
+            }
+        }
+
+        private TableColumns columnsOf(String table) {
+            return tables.computeIfAbsent(table, key -> new TableColumns());
+        }
+
+        /**
+         * 表达式是否引用了指定表的字段，table 为 null 时为是否引用了任何字段
+         */
+        private static boolean references(Expression expression, String table, SqlRuleContext context) {
+            boolean[] found = {false};
+            expression.accept(new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    if (table == null || table.equals(context.resolveTable(column))) {
+                        found[0] = true;
+                    }
+                }
+            });
+            return found[0];
+        }
+
+        private void addConjuncts(Expression condition) {
+            if (condition == null) {
+                return;
+            }
+            Expression unwrapped = BuiltinSqlRules.unwrap(condition);
+            if (unwrapped instanceof AndExpression) {
+                addConjuncts(((AndExpression) unwrapped).getLeftExpression());
+                addConjuncts(((AndExpression) unwrapped).getRightExpression());
+            } else {
+                conjuncts.add(unwrapped);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.service.sql.QueryPlan.PlanNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行计划检查：全表扫描、额外排序、临时表、连接结果行数膨胀
+ *
+ * 与 SqlRule 报告同一种 SqlIssue，同一类问题合并为一条并累计次数。
+ * 行数未知（H2）时全表扫描总是报告，行数膨胀无法判断。
+ */
+public final class PlanInspector {
+
+    private PlanInspector() {
+    }
+
+    /**
+     * @param fullScanMinRows 估计扫描行数不少于该值的全表扫描才报告
+     * @param blowupFactor    连接结果行数超过最大输入行数的倍数
+     */
+    public static List<SqlIssue> inspect(QueryPlan plan, long fullScanMinRows, double blowupFactor) {
+        Map<String, SqlIssue> issues = new LinkedHashMap<>();
+        for (PlanNode node : plan.getNodes()) {
+            if (node.isFullScan() && (node.getScanRows() < 0 || node.getScanRows() >= fullScanMinRows)) {
+                report(issues, new SqlIssue("plan-full-scan", "执行计划：全表扫描",
+                    "表 " + node.getTable() + " 被全表扫描" + rows(node.getScanRows()),
+                    "high", "为过滤或连接条件中的字段建立索引，或确认条件没有使索引失效", 15));
+            }
+            if (node.isSort()) {
+                report(issues, new SqlIssue("plan-filesort", "执行计划：额外排序",
+                    "排序无法利用索引顺序，需要在内存或磁盘上排序" + rows(node.getRows()),
+                    "medium", "为 ORDER BY 字段（在等值条件字段之后）建立联合索引，或减少需要排序的行数", 10));
+            }
+            if (node.isTemporary()) {
+                report(issues, new SqlIssue("plan-temporary", "执行计划：使用临时表",
+                    "GROUP BY / DISTINCT / UNION 或子查询需要物化中间结果",
+                    "medium", "让分组字段可以按索引顺序读取，UNION 不需要去重时改用 UNION ALL", 10));
+            }
+            if (node.isJoin() && isBlowup(node, fullScanMinRows, blowupFactor)) {
+                report(issues, new SqlIssue("plan-row-explosion", "执行计划：连接结果行数膨胀",
+                    "连接估计产生 " + Math.round(node.getRows()) + " 行，远多于参与连接的各输入",
+                    "high", "检查连接条件是否缺失或不是一对一 / 一对多关系，必要时先聚合再连接", 15));
+            }
+        }
+        return new ArrayList<>(issues.values());
+    }
+
+    private static boolean isBlowup(PlanNode join, long minRows, double factor) {
+        double maxInput = -1;
+        for (PlanNode child : join.getChildren()) {
+            maxInput = Math.max(maxInput, child.getRows());
+        }
+        return join.getRows() >= minRows && maxInput > 0 && join.getRows() > maxInput * factor;
+    }
+
+    private static void report(Map<String, SqlIssue> issues, SqlIssue issue) {
+        SqlIssue existing = issues.get(issue.getRuleId());
+        if (existing != null) {
+            existing.addOccurrence();
+        } else {
+            issues.put(issue.getRuleId(), issue);
+        }
+    }
+
+    private static String rows(double rows) {
+        return rows >= 0 ? "（估计 " + Math.round(rows) + " 行）" : "";
+    }
+}
@@ -0,0 +1,287 @@
+package com.data.assistant.service.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行计划（各数据库 EXPLAIN 输出的统一模型）
+ *
+ * 代价为数据库自身的代价单位，不同数据库之间不可比较；H2 的计划不含代价和行数估计（为 -1）。
+ */
+public class QueryPlan {
+
+    private final String dialect;
+    private final PlanNode root;
+    private final String raw;
+    private final long createdAt = System.currentTimeMillis();
+
+    QueryPlan(String dialect, PlanNode root, String raw) {
+        this.dialect = dialect;
+        this.root = root;
+        this.raw = raw;
+    }
+
+    /**
+     * mysql / postgresql / h2
+     */
+    public String getDialect() {
+        return dialect;
+    }
+
+    public PlanNode getRoot() {
+        return root;
+    }
+
+    /**
+     * 数据库返回的原始计划文本
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * 整个查询的估计代价，未知时为 -1
+     */
+    public double getTotalCost() {
+        return root.getCost();
+    }
+
+    /**
+     * 各扫描节点估计读取行数的最大值，未知时为 -1
+     */
+    public double getMaxScanRows() {
+        double max = -1;
+        for (PlanNode node : getNodes()) {
+            if (node.getTable() != null) {
+                max = Math.max(max, node.getScanRows());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 所有节点（先序）
+     */
+    public List<PlanNode> getNodes() {
+        List<PlanNode> nodes = new ArrayList<>();
+        collect(root, nodes);
+        return nodes;
+    }
+
+    private static void collect(PlanNode node, List<PlanNode> nodes) {
+        nodes.add(node);
+        for (PlanNode child : node.getChildren()) {
+            collect(child, nodes);
+        }
+    }
+
+    /**
+     * 计划节点
+     */
+    public static class PlanNode {
+        private final String operation;
+        private String table;
+        private String alias;
+        private String index;
+        private List<String> possibleIndexes = Collections.emptyList();
+        private double rows = -1;
+        private double scanRows = -1;
+        private double cost = -1;
+        private boolean fullScan;
+        private boolean sort;
+        private boolean temporary;
+        private boolean join;
+        private String condition;
+        private final List<PlanNode> children = new ArrayList<>();
+
+        PlanNode(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * 节点类型，保留数据库自己的叫法（如 Seq Scan、ALL、tableScan）
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * 访问的表（扫描节点），MySQL 中为别名
+         */
+        public String getTable() {
+            return table;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        /**
+         * 使用的索引
+         */
+        public String getIndex() {
+            return index;
+        }
+
+        /**
+         * 可用但不一定被使用的索引（MySQL possible_keys）
+         */
+        public List<String> getPossibleIndexes() {
+            return possibleIndexes;
+        }
+
+        /**
+         * 估计输出行数，未知时为 -1
+         */
+        public double getRows() {
+            return rows;
+        }
+
+        /**
+         * 扫描节点每次扫描估计读取的行数，未知时为 -1
+         */
+        public double getScanRows() {
+            return scanRows;
+        }
+
+        /**
+         * 到该节点为止的估计代价，未知时为 -1
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        public boolean isFullScan() {
+            return fullScan;
+        }
+
+        /**
+         * 需要额外排序（MySQL filesort、PostgreSQL Sort）
+         */
+        public boolean isSort() {
+            return sort;
+        }
+
+        /**
+         * 使用临时表或物化中间结果
+         */
+        public boolean isTemporary() {
+            return temporary;
+        }
+
+        public boolean isJoin() {
+            return join;
+        }
+
+        /**
+         * 过滤或连接条件
+         */
+        public String getCondition() {
+            return condition;
+        }
+
+        public List<PlanNode> getChildren() {
+            return children;
+        }
+
+        /**
+         * 节点树（省略未知的字段）
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("operation", operation);
+            putIfKnown(map, "table", table);
+            putIfKnown(map, "alias", alias);
+            putIfKnown(map, "index", index);
+            if (!possibleIndexes.isEmpty()) {
+                map.put("possibleIndexes", possibleIndexes);
+            }
+            if (rows >= 0) {
+                map.put("rows", Math.round(rows));
+            }
+            if (scanRows >= 0) {
+                map.put("scanRows", Math.round(scanRows));
+            }
+            if (cost >= 0) {
+                map.put("cost", cost);
+            }
+            map.put("fullScan", fullScan);
+            map.put("sort", sort);
+            map.put("temporary", temporary);
+            putIfKnown(map, "condition", condition);
+            if (!children.isEmpty()) {
+                List<Map<String, Object>> childMaps = new ArrayList<>();
+                for (PlanNode child : children) {
+                    childMaps.add(child.toMap());
+                }
+                map.put("children", childMaps);
+            }
+            return map;
+        }
+
+        private static void putIfKnown(Map<String, Object> map, String key, String value) {
+            if (value != null) {
+                map.put(key, value);
+            }
+        }
+
+        void setTable(String table) {
+            this.table = table;
+        }
+
+        void setAlias(String alias) {
+            this.alias = alias;
+        }
+
+        void setIndex(String index) {
+            this.index = index;
+        }
+
+        void setPossibleIndexes(List<String> possibleIndexes) {
+            this.possibleIndexes = possibleIndexes;
+        }
+
+        void setRows(double rows) {
+            this.rows = rows;
+        }
+
+        void setScanRows(double scanRows) {
+            this.scanRows = scanRows;
+        }
+
+        void setCost(double cost) {
+            this.cost = cost;
+        }
+
+        void setFullScan(boolean fullScan) {
+            this.fullScan = fullScan;
+        }
+
+        void setSort(boolean sort) {
+            this.sort = sort;
+        }
+
+        void setTemporary(boolean temporary) {
+            this.temporary = temporary;
+        }
+
+        void setJoin(boolean join) {
+            this.join = join;
+        }
+
+        void setCondition(String condition) {
+            this.condition = condition;
+        }
+
+        void addChild(PlanNode child) {
+            children.add(child);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.model.SchemaCatalog;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SQL 规则引擎：一次语法树遍历执行所有规则
+ *
+ * 规则列表创建后不变，可被多个线程共享；单条规则抛出异常只记录日志，不影响其他规则。
+ */
+public class SqlAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlAnalyzer.class);
+
+    private final List<SqlRule> rules;
+
+    public SqlAnalyzer(List<SqlRule> rules) {
+        List<SqlRule> guarded = new ArrayList<>();
+        for (SqlRule rule : rules) {
+            guarded.add(new GuardedRule(rule));
+        }
+        this.rules = Collections.unmodifiableList(guarded);
+    }
+
+    /**
+     * @param catalog 表结构目录，可为 null
+     */
+    public List<SqlIssue> analyze(Statement statement, SchemaCatalog catalog) {
+        SqlRuleContext context = new SqlRuleContext(statement, catalog);
+        new SqlTreeWalker(rules, context).walk(statement);
+        return context.getIssues();
+    }
+
+    public List<String> getRuleIds() {
+        List<String> ids = new ArrayList<>();
+        for (SqlRule rule : rules) {
+            ids.add(rule.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * 隔离单条规则的异常
+     */
+    private static class GuardedRule implements SqlRule {
+        private final SqlRule rule;
+
+        GuardedRule(SqlRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public String getId() {
+            return rule.getId();
+        }
+
+        @Override
+        public void onStatement(Statement statement, SqlRuleContext context) {
+            try {
+                rule.onStatement(statement, context);
+            } catch (RuntimeException e) {
+                logger.warn("SQL rule {} failed: {}", rule.getId(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void onSelect(PlainSelect select, SqlRuleContext context) {
+            try {
+                rule.onSelect(select, context);
+            } catch (RuntimeException e) {
+                logger.warn("SQL rule {} failed: {}", rule.getId(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void onExpression(Expression expression, SqlRuleContext context) {
+            try {
+                rule.onExpression(expression, context);
+            } catch (RuntimeException e) {
+                logger.warn("SQL rule {} failed: {}", rule.getId(), e.getMessage());
+            }
+        }
+    }
+}
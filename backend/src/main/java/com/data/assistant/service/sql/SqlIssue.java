@@ -0,0 +1,77 @@
+package com.data.assistant.service.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 规则发现的问题
+ */
+public class SqlIssue {
+
+    private final String ruleId;
+    private final String title;
+    private final String description;
+    private final String severity;
+    private final String solution;
+    private final int penalty;
+    private int occurrences = 1;
+
+    /**
+     * @param severity critical / high / medium / low
+     * @param penalty 评分扣减，同一规则多次命中只扣一次
+     */
+    public SqlIssue(String ruleId, String title, String description, String severity, String solution, int penalty) {
+        this.ruleId = ruleId;
+        this.title = title;
+        this.description = description;
+        this.severity = severity;
+        this.solution = solution;
+        this.penalty = penalty;
+    }
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getSolution() {
+        return solution;
+    }
+
+    public int getPenalty() {
+        return penalty;
+    }
+
+    /**
+     * 同一规则在语句中命中的次数
+     */
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    void addOccurrence() {
+        occurrences++;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> suggestion = new LinkedHashMap<>();
+        suggestion.put("rule", ruleId);
+        suggestion.put("title", title);
+        suggestion.put("description", description);
+        suggestion.put("severity", severity);
+        suggestion.put("solution", solution);
+        suggestion.put("occurrences", occurrences);
+        return suggestion;
+    }
+}
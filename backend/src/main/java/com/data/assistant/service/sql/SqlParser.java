@@ -0,0 +1,122 @@
+package com.data.assistant.service.sql;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SQL 解析（JSqlParser）
+ *
+ * 解析在共享的解析线程上执行并有超时限制，避免病态输入卡住调用线程
+ * （CCJSqlParserUtil.parse(String) 每次调用都会新建线程池，这里复用同一个）。
+ * 解析得到的语法树是可变的，每次解析返回新的对象。
+ */
+@Component
+public class SqlParser {
+
+    @Value("${sql.parser.threads:4}")
+    private int threads;
+
+    @Value("${sql.parser.timeout-millis:2000}")
+    private long timeoutMillis;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "sql-parser-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 解析单条 SQL 语句
+     *
+     * @throws IllegalArgumentException SQL 为空、无法解析或解析超时
+     */
+    public Statement parse(String sql) {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("SQL不能为空");
+        }
+        String trimmed = sql.trim();
+        if (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        try {
+            // 不用 CCJSqlParserUtil.parse：它每次先按简单模式解析、失败再重新解析，并逐条输出 INFO 日志
+            CCJSqlParser parser = CCJSqlParserUtil.newParser(trimmed).withTimeOut(timeoutMillis);
+            return CCJSqlParserUtil.parseStatement(parser, executor);
+        } catch (JSQLParserException e) {
+            throw new IllegalArgumentException("SQL解析失败: " + firstLine(e), e);
+        }
+    }
+
+    /**
+     * 解析用户提供的过滤条件（WHERE 之后的部分），必须是单个完整的条件表达式，不能包含子查询。
+     * 拼接到 SQL 中时使用返回的表达式重新生成的文本，而不是原始输入
+     *
+     * @throws IllegalArgumentException 条件为空、无法完整解析、包含子查询或解析超时
+     */
+    public Expression parseCondition(String condition) {
+        if (condition == null || condition.trim().isEmpty()) {
+            throw new IllegalArgumentException("过滤条件不能为空");
+        }
+        Future<Expression> future = executor.submit(() -> CCJSqlParserUtil.parseCondExpression(condition.trim(), false));
+        Expression expression;
+        try {
+            expression = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalArgumentException("过滤条件解析超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("过滤条件解析被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            String message = cause instanceof JSQLParserException ? firstLine((JSQLParserException) cause) : String.valueOf(cause);
+            throw new IllegalArgumentException("过滤条件解析失败: " + message, cause);
+        }
+        if (!new TablesNamesFinder().getTables(expression).isEmpty()) {
+            throw new IllegalArgumentException("过滤条件不能包含子查询");
+        }
+        return expression;
+    }
+
+    private static String firstLine(JSQLParserException e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        int newline = message.indexOf('\n');
+        return newline > 0 ? message.substring(0, newline) : message;
+    }
+}
@@ -0,0 +1,324 @@
+package com.data.assistant.service.sql;
+
+import net.sf.jsqlparser.expression.AllValue;
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimeValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.ParenthesedFromItem;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.Top;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.statement.update.Update;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 语义等价的 SQL 改写（直接修改语法树）
+ *
+ * - 同一字段的等值 OR 合并为 IN：a = 1 OR a = 2 -> a IN (1, 2)
+ * - 最外层查询没有行数限制时添加 LIMIT（结果行数上限，属于有意的行为变化）
+ * - capRows：把最外层查询的返回行数限制在上限以内（执行前的安全检查使用）
+ */
+public final class SqlRewriter {
+
+    private SqlRewriter() {
+    }
+
+    /**
+     * @param defaultLimit 添加的 LIMIT 行数，小于等于 0 时不添加
+     * @return 应用的改写说明，没有改写时为空
+     */
+    public static List<String> rewrite(Statement statement, long defaultLimit) {
+        List<String> applied = new ArrayList<>();
+        if (statement instanceof Select) {
+            rewriteSelect((Select) statement, applied);
+            if (defaultLimit > 0 && addLimit((Select) statement, defaultLimit)) {
+                applied.add("添加 LIMIT " + defaultLimit);
+            }
+        } else if (statement instanceof Update) {
+            Update update = (Update) statement;
+            update.setWhere(rewriteCondition(update.getWhere(), applied));
+        } else if (statement instanceof Delete) {
+            Delete delete = (Delete) statement;
+            delete.setWhere(rewriteCondition(delete.getWhere(), applied));
+        }
+        return applied;
+    }
+
+    private static void rewriteSelect(Select select, List<String> applied) {
+        if (select.getWithItemsList() != null) {
+            for (WithItem item : select.getWithItemsList()) {
+                rewriteSelect(item.getSelect(), applied);
+            }
+        }
+        if (select instanceof ParenthesedSelect) {
+            rewriteSelect(((ParenthesedSelect) select).getSelect(), applied);
+        } else if (select instanceof SetOperationList) {
+            for (Select branch : ((SetOperationList) select).getSelects()) {
+                rewriteSelect(branch, applied);
+            }
+        } else if (select instanceof PlainSelect) {
+            PlainSelect plain = (PlainSelect) select;
+            for (SelectItem<?> item : plain.getSelectItems()) {
+                rewriteSubqueries(item.getExpression(), applied);
+            }
+            rewriteFromItem(plain.getFromItem(), applied);
+            rewriteJoins(plain.getJoins(), applied);
+            plain.setWhere(rewriteCondition(plain.getWhere(), applied));
+            plain.setHaving(rewriteCondition(plain.getHaving(), applied));
+        }
+    }
+
+    private static void rewriteJoins(List<Join> joins, List<String> applied) {
+        if (joins == null) {
+            return;
+        }
+        for (Join join : joins) {
+            rewriteFromItem(join.getRightItem(), applied);
+            if (join.getOnExpressions() != null && !join.getOnExpressions().isEmpty()) {
+                List<Expression> on = new ArrayList<>();
+                for (Expression expression : join.getOnExpressions()) {
+                    on.add(rewriteCondition(expression, applied));
+                }
+                join.setOnExpressions(on);
+            }
+        }
+    }
+
+    private static void rewriteFromItem(FromItem item, List<String> applied) {
+        if (item instanceof ParenthesedSelect) {
+            rewriteSelect(((ParenthesedSelect) item).getSelect(), applied);
+        } else if (item instanceof ParenthesedFromItem) {
+            rewriteFromItem(((ParenthesedFromItem) item).getFromItem(), applied);
+            rewriteJoins(((ParenthesedFromItem) item).getJoins(), applied);
+        }
+    }
+
+    /**
+     * 改写条件，返回替换后的表达式（可能是原对象）
+     */
+    private static Expression rewriteCondition(Expression condition, List<String> applied) {
+        if (condition == null) {
+            return null;
+        }
+        if (condition instanceof AndExpression) {
+            AndExpression and = (AndExpression) condition;
+            and.setLeftExpression(rewriteCondition(and.getLeftExpression(), applied));
+            and.setRightExpression(rewriteCondition(and.getRightExpression(), applied));
+            return and;
+        }
+        if (condition instanceof Parenthesis) {
+            Parenthesis parenthesis = (Parenthesis) condition;
+            parenthesis.setExpression(rewriteCondition(parenthesis.getExpression(), applied));
+            return parenthesis;
+        }
+        if (condition instanceof NotExpression) {
+            NotExpression not = (NotExpression) condition;
+            not.setExpression(rewriteCondition(not.getExpression(), applied));
+            return not;
+        }
+        if (condition instanceof OrExpression) {
+            return rewriteOr((OrExpression) condition, applied);
+        }
+        rewriteSubqueries(condition, applied);
+        return condition;
+    }
+
+    /**
+     * 合并 OR 链中同一字段的等值条件（a = 1、a IN (2, 3)），其他分支保持原顺序
+     */
+    private static Expression rewriteOr(OrExpression or, List<String> applied) {
+        List<Expression> disjuncts = BuiltinSqlRules.disjuncts(or);
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < disjuncts.size(); i++) {
+            Column column = equalityColumn(disjuncts.get(i));
+            if (column != null) {
+                groups.computeIfAbsent(column.getFullyQualifiedName().toLowerCase(Locale.ROOT),
+                    key -> new ArrayList<>()).add(i);
+            }
+        }
+        groups.values().removeIf(members -> members.size() < 2);
+        if (groups.isEmpty()) {
+            or.setLeftExpression(rewriteCondition(or.getLeftExpression(), applied));
+            or.setRightExpression(rewriteCondition(or.getRightExpression(), applied));
+            return or;
+        }
+
+        Map<Integer, Expression> merged = new LinkedHashMap<>();
+        List<Integer> absorbed = new ArrayList<>();
+        for (List<Integer> members : groups.values()) {
+            Column column = equalityColumn(disjuncts.get(members.get(0)));
+            List<Expression> values = new ArrayList<>();
+            for (int index : members) {
+                values.addAll(equalityValues(disjuncts.get(index)));
+            }
+            merged.put(members.get(0), new InExpression(column, new ParenthesedExpressionList<>(values)));
+            absorbed.addAll(members.subList(1, members.size()));
+            applied.add("OR 合并为 IN: " + column.getFullyQualifiedName());
+        }
+
+        Expression result = null;
+        for (int i = 0; i < disjuncts.size(); i++) {
+            if (absorbed.contains(i)) {
+                continue;
+            }
+            Expression disjunct = merged.containsKey(i) ? merged.get(i) : rewriteCondition(disjuncts.get(i), applied);
+            result = result == null ? disjunct : new OrExpression(result, disjunct);
+        }
+        // OR 在 AND / NOT 之下时原语句中必然已有括号，替换括号内的表达式即可保持优先级
+        return result;
+    }
+
+    /**
+     * 字段 = 常量 或 字段 IN (常量...) 中的字段，其他形式返回 null
+     */
+    private static Column equalityColumn(Expression expression) {
+        if (expression instanceof EqualsTo) {
+            EqualsTo equals = (EqualsTo) expression;
+            if (equals.getLeftExpression() instanceof Column && isLiteral(equals.getRightExpression())) {
+                return (Column) equals.getLeftExpression();
+            }
+            if (equals.getRightExpression() instanceof Column && isLiteral(equals.getLeftExpression())) {
+                return (Column) equals.getRightExpression();
+            }
+        } else if (expression instanceof InExpression) {
+            InExpression in = (InExpression) expression;
+            if (!in.isNot() && in.getLeftExpression() instanceof Column
+                && in.getRightExpression() instanceof ExpressionList) {
+                for (Object value : (ExpressionList<?>) in.getRightExpression()) {
+                    if (!isLiteral((Expression) value)) {
+                        return null;
+                    }
+                }
+                return (Column) in.getLeftExpression();
+            }
+        }
+        return null;
+    }
+
+    private static List<Expression> equalityValues(Expression expression) {
+        List<Expression> values = new ArrayList<>();
+        if (expression instanceof EqualsTo) {
+            EqualsTo equals = (EqualsTo) expression;
+            values.add(equals.getLeftExpression() instanceof Column ? equals.getRightExpression() : equals.getLeftExpression());
+        } else {
+            for (Object value : (ExpressionList<?>) ((InExpression) expression).getRightExpression()) {
+                values.add((Expression) value);
+            }
+        }
+        return values;
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof LongValue || expression instanceof DoubleValue
+            || expression instanceof StringValue || expression instanceof DateValue
+            || expression instanceof TimeValue || expression instanceof TimestampValue
+            || expression instanceof SignedExpression && isLiteral(((SignedExpression) expression).getExpression());
+    }
+
+    /**
+     * 改写表达式中的子查询（标量子查询、IN / EXISTS 子查询）
+     */
+    private static void rewriteSubqueries(Expression expression, List<String> applied) {
+        List<ParenthesedSelect> subqueries = new ArrayList<>();
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(ParenthesedSelect select) {
+                subqueries.add(select);
+            }
+        });
+        for (ParenthesedSelect subquery : subqueries) {
+            rewriteSelect(subquery.getSelect(), applied);
+        }
+    }
+
+    /**
+     * 限制最外层查询的返回行数：没有行数限制时添加 LIMIT，LIMIT / FETCH / TOP 为常量且超过上限时改为上限
+     *
+     * 行数限制不是常量（参数、表达式）时不修改，由执行时的 maxRows 兜底。
+     *
+     * @return 应用的改写说明，没有改写时为 null
+     */
+    public static String capRows(Select select, long maxRows) {
+        if (!(select instanceof PlainSelect) && !(select instanceof SetOperationList)) {
+            return null;
+        }
+        if (select instanceof PlainSelect && ((PlainSelect) select).getTop() != null) {
+            Top top = ((PlainSelect) select).getTop();
+            if (!top.isPercentage() && exceeds(top.getExpression(), maxRows)) {
+                top.setExpression(new LongValue(maxRows));
+                return "TOP 限制为 " + maxRows;
+            }
+            return null;
+        }
+        if (select.getFetch() != null) {
+            if (exceeds(select.getFetch().getExpression(), maxRows)) {
+                select.getFetch().setExpression(new LongValue(maxRows));
+                return "FETCH 限制为 " + maxRows;
+            }
+            return null;
+        }
+        Limit limit = select.getLimit();
+        if (limit == null) {
+            select.setLimit(new Limit().withRowCount(new LongValue(maxRows)));
+            return "添加 LIMIT " + maxRows;
+        }
+        Expression rowCount = limit.getRowCount();
+        if (rowCount == null || rowCount instanceof AllValue || rowCount instanceof NullValue
+            || exceeds(rowCount, maxRows)) {
+            limit.setRowCount(new LongValue(maxRows));
+            return "LIMIT 限制为 " + maxRows;
+        }
+        return null;
+    }
+
+    private static boolean exceeds(Expression rowCount, long maxRows) {
+        return rowCount instanceof LongValue && ((LongValue) rowCount).getValue() > maxRows;
+    }
+
+    /**
+     * 最外层查询没有 LIMIT / OFFSET / FETCH / TOP 时添加 LIMIT
+     */
+    private static boolean addLimit(Select select, long rowCount) {
+        if (!(select instanceof PlainSelect) && !(select instanceof SetOperationList)) {
+            return false;
+        }
+        if (select.getLimit() != null || select.getOffset() != null || select.getFetch() != null) {
+            return false;
+        }
+        if (select instanceof PlainSelect && ((PlainSelect) select).getTop() != null) {
+            return false;
+        }
+        select.setLimit(new Limit().withRowCount(new LongValue(rowCount)));
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.data.assistant.service.sql;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+/**
+ * SQL 分析规则
+ *
+ * 规则不持有状态，由 SqlAnalyzer 在一次语法树遍历中回调，通过 context.report 报告问题。
+ * 实现为 Spring Bean 的规则会自动加入 SqlOptimizationService 的规则列表。
+ */
+public interface SqlRule {
+
+    /**
+     * 规则 ID（同一 ID 的问题合并为一条建议）
+     */
+    String getId();
+
+    /**
+     * 整条语句，遍历开始前调用一次
+     */
+    default void onStatement(Statement statement, SqlRuleContext context) {
+    }
+
+    /**
+     * 每个查询块（包括子查询、UNION 的各分支），在遍历其子句之前调用
+     */
+    default void onSelect(PlainSelect select, SqlRuleContext context) {
+    }
+
+    /**
+     * 表达式节点，见 SqlRuleContext.getParentExpression 对回调节点类型的说明
+     */
+    default void onExpression(Expression expression, SqlRuleContext context) {
+    }
+}
@@ -0,0 +1,264 @@
+package com.data.assistant.service.sql;
+
+import com.data.assistant.model.SchemaCatalog;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 规则回调时的遍历位置和分析结果
+ *
+ * 位置信息（当前查询块、子句、子查询深度、父表达式）由 SqlTreeWalker 维护，规则只读。
+ */
+public class SqlRuleContext {
+
+    /**
+     * 表达式所在的子句
+     */
+    public enum Clause {
+        SELECT, FROM, JOIN, WHERE, GROUP_BY, HAVING, ORDER_BY, SET, OTHER
+    }
+
+    private final Statement statement;
+    private final SchemaCatalog catalog;
+    private final Map<String, SqlIssue> issues = new LinkedHashMap<>();
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final Deque<Expression> expressions = new ArrayDeque<>();
+
+    SqlRuleContext(Statement statement, SchemaCatalog catalog) {
+        this.statement = statement;
+        this.catalog = catalog;
+    }
+
+    public Statement getStatement() {
+        return statement;
+    }
+
+    /**
+     * 数据源的表结构目录，未指定数据源时为 null（依赖字段类型的规则此时不检查）
+     */
+    public SchemaCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * 当前查询块；UPDATE / DELETE 的条件中为 null
+     */
+    public PlainSelect getSelect() {
+        Frame frame = frames.peek();
+        return frame != null ? frame.select : null;
+    }
+
+    public Clause getClause() {
+        Frame frame = frames.peek();
+        return frame != null ? frame.clause : Clause.OTHER;
+    }
+
+    /**
+     * 子查询嵌套深度，最外层为 0
+     */
+    public int getDepth() {
+        return Math.max(0, frames.size() - 1);
+    }
+
+    /**
+     * 当前查询块是否是 EXISTS / NOT EXISTS 的子查询
+     */
+    public boolean isExistsSubquery() {
+        Frame frame = frames.peek();
+        return frame != null && frame.existsSubquery;
+    }
+
+    /**
+     * 最近的会回调 onExpression 的祖先表达式（同一查询块内，跳过括号），没有时为 null
+     *
+     * 回调的节点类型：AND、OR、NOT、括号、比较运算（= <> > >= < <=）、BETWEEN、LIKE、IN、EXISTS、函数、子查询。
+     */
+    public Expression getParentExpression() {
+        // 栈顶是当前回调的节点本身
+        Iterator<Expression> ancestors = expressions.iterator();
+        if (ancestors.hasNext()) {
+            ancestors.next();
+        }
+        while (ancestors.hasNext()) {
+            Expression ancestor = ancestors.next();
+            if (!(ancestor instanceof Parenthesis)) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 当前查询块 FROM 中的表：别名和表名（小写）到表名
+     */
+    public Map<String, String> getTables() {
+        Frame frame = frames.peek();
+        return frame != null ? Collections.unmodifiableMap(frame.tables) : Collections.emptyMap();
+    }
+
+    /**
+     * 字段所属的表名（小写）
+     *
+     * 带限定名时按别名查找；不带时当前查询块只有一张表即为该表，否则按表结构目录找唯一包含该字段的表，
+     * 无法确定时返回 null。
+     */
+    public String resolveTable(Column column) {
+        Frame frame = frames.peek();
+        if (frame == null) {
+            return null;
+        }
+        if (column.getTable() != null && column.getTable().getName() != null) {
+            return frame.tables.get(key(column.getTable().getName()));
+        }
+        Set<String> tables = new HashSet<>(frame.tables.values());
+        if (tables.size() == 1) {
+            return tables.iterator().next();
+        }
+        if (catalog == null) {
+            return null;
+        }
+        String found = null;
+        for (String table : tables) {
+            if (findColumn(table, column.getColumnName()) != null) {
+                if (found != null) {
+                    return null;
+                }
+                found = table;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 按当前查询块 FROM 中的表解析字段；没有表结构目录、表不在目录中或字段有歧义时返回 null
+     */
+    public SchemaCatalog.ColumnInfo resolveColumn(Column column) {
+        Frame frame = frames.peek();
+        if (catalog == null || frame == null) {
+            return null;
+        }
+        String name = column.getColumnName();
+        if (column.getTable() != null && column.getTable().getName() != null) {
+            String table = frame.tables.get(key(column.getTable().getName()));
+            return table != null ? findColumn(table, name) : null;
+        }
+        SchemaCatalog.ColumnInfo found = null;
+        for (String table : new ArrayList<>(frame.tables.values())) {
+            SchemaCatalog.ColumnInfo candidate = findColumn(table, name);
+            if (candidate != null) {
+                if (found != null && found != candidate) {
+                    return null;
+                }
+                found = candidate;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 报告问题；同一规则的多个问题合并为一条并累计次数
+     */
+    public void report(SqlIssue issue) {
+        SqlIssue existing = issues.get(issue.getRuleId());
+        if (existing != null) {
+            existing.addOccurrence();
+        } else {
+            issues.put(issue.getRuleId(), issue);
+        }
+    }
+
+    List<SqlIssue> getIssues() {
+        return new ArrayList<>(issues.values());
+    }
+
+    /**
+     * @param tables 当前查询块 FROM 中的表：别名或表名（小写）到表名
+     */
+    void enterSelect(PlainSelect select, Map<String, String> tables, boolean existsSubquery) {
+        frames.push(new Frame(select, tables, existsSubquery));
+    }
+
+    void exitSelect() {
+        frames.pop();
+    }
+
+    void setClause(Clause clause) {
+        Frame frame = frames.peek();
+        if (frame != null) {
+            frame.clause = clause;
+        }
+    }
+
+    void pushExpression(Expression expression) {
+        expressions.push(expression);
+    }
+
+    void popExpression() {
+        expressions.pop();
+    }
+
+    /**
+     * 进入子查询时暂存外层的表达式栈，子查询内的父表达式不跨越查询块
+     */
+    Deque<Expression> suspendExpressions() {
+        Deque<Expression> saved = new ArrayDeque<>(expressions);
+        expressions.clear();
+        return saved;
+    }
+
+    void resumeExpressions(Deque<Expression> saved) {
+        expressions.clear();
+        expressions.addAll(saved);
+    }
+
+    static String key(String identifier) {
+        String name = identifier;
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1);
+        }
+        return name.replace("`", "").replace("\"", "").replace("[", "").replace("]", "").toLowerCase(Locale.ROOT);
+    }
+
+    private SchemaCatalog.ColumnInfo findColumn(String table, String column) {
+        SchemaCatalog.TableInfo info = catalog.getTable(table);
+        if (info == null) {
+            return null;
+        }
+        String name = key(column);
+        for (SchemaCatalog.ColumnInfo columnInfo : info.getColumns()) {
+            if (columnInfo.getName().equalsIgnoreCase(name)) {
+                return columnInfo;
+            }
+        }
+        return null;
+    }
+
+    private static class Frame {
+        private final PlainSelect select;
+        private final Map<String, String> tables;
+        private final boolean existsSubquery;
+        private Clause clause = Clause.OTHER;
+
+        Frame(PlainSelect select, Map<String, String> tables, boolean existsSubquery) {
+            this.select = select;
+            this.tables = tables;
+            this.existsSubquery = existsSubquery;
+        }
+    }
+}
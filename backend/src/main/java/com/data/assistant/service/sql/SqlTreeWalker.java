@@ -0,0 +1,339 @@
+package com.data.assistant.service.sql;
+
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExistsExpression;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.LateralSubSelect;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.ParenthesedFromItem;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SelectVisitor;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.TableStatement;
+import net.sf.jsqlparser.statement.select.Values;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.statement.update.UpdateSet;
+
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 语法树遍历
+ *
+ * 一次深度优先遍历整条语句（WITH、UNION 各分支、FROM / 表达式中的子查询），
+ * 遍历过程中维护 SqlRuleContext 的位置信息，并在各节点上回调所有规则。
+ * 每次分析新建一个实例，不可复用。
+ */
+class SqlTreeWalker extends ExpressionVisitorAdapter implements SelectVisitor {
+
+    private final List<SqlRule> rules;
+    private final SqlRuleContext context;
+    // 下一个进入的查询块是否是 EXISTS 的子查询
+    private boolean existsPending = false;
+
+    SqlTreeWalker(List<SqlRule> rules, SqlRuleContext context) {
+        this.rules = rules;
+        this.context = context;
+        setSelectVisitor(this);
+    }
+
+    void walk(Statement statement) {
+        for (SqlRule rule : rules) {
+            rule.onStatement(statement, context);
+        }
+        if (statement instanceof Select) {
+            walkSelect((Select) statement, false);
+        } else if (statement instanceof Update) {
+            Update update = (Update) statement;
+            context.enterSelect(null, tablesOf(update.getTable(), update.getFromItem(), update.getJoins()), false);
+            try {
+                context.setClause(SqlRuleContext.Clause.SET);
+                for (UpdateSet set : update.getUpdateSets()) {
+                    set.getValues().accept(this);
+                }
+                walkCondition(SqlRuleContext.Clause.WHERE, update.getWhere());
+            } finally {
+                context.exitSelect();
+            }
+        } else if (statement instanceof Delete) {
+            Delete delete = (Delete) statement;
+            context.enterSelect(null, tablesOf(delete.getTable(), null, delete.getJoins()), false);
+            try {
+                walkCondition(SqlRuleContext.Clause.WHERE, delete.getWhere());
+            } finally {
+                context.exitSelect();
+            }
+        } else if (statement instanceof Insert && ((Insert) statement).getSelect() != null) {
+            walkSelect(((Insert) statement).getSelect(), false);
+        }
+    }
+
+    private void walkSelect(Select select, boolean exists) {
+        if (select.getWithItemsList() != null) {
+            for (WithItem item : select.getWithItemsList()) {
+                walkSelect(item.getSelect(), false);
+            }
+        }
+        if (select instanceof ParenthesedSelect) {
+            walkSelect(((ParenthesedSelect) select).getSelect(), exists);
+            return;
+        }
+        existsPending = exists;
+        select.accept((SelectVisitor) this);
+    }
+
+    @Override
+    public void visit(PlainSelect select) {
+        boolean exists = existsPending;
+        existsPending = false;
+        Deque<Expression> outer = context.suspendExpressions();
+        context.enterSelect(select, tablesOf(null, select.getFromItem(), select.getJoins()), exists);
+        try {
+            for (SqlRule rule : rules) {
+                rule.onSelect(select, context);
+            }
+            context.setClause(SqlRuleContext.Clause.SELECT);
+            for (SelectItem<?> item : select.getSelectItems()) {
+                item.getExpression().accept(this);
+            }
+            context.setClause(SqlRuleContext.Clause.FROM);
+            walkFromItem(select.getFromItem());
+            walkJoins(select.getJoins());
+            walkCondition(SqlRuleContext.Clause.WHERE, select.getWhere());
+            if (select.getGroupBy() != null && select.getGroupBy().getGroupByExpressionList() != null) {
+                context.setClause(SqlRuleContext.Clause.GROUP_BY);
+                select.getGroupBy().getGroupByExpressionList().accept(this);
+            }
+            walkCondition(SqlRuleContext.Clause.HAVING, select.getHaving());
+            if (select.getOrderByElements() != null) {
+                context.setClause(SqlRuleContext.Clause.ORDER_BY);
+                for (OrderByElement element : select.getOrderByElements()) {
+                    element.getExpression().accept(this);
+                }
+            }
+        } finally {
+            context.exitSelect();
+            context.resumeExpressions(outer);
+        }
+    }
+
+    @Override
+    public void visit(SetOperationList list) {
+        boolean exists = existsPending;
+        for (Select branch : list.getSelects()) {
+            walkSelect(branch, exists);
+        }
+    }
+
+    @Override
+    public void visit(WithItem item) {
+        walkSelect(item.getSelect(), false);
+    }
+
+    @Override
+    public void visit(Values values) {
+    }
+
+    @Override
+    public void visit(LateralSubSelect lateral) {
+        walkSelect(lateral.getSelect(), false);
+    }
+
+    @Override
+    public void visit(TableStatement table) {
+    }
+
+    // 表达式中的子查询（标量子查询、IN / EXISTS 子查询）；FROM 中的子查询由 walkFromItem 处理
+    @Override
+    public void visit(ParenthesedSelect select) {
+        boolean exists = existsPending;
+        existsPending = false;
+        fire(select, () -> walkSelect(select.getSelect(), exists));
+    }
+
+    @Override
+    public void visit(ExistsExpression expression) {
+        fire(expression, () -> {
+            existsPending = true;
+            expression.getRightExpression().accept(this);
+            existsPending = false;
+        });
+    }
+
+    @Override
+    public void visit(AndExpression expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(OrExpression expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(NotExpression expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(Parenthesis expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(EqualsTo expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(NotEqualsTo expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(GreaterThan expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(GreaterThanEquals expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(MinorThan expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(MinorThanEquals expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(Between expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(LikeExpression expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(InExpression expression) {
+        fire(expression, () -> super.visit(expression));
+    }
+
+    @Override
+    public void visit(Function function) {
+        fire(function, () -> super.visit(function));
+    }
+
+    private void fire(Expression expression, Runnable children) {
+        context.pushExpression(expression);
+        try {
+            for (SqlRule rule : rules) {
+                rule.onExpression(expression, context);
+            }
+            children.run();
+        } finally {
+            context.popExpression();
+        }
+    }
+
+    private void walkCondition(SqlRuleContext.Clause clause, Expression condition) {
+        if (condition != null) {
+            context.setClause(clause);
+            condition.accept(this);
+        }
+    }
+
+    private void walkJoins(List<Join> joins) {
+        if (joins == null) {
+            return;
+        }
+        for (Join join : joins) {
+            context.setClause(SqlRuleContext.Clause.FROM);
+            walkFromItem(join.getRightItem());
+            if (join.getOnExpressions() != null) {
+                for (Expression on : join.getOnExpressions()) {
+                    walkCondition(SqlRuleContext.Clause.JOIN, on);
+                }
+            }
+        }
+    }
+
+    private void walkFromItem(FromItem item) {
+        if (item instanceof ParenthesedSelect) {
+            walkSelect(((ParenthesedSelect) item).getSelect(), false);
+        } else if (item instanceof ParenthesedFromItem) {
+            ParenthesedFromItem nested = (ParenthesedFromItem) item;
+            walkFromItem(nested.getFromItem());
+            walkJoins(nested.getJoins());
+        }
+    }
+
+    /**
+     * 查询块直接引用的表：别名和表名（小写）都映射到表名
+     */
+    private static Map<String, String> tablesOf(Table target, FromItem from, List<Join> joins) {
+        Map<String, String> tables = new HashMap<>();
+        addTable(tables, target);
+        addTable(tables, from);
+        if (joins != null) {
+            for (Join join : joins) {
+                addTable(tables, join.getRightItem());
+            }
+        }
+        return tables;
+    }
+
+    private static void addTable(Map<String, String> tables, FromItem item) {
+        if (item instanceof Table) {
+            Table table = (Table) item;
+            if (table.getName() == null) {
+                return;
+            }
+            String name = SqlRuleContext.key(table.getName());
+            tables.put(name, name);
+            if (table.getAlias() != null) {
+                tables.put(SqlRuleContext.key(table.getAlias().getName()), name);
+            }
+        } else if (item instanceof ParenthesedFromItem) {
+            ParenthesedFromItem nested = (ParenthesedFromItem) item;
+            addTable(tables, nested.getFromItem());
+            if (nested.getJoins() != null) {
+                for (Join join : nested.getJoins()) {
+                    addTable(tables, join.getRightItem());
+                }
+            }
+        }
+    }
+}
@@ -52,9 +52,46 @@ CREATE TABLE IF NOT EXISTS query_history (
     is_favorite BOOLEAN DEFAULT FALSE COMMENT '是否收藏',
     tags VARCHAR(200) COMMENT '标签',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
-    INDEX idx_created_at (created_at)
+    data_source_id BIGINT COMMENT '数据源ID',
+    cache_key VARCHAR(64) COMMENT 'NL2SQL缓存键',
+    result_json TEXT COMMENT '缓存的NL2SQL结果',
+    INDEX idx_created_at (created_at),
+    INDEX idx_cache_key (cache_key)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='查询历史表';
 
+-- 升级已有的 query_history 表：补充 NL2SQL 持久缓存使用的列和索引（MySQL 不支持 ADD COLUMN IF NOT EXISTS，按 information_schema 判断，可重复执行）
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE query_history ADD COLUMN data_source_id BIGINT COMMENT ''数据源ID''', 'SELECT 1')
+    FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'query_history' AND COLUMN_NAME = 'data_source_id');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE query_history ADD COLUMN cache_key VARCHAR(64) COMMENT ''NL2SQL缓存键''', 'SELECT 1')
+    FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'query_history' AND COLUMN_NAME = 'cache_key');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE query_history ADD COLUMN result_json TEXT COMMENT ''缓存的NL2SQL结果''', 'SELECT 1')
+    FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'query_history' AND COLUMN_NAME = 'result_json');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE query_history ADD INDEX idx_cache_key (cache_key)', 'SELECT 1')
+    FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'query_history' AND INDEX_NAME = 'idx_cache_key');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
 -- 对话表
 CREATE TABLE IF NOT EXISTS conversations (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -144,6 +181,38 @@ CREATE TABLE IF NOT EXISTS data_quality_reports (
     INDEX idx_created_at (created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='数据质量报告表';
 
+-- 数据质量画像草图表
+CREATE TABLE IF NOT EXISTS table_profile_sketches (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    data_source_id BIGINT NOT NULL COMMENT '数据源ID',
+    table_name VARCHAR(255) NOT NULL COMMENT '表名',
+    column_name VARCHAR(255) NOT NULL COMMENT '列名(* 表示整行)',
+    column_position INT COMMENT '列的顺序',
+    data_type VARCHAR(255) COMMENT '列类型',
+    row_count BIGINT COMMENT '行数',
+    null_count BIGINT COMMENT '空值数',
+    blank_count BIGINT COMMENT '空白值数',
+    distinct_count BIGINT COMMENT '不同值个数估计',
+    hll_sketch LONGBLOB COMMENT 'HyperLogLog草图',
+    min_value TEXT COMMENT '最小值(带类型前缀)',
+    max_value TEXT COMMENT '最大值(带类型前缀)',
+    value_sum DOUBLE COMMENT '数值的和',
+    phone_violations BIGINT COMMENT '手机号格式问题数',
+    email_violations BIGINT COMMENT '邮箱格式问题数',
+    date_violations BIGINT COMMENT '日期范围问题数',
+    kll_sketch LONGBLOB COMMENT 'KLL分位数草图',
+    top_values LONGBLOB COMMENT '高频值草图',
+    outlier_q1 DOUBLE COMMENT '异常值统计使用的Q1',
+    outlier_q3 DOUBLE COMMENT '异常值统计使用的Q3',
+    outlier_count BIGINT COMMENT '异常值个数',
+    outlier_samples VARCHAR(1000) COMMENT '异常值样例',
+    watermark_column VARCHAR(255) COMMENT '水位线列(整行记录)',
+    watermark_value TEXT COMMENT '已画像的水位线最大值(带类型前缀)',
+    full_refreshed_at DATETIME COMMENT '最近一次全表扫描时间',
+    profiled_at DATETIME COMMENT '画像时间',
+    UNIQUE KEY uk_table_column (data_source_id, table_name, column_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='数据质量画像草图表';
+
 -- 报表模板表
 CREATE TABLE IF NOT EXISTS report_templates (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -0,0 +1,87 @@
+package com.data.assistant.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResultTable：重复列名与原 List&lt;Map&gt; 结果一致，不同值过多的字符串列放弃字典编码
+ */
+class ResultTableTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:result_table_test");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE a (id INT, name VARCHAR(20))");
+            stmt.execute("CREATE TABLE b (id INT, a_id INT, code VARCHAR(40))");
+            stmt.execute("INSERT INTO a VALUES (1, 'x'), (2, 'y')");
+            stmt.execute("INSERT INTO b SELECT X + 100, MOD(X, 2) + 1, 'c' || X FROM SYSTEM_RANGE(1, 3000)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    void duplicateLabelsMatchColumnMapRows() throws SQLException {
+        String sql = "SELECT a.id, a.name, b.id, b.code AS NAME FROM a JOIN b ON b.a_id = a.id ORDER BY b.id";
+        ResultTable table;
+        List<Map<String, Object>> expected = new ArrayList<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            table = ResultTable.from(rs);
+        }
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+            for (int row = 0; rs.next(); row++) {
+                expected.add(mapper.mapRow(rs, row));
+            }
+        }
+        assertEquals(List.of("ID", "NAME"), table.getColumnNames());
+        assertEquals(expected.size(), table.size());
+        for (int row = 0; row < table.size(); row++) {
+            assertEquals(expected.get(row), table.get(row));
+            assertEquals(2, table.get(row).entrySet().size());
+        }
+        assertEquals(2, table.get(0).get("id"));
+        assertEquals("y", table.get(0).get("name"));
+    }
+
+    @Test
+    void highCardinalityStringsAreNotDictionaryEncoded() throws SQLException {
+        ResultTable table;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT code, CASE WHEN MOD(id, 3) = 0 THEN NULL ELSE 'k' || MOD(id, 7) END AS k "
+                 + "FROM b ORDER BY id")) {
+            table = ResultTable.from(rs);
+        }
+        ResultTable.StringColumn code = (ResultTable.StringColumn) table.getColumn("code");
+        ResultTable.StringColumn k = (ResultTable.StringColumn) table.getColumn("k");
+        assertFalse(code.isDictionaryEncoded());
+        assertTrue(k.isDictionaryEncoded());
+        assertEquals(7, k.getDictionary().size());
+        for (int row = 0; row < table.getRowCount(); row++) {
+            int id = row + 101;
+            assertEquals("c" + (row + 1), code.getString(row));
+            assertEquals(id % 3 == 0 ? null : "k" + id % 7, k.getString(row));
+        }
+        ResultTable head = table.head(10);
+        assertEquals("c10", ((ResultTable.StringColumn) head.getColumn("code")).getString(9));
+        assertThrows(IllegalStateException.class, () -> code.getCode(0));
+    }
+}
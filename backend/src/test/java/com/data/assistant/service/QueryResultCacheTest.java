@@ -0,0 +1,35 @@
+package com.data.assistant.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QueryResultCache.normalize：引号外的部分转小写、合并空白，引号内的内容原样保留
+ */
+class QueryResultCacheTest {
+
+    @Test
+    void unquotedTextIsLowercasedAndCollapsed() {
+        assertEquals("select id from users where age > 1",
+                QueryResultCache.normalize("SELECT  id\n FROM Users -- 注释\n WHERE age > 1 /* x */ ;"));
+    }
+
+    @Test
+    void quotedSegmentsKeepCase() {
+        assertNotEquals(QueryResultCache.normalize("SELECT * FROM t WHERE name = \"Bob\""),
+                QueryResultCache.normalize("SELECT * FROM t WHERE name = \"bob\""));
+        assertNotEquals(QueryResultCache.normalize("SELECT \"Name\" FROM t"),
+                QueryResultCache.normalize("SELECT \"name\" FROM t"));
+        assertEquals("select `Id` from t where name = 'A  B'",
+                QueryResultCache.normalize("SELECT `Id` FROM T WHERE name = 'A  B'"));
+    }
+
+    @Test
+    void escapedQuotesStayInsideLiteral() {
+        assertEquals("select * from t where a = 'it\\'s -- X' and b = 'O''Neil'",
+                QueryResultCache.normalize("SELECT * FROM t WHERE a = 'it\\'s -- X' AND b = 'O''Neil'"));
+        assertEquals("select \"Say \\\"Hi\\\"\" from t",
+                QueryResultCache.normalize("SELECT \"Say \\\"Hi\\\"\" FROM T"));
+    }
+}
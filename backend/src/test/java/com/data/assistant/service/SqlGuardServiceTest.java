@@ -0,0 +1,88 @@
+package com.data.assistant.service;
+
+import com.data.assistant.service.sql.SqlParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SqlGuardService：拒绝写入、加锁、多条语句和有副作用的函数，只读查询限制返回行数后放行
+ */
+class SqlGuardServiceTest {
+
+    private SqlParser parser;
+    private SqlGuardService guard;
+
+    @BeforeEach
+    void setUp() {
+        parser = new SqlParser();
+        ReflectionTestUtils.setField(parser, "threads", 1);
+        ReflectionTestUtils.setField(parser, "timeoutMillis", 2000L);
+        parser.init();
+        guard = new SqlGuardService();
+        ReflectionTestUtils.setField(guard, "sqlParser", parser);
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "defaultMaxRows", 100);
+        ReflectionTestUtils.setField(guard, "defaultTimeoutSeconds", 30);
+        ReflectionTestUtils.setField(guard, "defaultCostBudget", 0.0);
+        ReflectionTestUtils.setField(guard, "deniedFunctionList", "sleep,pg_sleep,load_file");
+        guard.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        parser.destroy();
+    }
+
+    private void assertRejected(String code, String sql) {
+        SqlGuardService.Verdict verdict = guard.check(null, sql);
+        assertFalse(verdict.isAllowed(), sql);
+        assertEquals(code, verdict.getCode(), sql);
+        assertNull(verdict.getSql());
+    }
+
+    @Test
+    void rejectsStatementsThatWrite() {
+        assertRejected("READ_ONLY", "DELETE FROM orders");
+        assertRejected("READ_ONLY", "UPDATE orders SET amount = 0");
+        assertRejected("READ_ONLY", "INSERT INTO orders (id) VALUES (1)");
+        assertRejected("READ_ONLY", "DROP TABLE orders");
+        assertRejected("READ_ONLY", "SELECT * INTO backup FROM orders");
+        assertRejected("READ_ONLY", "SELECT * FROM orders WHERE id = 1 FOR UPDATE");
+        assertRejected("READ_ONLY", "SELECT * FROM orders WHERE id IN (SELECT id FROM items FOR UPDATE)");
+        assertRejected("PARSE_ERROR", "SELECT 1; DROP TABLE orders");
+    }
+
+    @Test
+    void rejectsDeniedFunctionsAnywhere() {
+        assertRejected("DENIED_FUNCTION", "SELECT SLEEP(10)");
+        assertRejected("DENIED_FUNCTION", "SELECT * FROM orders WHERE id = (SELECT pg_catalog.\"pg_sleep\"(5))");
+        SqlGuardService.Verdict verdict = guard.check(null, "SELECT load_file('/etc/passwd') FROM dual");
+        assertEquals(List.of("load_file"), verdict.toMap().get("violations"));
+    }
+
+    @Test
+    void allowsSelectAndCapsRows() {
+        SqlGuardService.Verdict limited = guard.check(null, "SELECT id FROM orders LIMIT 10");
+        assertTrue(limited.isAllowed());
+        assertEquals("SELECT id FROM orders LIMIT 10", limited.getSql());
+        assertTrue(limited.getRewrites().isEmpty());
+
+        SqlGuardService.Verdict capped = guard.check(null, "SELECT id FROM orders");
+        assertTrue(capped.isAllowed());
+        assertFalse(capped.getRewrites().isEmpty());
+        assertTrue(capped.getSql().endsWith("LIMIT 100"), capped.getSql());
+        assertEquals(100, capped.getMaxRows());
+        assertEquals(30, capped.getTimeoutSeconds());
+
+        Map<String, Object> stats = guard.getStats();
+        assertEquals(2L, stats.get("checked"));
+        assertEquals(1L, stats.get("rewritten"));
+    }
+}
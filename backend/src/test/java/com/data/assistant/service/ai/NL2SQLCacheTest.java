@@ -0,0 +1,98 @@
+package com.data.assistant.service.ai;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NL2SQLCache：问题归一化后精确命中，近似命中要求数字和比较/排序词相同，schema 版本变化后不命中
+ */
+class NL2SQLCacheTest {
+
+    private NL2SQLCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new NL2SQLCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.85);
+        ReflectionTestUtils.setField(cache, "persistentEnabled", false);
+    }
+
+    private NL2SQLCache.Key key(String question) {
+        return cache.key("iflow", 1L, "v1", question);
+    }
+
+    private static NL2SQLResult result(String sql) {
+        NL2SQLResult result = new NL2SQLResult();
+        result.setSql(sql);
+        result.setSuccess(true);
+        result.setInvolvedTables(new ArrayList<>(List.of("orders")));
+        return result;
+    }
+
+    @Test
+    void normalizeDropsPunctuationAndFillers() {
+        assertEquals("销售额最高的前10个产品", NL2SQLCache.normalize("请问 销售额最高的前１０个产品？"));
+        assertEquals("申请 数量", NL2SQLCache.normalize("申请 数量"));
+        assertEquals(key("请问 订单总数").getId(), key("订单总数吗").getId());
+    }
+
+    @Test
+    void exactHitReturnsCopy() {
+        cache.put(key("订单总数"), result("SELECT COUNT(*) FROM orders"));
+        NL2SQLResult hit = cache.get(key("请问 订单总数？"));
+        assertNotNull(hit);
+        assertEquals(NL2SQLCache.HIT_EXACT, hit.getCacheHit());
+        hit.getInvolvedTables().clear();
+        hit.setSql("changed");
+        NL2SQLResult again = cache.get(key("订单总数"));
+        assertEquals("SELECT COUNT(*) FROM orders", again.getSql());
+        assertEquals(List.of("orders"), again.getInvolvedTables());
+    }
+
+    @Test
+    void similarHitRequiresSameNumbersAndOperators() {
+        cache.put(key("show top 10 products by sales"), result("SELECT 1"));
+        NL2SQLResult similar = cache.get(key("show the top 10 product by sales please"));
+        assertNotNull(similar);
+        assertEquals(NL2SQLCache.HIT_SIMILAR, similar.getCacheHit());
+        assertNull(cache.get(key("show top 20 products by sales")));
+        assertNull(cache.get(key("show bottom 10 products by sales")));
+
+        cache.put(key("销售额最高的产品"), result("SELECT 2"));
+        assertNull(cache.get(key("销售额最低的产品")));
+    }
+
+    @Test
+    void schemaVersionAndFailuresAreNotShared() {
+        cache.put(key("订单总数"), result("SELECT COUNT(*) FROM orders"));
+        assertNull(cache.get(cache.key("iflow", 1L, "v2", "订单总数")));
+        assertNull(cache.get(cache.key("iflow", 2L, "v1", "订单总数")));
+
+        NL2SQLResult failed = result(null);
+        failed.setSuccess(false);
+        cache.put(key("用户总数"), failed);
+        assertNull(cache.get(key("用户总数")));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.0);
+        cache.put(key("q1"), result("SELECT 1"));
+        cache.put(key("q2"), result("SELECT 2"));
+        assertNotNull(cache.get(key("q1")));
+        cache.put(key("q3"), result("SELECT 3"));
+        assertNull(cache.get(key("q2")));
+        assertNotNull(cache.get(key("q1")));
+        assertNotNull(cache.get(key("q3")));
+    }
+}
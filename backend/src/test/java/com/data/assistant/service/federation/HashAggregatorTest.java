@@ -0,0 +1,125 @@
+package com.data.assistant.service.federation;
+
+import com.data.assistant.model.ResultTable;
+import com.data.assistant.service.federation.AggregatePlan.Aggregation;
+import com.data.assistant.service.federation.AggregatePlan.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HashAggregator 合并部分聚合：SUM 遇到 NaN / Infinity 时按 double 累加，整数与小数混合时精确累加
+ */
+class HashAggregatorTest {
+
+    private Connection connection;
+    private int partials;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:hash_aggregator_test");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * SUM(v) AS s, AVG(v) AS a GROUP BY g，部分聚合列为 g0, p0 (SUM), p1 (SUM), p2 (COUNT)
+     */
+    private HashAggregator aggregator() {
+        return new HashAggregator(new AggregatePlan("t", List.of("g"), List.of(
+            new Aggregation(Function.SUM, "v", "s"),
+            new Aggregation(Function.AVG, "v", "a")), null));
+    }
+
+    /**
+     * 一个数据源返回的部分聚合结果：分组 g1，SUM 为 value，COUNT 为 1
+     */
+    private ResultTable partial(String sumType, Object value) throws SQLException {
+        String table = "partial_" + (++partials);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE " + table + " (g0 VARCHAR(10), p0 " + sumType + ", p1 " + sumType + ", p2 BIGINT)");
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + table + " VALUES ('g1', ?, ?, 1)")) {
+            stmt.setObject(1, value);
+            stmt.setObject(2, value);
+            stmt.executeUpdate();
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT g0, p0, p1, p2 FROM " + table)) {
+            return ResultTable.from(rs);
+        }
+    }
+
+    private static Map<String, Object> single(HashAggregator aggregator) {
+        List<Map<String, Object>> result = aggregator.result();
+        assertEquals(1, result.size());
+        return result.get(0);
+    }
+
+    @Test
+    void sumWithNaNIsNaN() throws SQLException {
+        HashAggregator aggregator = aggregator();
+        aggregator.merge(partial("DOUBLE PRECISION", 1.5));
+        aggregator.merge(partial("DOUBLE PRECISION", Double.NaN));
+        aggregator.merge(partial("DOUBLE PRECISION", 2.5));
+
+        Map<String, Object> row = single(aggregator);
+        assertTrue(Double.isNaN((Double) row.get("s")));
+        assertTrue(Double.isNaN((Double) row.get("a")));
+    }
+
+    @Test
+    void sumWithInfinityStaysInfinite() throws SQLException {
+        HashAggregator aggregator = aggregator();
+        aggregator.merge(partial("DOUBLE PRECISION", 1.0));
+        aggregator.merge(partial("DOUBLE PRECISION", Double.POSITIVE_INFINITY));
+        aggregator.merge(partial("BIGINT", 3L));
+
+        Map<String, Object> row = single(aggregator);
+        assertEquals(Double.POSITIVE_INFINITY, row.get("s"));
+        assertEquals(Double.POSITIVE_INFINITY, row.get("a"));
+    }
+
+    @Test
+    void sumOfOppositeInfinitiesIsNaN() throws SQLException {
+        HashAggregator aggregator = aggregator();
+        aggregator.merge(partial("DOUBLE PRECISION", Double.POSITIVE_INFINITY));
+        aggregator.merge(partial("DOUBLE PRECISION", Double.NEGATIVE_INFINITY));
+
+        assertTrue(Double.isNaN((Double) single(aggregator).get("s")));
+    }
+
+    @Test
+    void sumOfLongAndDecimalIsExact() throws SQLException {
+        long large = (1L << 53) + 1;
+        HashAggregator aggregator = aggregator();
+        aggregator.merge(partial("BIGINT", large));
+        aggregator.merge(partial("DECIMAL(20, 2)", new BigDecimal("2.25")));
+        aggregator.merge(partial("BIGINT", large));
+
+        Map<String, Object> row = single(aggregator);
+        BigDecimal expected = BigDecimal.valueOf(large).multiply(BigDecimal.valueOf(2)).add(new BigDecimal("2.25"));
+        assertEquals(0, expected.compareTo((BigDecimal) row.get("s")));
+        assertEquals(0, expected.divide(BigDecimal.valueOf(3), java.math.MathContext.DECIMAL64)
+            .compareTo((BigDecimal) row.get("a")));
+    }
+
+    @Test
+    void finiteDoublesSumAsDecimal() throws SQLException {
+        HashAggregator aggregator = aggregator();
+        aggregator.merge(partial("DOUBLE PRECISION", 0.1));
+        aggregator.merge(partial("DOUBLE PRECISION", 0.2));
+
+        assertEquals(0, new BigDecimal("0.3").compareTo((BigDecimal) single(aggregator).get("s")));
+    }
+}
@@ -0,0 +1,113 @@
+package com.data.assistant.service.federation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.rowset.serial.SerialBlob;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HashJoinOperator：溢写到磁盘后的结果与全部在内存中一致，二进制键按内容匹配，LOB 和不可序列化的值可以溢写
+ */
+class HashJoinOperatorTest {
+
+    private Path spillDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("join-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(spillDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private List<String> join(HashJoinOperator.JoinType joinType, long memoryBudget, int[] spilled) {
+        List<String> output = new ArrayList<>();
+        try (HashJoinOperator join = new HashJoinOperator(joinType, true, memoryBudget, spillDir,
+                (left, right) -> output.add((left == null ? "-" : left[1]) + "|" + (right == null ? "-" : right[1])))) {
+            for (int i = 0; i < 2000; i++) {
+                join.addBuildRow(i % 500 == 0 ? null : i, new Object[]{i, "l" + i});
+            }
+            for (int i = 1000; i < 3000; i++) {
+                join.probe((long) i, new Object[]{i, "r" + i});
+            }
+            join.finish();
+            spilled[0] = join.getStats().getSpilledPartitions();
+        }
+        output.sort(null);
+        return output;
+    }
+
+    @Test
+    void spilledJoinMatchesInMemoryJoin() {
+        for (HashJoinOperator.JoinType joinType : HashJoinOperator.JoinType.values()) {
+            int[] inMemorySpills = new int[1];
+            int[] spills = new int[1];
+            List<String> inMemory = join(joinType, Long.MAX_VALUE, inMemorySpills);
+            List<String> spilled = join(joinType, 16 * 1024, spills);
+            assertEquals(0, inMemorySpills[0]);
+            assertTrue(spills[0] > 0, "预算很小时应当溢写");
+            assertEquals(inMemory, spilled, joinType.name());
+        }
+        int[] spills = new int[1];
+        // 键 1000..1999 两侧都有（1000、1500 在构建侧是 NULL 键）
+        assertEquals(998, join(HashJoinOperator.JoinType.INNER, 16 * 1024, spills).size());
+    }
+
+    @Test
+    void binaryKeysMatchByContent() {
+        List<Object[][]> output = new ArrayList<>();
+        try (HashJoinOperator join = new HashJoinOperator(HashJoinOperator.JoinType.INNER, true, Long.MAX_VALUE,
+                spillDir, (left, right) -> output.add(new Object[][]{left, right}))) {
+            join.addBuildRow(new byte[]{1, 2, 3}, new Object[]{"a"});
+            join.probe(new byte[]{1, 2, 3}, new Object[]{"b"});
+            join.probe(new byte[]{1, 2}, new Object[]{"c"});
+            join.finish();
+        }
+        assertEquals(1, output.size());
+        assertEquals("b", output.get(0)[1][0]);
+        assertEquals(new FederationValues.BinaryKey(new byte[]{9}), FederationValues.normalizeKey(new byte[]{9}));
+    }
+
+    @Test
+    void lobAndNonSerializableValuesCanSpill() throws Exception {
+        Object driverObject = new Object() {
+            @Override
+            public String toString() {
+                return "driver-value";
+            }
+        };
+        List<Object[][]> output = new ArrayList<>();
+        int spilled;
+        try (HashJoinOperator join = new HashJoinOperator(HashJoinOperator.JoinType.LEFT, true, 1, spillDir,
+                (left, right) -> output.add(new Object[][]{left, right}))) {
+            for (int i = 0; i < 100; i++) {
+                join.addBuildRow(new byte[]{(byte) i}, new Object[]{i, new SerialBlob(new byte[]{(byte) i, 7}), driverObject});
+            }
+            join.probe(new byte[]{5}, new Object[]{"x"});
+            join.finish();
+            spilled = join.getStats().getSpilledPartitions();
+        }
+        assertTrue(spilled > 0);
+        assertEquals(100, output.size());
+        for (Object[][] pair : output) {
+            Object[] left = pair[0];
+            assertArrayEquals(new byte[]{((Integer) left[0]).byteValue(), 7}, (byte[]) left[1]);
+            assertEquals("driver-value", left[2]);
+            assertEquals((Integer) left[0] == 5, pair[1] != null);
+        }
+    }
+}
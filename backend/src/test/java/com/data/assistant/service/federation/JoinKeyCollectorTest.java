@@ -0,0 +1,69 @@
+package com.data.assistant.service.federation;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JoinKeyCollector：键范围只用于数值和日期时间键，超过上限后不再保留键列表
+ */
+class JoinKeyCollectorTest {
+
+    @Test
+    void numericKeysHaveRange() {
+        JoinKeyCollector collector = new JoinKeyCollector(10, 10);
+        collector.add(5);
+        collector.add(2L);
+        collector.add(new java.math.BigDecimal("9.5"));
+        assertTrue(collector.hasRange());
+        assertEquals(2L, collector.getMin());
+        assertEquals(new java.math.BigDecimal("9.5"), collector.getMax());
+    }
+
+    @Test
+    void temporalKeysHaveRange() {
+        JoinKeyCollector collector = new JoinKeyCollector(10, 10);
+        collector.add(LocalDate.of(2024, 3, 1));
+        collector.add(LocalDate.of(2023, 1, 1));
+        assertTrue(collector.hasRange());
+        assertEquals(LocalDate.of(2023, 1, 1), collector.getMin());
+    }
+
+    @Test
+    void stringKeysHaveNoRange() {
+        // 数据库按排序规则比较字符串（如不区分大小写），Java 计算的范围会漏掉匹配的行
+        JoinKeyCollector collector = new JoinKeyCollector(1, 10);
+        collector.add("bob");
+        collector.add("Alice");
+        collector.add("carol");
+        assertTrue(collector.isOverflow());
+        assertFalse(collector.hasRange());
+        assertTrue(collector.mightMatch("Alice"));
+    }
+
+    @Test
+    void mixedKindsHaveNoRange() {
+        JoinKeyCollector collector = new JoinKeyCollector(10, 10);
+        collector.add(new Timestamp(0));
+        collector.add(1);
+        assertFalse(collector.hasRange());
+    }
+
+    @Test
+    void overflowDropsKeyList() {
+        JoinKeyCollector collector = new JoinKeyCollector(2, 10);
+        collector.add(1);
+        collector.add(1);
+        collector.add(2);
+        assertFalse(collector.isOverflow());
+        assertEquals(1, collector.batches(1).get(0).size());
+        assertEquals(2, collector.batches(5).get(0).size());
+        collector.add(3);
+        assertTrue(collector.isOverflow());
+        assertEquals(0, collector.getKeyCount());
+        assertFalse(collector.mightMatch(null));
+    }
+}
@@ -0,0 +1,62 @@
+package com.data.assistant.service.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HyperLogLog：估计误差在标准误差的常数倍以内，小基数接近精确，合并等于对并集计数
+ */
+class HyperLogLogTest {
+
+    private static HyperLogLog of(int precision, long from, long to) {
+        HyperLogLog hll = new HyperLogLog(precision);
+        for (long i = from; i < to; i++) {
+            hll.add("v" + i);
+        }
+        return hll;
+    }
+
+    @Test
+    void estimateWithinStandardError() {
+        for (long n : new long[]{100_000, 1_000_000}) {
+            HyperLogLog hll = of(14, 0, n);
+            // precision = 14 时相对标准误差约 0.8%，允许 3 倍
+            assertEquals(n, hll.estimate(), n * 0.025, "n=" + n);
+            assertTrue(hll.standardError() > 0);
+        }
+    }
+
+    @Test
+    void smallCardinalityIsNearlyExact() {
+        assertEquals(0, new HyperLogLog(14).estimate());
+        HyperLogLog thousand = of(14, 0, 1000);
+        // 线性计数范围内误差由寄存器碰撞决定，约 ±5
+        assertEquals(1000, thousand.estimate(), 3 * thousand.standardError());
+        assertTrue(thousand.standardError() < 10);
+        HyperLogLog duplicates = new HyperLogLog(14);
+        for (int i = 0; i < 10_000; i++) {
+            duplicates.add("v" + (i % 100));
+        }
+        assertEquals(100, duplicates.estimate(), 1);
+    }
+
+    @Test
+    void mergeEqualsUnion() {
+        HyperLogLog first = of(12, 0, 60_000);
+        HyperLogLog second = of(12, 40_000, 100_000);
+        first.merge(second);
+        assertEquals(of(12, 0, 100_000).estimate(), first.estimate());
+        assertEquals(first.estimate(), HyperLogLog.fromBytes(first.toBytes()).estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(14)));
+    }
+
+    @Test
+    void equalNumbersHashEqually() {
+        assertEquals(HyperLogLog.hash(5), HyperLogLog.hash(5L));
+        assertEquals(HyperLogLog.hash(0.0), HyperLogLog.hash(-0.0));
+        assertEquals(HyperLogLog.hash(new BigDecimal("1.50")), HyperLogLog.hash(new BigDecimal("1.5")));
+    }
+}
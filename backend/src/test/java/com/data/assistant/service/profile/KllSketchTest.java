@@ -0,0 +1,80 @@
+package com.data.assistant.service.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KllSketch：分位数的秩误差在目标误差的常数倍以内，合并与序列化后精度不变
+ */
+class KllSketchTest {
+
+    private static final int N = 100_000;
+
+    private static List<Double> shuffledValues() {
+        List<Double> values = new ArrayList<>(N);
+        for (int i = 0; i < N; i++) {
+            values.add((double) i);
+        }
+        Collections.shuffle(values, new Random(42));
+        return values;
+    }
+
+    /**
+     * 值为 0..N-1 时，值本身就是它的秩
+     */
+    private static void assertRankError(KllSketch sketch, double maxError) {
+        for (double q = 0.01; q < 1; q += 0.01) {
+            double rank = sketch.quantile(q) / N;
+            assertEquals(q, rank, maxError, "q=" + q);
+        }
+    }
+
+    @Test
+    void quantilesWithinRankError() {
+        KllSketch sketch = KllSketch.forRankError(0.01);
+        shuffledValues().forEach(sketch::add);
+        assertEquals(N, sketch.getCount());
+        assertEquals(0, sketch.getMin());
+        assertEquals(N - 1, sketch.getMax());
+        assertEquals(0, sketch.quantile(0));
+        assertEquals(N - 1, sketch.quantile(1));
+        assertRankError(sketch, 0.03);
+        assertTrue(sketch.toBytes().length < 64 * 1024, "草图大小应与值的个数无关");
+    }
+
+    @Test
+    void mergedAndDeserializedSketchKeepAccuracy() {
+        KllSketch first = KllSketch.forRankError(0.01);
+        KllSketch second = KllSketch.forRankError(0.01);
+        List<Double> values = shuffledValues();
+        for (int i = 0; i < N; i++) {
+            (i < N / 3 ? first : second).add(values.get(i));
+        }
+        first.merge(second);
+        assertEquals(N, first.getCount());
+        assertRankError(first, 0.03);
+
+        KllSketch restored = KllSketch.fromBytes(first.toBytes());
+        assertEquals(first.getCount(), restored.getCount());
+        for (double q = 0.05; q < 1; q += 0.05) {
+            assertEquals(first.quantile(q), restored.quantile(q));
+        }
+    }
+
+    @Test
+    void emptySketchAndNaN() {
+        KllSketch sketch = new KllSketch(200);
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        sketch.add(Double.NaN);
+        assertEquals(0, sketch.getCount());
+        sketch.add(7);
+        assertEquals(7, sketch.quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> KllSketch.forRankError(0));
+    }
+}
@@ -0,0 +1,83 @@
+package com.data.assistant.service.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TableProfile.merge：两部分不重叠的行合并后，与一次扫描全部行的画像一致
+ */
+class TableProfileTest {
+
+    private static TableProfile profile() {
+        ColumnProfile name = new ColumnProfile("name", "VARCHAR", 14);
+        ColumnProfile score = new ColumnProfile("score", "INT", 14);
+        score.trackQuantiles(0.01);
+        score.trackTopValues(16);
+        name.trackTopValues(16);
+        return new TableProfile("t", new ArrayList<>(List.of(name, score)), new RowSketch(14, 1000));
+    }
+
+    private static Object[] row(int i) {
+        String name = i % 10 == 0 ? null : i % 7 == 0 ? " " : "n" + (i % 50);
+        return new Object[]{name, i == 800 ? 100000 : i % 100};
+    }
+
+    @Test
+    void mergeOfDisjointPartsMatchesSingleScan() {
+        TableProfile all = profile();
+        TableProfile first = profile();
+        TableProfile second = profile();
+        for (int i = 1; i <= 1000; i++) {
+            all.add(row(i));
+            (i <= 600 ? first : second).add(row(i));
+        }
+        first.merge(second);
+
+        assertEquals(all.getRowCount(), first.getRowCount());
+        for (int c = 0; c < 2; c++) {
+            ColumnProfile expected = all.getColumns().get(c);
+            ColumnProfile merged = first.getColumns().get(c);
+            assertEquals(expected.getRowCount(), merged.getRowCount());
+            assertEquals(expected.getNullCount(), merged.getNullCount());
+            assertEquals(expected.getBlankCount(), merged.getBlankCount());
+            assertEquals(expected.getMin(), merged.getMin());
+            assertEquals(expected.getMax(), merged.getMax());
+            assertEquals(expected.getSum(), merged.getSum());
+            assertEquals(expected.getDistinctEstimate(), merged.getDistinctEstimate());
+        }
+        assertEquals(all.getRowSketch().getDistinctCount(), first.getRowSketch().getDistinctCount());
+        assertEquals(1000, first.getColumns().get(1).getQuantiles().getCount());
+    }
+
+    @Test
+    void outliersAddUpOnlyWithSameBounds() {
+        TableProfile first = profile();
+        TableProfile second = profile();
+        first.getColumns().get(1).setOutliers(20, 80, 0, Collections.emptyList());
+        second.getColumns().get(1).setOutliers(20, 80, 0, Collections.emptyList());
+        for (int i = 1; i <= 1000; i++) {
+            (i <= 600 ? first : second).add(row(i));
+        }
+        assertEquals(1, second.getColumns().get(1).getOutlierCount());
+        first.merge(second);
+        assertEquals(1, first.getColumns().get(1).getOutlierCount());
+        assertEquals(List.of(100000.0), first.getColumns().get(1).getOutlierSamples());
+
+        TableProfile other = profile();
+        other.getColumns().get(1).setOutliers(10, 90, 3, Collections.emptyList());
+        first.merge(other);
+        assertNull(first.getColumns().get(1).getOutlierQ1());
+        assertEquals(0, first.getColumns().get(1).getOutlierCount());
+    }
+
+    @Test
+    void mergeRejectsDifferentColumns() {
+        TableProfile other = new TableProfile("t", new ArrayList<>(List.of(new ColumnProfile("name", "VARCHAR", 14))), null);
+        assertThrows(IllegalArgumentException.class, () -> profile().merge(other));
+    }
+}
@@ -0,0 +1,54 @@
+package com.data.assistant.service.sql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SqlParser.parseCondition：只接受单个条件表达式，拼接时使用重新生成的文本
+ */
+class SqlParserTest {
+
+    private SqlParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new SqlParser();
+        ReflectionTestUtils.setField(parser, "threads", 1);
+        ReflectionTestUtils.setField(parser, "timeoutMillis", 2000L);
+        parser.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        parser.destroy();
+    }
+
+    @Test
+    void acceptsBooleanExpression() {
+        assertEquals("status = 'paid' AND amount > 10",
+            parser.parseCondition(" status = 'paid' AND amount > 10 ").toString());
+        assertEquals("name LIKE 'a;b%'", parser.parseCondition("name LIKE 'a;b%'").toString());
+    }
+
+    @Test
+    void rejectsBreakingOutOfTheCondition() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("1 = 1) UNION SELECT * FROM users WHERE (1 = 1"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("1 = 1; DROP TABLE users"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("1 = 1 ORDER BY 1"));
+    }
+
+    @Test
+    void rejectsSubqueries() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("id IN (SELECT user_id FROM secrets)"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("EXISTS (SELECT 1 FROM secrets)"));
+    }
+
+    @Test
+    void rejectsBlank() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parseCondition("  "));
+    }
+}